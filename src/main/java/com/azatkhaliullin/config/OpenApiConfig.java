@@ -1,15 +1,48 @@
 package com.azatkhaliullin.config;
 
+import com.azatkhaliullin.dto.MatchResultDto;
+import io.swagger.v3.oas.annotations.enums.SecuritySchemeIn;
 import io.swagger.v3.oas.annotations.enums.SecuritySchemeType;
 import io.swagger.v3.oas.annotations.security.SecurityScheme;
+import io.swagger.v3.oas.models.media.ArraySchema;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+import org.springdoc.core.customizers.OpenApiCustomizer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Objects;
+import java.util.Set;
+
 @Configuration
 @SecurityScheme(
         name = "bearerAuth",
         type = SecuritySchemeType.HTTP,
         scheme = "bearer",
         bearerFormat = "JWT")
+@SecurityScheme(
+        name = "apiKeyAuth",
+        type = SecuritySchemeType.APIKEY,
+        in = SecuritySchemeIn.HEADER,
+        paramName = "X-Api-Key")
 public class OpenApiConfig {
 
+    private static final Set<String> MATCH_LIST_OPERATIONS = Set.of("getMatchesSince", "getRecentMatches");
+
+    /**
+     * The match list operations return a {@code Resource} so the bodies can be streamed from raw
+     * bytes; documents them with the array of {@link MatchResultDto} declared in openapi.yml.
+     */
+    @Bean
+    public OpenApiCustomizer matchListResponseCustomizer() {
+        return openApi -> openApi.getPaths().values().stream()
+                .flatMap(path -> path.readOperations().stream())
+                .filter(operation -> MATCH_LIST_OPERATIONS.contains(operation.getOperationId()))
+                .map(operation -> operation.getResponses().get("200"))
+                .filter(Objects::nonNull)
+                .map(ApiResponse::getContent)
+                .filter(Objects::nonNull)
+                .forEach(content -> content.values().forEach(mediaType -> mediaType.setSchema(
+                        new ArraySchema().items(new Schema<>().$ref(MatchResultDto.class.getSimpleName())))));
+    }
 }
@@ -1,55 +1,188 @@
 package com.azatkhaliullin.config;
 
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.domain.UserCredentials;
+import com.azatkhaliullin.property.ValueCodecProperties;
+import com.azatkhaliullin.serializer.BinaryCodecRedisSerializer;
+import com.azatkhaliullin.serializer.CompressingRedisSerializer;
+import com.azatkhaliullin.serializer.MatchResultCodec;
+import com.azatkhaliullin.serializer.ScalarRedisSerializer;
+import com.azatkhaliullin.serializer.TypedJsonRedisSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redis templates: one typed template per aggregate, whose values carry no class names, and a
+ * shared template for indexes, counters and script arguments.
+ */
 @Slf4j
 @Configuration
-@RequiredArgsConstructor
 public class RedisConfig {
 
-    private final ObjectMapper objectMapper;
-    private final RedisConnectionFactory connectionFactory;
+    private static final String INGEST_MATCH_SCRIPT_PATH = "scripts/ingest-match.lua";
+    private static final String MERGE_PLAYER_STATS_SCRIPT_PATH = "scripts/merge-player-stats.lua";
+    private static final String BUILD_LEADERBOARD_WINDOW_SCRIPT_PATH = "scripts/build-leaderboard-window.lua";
+    private static final String PLAYER_RANK_SCRIPT_PATH = "scripts/player-rank.lua";
+    private static final String COUNT_ACTIVE_PLAYERS_SCRIPT_PATH = "scripts/count-active-players.lua";
+    private static final String CONVERT_LEGACY_STATS_SCRIPT_PATH = "scripts/convert-legacy-stats.lua";
 
-    @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisSerializer<Object> redisSerializer) {
-        RedisTemplate<String, Object> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
+    private final RedisConnectionFactory connectionFactory;
+    private final ObjectMapper redisMapper;
+    // Reads values written by earlier versions with default typing
+    private final ObjectMapper legacyMapper;
 
-        StringRedisSerializer stringSerializer = new StringRedisSerializer();
-        template.setKeySerializer(stringSerializer);
-        template.setHashKeySerializer(stringSerializer);
-        template.setValueSerializer(redisSerializer);
-        template.setHashValueSerializer(redisSerializer);
+    public RedisConfig(ObjectMapper objectMapper, RedisConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+        this.redisMapper = redisMapper(objectMapper);
+        this.legacyMapper = redisMapper.copy();
+        legacyMapper.activateDefaultTyping(legacyMapper.getPolymorphicTypeValidator(),
+                ObjectMapper.DefaultTyping.NON_FINAL);
+    }
 
+    @Bean
+    public RedisTemplate<String, Object> redisTemplate() {
+        RedisTemplate<String, Object> template = template(new ScalarRedisSerializer(redisMapper));
         log.info("RedisTemplate bean initialized successfully");
         return template;
     }
 
+    /**
+     * Match values in the binary layout, zstd-compressed with a trained dictionary when enabled.
+     */
     @Bean
-    public RedisSerializer<Object> redisSerializer() {
-        ObjectMapper redisMapper = objectMapper.copy();
+    public CompressingRedisSerializer<MatchResult> matchResultSerializer(ValueCodecProperties valueCodecProperties) {
+        ValueCodecProperties.Compression compression = valueCodecProperties.getCompression();
+        log.info("Match values use the binary codec, binary writes: {}, compression: {} with {} dictionaries",
+                valueCodecProperties.isBinaryWrites(), compression.isEnabled(), compression.getDictionaries().size());
+        RedisSerializer<MatchResult> encoding = new BinaryCodecRedisSerializer<>(new MatchResultCodec(),
+                jsonSerializer(MatchResult.class), valueCodecProperties.isBinaryWrites());
+        return new CompressingRedisSerializer<>(encoding, loadDictionaries(compression.getDictionaries()),
+                compression.isEnabled(), compression.getLevel());
+    }
+
+    @Bean
+    public RedisTemplate<String, MatchResult> matchResultTemplate(RedisSerializer<MatchResult> matchResultSerializer) {
+        return template(matchResultSerializer);
+    }
+
+    @Bean
+    public RedisTemplate<String, Player> playerTemplate() {
+        return template(jsonSerializer(Player.class));
+    }
+
+    /**
+     * Player stats are hash fields updated with HINCRBY, hence stored as decimal text.
+     */
+    @Bean
+    public RedisTemplate<String, Long> playerStatsTemplate() {
+        return template(new GenericToStringSerializer<>(Long.class));
+    }
+
+    @Bean
+    public RedisTemplate<String, ServerInfo> serverInfoTemplate() {
+        return template(jsonSerializer(ServerInfo.class));
+    }
+
+    @Bean
+    public RedisTemplate<String, UserCredentials> userCredentialsTemplate() {
+        return template(jsonSerializer(UserCredentials.class));
+    }
+
+    @Bean
+    public RedisScript<Long> ingestMatchScript() {
+        return RedisScript.of(new ClassPathResource(INGEST_MATCH_SCRIPT_PATH), Long.class);
+    }
 
+    @Bean
+    public RedisScript<Long> mergePlayerStatsScript() {
+        return RedisScript.of(new ClassPathResource(MERGE_PLAYER_STATS_SCRIPT_PATH), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> buildLeaderboardWindowScript() {
+        return RedisScript.of(new ClassPathResource(BUILD_LEADERBOARD_WINDOW_SCRIPT_PATH), Long.class);
+    }
+
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> playerRankScript() {
+        return RedisScript.of(new ClassPathResource(PLAYER_RANK_SCRIPT_PATH), List.class);
+    }
+
+    @Bean
+    public RedisScript<Long> countActivePlayersScript() {
+        return RedisScript.of(new ClassPathResource(COUNT_ACTIVE_PLAYERS_SCRIPT_PATH), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> convertLegacyStatsScript() {
+        return RedisScript.of(new ClassPathResource(CONVERT_LEGACY_STATS_SCRIPT_PATH), Long.class);
+    }
+
+    /**
+     * Pub/sub subscriptions, added by their subscribers once the context has started.
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer() {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    private <T> RedisSerializer<T> jsonSerializer(Class<T> type) {
+        return new TypedJsonRedisSerializer<>(type, redisMapper, legacyMapper);
+    }
+
+    private List<byte[]> loadDictionaries(List<Resource> resources) {
+        List<byte[]> dictionaries = new ArrayList<>(resources.size());
+        for (Resource resource : resources) {
+            try (InputStream in = resource.getInputStream()) {
+                dictionaries.add(in.readAllBytes());
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load compression dictionary " + resource, e);
+            }
+        }
+        return dictionaries;
+    }
+
+    private static ObjectMapper redisMapper(ObjectMapper objectMapper) {
+        ObjectMapper redisMapper = objectMapper.copy();
         redisMapper.registerModule(new Jdk8Module());
         redisMapper.registerModule(new JavaTimeModule());
         redisMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return redisMapper;
+    }
 
-        redisMapper.activateDefaultTyping(
-                redisMapper.getPolymorphicTypeValidator(),
-                ObjectMapper.DefaultTyping.NON_FINAL);
+    private <T> RedisTemplate<String, T> template(RedisSerializer<?> valueSerializer) {
+        RedisTemplate<String, T> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
 
-        log.info("RedisSerializer configured with GenericJackson2JsonRedisSerializer");
-        return new GenericJackson2JsonRedisSerializer(redisMapper);
+        StringRedisSerializer stringSerializer = new StringRedisSerializer();
+        template.setKeySerializer(stringSerializer);
+        template.setHashKeySerializer(stringSerializer);
+        template.setValueSerializer(valueSerializer);
+        template.setHashValueSerializer(valueSerializer);
+        return template;
     }
 }
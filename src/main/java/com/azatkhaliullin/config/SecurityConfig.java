@@ -1,5 +1,6 @@
 package com.azatkhaliullin.config;
 
+import com.azatkhaliullin.security.ApiKeyFilter;
 import com.azatkhaliullin.security.JwtTokenFilter;
 import com.azatkhaliullin.util.SecurityConstants;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +23,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
 
     private final JwtTokenFilter jwtTokenFilter;
+    private final ApiKeyFilter apiKeyFilter;
 
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -36,7 +38,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(SecurityConstants.PUBLIC_ENDPOINTS).permitAll()
                         .anyRequest().authenticated())
-                .addFilterBefore(jwtTokenFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtTokenFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(apiKeyFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
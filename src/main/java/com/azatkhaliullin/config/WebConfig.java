@@ -0,0 +1,57 @@
+package com.azatkhaliullin.config;
+
+import com.azatkhaliullin.util.JsonBatchResource;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * Binds {@link Resource} request bodies, as generated for binary request bodies, to a stream
+     * of the request instead of reading them into memory first, so that a match batch is parsed
+     * as it arrives. Writes {@link JsonBatchResource} response bodies in the media type negotiated
+     * from the produces of the operation and the Accept header of the request.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(converter -> converter.getClass() == ResourceHttpMessageConverter.class
+                ? new StreamingResourceHttpMessageConverter()
+                : converter);
+    }
+
+    private static class StreamingResourceHttpMessageConverter extends ResourceHttpMessageConverter {
+
+        @Override
+        protected Resource readInternal(Class<? extends Resource> clazz, HttpInputMessage inputMessage)
+                throws IOException {
+            return clazz.isAssignableFrom(InputStreamResource.class)
+                    ? new InputStreamResource(inputMessage.getBody())
+                    : super.readInternal(clazz, inputMessage);
+        }
+
+        // Without a known length the body is written with chunked transfer encoding as it is read
+        @Override
+        protected void writeContent(Resource resource, HttpOutputMessage outputMessage) throws IOException {
+            if (!(resource instanceof JsonBatchResource batches)) {
+                super.writeContent(resource, outputMessage);
+                return;
+            }
+            boolean ndjson = MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(outputMessage.getHeaders().getContentType());
+            try (InputStream body = batches.getInputStream(ndjson)) {
+                body.transferTo(outputMessage.getBody());
+            }
+        }
+    }
+}
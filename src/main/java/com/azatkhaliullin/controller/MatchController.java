@@ -0,0 +1,33 @@
+package com.azatkhaliullin.controller;
+
+import com.azatkhaliullin.api.MatchesApi;
+import com.azatkhaliullin.dto.MatchBatchResponse;
+import com.azatkhaliullin.exception.InvalidMatchBatchException;
+import com.azatkhaliullin.service.MatchIngestService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequiredArgsConstructor
+@SecurityRequirement(name = "apiKeyAuth")
+public class MatchController implements MatchesApi {
+
+    private final MatchIngestService matchIngestService;
+
+    @Override
+    @PreAuthorize("hasRole('GAME_SERVER')")
+    public ResponseEntity<MatchBatchResponse> ingestMatches(Resource body) {
+        try (InputStream inputStream = body.getInputStream()) {
+            return ResponseEntity.ok(matchIngestService.ingestBatch(inputStream));
+        } catch (IOException e) {
+            throw new InvalidMatchBatchException("Failed to read match batch body", e);
+        }
+    }
+}
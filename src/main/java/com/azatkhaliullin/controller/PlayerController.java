@@ -2,7 +2,11 @@ package com.azatkhaliullin.controller;
 
 import com.azatkhaliullin.api.PlayersApi;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import com.azatkhaliullin.dto.MatchPageDto;
+import com.azatkhaliullin.dto.PlayerRankDto;
 import com.azatkhaliullin.dto.PlayerStatsDto;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
+import com.azatkhaliullin.service.MatchHistoryService;
 import com.azatkhaliullin.service.PlayerService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -15,6 +19,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class PlayerController implements PlayersApi {
 
     private final PlayerService playerService;
+    private final MatchHistoryService matchHistoryService;
 
     @Override
     @PreAuthorize("#username == authentication.name")
@@ -23,4 +28,29 @@ public class PlayerController implements PlayersApi {
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
+
+    @Override
+    @PreAuthorize("#username == authentication.name")
+    public ResponseEntity<ScoreDistributionDto> getPlayerScoreDistribution(String username) {
+        return playerService.getScoreDistribution(username)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Override
+    @PreAuthorize("#username == authentication.name")
+    public ResponseEntity<PlayerRankDto> getPlayerRank(String username, Integer neighbours) {
+        return playerService.getPlayerRank(username, neighbours)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Override
+    @PreAuthorize("#username == authentication.name")
+    public ResponseEntity<MatchPageDto> getPlayerMatches(String username, Integer limit, String before,
+                                                         String after, Long from, Long to) {
+        return matchHistoryService.getPlayerMatches(username, limit, before, after, from, to)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
 }
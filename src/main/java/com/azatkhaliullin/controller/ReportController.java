@@ -2,11 +2,16 @@ package com.azatkhaliullin.controller;
 
 import com.azatkhaliullin.api.ReportsApi;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
-import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.domain.LeaderboardSegment;
+import com.azatkhaliullin.domain.LeaderboardWindow;
+import com.azatkhaliullin.dto.LeaderboardSegmentsDto;
 import com.azatkhaliullin.dto.PlayerStatsDto;
 import com.azatkhaliullin.dto.ServerStatsDto;
 import com.azatkhaliullin.service.ReportService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -20,13 +25,22 @@ public class ReportController implements ReportsApi {
     private final ReportService reportService;
 
     @Override
-    public ResponseEntity<List<MatchResultDto>> getRecentMatches(Integer count) {
-        return ResponseEntity.ok(reportService.getRecentMatches(count));
+    public ResponseEntity<Resource> getRecentMatches(Integer count) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ByteArrayResource(reportService.getRecentMatches(count)));
     }
 
     @Override
-    public ResponseEntity<List<PlayerStatsDto>> getBestPlayers(Integer count) {
-        return ResponseEntity.ok(reportService.getBestPlayers(count));
+    public ResponseEntity<List<PlayerStatsDto>> getBestPlayers(Integer count, String window, String country,
+                                                               String levelBand, String server) {
+        return ResponseEntity.ok(reportService.getBestPlayers(count, LeaderboardWindow.fromValue(window),
+                LeaderboardSegment.of(country, levelBand, server)));
+    }
+
+    @Override
+    public ResponseEntity<LeaderboardSegmentsDto> getLeaderboardSegments() {
+        return ResponseEntity.ok(reportService.getLeaderboardSegments());
     }
 
     @Override
@@ -2,11 +2,16 @@ package com.azatkhaliullin.controller;
 
 import com.azatkhaliullin.api.ServersApi;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
-import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.dto.ActivePlayersDto;
+import com.azatkhaliullin.dto.MatchPageDto;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
 import com.azatkhaliullin.dto.ServerInfoDto;
 import com.azatkhaliullin.dto.ServerStatsDto;
+import com.azatkhaliullin.dto.TimeSeriesDto;
+import com.azatkhaliullin.service.MatchHistoryService;
 import com.azatkhaliullin.service.ServerService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -19,6 +24,7 @@ import java.util.List;
 public class ServerController implements ServersApi {
 
     private final ServerService serverService;
+    private final MatchHistoryService matchHistoryService;
 
     @Override
     public ResponseEntity<ServerInfoDto> getServerInfo(String endpoint) {
@@ -27,11 +33,21 @@ public class ServerController implements ServersApi {
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    /**
+     * The body is written as a JSON array or as newline-delimited JSON, whichever of the media
+     * types the operation produces the request accepts.
+     */
     @Override
-    public ResponseEntity<List<MatchResultDto>> getMatchesSince(String endpoint, Long timestamp) {
-        Instant since = Instant.ofEpochSecond(timestamp);
-        List<MatchResultDto> matches = serverService.getMatchesSince(endpoint, since);
-        return ResponseEntity.ok(matches);
+    public ResponseEntity<Resource> getMatchesSince(String endpoint, Long timestamp) {
+        return ResponseEntity.ok(serverService.streamMatchesSince(endpoint, Instant.ofEpochSecond(timestamp)));
+    }
+
+    @Override
+    public ResponseEntity<MatchPageDto> getServerMatches(String endpoint, Integer limit, String before,
+                                                         String after, Long from, Long to) {
+        return matchHistoryService.getServerMatches(endpoint, limit, before, after, from, to)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @Override
@@ -46,4 +62,25 @@ public class ServerController implements ServersApi {
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
+
+    @Override
+    public ResponseEntity<ActivePlayersDto> getServerActivePlayers(String endpoint, String region, String window) {
+        return serverService.getActivePlayers(endpoint, region, window)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Override
+    public ResponseEntity<TimeSeriesDto> getServerTimeSeries(Long from, String endpoint, String region, Long to) {
+        return serverService.getTimeSeries(endpoint, region, from, to)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Override
+    public ResponseEntity<ScoreDistributionDto> getServerScoreDistribution(String endpoint) {
+        return serverService.getScoreDistribution(endpoint)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
 }
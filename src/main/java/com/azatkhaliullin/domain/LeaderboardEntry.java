@@ -0,0 +1,20 @@
+package com.azatkhaliullin.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntry {
+    // 1-based
+    private long rank;
+    private UUID playerId;
+    private String username;
+    private double rating;
+}
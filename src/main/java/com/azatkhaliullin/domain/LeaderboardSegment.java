@@ -0,0 +1,100 @@
+package com.azatkhaliullin.domain;
+
+import com.azatkhaliullin.exception.InvalidLeaderboardSegmentException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Part of the players a leaderboard is kept for. Countries and level bands come from
+ * configuration and servers from the registered servers, so the number of segments stays
+ * bounded whatever values players and matches carry.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardSegment {
+
+    public static final String OTHER_COUNTRY = "Other";
+
+    private Type type;
+    private String value;
+
+    /**
+     * @return the segment of whichever of the query parameters is given, null for none
+     * @throws InvalidLeaderboardSegmentException when more than one is given
+     */
+    public static LeaderboardSegment of(String country, String levelBand, String server) {
+        List<LeaderboardSegment> given = new ArrayList<>(1);
+        if (country != null) given.add(new LeaderboardSegment(Type.COUNTRY, country));
+        if (levelBand != null) given.add(new LeaderboardSegment(Type.LEVEL, levelBand));
+        if (server != null) given.add(server(server));
+        if (given.size() > 1) {
+            throw new InvalidLeaderboardSegmentException("At most one of country, levelBand and server may be given");
+        }
+        return given.isEmpty() ? null : given.get(0);
+    }
+
+    /**
+     * @return the configured country matching the given one regardless of case, or
+     * {@link #OTHER_COUNTRY} for any other
+     */
+    public static LeaderboardSegment country(String country, List<String> countries) {
+        for (String known : countries) {
+            if (known.equalsIgnoreCase(country)) return new LeaderboardSegment(Type.COUNTRY, known);
+        }
+        return new LeaderboardSegment(Type.COUNTRY, OTHER_COUNTRY);
+    }
+
+    /**
+     * @param lowerBounds ascending first levels of the bands; levels below the first one
+     *                    belong to the first band
+     * @return the band of the level, e.g. {@code 10-19}, or {@code 50+} for the last band
+     */
+    public static LeaderboardSegment levelBand(int level, List<Integer> lowerBounds) {
+        int band = 0;
+        while (band + 1 < lowerBounds.size() && level >= lowerBounds.get(band + 1)) {
+            band++;
+        }
+        return new LeaderboardSegment(Type.LEVEL, levelBandLabel(band, lowerBounds));
+    }
+
+    public static List<String> levelBands(List<Integer> lowerBounds) {
+        return IntStream.range(0, lowerBounds.size())
+                .mapToObj(band -> levelBandLabel(band, lowerBounds))
+                .toList();
+    }
+
+    public static LeaderboardSegment server(String endpoint) {
+        return new LeaderboardSegment(Type.SERVER, endpoint);
+    }
+
+    /**
+     * @return type and value as listed in the segment registry, e.g. {@code country:Japan}
+     */
+    public String getName() {
+        return type.getPrefix() + value;
+    }
+
+    private static String levelBandLabel(int band, List<Integer> lowerBounds) {
+        return band + 1 < lowerBounds.size()
+                ? lowerBounds.get(band) + "-" + (lowerBounds.get(band + 1) - 1)
+                : lowerBounds.get(band) + "+";
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum Type {
+        COUNTRY("country:"),
+        LEVEL("level:"),
+        SERVER("server:");
+
+        private final String prefix;
+    }
+}
@@ -0,0 +1,43 @@
+package com.azatkhaliullin.domain;
+
+import com.azatkhaliullin.exception.InvalidLeaderboardWindowException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * Period a best players leaderboard covers. Every window but {@link #ALL} is made of daily
+ * buckets in UTC and ends with the current day.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum LeaderboardWindow {
+
+    ALL("all"),
+    DAY("day"),
+    // ISO week, starting on Monday
+    WEEK("week"),
+    MONTH("month"),
+    ROLLING_7_DAYS("rolling-7d");
+
+    private final String value;
+
+    public static LeaderboardWindow fromValue(String value) {
+        for (LeaderboardWindow window : values()) {
+            if (window.value.equals(value)) return window;
+        }
+        throw new InvalidLeaderboardWindowException("Unknown leaderboard window: " + value);
+    }
+
+    public LocalDate firstDay(LocalDate today) {
+        return switch (this) {
+            case DAY -> today;
+            case WEEK -> today.with(DayOfWeek.MONDAY);
+            case MONTH -> today.withDayOfMonth(1);
+            case ROLLING_7_DAYS -> today.minusDays(6);
+            case ALL -> throw new IllegalStateException("The all-time leaderboard has no daily buckets");
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package com.azatkhaliullin.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchCursor {
+    private long playedAt;
+    private UUID matchId;
+}
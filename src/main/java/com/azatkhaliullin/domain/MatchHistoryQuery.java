@@ -0,0 +1,21 @@
+package com.azatkhaliullin.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchHistoryQuery {
+    // Epoch millis, both inclusive
+    private long from;
+    private long to;
+    // Exclusive position to continue from, null for the newest (or oldest) page
+    private MatchCursor cursor;
+    // Scan towards newer matches instead of older ones
+    private boolean newer;
+    private int limit;
+}
@@ -0,0 +1,21 @@
+package com.azatkhaliullin.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * A match as the API renders it, with the id and playedAt it is indexed by.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchJson {
+    private UUID id;
+    private long playedAt;
+    private byte[] json;
+}
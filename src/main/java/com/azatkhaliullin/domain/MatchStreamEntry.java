@@ -0,0 +1,16 @@
+package com.azatkhaliullin.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchStreamEntry {
+    private String id;
+    // null when the entry could not be deserialized
+    private MatchResult match;
+}
@@ -0,0 +1,20 @@
+package com.azatkhaliullin.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlayerRank {
+    // 1-based
+    private long rank;
+    private long rankedPlayers;
+    // The player and those ranked around them, highest first
+    private List<LeaderboardEntry> neighbourhood;
+}
@@ -0,0 +1,20 @@
+package com.azatkhaliullin.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlayerStatsDelta {
+    private UUID playerId;
+    private int matches;
+    private long totalScore;
+    private int bestScore;
+    private int worstScore;
+}
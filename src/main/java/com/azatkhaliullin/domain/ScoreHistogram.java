@@ -0,0 +1,43 @@
+package com.azatkhaliullin.domain;
+
+import com.azatkhaliullin.util.GameConstants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * Exact distribution of match scores: the number of times every score from 0 to
+ * {@link GameConstants#MAX_SCORE} was scored.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoreHistogram {
+
+    // Indexed by score
+    private long[] counts = new long[GameConstants.MAX_SCORE + 1];
+
+    public long total() {
+        return Arrays.stream(counts).sum();
+    }
+
+    /**
+     * @param percentile between 0 exclusive and 100 inclusive
+     * @return the lowest score at least the given percent of scores are at or below (nearest
+     * rank), or null without scores
+     */
+    public Integer percentile(double percentile) {
+        long total = total();
+        if (total == 0) return null;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int score = 0; score < counts.length; score++) {
+            seen += counts[score];
+            if (seen >= rank) return score;
+        }
+        return counts.length - 1;
+    }
+}
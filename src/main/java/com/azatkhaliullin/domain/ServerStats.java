@@ -0,0 +1,20 @@
+package com.azatkhaliullin.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Counters of the matches played on a server: how many, how many player slots they filled
+ * and the sum of all their scores.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServerStats {
+    private long matches;
+    private long playerSlots;
+    private long totalScore;
+}
@@ -0,0 +1,26 @@
+package com.azatkhaliullin.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Matches played in one bucket of a time series: how many, how many player slots they filled
+ * and the sum of their scores.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSeriesBucket {
+    // Epoch millis
+    private long start;
+    private long matches;
+    private long players;
+    private long totalScore;
+
+    public boolean isEmpty() {
+        return matches == 0;
+    }
+}
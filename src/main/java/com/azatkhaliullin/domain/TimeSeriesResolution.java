@@ -0,0 +1,36 @@
+package com.azatkhaliullin.domain;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+
+/**
+ * Width of the buckets of a server activity time series, finest first. Buckets start at a
+ * multiple of their width since the epoch, i.e. on the minute, hour or day in UTC.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TimeSeriesResolution {
+
+    MINUTE("1m", Duration.ofMinutes(1)),
+    HOUR("1h", Duration.ofHours(1)),
+    DAY("1d", Duration.ofDays(1));
+
+    private final String value;
+    private final Duration width;
+
+    /**
+     * @return start of the bucket the time falls into, epoch millis
+     */
+    public long bucketStart(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, width.toMillis());
+    }
+
+    /**
+     * @return number of buckets covering the time range, both ends included
+     */
+    public long bucketCount(long from, long to) {
+        return (bucketStart(to) - bucketStart(from)) / width.toMillis() + 1;
+    }
+}
@@ -0,0 +1,56 @@
+package com.azatkhaliullin.domain;
+
+import com.azatkhaliullin.exception.InvalidTimeSeriesQueryException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Servers a time series or an active players count covers: a single server or every server
+ * of a region.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSeriesScope {
+
+    private Type type;
+    private String value;
+
+    /**
+     * @return the scope of whichever of the query parameters is given
+     * @throws InvalidTimeSeriesQueryException unless exactly one is given
+     */
+    public static TimeSeriesScope of(String endpoint, String region) {
+        if ((endpoint == null) == (region == null)) {
+            throw new InvalidTimeSeriesQueryException("Exactly one of endpoint and region must be given");
+        }
+        return endpoint != null ? server(endpoint) : region(region);
+    }
+
+    public static TimeSeriesScope server(String endpoint) {
+        return new TimeSeriesScope(Type.SERVER, endpoint);
+    }
+
+    public static TimeSeriesScope region(String region) {
+        return new TimeSeriesScope(Type.REGION, region);
+    }
+
+    /**
+     * @return type and value as used in the keys of the scope, e.g. {@code region:EU}
+     */
+    public String getName() {
+        return type.getPrefix() + value;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum Type {
+        SERVER("server:"),
+        REGION("region:");
+
+        private final String prefix;
+    }
+}
@@ -1,12 +1,59 @@
 package com.azatkhaliullin.exception;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
 @ControllerAdvice
 public class ApiExceptionHandler {
 
+    @ExceptionHandler(InvalidMatchBatchException.class)
+    public ResponseEntity<String> handleInvalidMatchBatch(InvalidMatchBatchException exception) {
+        return ResponseEntity.badRequest().body("Bad Request: " + exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursor(InvalidCursorException exception) {
+        return ResponseEntity.badRequest().body("Bad Request: " + exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidLeaderboardWindowException.class)
+    public ResponseEntity<String> handleInvalidLeaderboardWindow(InvalidLeaderboardWindowException exception) {
+        return ResponseEntity.badRequest().body("Bad Request: " + exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidLeaderboardSegmentException.class)
+    public ResponseEntity<String> handleInvalidLeaderboardSegment(InvalidLeaderboardSegmentException exception) {
+        return ResponseEntity.badRequest().body("Bad Request: " + exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidTimeSeriesQueryException.class)
+    public ResponseEntity<String> handleInvalidTimeSeriesQuery(InvalidTimeSeriesQueryException exception) {
+        return ResponseEntity.badRequest().body("Bad Request: " + exception.getMessage());
+    }
+
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity<String> handleIngestQueueFull(IngestQueueFullException exception) {
+        long retryAfterSeconds = Math.max(1, (exception.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body("Too Many Requests: " + exception.getMessage());
+    }
+
+    @ExceptionHandler(IngestUnavailableException.class)
+    public ResponseEntity<String> handleIngestUnavailable(IngestUnavailableException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body("Service Unavailable: " + exception.getMessage());
+    }
+
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<String> handleAccessDenied(AccessDeniedException exception) {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Forbidden: " + exception.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleAll(Exception exception) {
         return ResponseEntity.status(500).body("Internal Server Error: " + exception.getMessage());
@@ -0,0 +1,16 @@
+package com.azatkhaliullin.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public class IngestQueueFullException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public IngestQueueFullException(Duration retryAfter) {
+        super("Match ingest queue is full");
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,8 @@
+package com.azatkhaliullin.exception;
+
+public class IngestUnavailableException extends RuntimeException {
+
+    public IngestUnavailableException() {
+        super("Match ingest is not running");
+    }
+}
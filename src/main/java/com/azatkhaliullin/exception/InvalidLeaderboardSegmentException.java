@@ -0,0 +1,8 @@
+package com.azatkhaliullin.exception;
+
+public class InvalidLeaderboardSegmentException extends RuntimeException {
+
+    public InvalidLeaderboardSegmentException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.azatkhaliullin.exception;
+
+public class InvalidLeaderboardWindowException extends RuntimeException {
+
+    public InvalidLeaderboardWindowException(String message) {
+        super(message);
+    }
+}
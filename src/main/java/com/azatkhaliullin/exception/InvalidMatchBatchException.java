@@ -0,0 +1,8 @@
+package com.azatkhaliullin.exception;
+
+public class InvalidMatchBatchException extends RuntimeException {
+
+    public InvalidMatchBatchException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,8 @@
+package com.azatkhaliullin.exception;
+
+public class InvalidTimeSeriesQueryException extends RuntimeException {
+
+    public InvalidTimeSeriesQueryException(String message) {
+        super(message);
+    }
+}
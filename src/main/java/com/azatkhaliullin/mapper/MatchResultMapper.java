@@ -13,7 +13,13 @@ public interface MatchResultMapper {
 
     MatchResultDto toDto(MatchResult matchResult);
 
+    MatchResult toDomain(MatchResultDto matchResultDto);
+
     default OffsetDateTime map(Instant value) {
         return value == null ? null : value.atOffset(ZoneOffset.UTC);
     }
+
+    default Instant map(OffsetDateTime value) {
+        return value == null ? null : value.toInstant();
+    }
 }
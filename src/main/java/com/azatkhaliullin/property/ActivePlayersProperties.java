@@ -0,0 +1,16 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.active-players")
+public class ActivePlayersProperties {
+
+    private Duration dailyRetention;
+    private Duration windowCacheTtl;
+}
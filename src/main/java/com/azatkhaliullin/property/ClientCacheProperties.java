@@ -0,0 +1,19 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.client-cache")
+public class ClientCacheProperties {
+
+    private boolean enabled;
+    private List<String> prefixes = List.of();
+    private long maxEntries;
+    private Duration connectRetryInterval;
+}
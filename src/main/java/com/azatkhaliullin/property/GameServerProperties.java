@@ -0,0 +1,16 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.game-servers")
+public class GameServerProperties {
+
+    private List<String> apiKeyHashes = new ArrayList<>();
+}
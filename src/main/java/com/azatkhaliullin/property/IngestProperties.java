@@ -0,0 +1,64 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.ingest")
+public class IngestProperties {
+
+    private int batchSize;
+    private WriteBehind writeBehind = new WriteBehind();
+    private Stream stream = new Stream();
+    private Dedup dedup = new Dedup();
+    private StatsCoalescing statsCoalescing = new StatsCoalescing();
+
+    @Data
+    public static class WriteBehind {
+
+        private boolean enabled;
+        private int capacity;
+        private int drainers;
+        private int maxBatchSize;
+        private Duration maxDelay;
+        private Duration offerTimeout;
+        private Duration retryAfter;
+        private int maxAttempts;
+    }
+
+    @Data
+    public static class Stream {
+
+        private boolean enabled;
+        private String group;
+        private String consumer;
+        private int workers;
+        private int readCount;
+        private Duration block;
+        private long maxLength;
+        private Duration lagRefresh;
+        private Duration claimIdle;
+        private int maxDeliveries;
+    }
+
+    @Data
+    public static class Dedup {
+
+        private Duration markerTtl;
+        private int expectedInsertions;
+        private double falsePositiveRate;
+    }
+
+    @Data
+    public static class StatsCoalescing {
+
+        private boolean enabled;
+        private int stripes;
+        private Duration maxStaleness;
+        private int maxPendingUpdates;
+    }
+}
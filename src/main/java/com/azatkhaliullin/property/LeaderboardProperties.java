@@ -0,0 +1,42 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.leaderboard")
+public class LeaderboardProperties {
+
+    private Duration dailyRetention;
+    private Duration windowCacheTtl;
+    private Segments segments = new Segments();
+    private Rank rank = new Rank();
+    private Rebuild rebuild = new Rebuild();
+
+    @Data
+    public static class Segments {
+
+        private List<String> countries = new ArrayList<>();
+        private List<Integer> levelBands = new ArrayList<>(List.of(1));
+    }
+
+    @Data
+    public static class Rank {
+
+        private int defaultNeighbours;
+        private int maxNeighbours;
+    }
+
+    @Data
+    public static class Rebuild {
+
+        private boolean enabled;
+        private int batchSize;
+    }
+}
@@ -0,0 +1,23 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.history")
+public class MatchHistoryProperties {
+
+    private int defaultPageSize;
+    private int maxPageSize;
+    private int streamWindowSize;
+    private Migration migration = new Migration();
+
+    @Data
+    public static class Migration {
+
+        private boolean enabled;
+        private int batchSize;
+    }
+}
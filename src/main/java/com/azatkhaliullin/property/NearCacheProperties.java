@@ -0,0 +1,20 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.near-cache")
+public class NearCacheProperties {
+
+    private boolean enabled;
+    private long maxPlayers;
+    private long maxServers;
+    private Duration expireAfterWrite;
+    private String invalidationChannel;
+    private Duration subscribeRetryInterval;
+}
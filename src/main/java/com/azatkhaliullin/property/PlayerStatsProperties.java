@@ -0,0 +1,20 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.player-stats")
+public class PlayerStatsProperties {
+
+    private Verification verification = new Verification();
+
+    @Data
+    public static class Verification {
+
+        private boolean enabled;
+        private double sampleRate;
+    }
+}
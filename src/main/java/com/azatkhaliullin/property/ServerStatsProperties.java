@@ -0,0 +1,19 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.server-stats")
+public class ServerStatsProperties {
+
+    private Rebuild rebuild = new Rebuild();
+
+    @Data
+    public static class Rebuild {
+
+        private boolean enabled;
+    }
+}
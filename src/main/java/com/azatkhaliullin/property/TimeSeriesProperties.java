@@ -0,0 +1,40 @@
+package com.azatkhaliullin.property;
+
+import com.azatkhaliullin.domain.TimeSeriesResolution;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.timeseries")
+public class TimeSeriesProperties {
+
+    private Retention retention = new Retention();
+    private int maxPoints;
+    private Downsample downsample = new Downsample();
+
+    @Data
+    public static class Retention {
+
+        private Duration minute;
+        private Duration hour;
+        private Duration day;
+
+        public Duration of(TimeSeriesResolution resolution) {
+            return switch (resolution) {
+                case MINUTE -> minute;
+                case HOUR -> hour;
+                case DAY -> day;
+            };
+        }
+    }
+
+    @Data
+    public static class Downsample {
+
+        private Duration lookback;
+    }
+}
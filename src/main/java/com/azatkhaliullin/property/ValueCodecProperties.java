@@ -0,0 +1,37 @@
+package com.azatkhaliullin.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats.codec")
+public class ValueCodecProperties {
+
+    private boolean binaryWrites;
+    private boolean apiJsonWrites;
+    private Compression compression = new Compression();
+
+    @Data
+    public static class Compression {
+
+        private boolean enabled;
+        private int level;
+        private List<Resource> dictionaries = new ArrayList<>();
+        private Training training = new Training();
+    }
+
+    @Data
+    public static class Training {
+
+        private boolean enabled;
+        private int sampleSize;
+        private int dictionarySize;
+        private String output;
+    }
+}
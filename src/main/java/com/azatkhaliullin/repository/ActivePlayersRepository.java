@@ -0,0 +1,75 @@
+package com.azatkhaliullin.repository;
+
+import com.azatkhaliullin.domain.LeaderboardWindow;
+import com.azatkhaliullin.domain.TimeSeriesScope;
+import com.azatkhaliullin.property.ActivePlayersProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Distinct players of servers and regions per UTC day, each day a HyperLogLog the ingest script
+ * adds the players of every match to. A HyperLogLog takes at most about 12 KB whatever the
+ * number of players, at the price of an estimate instead of an exact count. Longer windows are
+ * the merge of their days, cached for a short while.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ActivePlayersRepository {
+
+    /**
+     * Relative standard error of the Redis HyperLogLog estimate.
+     */
+    public static final double STANDARD_ERROR = 0.0081;
+
+    private static final String KEY_ACTIVE_PLAYERS = "players:active:";
+    private static final String KEY_WINDOW = KEY_ACTIVE_PLAYERS + "window:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisScript<Long> countActivePlayersScript;
+    private final ActivePlayersProperties activePlayersProperties;
+
+    /**
+     * @return estimated number of distinct players in the window ending today
+     */
+    public long count(TimeSeriesScope scope, LeaderboardWindow window, LocalDate today) {
+        try {
+            if (window == LeaderboardWindow.DAY) {
+                return redisTemplate.opsForHyperLogLog().size(dailyKey(scope, today));
+            }
+            return countWindow(scope, window, today);
+        } catch (Exception e) {
+            log.error("Failed to count {} active players of {}", window.getValue(), scope.getName(), e);
+            throw e;
+        }
+    }
+
+    static String dailyKey(TimeSeriesScope scope, LocalDate day) {
+        return KEY_ACTIVE_PLAYERS + scope.getName() + ":" + day;
+    }
+
+    private long countWindow(TimeSeriesScope scope, LeaderboardWindow window, LocalDate today) {
+        LocalDate firstDay = window.firstDay(today);
+        List<String> keys = new ArrayList<>();
+        keys.add(KEY_WINDOW + scope.getName() + ":" + window.getValue() + ":" + firstDay);
+        for (LocalDate day = firstDay; !day.isAfter(today); day = day.plusDays(1)) {
+            keys.add(dailyKey(scope, day));
+        }
+
+        // A new day starts a new window key, the short TTL lets the current day catch up
+        Instant nextDay = today.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant cachedUntil = Instant.now().plus(activePlayersProperties.getWindowCacheTtl());
+        long expireAt = (cachedUntil.isBefore(nextDay) ? cachedUntil : nextDay).toEpochMilli();
+        Long count = redisTemplate.execute(countActivePlayersScript, keys, expireAt);
+        return count == null ? 0 : count;
+    }
+}
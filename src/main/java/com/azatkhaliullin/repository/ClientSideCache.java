@@ -0,0 +1,286 @@
+package com.azatkhaliullin.repository;
+
+import com.azatkhaliullin.property.ClientCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushListener;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local copies of the values of opted-in key prefixes, read over a RESP3 connection with
+ * client tracking on. Redis remembers the keys read over it and pushes an invalidation as soon
+ * as one of them changes or expires, so a cached value is dropped without any change to the
+ * code writing it. Misses are read over the same connection, an MGET or pipelined HGETALLs
+ * for all missing keys of a call.
+ * <p>
+ * Nothing is cached while the connection is down: invalidations sent meanwhile are lost, so
+ * the copies are dropped and callers read from Redis as usual until it is reopened.
+ */
+@Slf4j
+@Component
+public class ClientSideCache implements SmartLifecycle, PushListener, RedisConnectionStateListener {
+
+    private static final RedisCodec<String, byte[]> CODEC = RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE);
+    private static final String INVALIDATE = "invalidate";
+
+    private final LettuceConnectionFactory connectionFactory;
+    private final ClientCacheProperties clientCacheProperties;
+    private final Cache<String, Object> values;
+    // Keys being read; an invalidation in between takes the key out, so that the value read
+    // before the change is not cached
+    private final Map<String, Object> loading = new ConcurrentHashMap<>();
+    private final Counter invalidationCounter;
+
+    private volatile boolean running;
+    private volatile StatefulRedisConnection<String, byte[]> connection;
+    private RedisClient client;
+
+    public ClientSideCache(LettuceConnectionFactory connectionFactory,
+                           ClientCacheProperties clientCacheProperties,
+                           MeterRegistry meterRegistry) {
+        this.connectionFactory = connectionFactory;
+        this.clientCacheProperties = clientCacheProperties;
+        this.values = Caffeine.newBuilder()
+                .maximumSize(clientCacheProperties.getMaxEntries())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, values, "client-cache");
+        this.invalidationCounter = Counter.builder("stats.client-cache.invalidations")
+                .description("Keys invalidated by Redis client tracking")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return values of the keys in their order, null for missing keys; empty when the keys
+     * are not cached, i.e. one of them has no opted-in prefix or the connection is down
+     */
+    public Optional<List<byte[]>> mGet(List<String> keys) {
+        StatefulRedisConnection<String, byte[]> tracking = isCached(keys) ? trackingConnection() : null;
+        if (tracking == null) return Optional.empty();
+
+        List<byte[]> found = new ArrayList<>(keys.size());
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            byte[] value = (byte[]) values.getIfPresent(key);
+            found.add(value);
+            if (value == null) missing.add(key);
+        }
+        if (missing.isEmpty()) return Optional.of(found);
+
+        Map<String, Object> tokens = beginLoading(missing);
+        try {
+            List<KeyValue<String, byte[]>> read = tracking.sync().mget(missing.toArray(String[]::new));
+            Map<String, byte[]> readByKey = new HashMap<>(read.size());
+            for (KeyValue<String, byte[]> keyValue : read) {
+                byte[] value = keyValue.getValueOrElse(null);
+                readByKey.put(keyValue.getKey(), value);
+                completeLoading(keyValue.getKey(), tokens, value);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                if (found.get(i) == null) found.set(i, readByKey.get(keys.get(i)));
+            }
+            return Optional.of(found);
+        } catch (Exception e) {
+            log.warn("Failed to read {} keys over the tracking connection, reading them from Redis", missing.size(), e);
+            return Optional.empty();
+        } finally {
+            tokens.forEach(loading::remove);
+        }
+    }
+
+    /**
+     * @return fields of the hashes in the order of the keys, empty maps for missing keys;
+     * empty when the keys are not cached, as for {@link #mGet(List)}
+     */
+    @SuppressWarnings("unchecked")
+    public Optional<List<Map<String, byte[]>>> hGetAll(List<String> keys) {
+        StatefulRedisConnection<String, byte[]> tracking = isCached(keys) ? trackingConnection() : null;
+        if (tracking == null) return Optional.empty();
+
+        List<Map<String, byte[]>> found = new ArrayList<>(keys.size());
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Map<String, byte[]> fields = (Map<String, byte[]>) values.getIfPresent(keys.get(i));
+            found.add(fields);
+            if (fields == null) missing.add(i);
+        }
+        if (missing.isEmpty()) return Optional.of(found);
+
+        Map<String, Object> tokens = beginLoading(missing.stream().map(keys::get).toList());
+        try {
+            // Sent before any reply is awaited, so the reads share a round trip
+            List<RedisFuture<Map<String, byte[]>>> reads = missing.stream()
+                    .map(i -> tracking.async().hgetall(keys.get(i)))
+                    .toList();
+            Duration timeout = connectionFactory.getClientConfiguration().getCommandTimeout();
+            for (int i = 0; i < missing.size(); i++) {
+                Map<String, byte[]> fields = LettuceFutures.awaitOrCancel(reads.get(i), timeout.toMillis(), TimeUnit.MILLISECONDS);
+                String key = keys.get(missing.get(i));
+                found.set(missing.get(i), fields == null ? Collections.emptyMap() : fields);
+                completeLoading(key, tokens, fields == null || fields.isEmpty() ? null : fields);
+            }
+            return Optional.of(found);
+        } catch (Exception e) {
+            log.warn("Failed to read {} hashes over the tracking connection, reading them from Redis", missing.size(), e);
+            return Optional.empty();
+        } finally {
+            tokens.forEach(loading::remove);
+        }
+    }
+
+    /**
+     * Opens the tracking connection unless it is open already. A failure, e.g. while Redis is
+     * not up yet or does not support RESP3, is retried on the next run.
+     */
+    @Scheduled(fixedDelayString = "${stats.client-cache.connect-retry-interval}")
+    public void connect() {
+        if (!running || trackingConnection() != null) return;
+
+        StatefulRedisConnection<String, byte[]> opened = null;
+        try {
+            opened = client.connect(CODEC);
+            opened.addListener((PushListener) this);
+            opened.addListener((RedisConnectionStateListener) this);
+            opened.sync().clientTracking(TrackingArgs.Builder.enabled());
+            connected(opened);
+            log.info("Opened the client tracking connection for keys starting with {}", clientCacheProperties.getPrefixes());
+        } catch (Exception e) {
+            if (opened != null) opened.closeAsync();
+            log.warn("Failed to open the client tracking connection, keys starting with {} are read from Redis: {}",
+                    clientCacheProperties.getPrefixes(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onPushMessage(PushMessage message) {
+        if (!INVALIDATE.equals(message.getType())) return;
+
+        // A null key list stands for a flush of the whole database
+        Object keys = message.getContent(StringCodec.UTF8::decodeKey).get(1);
+        if (keys == null) {
+            loading.clear();
+            values.invalidateAll();
+            log.debug("Dropped all client-cached values on a flush");
+            return;
+        }
+        for (Object key : (List<?>) keys) {
+            loading.remove(key.toString());
+            values.invalidate(key.toString());
+            invalidationCounter.increment();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!clientCacheProperties.isEnabled() || running) return;
+
+        if (!(connectionFactory.getNativeClient() instanceof RedisClient redisClient)) {
+            log.warn("Client-side caching needs a standalone Redis client, keys starting with {} are read from Redis",
+                    clientCacheProperties.getPrefixes());
+            return;
+        }
+        client = redisClient;
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+
+        running = false;
+        StatefulRedisConnection<String, byte[]> current = connection;
+        if (current != null) disconnected(current);
+        log.info("Closed the client tracking connection");
+    }
+
+    /**
+     * Closes the tracking connection once it is lost: a reconnected connection would not be
+     * tracked, so a new one is opened by {@link #connect()} instead.
+     */
+    @Override
+    public void onRedisDisconnected(RedisChannelHandler<?, ?> disconnected) {
+        StatefulRedisConnection<String, byte[]> current = connection;
+        if (current == null || current != disconnected) return;
+
+        disconnected(current);
+        log.warn("Lost the client tracking connection, keys starting with {} are read from Redis until it is reopened",
+                clientCacheProperties.getPrefixes());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    void connected(StatefulRedisConnection<String, byte[]> opened) {
+        loading.clear();
+        values.invalidateAll();
+        connection = opened;
+    }
+
+    private StatefulRedisConnection<String, byte[]> trackingConnection() {
+        StatefulRedisConnection<String, byte[]> current = connection;
+        return current != null && current.isOpen() ? current : null;
+    }
+
+    private synchronized void disconnected(StatefulRedisConnection<String, byte[]> lost) {
+        if (connection != lost) return;
+        connection = null;
+        loading.clear();
+        values.invalidateAll();
+        lost.closeAsync();
+    }
+
+    private boolean isCached(List<String> keys) {
+        if (keys.isEmpty()) return false;
+        for (String key : keys) {
+            if (clientCacheProperties.getPrefixes().stream().noneMatch(key::startsWith)) return false;
+        }
+        return true;
+    }
+
+    private Map<String, Object> beginLoading(List<String> keys) {
+        Map<String, Object> tokens = new HashMap<>(keys.size());
+        for (String key : keys) {
+            Object token = new Object();
+            loading.put(key, token);
+            tokens.put(key, token);
+        }
+        return tokens;
+    }
+
+    private void completeLoading(String key, Map<String, Object> tokens, Object value) {
+        if (value != null && loading.remove(key, tokens.get(key))) {
+            values.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.azatkhaliullin.repository;
+
+import com.azatkhaliullin.domain.LeaderboardSegment;
+import com.azatkhaliullin.domain.LeaderboardWindow;
+import com.azatkhaliullin.domain.PlayerStats;
+import com.azatkhaliullin.domain.RatedPlayer;
+import com.azatkhaliullin.property.LeaderboardProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.CollectionUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.azatkhaliullin.util.GameConstants.DEFAULT_AVERAGE_SCORE;
+
+/**
+ * Leaderboards of time windows and of servers. Every ingested match adds its scores to the
+ * buckets of its day and of its server: a score sum, a match count, a best and a worst score
+ * per player, each a sorted set. Longer windows are the union of their daily buckets, cached
+ * for a short while. Players are ranked by the sum of their scores in the bucket.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class LeaderboardRepository {
+
+    private static final String KEY_DAILY = "leaderboard:daily:";
+    private static final String KEY_WINDOW = "leaderboard:window:";
+    private static final String KEY_SERVER = "leaderboard:server:";
+    static final String KEY_SEGMENTS = "leaderboard:segments";
+    private static final byte[] RAW_KEY_SEGMENTS = KEY_SEGMENTS.getBytes(StandardCharsets.UTF_8);
+    private static final List<String> BUCKETS = List.of(":score", ":matches", ":best", ":worst");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisScript<Long> buildLeaderboardWindowScript;
+    private final LeaderboardProperties leaderboardProperties;
+
+    /**
+     * Reads the players with the highest score sum in the window ending today, then their
+     * usernames and the rest of their window stats in one pipelined round trip.
+     *
+     * @return players by score sum in the window, highest first
+     */
+    public List<RatedPlayer> findTop(LeaderboardWindow window, LocalDate today, int count) {
+        try {
+            List<String> keys = window == LeaderboardWindow.DAY ? dailyKeys(today) : cachedWindowKeys(window, today);
+            return findTop(keys, count);
+        } catch (Exception e) {
+            log.error("Failed to find top {} players of the {} leaderboard", count, window.getValue(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #findTop(LeaderboardWindow, LocalDate, int)} for the matches played on
+     * the server, all time.
+     */
+    public List<RatedPlayer> findTopOnServer(String endpoint, int count) {
+        try {
+            return findTop(serverKeys(endpoint), count);
+        } catch (Exception e) {
+            log.error("Failed to find top {} players of server: {}", count, endpoint, e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return every country, level band and server a leaderboard has been kept for
+     */
+    public List<LeaderboardSegment> findSegments() {
+        try {
+            // Registered by the scripts as bare text, not as JSON
+            Set<byte[]> names = redisTemplate.execute((RedisCallback<Set<byte[]>>) connection ->
+                    connection.setCommands().sMembers(RAW_KEY_SEGMENTS));
+            if (CollectionUtils.isEmpty(names)) return Collections.emptyList();
+
+            List<LeaderboardSegment> segments = new ArrayList<>(names.size());
+            for (byte[] name : names) {
+                String value = new String(name, StandardCharsets.UTF_8);
+                for (LeaderboardSegment.Type type : LeaderboardSegment.Type.values()) {
+                    if (value.startsWith(type.getPrefix())) {
+                        segments.add(new LeaderboardSegment(type, value.substring(type.getPrefix().length())));
+                    }
+                }
+            }
+            return segments;
+        } catch (Exception e) {
+            log.error("Failed to find leaderboard segments", e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return score, matches, best and worst bucket keys of the day
+     */
+    static List<String> dailyKeys(LocalDate day) {
+        return bucketKeys(KEY_DAILY + day);
+    }
+
+    /**
+     * @return score, matches, best and worst bucket keys of the server
+     */
+    static List<String> serverKeys(String endpoint) {
+        return bucketKeys(KEY_SERVER + endpoint);
+    }
+
+    /**
+     * @return when the daily buckets of the day expire, epoch millis
+     */
+    static long dailyExpireAt(LocalDate day, Duration retention) {
+        return day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().plus(retention).toEpochMilli();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RatedPlayer> findTop(List<String> keys, int count) {
+        Set<TypedTuple<Object>> top = redisTemplate.opsForZSet().reverseRangeWithScores(keys.get(0), 0, count - 1L);
+        if (CollectionUtils.isEmpty(top)) return Collections.emptyList();
+
+        Object[] members = top.stream().map(TypedTuple::getValue).toArray();
+        List<String> playerIds = top.stream().map(tuple -> String.valueOf(tuple.getValue())).toList();
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                redis.opsForHash().multiGet(PlayerRepository.KEY_USERNAMES_BY_ID, new ArrayList<>(playerIds));
+                for (int k = 1; k < keys.size(); k++) {
+                    redis.opsForZSet().score(keys.get(k), members);
+                }
+                return null;
+            }
+        });
+
+        List<Object> usernames = (List<Object>) results.get(0);
+        List<Double> matches = (List<Double>) results.get(1);
+        List<Double> best = (List<Double>) results.get(2);
+        List<Double> worst = (List<Double>) results.get(3);
+        List<RatedPlayer> players = new ArrayList<>(playerIds.size());
+        int i = 0;
+        for (TypedTuple<Object> tuple : top) {
+            if (usernames.get(i) == null) {
+                log.warn("Player {} has no username, left out of the leaderboard", playerIds.get(i));
+            } else {
+                players.add(new RatedPlayer(UUID.fromString(playerIds.get(i)), usernames.get(i).toString(),
+                        toPlayerStats(tuple.getScore(), matches.get(i), best.get(i), worst.get(i))));
+            }
+            i++;
+        }
+        return players;
+    }
+
+    private List<String> cachedWindowKeys(LeaderboardWindow window, LocalDate today) {
+        LocalDate firstDay = window.firstDay(today);
+        List<String> keys = new ArrayList<>(bucketKeys(KEY_WINDOW + window.getValue() + ":" + firstDay));
+        for (LocalDate day = firstDay; !day.isAfter(today); day = day.plusDays(1)) {
+            keys.addAll(dailyKeys(day));
+        }
+
+        // A new day starts a new window key, the short TTL lets the current day catch up
+        Instant nextDay = today.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant cachedUntil = Instant.now().plus(leaderboardProperties.getWindowCacheTtl());
+        long expireAt = (cachedUntil.isBefore(nextDay) ? cachedUntil : nextDay).toEpochMilli();
+        Long built = redisTemplate.execute(buildLeaderboardWindowScript, keys, expireAt);
+        if (Long.valueOf(1).equals(built)) {
+            log.debug("Built the {} leaderboard from {} daily buckets", window.getValue(), keys.size() / 4 - 1);
+        }
+        return keys.subList(0, BUCKETS.size());
+    }
+
+    private static List<String> bucketKeys(String prefix) {
+        return BUCKETS.stream().map(bucket -> prefix + bucket).toList();
+    }
+
+    private static PlayerStats toPlayerStats(Double score, Double matches, Double best, Double worst) {
+        int totalMatches = matches == null ? 0 : matches.intValue();
+        int totalScore = score == null ? 0 : score.intValue();
+        return new PlayerStats(totalMatches, totalScore,
+                best == null ? 0 : best.intValue(),
+                worst == null ? Integer.MAX_VALUE : worst.intValue(),
+                totalMatches > 0 ? (double) totalScore / totalMatches : DEFAULT_AVERAGE_SCORE);
+    }
+}
@@ -1,21 +1,51 @@
 package com.azatkhaliullin.repository;
 
+import com.azatkhaliullin.domain.MatchCursor;
+import com.azatkhaliullin.domain.MatchHistoryQuery;
+import com.azatkhaliullin.domain.MatchJson;
 import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.domain.TimeSeriesResolution;
+import com.azatkhaliullin.domain.TimeSeriesScope;
+import com.azatkhaliullin.property.ActivePlayersProperties;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.property.LeaderboardProperties;
+import com.azatkhaliullin.property.TimeSeriesProperties;
+import com.azatkhaliullin.property.ValueCodecProperties;
+import com.azatkhaliullin.serializer.MatchJsonEncoder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.SetOperations;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 
-import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Slf4j
 @Repository
@@ -24,21 +54,31 @@ public class MatchRepository {
 
     private static final String PREFIX_MATCH = "match:";
     private static final String KEY_MATCHES_BY_TIME = "matches:by_time";
-    private static final String KEY_MATCHES_BY_PLAYER = "matches:by_player:";
-    private static final String KEY_MATCHES_BY_SERVER = "matches:by_server:";
+    private static final String KEY_MATCHES_BY_PLAYER_SINCE = "matches:by_player_since:";
     private static final String KEY_MATCHES_BY_SERVER_SINCE = "matches:by_server_since:";
+    // Unscored set indexes of earlier versions, only read by the index migration
+    private static final String LEGACY_KEY_MATCHES_BY_PLAYER = "matches:by_player:";
+    private static final String LEGACY_KEY_MATCHES_BY_SERVER = "matches:by_server:";
+    private static final String KEY_MATCHES_INGESTED = "matches:ingested:";
+    private static final String KEY_MATCHES_JSON = "matches:json:v" + MatchJsonEncoder.VERSION + ":";
 
     private final RedisTemplate<String, Object> redisTemplate;
-
+    private final RedisTemplate<String, MatchResult> matchResultTemplate;
+    private final RedisSerializer<MatchResult> matchResultSerializer;
+    private final RedisScript<Long> ingestMatchScript;
+    private final IngestProperties ingestProperties;
+    private final MatchJsonEncoder matchJsonEncoder;
+    private final ValueCodecProperties valueCodecProperties;
+    private final LeaderboardProperties leaderboardProperties;
+    private final TimeSeriesProperties timeSeriesProperties;
+    private final ActivePlayersProperties activePlayersProperties;
+    private final ClientSideCache clientSideCache;
+    private final PlayerRepository playerRepository;
+    private final ServerRepository serverRepository;
 
     public void save(MatchResult match) {
         try {
-            valueOps().set(matchKey(match.getId()), match);
-
-            addToServerIndex(match);
-            addToTimeIndex(match);
-            addToPlayerIndexes(match);
-
+            pipelined(operations -> writeMatch(operations, match));
             log.debug("Successfully saved match: {}", match.getId());
         } catch (Exception e) {
             log.error("Failed to save match: {}", match.getId(), e);
@@ -46,9 +86,67 @@ public class MatchRepository {
         }
     }
 
+    public void saveAll(List<MatchResult> matches) {
+        if (CollectionUtils.isEmpty(matches)) {
+            log.debug("No matches to save");
+            return;
+        }
+        try {
+            pipelined(operations -> matches.forEach(match -> writeMatch(operations, match)));
+            log.debug("Successfully saved {} matches", matches.size());
+        } catch (Exception e) {
+            log.error("Failed to save {} matches", matches.size(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return false if the match was already ingested and nothing was written
+     */
+    public boolean ingest(MatchResult match) {
+        try {
+            Map<UUID, String> segments = playerRepository.findSegments(playerIds(List.of(match)));
+            Map<String, String> regions = findRegions(List.of(match));
+            Long result = redisTemplate.execute(ingestMatchScript, ingestKeys(match, segments, regions),
+                    ingestArgs(match, segments));
+            boolean stored = !isDuplicate(result);
+            log.debug("Ingested match {}, duplicate: {}", match.getId(), !stored);
+            return stored;
+        } catch (Exception e) {
+            log.error("Failed to ingest match: {}", match.getId(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return matches stored, without already ingested ones
+     */
+    public List<MatchResult> ingestAll(List<MatchResult> matches) {
+        if (CollectionUtils.isEmpty(matches)) {
+            log.debug("No matches to ingest");
+            return Collections.emptyList();
+        }
+        try {
+            List<Object> results = pipelinedIngest(matches);
+            List<MatchResult> stored = new ArrayList<>(matches.size());
+            for (int i = 0; i < matches.size(); i++) {
+                if (!isDuplicate(results.get(i))) stored.add(matches.get(i));
+            }
+            log.debug("Successfully ingested {} matches, {} duplicates", stored.size(), matches.size() - stored.size());
+            return stored;
+        } catch (Exception e) {
+            log.error("Failed to ingest {} matches", matches.size(), e);
+            throw e;
+        }
+    }
+
+    public boolean isIngested(UUID matchId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(ingestedKey(matchId)));
+    }
+
     public List<MatchResult> findByServerEndpoint(String endpoint) {
         try {
-            Set<Object> matchIds = setOps().members(serverKey(endpoint));
+            Set<Object> matchIds = zSetOps().range(serverTimeKey(endpoint), 0, -1);
             return getMatchesByIds(matchIds);
         } catch (Exception e) {
             log.error("Failed to get matches for server: {}", endpoint, e);
@@ -58,7 +156,7 @@ public class MatchRepository {
 
     public List<MatchResult> findByPlayerId(UUID playerId) {
         try {
-            Set<Object> matchIds = setOps().members(playerKey(playerId));
+            Set<Object> matchIds = zSetOps().range(playerKey(playerId), 0, -1);
             return getMatchesByIds(matchIds);
         } catch (Exception e) {
             log.error("Failed to get matches for player: {}", playerId, e);
@@ -66,6 +164,96 @@ public class MatchRepository {
         }
     }
 
+    /**
+     * @return matches of the page in scan order, i.e. oldest first when scanning towards newer ones
+     */
+    public List<MatchResult> findServerHistory(String endpoint, MatchHistoryQuery query) {
+        try {
+            return getMatchesByIds(findPageIds(serverTimeKey(endpoint), query));
+        } catch (Exception e) {
+            log.error("Failed to get match history for server: {}", endpoint, e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return matches of the page in scan order, i.e. oldest first when scanning towards newer ones
+     */
+    public List<MatchResult> findPlayerHistory(UUID playerId, MatchHistoryQuery query) {
+        try {
+            return getMatchesByIds(findPageIds(playerKey(playerId), query));
+        } catch (Exception e) {
+            log.error("Failed to get match history for player: {}", playerId, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #findServerHistory}, but returns every match as the API renders it, with null
+     * JSON for a match that has expired since it was indexed.
+     */
+    public List<MatchJson> findServerHistoryJson(String endpoint, MatchHistoryQuery query) {
+        try {
+            List<TypedTuple<Object>> page = findPage(serverTimeKey(endpoint), query);
+            List<byte[]> json = getJsonByIds(page.stream().map(TypedTuple::getValue).toList());
+            List<MatchJson> matches = new ArrayList<>(page.size());
+            for (int i = 0; i < page.size(); i++) {
+                TypedTuple<Object> entry = page.get(i);
+                matches.add(new MatchJson(UUID.fromString(entry.getValue().toString()),
+                        Objects.requireNonNull(entry.getScore()).longValue(), json.get(i)));
+            }
+            return matches;
+        } catch (Exception e) {
+            log.error("Failed to get match history JSON for server: {}", endpoint, e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return set index keys still written in the format of earlier versions
+     */
+    public List<String> findLegacyIndexKeys() {
+        List<String> keys = new ArrayList<>();
+        for (String pattern : List.of(LEGACY_KEY_MATCHES_BY_PLAYER + "*", LEGACY_KEY_MATCHES_BY_SERVER + "*")) {
+            try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(1000).build())) {
+                cursor.forEachRemaining(keys::add);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Copies a legacy set index into its sorted set, scoring every match by its playedAt, and
+     * deletes the set. Safe to repeat: members already copied are added again with the same score.
+     *
+     * @return number of matches copied
+     */
+    public int migrateLegacyIndex(String legacyKey, int batchSize) {
+        String targetKey = legacyKey.startsWith(LEGACY_KEY_MATCHES_BY_PLAYER)
+                ? KEY_MATCHES_BY_PLAYER_SINCE + legacyKey.substring(LEGACY_KEY_MATCHES_BY_PLAYER.length())
+                : KEY_MATCHES_BY_SERVER_SINCE + legacyKey.substring(LEGACY_KEY_MATCHES_BY_SERVER.length());
+        try {
+            int migrated = 0;
+            List<Object> batch = new ArrayList<>(batchSize);
+            try (Cursor<Object> cursor = setOps().scan(legacyKey, ScanOptions.scanOptions().count(batchSize).build())) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() == batchSize) {
+                        migrated += copyToTimeIndex(targetKey, batch);
+                        batch.clear();
+                    }
+                }
+            }
+            migrated += copyToTimeIndex(targetKey, batch);
+            redisTemplate.delete(legacyKey);
+            log.debug("Migrated {} matches from {} to {}", migrated, legacyKey, targetKey);
+            return migrated;
+        } catch (Exception e) {
+            log.error("Failed to migrate index: {}", legacyKey, e);
+            throw e;
+        }
+    }
+
     public List<MatchResult> findRecent(int count) {
         try {
             Set<Object> matchIds = zSetOps().reverseRange(KEY_MATCHES_BY_TIME, 0, count - 1L);
@@ -76,18 +264,108 @@ public class MatchRepository {
         }
     }
 
-    public List<MatchResult> findByServerSince(String endpoint, Instant since) {
+    /**
+     * @return the most recent matches as the API renders them, newest first
+     */
+    public List<byte[]> findRecentJson(int count) {
         try {
-            Set<Object> matchIds = zSetOps().rangeByScore(
-                    serverTimeKey(endpoint), since.toEpochMilli(), Double.MAX_VALUE);
-            return getMatchesByIds(matchIds);
+            Set<Object> matchIds = zSetOps().reverseRange(KEY_MATCHES_BY_TIME, 0, count - 1L);
+            if (CollectionUtils.isEmpty(matchIds)) return Collections.emptyList();
+
+            return getJsonByIds(new ArrayList<>(matchIds)).stream()
+                    .filter(Objects::nonNull)
+                    .toList();
         } catch (Exception e) {
-            log.error("Failed to get matches for server {} since {}", endpoint, since, e);
-            return Collections.emptyList();
+            log.error("Failed to get recent matches JSON", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the stored values of the most recent matches as they are in Redis, without decoding
+     * them, as samples for training a compression dictionary.
+     */
+    public List<byte[]> findRecentEncoded(int count) {
+        try {
+            Set<Object> matchIds = zSetOps().reverseRange(KEY_MATCHES_BY_TIME, 0, count - 1L);
+            if (CollectionUtils.isEmpty(matchIds)) return Collections.emptyList();
+
+            List<String> matchKeys = matchIds.stream()
+                    .map(id -> matchKey(UUID.fromString(id.toString())))
+                    .toList();
+
+            return getRaw(matchKeys).stream()
+                    .filter(Objects::nonNull)
+                    .toList();
+        } catch (Exception e) {
+            log.error("Failed to get encoded recent matches", e);
+            throw e;
         }
     }
 
-    private List<MatchResult> getMatchesByIds(Set<Object> matchIds) {
+    private List<TypedTuple<Object>> findPage(String key, MatchHistoryQuery query) {
+        MatchCursor cursor = query.getCursor();
+        double min = query.getFrom();
+        double max = query.getTo();
+        if (cursor != null && query.isNewer()) min = Math.max(min, cursor.getPlayedAt());
+        if (cursor != null && !query.isNewer()) max = Math.min(max, cursor.getPlayedAt());
+
+        // The cursor bound is inclusive so that matches played in the same millisecond as the
+        // cursor match are not lost; the ones up to and including it are skipped here.
+        List<TypedTuple<Object>> entries = new ArrayList<>(query.getLimit());
+        long offset = 0;
+        while (entries.size() < query.getLimit()) {
+            Set<TypedTuple<Object>> window = query.isNewer()
+                    ? zSetOps().rangeByScoreWithScores(key, min, max, offset, query.getLimit())
+                    : zSetOps().reverseRangeByScoreWithScores(key, min, max, offset, query.getLimit());
+            if (CollectionUtils.isEmpty(window)) break;
+            for (TypedTuple<Object> entry : window) {
+                if (entries.size() == query.getLimit()) break;
+                if (isPastCursor(entry, cursor, query.isNewer())) entries.add(entry);
+            }
+            if (window.size() < query.getLimit()) break;
+            offset += window.size();
+        }
+        return entries;
+    }
+
+    private List<Object> findPageIds(String key, MatchHistoryQuery query) {
+        return findPage(key, query).stream()
+                .map(TypedTuple::getValue)
+                .toList();
+    }
+
+    // Members of equal score are ordered lexicographically, so ties are resolved by the id string
+    private static boolean isPastCursor(TypedTuple<Object> entry, MatchCursor cursor, boolean newer) {
+        if (cursor == null || entry.getScore() == null || entry.getScore() != cursor.getPlayedAt()) return true;
+        int order = String.valueOf(entry.getValue()).compareTo(cursor.getMatchId().toString());
+        return newer ? order > 0 : order < 0;
+    }
+
+    private int copyToTimeIndex(String targetKey, List<Object> matchIds) {
+        if (matchIds.isEmpty()) return 0;
+        List<Object> playedAt = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                ZSetOperations<String, Object> zSet = (ZSetOperations<String, Object>) operations.opsForZSet();
+                matchIds.forEach(matchId -> zSet.score(KEY_MATCHES_BY_TIME, matchId));
+                return null;
+            }
+        });
+        Set<TypedTuple<Object>> entries = new HashSet<>();
+        for (int i = 0; i < matchIds.size(); i++) {
+            if (playedAt.get(i) instanceof Number score) {
+                entries.add(TypedTuple.of(matchIds.get(i), score.doubleValue()));
+            } else {
+                log.warn("Match {} is missing from the time index, left out of {}", matchIds.get(i), targetKey);
+            }
+        }
+        if (!entries.isEmpty()) zSetOps().add(targetKey, entries);
+        return entries.size();
+    }
+
+    private List<MatchResult> getMatchesByIds(Collection<Object> matchIds) {
         if (CollectionUtils.isEmpty(matchIds)) {
             log.debug("No matches found");
             return Collections.emptyList();
@@ -98,29 +376,233 @@ public class MatchRepository {
                 .map(id -> matchKey(UUID.fromString(id.toString())))
                 .toList();
 
-        List<Object> matches = valueOps().multiGet(matchKeys);
+        List<MatchResult> matches = clientSideCache.mGet(matchKeys)
+                .map(values -> values.stream()
+                        .map(value -> value == null ? null : matchResultSerializer.deserialize(value))
+                        .toList())
+                .orElseGet(() -> matchResultTemplate.opsForValue().multiGet(matchKeys));
         if (CollectionUtils.isEmpty(matches)) return Collections.emptyList();
 
         return matches.stream()
                 .filter(Objects::nonNull)
-                .filter(MatchResult.class::isInstance)
-                .map(MatchResult.class::cast)
                 .toList();
     }
 
-    private void addToServerIndex(MatchResult match) {
-        setOps().add(serverKey(match.getServerEndpoint()), match.getId());
-        zSetOps().add(serverTimeKey(match.getServerEndpoint()),
+    /**
+     * @return API JSON of every match in the order of the ids, null for matches that are gone
+     */
+    private List<byte[]> getJsonByIds(List<Object> matchIds) {
+        List<UUID> ids = matchIds.stream()
+                .map(id -> UUID.fromString(id.toString()))
+                .toList();
+        List<byte[]> json = new ArrayList<>(getRaw(ids.stream().map(this::jsonKey).toList()));
+
+        // Matches written before their JSON was stored alongside them, or with it switched off
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < json.size(); i++) {
+            if (json.get(i) == null) missing.add(i);
+        }
+        if (missing.isEmpty()) return json;
+
+        List<MatchResult> matches = matchResultTemplate.opsForValue()
+                .multiGet(missing.stream().map(i -> matchKey(ids.get(i))).toList());
+        for (int i = 0; matches != null && i < missing.size(); i++) {
+            if (matches.get(i) != null) json.set(missing.get(i), matchJsonEncoder.encode(matches.get(i)));
+        }
+        return json;
+    }
+
+    /**
+     * @return values as stored, null for missing keys
+     */
+    private List<byte[]> getRaw(List<String> keys) {
+        Optional<List<byte[]>> cached = clientSideCache.mGet(keys);
+        if (cached.isPresent()) return cached.get();
+
+        byte[][] rawKeys = keys.stream()
+                .map(key -> key.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.stringCommands().mGet(rawKeys));
+        return values == null ? Collections.nCopies(keys.size(), null) : values;
+    }
+
+    private void writeMatch(RedisOperations<String, Object> operations, MatchResult match) {
+        operations.opsForValue().set(matchKey(match.getId()), matchResultSerializer.serialize(match));
+        if (valueCodecProperties.isApiJsonWrites()) {
+            operations.opsForValue().set(jsonKey(match.getId()), matchJsonEncoder.encode(match));
+        }
+
+        addToServerIndex(operations, match);
+        addToTimeIndex(operations, match);
+        addToPlayerIndexes(operations, match);
+    }
+
+    private void addToServerIndex(RedisOperations<String, Object> operations, MatchResult match) {
+        operations.opsForZSet().add(serverTimeKey(match.getServerEndpoint()),
                 match.getId(), match.getPlayedAt().toEpochMilli());
     }
 
-    private void addToTimeIndex(MatchResult match) {
-        zSetOps().add(KEY_MATCHES_BY_TIME, match.getId(), match.getPlayedAt().toEpochMilli());
+    private void addToTimeIndex(RedisOperations<String, Object> operations, MatchResult match) {
+        operations.opsForZSet().add(KEY_MATCHES_BY_TIME, match.getId(), match.getPlayedAt().toEpochMilli());
+    }
+
+    private void addToPlayerIndexes(RedisOperations<String, Object> operations, MatchResult match) {
+        match.getScores().forEach(playerScore -> operations.opsForZSet().add(
+                playerKey(playerScore.getPlayerId()), match.getId(), match.getPlayedAt().toEpochMilli()));
     }
 
-    private void addToPlayerIndexes(MatchResult match) {
-        match.getScores().forEach(playerScore ->
-                setOps().add(playerKey(playerScore.getPlayerId()), match.getId()));
+    private List<Object> pipelinedIngest(List<MatchResult> matches) {
+        Map<UUID, String> segments = playerRepository.findSegments(playerIds(matches));
+        Map<String, String> regions = findRegions(matches);
+        try {
+            return pipelined(operations -> matches.forEach(match -> operations.execute(ingestMatchScript,
+                    ingestKeys(match, segments, regions), ingestArgs(match, segments))));
+        } catch (RedisPipelineException e) {
+            if (!RedisScripts.isNoScriptError(e)) throw e;
+            log.info("Ingest script is not cached by Redis, loading it and retrying");
+            RedisScripts.load(redisTemplate, ingestMatchScript);
+            return pipelined(operations -> matches.forEach(match -> operations.execute(ingestMatchScript,
+                    ingestKeys(match, segments, regions), ingestArgs(match, segments))));
+        }
+    }
+
+    /**
+     * @return region of the server of every match, null for servers that are not registered or
+     * have no region
+     */
+    private Map<String, String> findRegions(List<MatchResult> matches) {
+        Map<String, String> regions = new HashMap<>();
+        for (MatchResult match : matches) {
+            String endpoint = match.getServerEndpoint();
+            if (!regions.containsKey(endpoint)) {
+                regions.put(endpoint, serverRepository.findByEndpoint(endpoint).map(ServerInfo::getRegion).orElse(null));
+            }
+        }
+        return regions;
+    }
+
+    private static List<UUID> playerIds(List<MatchResult> matches) {
+        return matches.stream()
+                .flatMap(match -> match.getScores().stream())
+                .map(PlayerScore::getPlayerId)
+                .toList();
+    }
+
+    private boolean isDuplicate(Object scriptResult) {
+        return scriptResult instanceof Number number && number.longValue() < 0;
+    }
+
+    /**
+     * @param segments segments of the players as indexed, see {@link PlayerRepository#findSegments}
+     * @param regions  regions of the servers, see {@link #findRegions}
+     */
+    private List<String> ingestKeys(MatchResult match, Map<UUID, String> segments, Map<String, String> regions) {
+        List<String> keys = new ArrayList<>(24 + 5 * match.getScores().size());
+        keys.add(ingestedKey(match.getId()));
+        keys.add(matchKey(match.getId()));
+        keys.add(KEY_MATCHES_BY_TIME);
+        keys.add(serverTimeKey(match.getServerEndpoint()));
+        keys.add(jsonKey(match.getId()));
+        keys.add(PlayerRepository.KEY_PLAYERS_RATING);
+        keys.addAll(LeaderboardRepository.dailyKeys(matchDay(match)));
+        keys.add(PlayerRepository.KEY_PLAYER_SEGMENTS);
+        keys.add(ServerRepository.KEY_SERVERS_HASH);
+        keys.add(LeaderboardRepository.KEY_SEGMENTS);
+        keys.addAll(LeaderboardRepository.serverKeys(match.getServerEndpoint()));
+        keys.add(ScoreHistogramRepository.serverKey(match.getServerEndpoint()));
+        keys.add(ServerRepository.serverStatsKey(match.getServerEndpoint()));
+        keys.add(ServerRepository.KEY_SERVERS_POPULARITY);
+        keys.add(TimeSeriesRepository.bucketKey(TimeSeriesScope.server(match.getServerEndpoint()),
+                TimeSeriesResolution.MINUTE, minuteBucketStart(match)));
+        keys.add(ActivePlayersRepository.dailyKey(TimeSeriesScope.server(match.getServerEndpoint()), matchDay(match)));
+        for (PlayerScore playerScore : match.getScores()) {
+            keys.add(playerKey(playerScore.getPlayerId()));
+            keys.add(PlayerRepository.playerStatsKey(playerScore.getPlayerId()));
+            keys.add(ScoreHistogramRepository.playerKey(playerScore.getPlayerId()));
+        }
+        // The segment rating keys follow those of all players
+        for (PlayerScore playerScore : match.getScores()) {
+            PlayerRepository.addSegmentKeys(segments.get(playerScore.getPlayerId()), keys);
+        }
+        // The region keys follow the segment keys, when the server has a region
+        String region = regions.get(match.getServerEndpoint());
+        if (region != null) {
+            keys.add(TimeSeriesRepository.bucketKey(TimeSeriesScope.region(region),
+                    TimeSeriesResolution.MINUTE, minuteBucketStart(match)));
+            keys.add(ActivePlayersRepository.dailyKey(TimeSeriesScope.region(region), matchDay(match)));
+        }
+        return keys;
+    }
+
+    private Object[] ingestArgs(MatchResult match, Map<UUID, String> segments) {
+        List<Object> args = new ArrayList<>(10 + 4 * match.getScores().size());
+        // Encoded up front: the shared template writes bytes unchanged, anything else as plain JSON
+        args.add(matchResultSerializer.serialize(match));
+        args.add(match.getId());
+        args.add(match.getPlayedAt().toEpochMilli());
+        args.add(ingestProperties.getDedup().getMarkerTtl().toMillis());
+        // Coalesced stats are merged by PlayerStatsUpdateService once the match is stored
+        args.add(ingestProperties.getStatsCoalescing().isEnabled() ? 0 : 1);
+        args.add(valueCodecProperties.isApiJsonWrites() ? matchJsonEncoder.encode(match) : new byte[0]);
+        args.add(dailyLeaderboardExpireAt(match));
+        // Raw, to be looked up in the servers hash as it is
+        args.add(match.getServerEndpoint().getBytes(StandardCharsets.UTF_8));
+        args.add(minuteBucketExpireAt(match));
+        args.add(activePlayersExpireAt(match));
+        for (PlayerScore playerScore : match.getScores()) {
+            args.add(playerScore.getPlayerId());
+            args.add(playerScore.getScore());
+            PlayerRepository.addSegmentArgs(playerScore.getPlayerId(), segments.get(playerScore.getPlayerId()), args);
+        }
+        return args.toArray();
+    }
+
+    /**
+     * @return expiry of the daily leaderboard of the match day, or empty bytes to leave it out
+     * when that day is already past retention, e.g. for a late or imported match
+     */
+    private Object dailyLeaderboardExpireAt(MatchResult match) {
+        long expireAt = LeaderboardRepository.dailyExpireAt(matchDay(match), leaderboardProperties.getDailyRetention());
+        return expireAt > System.currentTimeMillis() ? expireAt : new byte[0];
+    }
+
+    /**
+     * @return expiry of the minute time series buckets of the match, or empty bytes to leave
+     * them out when that minute is already past retention
+     */
+    private Object minuteBucketExpireAt(MatchResult match) {
+        long expireAt = TimeSeriesRepository.expireAt(TimeSeriesResolution.MINUTE, minuteBucketStart(match),
+                timeSeriesProperties.getRetention().getMinute());
+        return expireAt > System.currentTimeMillis() ? expireAt : new byte[0];
+    }
+
+    /**
+     * @return expiry of the daily active players of the match day, or empty bytes to leave
+     * them out when that day is already past retention
+     */
+    private Object activePlayersExpireAt(MatchResult match) {
+        long expireAt = LeaderboardRepository.dailyExpireAt(matchDay(match), activePlayersProperties.getDailyRetention());
+        return expireAt > System.currentTimeMillis() ? expireAt : new byte[0];
+    }
+
+    private static long minuteBucketStart(MatchResult match) {
+        return TimeSeriesResolution.MINUTE.bucketStart(match.getPlayedAt().toEpochMilli());
+    }
+
+    private static LocalDate matchDay(MatchResult match) {
+        return LocalDate.ofInstant(match.getPlayedAt(), ZoneOffset.UTC);
+    }
+
+    private List<Object> pipelined(Consumer<RedisOperations<String, Object>> commands) {
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        });
     }
 
     private SetOperations<String, Object> setOps() {
@@ -131,16 +613,16 @@ public class MatchRepository {
         return redisTemplate.opsForZSet();
     }
 
-    private ValueOperations<String, Object> valueOps() {
-        return redisTemplate.opsForValue();
-    }
-
     private String matchKey(UUID matchId) {
         return PREFIX_MATCH + matchId;
     }
 
-    private String serverKey(String endpoint) {
-        return KEY_MATCHES_BY_SERVER + endpoint;
+    private String jsonKey(UUID matchId) {
+        return KEY_MATCHES_JSON + matchId;
+    }
+
+    private String ingestedKey(UUID matchId) {
+        return KEY_MATCHES_INGESTED + matchId;
     }
 
     private String serverTimeKey(String endpoint) {
@@ -148,6 +630,6 @@ public class MatchRepository {
     }
 
     private String playerKey(UUID playerId) {
-        return KEY_MATCHES_BY_PLAYER + playerId;
+        return KEY_MATCHES_BY_PLAYER_SINCE + playerId;
     }
 }
@@ -0,0 +1,247 @@
+package com.azatkhaliullin.repository;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.MatchStreamEntry;
+import com.azatkhaliullin.domain.StreamGroupStats;
+import com.azatkhaliullin.property.IngestProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo.XInfoGroup;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.CollectionUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only ingest log of matches kept in a Redis Stream. Entries are consumed through
+ * consumer groups, so every group sees each match once and an entry stays pending for its
+ * consumer until it is acknowledged.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class MatchStreamRepository {
+
+    private static final String KEY_MATCH_STREAM = "matches:stream";
+    private static final byte[] RAW_KEY_MATCH_STREAM = KEY_MATCH_STREAM.getBytes(StandardCharsets.UTF_8);
+    private static final String KEY_DEAD_LETTER_STREAM = "matches:dead-letter";
+    private static final String FIELD_MATCH = "match";
+    private static final byte[] RAW_FIELD_MATCH = FIELD_MATCH.getBytes(StandardCharsets.UTF_8);
+    private static final String FIELD_ERROR = "error";
+
+    private static final String BUSY_GROUP_ERROR = "BUSYGROUP";
+    // Reported by XINFO GROUPS since Redis 7.0
+    private static final String INFO_LAG = "lag";
+    private static final int LAG_SCAN_LIMIT = 10_000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisSerializer<MatchResult> matchResultSerializer;
+    private final IngestProperties ingestProperties;
+
+    public void appendAll(List<MatchResult> matches) {
+        if (CollectionUtils.isEmpty(matches)) {
+            log.debug("No matches to append");
+            return;
+        }
+        try {
+            XAddOptions options = XAddOptions.maxlen(ingestProperties.getStream().getMaxLength())
+                    .approximateTrimming(true);
+            redisTemplate.executePipelined(new SessionCallback<>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> stringOperations = (RedisOperations<String, Object>) operations;
+                    matches.forEach(match -> stringOperations.opsForStream().add(toRecord(match), options));
+                    return null;
+                }
+            });
+            log.debug("Successfully appended {} matches to stream", matches.size());
+        } catch (Exception e) {
+            log.error("Failed to append {} matches to stream", matches.size(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Sets aside matches that could not be stored, with the error that stopped them, to be
+     * inspected and replayed by hand. Trimmed like the ingest stream.
+     */
+    public void appendDeadLetters(List<MatchResult> matches, String error) {
+        if (CollectionUtils.isEmpty(matches)) return;
+        try {
+            XAddOptions options = XAddOptions.maxlen(ingestProperties.getStream().getMaxLength())
+                    .approximateTrimming(true);
+            redisTemplate.executePipelined(new SessionCallback<>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> stringOperations = (RedisOperations<String, Object>) operations;
+                    matches.forEach(match -> stringOperations.opsForStream().add(StreamRecords.newRecord()
+                            .in(KEY_DEAD_LETTER_STREAM)
+                            .ofMap(Map.of(
+                                    FIELD_MATCH, (Object) matchResultSerializer.serialize(match),
+                                    FIELD_ERROR, String.valueOf(error))), options));
+                    return null;
+                }
+            });
+            log.warn("Appended {} matches to {}", matches.size(), KEY_DEAD_LETTER_STREAM);
+        } catch (Exception e) {
+            log.error("Failed to append {} matches to {}", matches.size(), KEY_DEAD_LETTER_STREAM, e);
+            throw e;
+        }
+    }
+
+    public void createGroup(String group) {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(RAW_KEY_MATCH_STREAM, group, ReadOffset.from("0"), true));
+            log.info("Created consumer group {} on {}", group, KEY_MATCH_STREAM);
+        } catch (Exception e) {
+            if (!isBusyGroupError(e)) throw e;
+            log.debug("Consumer group {} already exists", group);
+        }
+    }
+
+    /**
+     * Reads entries for the consumer. With {@code pending} set, re-reads entries delivered to
+     * this consumer earlier but never acknowledged; otherwise blocks for new entries.
+     */
+    public List<MatchStreamEntry> read(String group, String consumer, int count, Duration block, boolean pending) {
+        StreamReadOptions options = pending
+                ? StreamReadOptions.empty().count(count)
+                : StreamReadOptions.empty().count(count).block(block);
+        StreamOffset<byte[]> offset = StreamOffset.create(RAW_KEY_MATCH_STREAM,
+                pending ? ReadOffset.from("0") : ReadOffset.lastConsumed());
+
+        List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xReadGroup(Consumer.from(group, consumer), options, offset));
+        if (CollectionUtils.isEmpty(records)) return Collections.emptyList();
+
+        List<MatchStreamEntry> entries = new ArrayList<>(records.size());
+        for (ByteRecord record : records) {
+            entries.add(MatchStreamEntry.builder()
+                    .id(record.getId().getValue())
+                    .match(toMatch(record))
+                    .build());
+        }
+        return entries;
+    }
+
+    /**
+     * Takes over entries other consumers of the group have left unacknowledged for at least
+     * {@code minIdle}, e.g. the consumers of a pod that is gone, so that this consumer re-reads
+     * them as its own pending entries. Only the oldest {@code count} pending entries are looked at.
+     *
+     * @return ids of the entries taken over
+     */
+    public List<String> claimIdle(String group, String consumer, Duration minIdle, int count) {
+        RecordId[] idle = redisTemplate.opsForStream().pending(KEY_MATCH_STREAM, group, Range.unbounded(), count)
+                .stream()
+                .filter(message -> !consumer.equals(message.getConsumerName()))
+                .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                .map(PendingMessage::getId)
+                .toArray(RecordId[]::new);
+        if (idle.length == 0) return Collections.emptyList();
+
+        // XCLAIM checks the idle time again, so an entry raced for by two consumers goes to one
+        List<RecordId> claimed = redisTemplate.execute((RedisCallback<List<RecordId>>) connection ->
+                connection.streamCommands().xClaimJustId(RAW_KEY_MATCH_STREAM, group, consumer,
+                        XClaimOptions.minIdle(minIdle).ids(idle)));
+        return claimed == null ? Collections.emptyList() : claimed.stream().map(RecordId::getValue).toList();
+    }
+
+    /**
+     * @param ids entries pending for the consumer, ascending as they were read
+     * @return how many times each of the entries has been delivered, by id
+     */
+    public Map<String, Long> findDeliveries(String group, String consumer, List<String> ids) {
+        if (CollectionUtils.isEmpty(ids)) return Collections.emptyMap();
+        return redisTemplate.opsForStream().pending(KEY_MATCH_STREAM, Consumer.from(group, consumer),
+                        Range.closed(ids.get(0), ids.get(ids.size() - 1)), ids.size())
+                .stream()
+                .collect(Collectors.toMap(PendingMessage::getIdAsString, PendingMessage::getTotalDeliveryCount));
+    }
+
+    public void acknowledge(String group, List<String> ids) {
+        if (CollectionUtils.isEmpty(ids)) return;
+        redisTemplate.opsForStream().acknowledge(KEY_MATCH_STREAM, group, ids.toArray(String[]::new));
+    }
+
+    public List<StreamGroupStats> findGroupStats() {
+        try {
+            List<StreamGroupStats> stats = new ArrayList<>();
+            redisTemplate.opsForStream().groups(KEY_MATCH_STREAM).forEach(group -> stats.add(StreamGroupStats.builder()
+                    .group(group.groupName())
+                    .pending(group.pendingCount())
+                    .lag(lag(group))
+                    .build()));
+            return stats;
+        } catch (Exception e) {
+            log.error("Failed to get consumer groups of {}", KEY_MATCH_STREAM, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private long lag(XInfoGroup group) {
+        Object lag = group.getRaw().get(INFO_LAG);
+        if (lag instanceof Number number) return number.longValue();
+
+        // Older servers do not report lag: count undelivered entries, capped to keep it cheap
+        List<ByteRecord> undelivered = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xRange(RAW_KEY_MATCH_STREAM,
+                        Range.of(Range.Bound.exclusive(group.lastDeliveredId()), Range.Bound.unbounded()),
+                        Limit.limit().count(LAG_SCAN_LIMIT)));
+        return undelivered == null ? 0 : undelivered.size();
+    }
+
+    private MapRecord<String, String, Object> toRecord(MatchResult match) {
+        return StreamRecords.newRecord()
+                .in(KEY_MATCH_STREAM)
+                .ofMap(Map.of(FIELD_MATCH, (Object) matchResultSerializer.serialize(match)));
+    }
+
+    private MatchResult toMatch(ByteRecord record) {
+        for (Map.Entry<byte[], byte[]> field : record.getValue().entrySet()) {
+            if (!Arrays.equals(field.getKey(), RAW_FIELD_MATCH)) continue;
+            try {
+                return matchResultSerializer.deserialize(field.getValue());
+            } catch (Exception e) {
+                log.warn("Unreadable match stream entry {}: {}", record.getId(), e.getMessage());
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private boolean isBusyGroupError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(BUSY_GROUP_ERROR)) return true;
+        }
+        return false;
+    }
+}
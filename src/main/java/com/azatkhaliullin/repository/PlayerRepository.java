@@ -1,23 +1,40 @@
 package com.azatkhaliullin.repository;
 
+import com.azatkhaliullin.domain.LeaderboardEntry;
+import com.azatkhaliullin.domain.LeaderboardSegment;
 import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.domain.PlayerRank;
+import com.azatkhaliullin.domain.PlayerScore;
 import com.azatkhaliullin.domain.PlayerStats;
+import com.azatkhaliullin.domain.PlayerStatsDelta;
+import com.azatkhaliullin.domain.RatedPlayer;
+import com.azatkhaliullin.property.LeaderboardProperties;
 import com.azatkhaliullin.util.GameConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisPipelineException;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.azatkhaliullin.util.GameConstants.DEFAULT_AVERAGE_SCORE;
@@ -27,10 +44,30 @@ import static com.azatkhaliullin.util.GameConstants.DEFAULT_AVERAGE_SCORE;
 @RequiredArgsConstructor
 public class PlayerRepository {
 
-    private static final String KEY_PLAYERS_HASH = "players";
+    static final String KEY_PLAYERS_HASH = "players";
     private static final String KEY_PLAYER_STATS = "players:stats:";
+    static final String KEY_USERNAMES_BY_ID = "players:by_id";
+    static final String KEY_PLAYERS_RATING = "players:rating";
+    static final String KEY_PLAYER_SEGMENTS = "players:segments";
+    private static final byte[] RAW_KEY_PLAYER_SEGMENTS = KEY_PLAYER_SEGMENTS.getBytes(StandardCharsets.UTF_8);
+    private static final String PREFIX_SEGMENT_RATING = "players:rating:";
+    private static final char SEGMENT_SEPARATOR = '|';
+
+    static final String FIELD_TOTAL_MATCHES = "totalMatches";
+    static final String FIELD_TOTAL_SCORE = "totalScore";
+    static final String FIELD_BEST_SCORE = "bestScore";
+    static final String FIELD_WORST_SCORE = "worstScore";
 
     private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, Player> playerTemplate;
+    private final RedisTemplate<String, Long> playerStatsTemplate;
+    private final RedisScript<Long> mergePlayerStatsScript;
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> playerRankScript;
+    private final RedisScript<Long> convertLegacyStatsScript;
+    private final LeaderboardProperties leaderboardProperties;
+    private final ReferenceDataCache referenceDataCache;
+    private final ClientSideCache clientSideCache;
 
     public void saveAll(Collection<Player> players) {
         if (CollectionUtils.isEmpty(players)) {
@@ -41,6 +78,8 @@ public class PlayerRepository {
             Map<String, Player> playersMap = players.stream()
                     .collect(Collectors.toMap(Player::getUsername, p -> p));
             hashOps().putAll(KEY_PLAYERS_HASH, playersMap);
+            referenceDataCache.invalidate(KEY_PLAYERS_HASH);
+            saveIndexes(players);
             log.debug("Successfully saved {} players", players.size());
         } catch (Exception e) {
             log.error("Failed to save players collection", e);
@@ -50,9 +89,9 @@ public class PlayerRepository {
 
     public List<Player> findAll() {
         try {
-            return hashOps().values(KEY_PLAYERS_HASH).stream()
+            return referenceDataCache.getAllPlayers(() -> hashOps().values(KEY_PLAYERS_HASH).stream()
                     .filter(Objects::nonNull)
-                    .toList();
+                    .toList());
         } catch (Exception e) {
             log.error("Failed to load all players", e);
             return Collections.emptyList();
@@ -61,7 +100,7 @@ public class PlayerRepository {
 
     public Optional<Player> findByUsername(String username) {
         try {
-            Player player = hashOps().get(KEY_PLAYERS_HASH, username);
+            Player player = referenceDataCache.getPlayer(username, key -> hashOps().get(KEY_PLAYERS_HASH, key));
             return Optional.ofNullable(player);
         } catch (Exception e) {
             log.error("Failed to find player by username: {}", username, e);
@@ -85,14 +124,136 @@ public class PlayerRepository {
     }
 
     public PlayerStats findPlayerStats(UUID playerId) {
-        String statsKey = playerStatsKey(playerId);
-        PlayerStats stats = (PlayerStats) valueOps().get(statsKey);
+        try {
+            String key = playerStatsKey(playerId);
+            return toPlayerStats(withLegacyStatsConverted(List.of(key), () -> clientSideCache.hGetAll(List.of(key))
+                    .map(stats -> decimalFields(stats.get(0)))
+                    .orElseGet(() -> statsOps().entries(key))));
+        } catch (Exception e) {
+            log.error("Failed to find stats of player: {}", playerId, e);
+            throw e;
+        }
+    }
 
-        if (stats == null) {
-            return new PlayerStats(0, 0, 0, Integer.MAX_VALUE, DEFAULT_AVERAGE_SCORE);
+    /**
+     * Reads the highest rated players from the rating leaderboard, then their usernames and
+     * stats in one pipelined round trip.
+     *
+     * @return players by rating, highest first
+     */
+    public List<RatedPlayer> findTopRated(int count) {
+        return findTopRated(KEY_PLAYERS_RATING, "all players", count);
+    }
+
+    /**
+     * Same as {@link #findTopRated(int)} for the players of a country or a level band.
+     */
+    public List<RatedPlayer> findTopRated(LeaderboardSegment segment, int count) {
+        return findTopRated(PREFIX_SEGMENT_RATING + segment.getName(), segment.getName(), count);
+    }
+
+    private List<RatedPlayer> findTopRated(String ratingKey, String leaderboard, int count) {
+        try {
+            Set<Object> members = redisTemplate.opsForZSet().reverseRange(ratingKey, 0, count - 1L);
+            if (CollectionUtils.isEmpty(members)) return Collections.emptyList();
+
+            List<String> playerIds = members.stream().map(Object::toString).toList();
+            List<String> statsKeys = playerIds.stream().map(playerId -> KEY_PLAYER_STATS + playerId).toList();
+            return withLegacyStatsConverted(statsKeys, () -> findRatedPlayers(playerIds, statsKeys));
+        } catch (Exception e) {
+            log.error("Failed to find top {} rated players of {}", count, leaderboard, e);
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RatedPlayer> findRatedPlayers(List<String> playerIds, List<String> statsKeys) {
+        Optional<List<Map<String, byte[]>>> cachedStats = clientSideCache.hGetAll(statsKeys);
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                HashOperations<String, String, Object> hashes =
+                        ((RedisOperations<String, Object>) operations).opsForHash();
+                hashes.multiGet(KEY_USERNAMES_BY_ID, playerIds);
+                if (cachedStats.isEmpty()) {
+                    statsKeys.forEach(hashes::entries);
+                }
+                return null;
+            }
+        });
+
+        List<Object> usernames = (List<Object>) results.get(0);
+        List<RatedPlayer> players = new ArrayList<>(playerIds.size());
+        for (int i = 0; i < playerIds.size(); i++) {
+            if (usernames.get(i) == null) {
+                log.warn("Rated player {} has no username, left out of the leaderboard", playerIds.get(i));
+                continue;
+            }
+            Map<String, ? extends Number> stats = cachedStats.isPresent()
+                    ? decimalFields(cachedStats.get().get(i))
+                    : (Map<String, Number>) results.get(i + 1);
+            players.add(new RatedPlayer(UUID.fromString(playerIds.get(i)), usernames.get(i).toString(),
+                    toPlayerStats(stats)));
         }
+        return players;
+    }
+
+    /**
+     * Looks up the rank of the player in the rating leaderboard, the players ranked around
+     * them and the number of ranked players, in one round trip.
+     *
+     * @param neighbours players to include on each side of the player
+     * @return empty for an unknown player or one without a rating yet
+     */
+    public Optional<PlayerRank> findRank(String username, int neighbours) {
+        try {
+            List<?> result = redisTemplate.execute(playerRankScript,
+                    List.of(KEY_PLAYERS_HASH, KEY_PLAYERS_RATING, KEY_USERNAMES_BY_ID),
+                    username.getBytes(StandardCharsets.UTF_8), neighbours);
+            if (CollectionUtils.isEmpty(result) || ((Number) result.get(0)).longValue() < 0) {
+                return Optional.empty();
+            }
+
+            long rank = ((Number) result.get(0)).longValue();
+            List<LeaderboardEntry> neighbourhood = new ArrayList<>((result.size() - 2) / 3);
+            long entryRank = Math.max(0, rank - neighbours);
+            for (int i = 2; i + 2 < result.size(); i += 3, entryRank++) {
+                if (result.get(i + 2) == null) {
+                    log.warn("Rated player {} has no username, left out of the neighbourhood", result.get(i));
+                    continue;
+                }
+                neighbourhood.add(new LeaderboardEntry(entryRank + 1, UUID.fromString(result.get(i).toString()),
+                        result.get(i + 2).toString(), ((Number) result.get(i + 1)).doubleValue()));
+            }
+            return Optional.of(new PlayerRank(rank + 1, ((Number) result.get(1)).longValue(), neighbourhood));
+        } catch (Exception e) {
+            log.error("Failed to find rank of player: {}", username, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Recomputes the leaderboard entries of the players from their stats as they are and
+     * indexes their usernames and leaderboard segments by id. Players without matches are
+     * left out of the leaderboards.
+     */
+    public void rebuildRatings(Collection<Player> players) {
+        if (CollectionUtils.isEmpty(players)) return;
+        try {
+            saveIndexes(players);
+            pipelinedMerge(players.stream()
+                    .map(player -> new PlayerStatsDelta(player.getId(), 0, 0, 0, 0))
+                    .toList());
+            log.debug("Rebuilt ratings of {} players", players.size());
+        } catch (Exception e) {
+            log.error("Failed to rebuild ratings of {} players", players.size(), e);
+            throw e;
+        }
+    }
 
-        return stats;
+    public int findTotalMatches(UUID playerId) {
+        String key = playerStatsKey(playerId);
+        return intField(withLegacyStatsConverted(List.of(key), () -> statsOps().get(key, FIELD_TOTAL_MATCHES)), 0);
     }
 
     public Long totalPlayers() {
@@ -100,9 +261,35 @@ public class PlayerRepository {
         return size < GameConstants.MIN_PLAYERS ? 0L : size;
     }
 
-    public void updatePlayerStats(UUID playerId, PlayerStats stats) {
-        String statsKey = playerStatsKey(playerId);
-        valueOps().set(statsKey, stats);
+    public void mergeScores(Collection<PlayerScore> scores) {
+        if (CollectionUtils.isEmpty(scores)) {
+            log.debug("No player scores to merge");
+            return;
+        }
+        try {
+            pipelinedMerge(scores.stream()
+                    .map(score -> new PlayerStatsDelta(score.getPlayerId(), 1, score.getScore(),
+                            score.getScore(), score.getScore()))
+                    .toList());
+            log.debug("Successfully merged {} player scores", scores.size());
+        } catch (Exception e) {
+            log.error("Failed to merge {} player scores", scores.size(), e);
+            throw e;
+        }
+    }
+
+    public void mergeDeltas(Collection<PlayerStatsDelta> deltas) {
+        if (CollectionUtils.isEmpty(deltas)) {
+            log.debug("No player stats deltas to merge");
+            return;
+        }
+        try {
+            pipelinedMerge(deltas);
+            log.debug("Successfully merged stats deltas of {} players", deltas.size());
+        } catch (Exception e) {
+            log.error("Failed to merge stats deltas of {} players", deltas.size(), e);
+            throw e;
+        }
     }
 
     public boolean isEmpty() {
@@ -116,14 +303,180 @@ public class PlayerRepository {
     }
 
     private HashOperations<String, String, Player> hashOps() {
-        return redisTemplate.opsForHash();
+        return playerTemplate.opsForHash();
+    }
+
+    private HashOperations<String, String, Long> statsOps() {
+        return playerStatsTemplate.opsForHash();
+    }
+
+    /**
+     * Runs a read of stats, converting them first and reading again if some of them are still
+     * in the legacy format, which the stats scripts otherwise only convert on their next write.
+     */
+    private <T> T withLegacyStatsConverted(List<String> statsKeys, Supplier<T> read) {
+        try {
+            return read.get();
+        } catch (RuntimeException e) {
+            if (!RedisScripts.isWrongTypeError(e)) throw e;
+            Long converted = redisTemplate.execute(convertLegacyStatsScript, statsKeys);
+            log.info("Converted {} player stats from the legacy format on read", converted);
+            return read.get();
+        }
+    }
+
+    private void pipelinedMerge(Collection<PlayerStatsDelta> deltas) {
+        Map<UUID, String> segments = findSegments(deltas.stream().map(PlayerStatsDelta::getPlayerId).toList());
+        try {
+            pipelined(operations -> mergeDeltas(operations, deltas, segments));
+        } catch (RedisPipelineException e) {
+            if (!RedisScripts.isNoScriptError(e)) throw e;
+            log.info("Stats merge script is not cached by Redis, loading it and retrying");
+            RedisScripts.load(redisTemplate, mergePlayerStatsScript);
+            pipelined(operations -> mergeDeltas(operations, deltas, segments));
+        }
+    }
+
+    private void mergeDeltas(RedisOperations<String, Object> operations, Collection<PlayerStatsDelta> deltas,
+                             Map<UUID, String> segments) {
+        List<String> keys = new ArrayList<>(3 + 3 * deltas.size());
+        List<String> segmentKeys = new ArrayList<>(2 * deltas.size());
+        List<Object> values = new ArrayList<>(7 * deltas.size());
+        keys.add(KEY_PLAYERS_RATING);
+        keys.add(KEY_PLAYER_SEGMENTS);
+        keys.add(LeaderboardRepository.KEY_SEGMENTS);
+        for (PlayerStatsDelta delta : deltas) {
+            keys.add(playerStatsKey(delta.getPlayerId()));
+            values.add(delta.getPlayerId());
+            values.add(delta.getMatches());
+            values.add(delta.getTotalScore());
+            values.add(delta.getBestScore());
+            values.add(delta.getWorstScore());
+            addSegmentArgs(delta.getPlayerId(), segments.get(delta.getPlayerId()), values);
+            addSegmentKeys(segments.get(delta.getPlayerId()), segmentKeys);
+        }
+        keys.addAll(segmentKeys);
+        operations.execute(mergePlayerStatsScript, keys, values.toArray());
+    }
+
+    /**
+     * Indexes the usernames and segments of the players by id. A player whose country or level
+     * band has changed is taken out of the rating leaderboard of the segment they left.
+     */
+    private void saveIndexes(Collection<Player> players) {
+        Map<String, Object> usernames = players.stream()
+                .collect(Collectors.toMap(player -> player.getId().toString(), Player::getUsername));
+        Map<UUID, String> previousSegments = findSegments(players.stream().map(Player::getId).toList());
+        // Read by the stats scripts, hence stored as bare text rather than JSON
+        Map<String, Object> segments = players.stream()
+                .collect(Collectors.toMap(player -> player.getId().toString(),
+                        player -> segments(player).getBytes(StandardCharsets.UTF_8)));
+        pipelined(operations -> {
+            operations.opsForHash().putAll(KEY_USERNAMES_BY_ID, usernames);
+            operations.opsForHash().putAll(KEY_PLAYER_SEGMENTS, segments);
+            for (Player player : players) {
+                String previous = previousSegments.get(player.getId());
+                if (previous == null) continue;
+                List<String> current = segmentRatingKeys(segments(player));
+                segmentRatingKeys(previous).stream()
+                        .filter(key -> !current.contains(key))
+                        .forEach(key -> operations.opsForZSet().remove(key, player.getId()));
+            }
+        });
+    }
+
+    /**
+     * @return segments of the players as indexed, country and level band joined by
+     * {@value #SEGMENT_SEPARATOR}, by id; players without indexed segments are left out
+     */
+    Map<UUID, String> findSegments(Collection<UUID> playerIds) {
+        if (playerIds.isEmpty()) return Collections.emptyMap();
+        List<UUID> ids = playerIds.stream().distinct().toList();
+        byte[][] fields = ids.stream()
+                .map(id -> id.toString().getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.hashCommands().hMGet(RAW_KEY_PLAYER_SEGMENTS, fields));
+        Map<UUID, String> segments = new HashMap<>(ids.size());
+        for (int i = 0; values != null && i < ids.size(); i++) {
+            if (values.get(i) != null) segments.put(ids.get(i), new String(values.get(i), StandardCharsets.UTF_8));
+        }
+        return segments;
+    }
+
+    /**
+     * Adds the script arguments of the segments resolved for the player: the bare id and the
+     * segments as indexed, empty for none. The scripts rate the player in them only while the
+     * index still holds the same segments.
+     */
+    static void addSegmentArgs(UUID playerId, String segments, List<Object> args) {
+        args.add(playerId.toString().getBytes(StandardCharsets.UTF_8));
+        args.add(segments == null ? new byte[0] : segments.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds the rating keys of the segments resolved for a player, none for a player without.
+     */
+    static void addSegmentKeys(String segments, List<String> keys) {
+        if (segments != null) keys.addAll(segmentRatingKeys(segments));
+    }
+
+    /**
+     * @return rating leaderboard keys of the country and of the level band of indexed segments
+     */
+    private static List<String> segmentRatingKeys(String segments) {
+        int separator = segments.lastIndexOf(SEGMENT_SEPARATOR);
+        return List.of(
+                PREFIX_SEGMENT_RATING + new LeaderboardSegment(LeaderboardSegment.Type.COUNTRY,
+                        segments.substring(0, separator)).getName(),
+                PREFIX_SEGMENT_RATING + new LeaderboardSegment(LeaderboardSegment.Type.LEVEL,
+                        segments.substring(separator + 1)).getName());
+    }
+
+    private String segments(Player player) {
+        LeaderboardProperties.Segments properties = leaderboardProperties.getSegments();
+        String country = LeaderboardSegment.country(player.getCountry(), properties.getCountries()).getValue();
+        String band = LeaderboardSegment.levelBand(player.getLevel(), properties.getLevelBands()).getValue();
+        return country + SEGMENT_SEPARATOR + band;
+    }
+
+    private void pipelined(Consumer<RedisOperations<String, Object>> commands) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        });
+    }
+
+    private static PlayerStats toPlayerStats(Map<String, ? extends Number> fields) {
+        if (CollectionUtils.isEmpty(fields)) {
+            return new PlayerStats(0, 0, 0, Integer.MAX_VALUE, DEFAULT_AVERAGE_SCORE);
+        }
+        int totalMatches = intField(fields.get(FIELD_TOTAL_MATCHES), 0);
+        int totalScore = intField(fields.get(FIELD_TOTAL_SCORE), 0);
+        return new PlayerStats(totalMatches, totalScore,
+                intField(fields.get(FIELD_BEST_SCORE), 0),
+                intField(fields.get(FIELD_WORST_SCORE), Integer.MAX_VALUE),
+                totalMatches > 0 ? (double) totalScore / totalMatches : DEFAULT_AVERAGE_SCORE);
+    }
+
+    /**
+     * @return stats fields read as stored, decimal text, as numbers
+     */
+    private static Map<String, Long> decimalFields(Map<String, byte[]> fields) {
+        Map<String, Long> numbers = new HashMap<>(fields.size());
+        fields.forEach((field, value) -> numbers.put(field, Long.valueOf(new String(value, StandardCharsets.UTF_8))));
+        return numbers;
     }
 
-    private ValueOperations<String, Object> valueOps() {
-        return redisTemplate.opsForValue();
+    private static int intField(Number value, int defaultValue) {
+        return value == null ? defaultValue : value.intValue();
     }
 
-    private String playerStatsKey(UUID playerId) {
+    static String playerStatsKey(UUID playerId) {
         return KEY_PLAYER_STATS + playerId;
     }
 }
@@ -0,0 +1,42 @@
+package com.azatkhaliullin.repository;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for running scripts inside pipelines, where EVALSHA results are only known after
+ * the pipeline is closed and a missing script cannot fall back to EVAL per command.
+ */
+@UtilityClass
+class RedisScripts {
+
+    private static final String NO_SCRIPT_ERROR = "NOSCRIPT";
+    private static final String WRONG_TYPE_ERROR = "WRONGTYPE";
+
+    void load(RedisTemplate<String, Object> redisTemplate, RedisScript<?> script) {
+        byte[] body = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(body));
+    }
+
+    boolean isNoScriptError(Throwable e) {
+        return hasError(e, NO_SCRIPT_ERROR);
+    }
+
+    /**
+     * @return whether a command ran against a key holding another type than it works on
+     */
+    boolean isWrongTypeError(Throwable e) {
+        return hasError(e, WRONG_TYPE_ERROR);
+    }
+
+    private boolean hasError(Throwable e, String error) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(error)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,213 @@
+package com.azatkhaliullin.repository;
+
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.property.NearCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-process copies of players and servers, which almost never change, in front of their
+ * Redis hashes. A write to either hash drops the copies of the whole hash on this node and
+ * publishes the hash name on the invalidation channel, on which every node, this one included,
+ * drops its copies as well. Entries also expire a while after they were loaded, in case a
+ * message is lost. Missing entries are not cached, so new ones show up on the next read.
+ * <p>
+ * Nothing is cached while the node is not subscribed to the channel, e.g. while Redis is
+ * unavailable on startup or the subscription is being recovered; reads then go to Redis.
+ * <p>
+ * Callers share the cached instances and must not change them.
+ */
+@Slf4j
+@Component
+public class ReferenceDataCache implements MessageListener {
+
+    private static final String ALL = "*";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final NearCacheProperties nearCacheProperties;
+    private final Region<Player> players;
+    private final Region<ServerInfo> servers;
+    private final Map<String, Region<?>> regionsByHash;
+    private final Counter invalidationCounter;
+
+    public ReferenceDataCache(RedisTemplate<String, Object> redisTemplate,
+                              RedisMessageListenerContainer listenerContainer,
+                              NearCacheProperties nearCacheProperties,
+                              MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.nearCacheProperties = nearCacheProperties;
+        this.players = new Region<>("players", nearCacheProperties.getMaxPlayers(), meterRegistry);
+        this.servers = new Region<>("servers", nearCacheProperties.getMaxServers(), meterRegistry);
+        this.regionsByHash = Map.of(
+                PlayerRepository.KEY_PLAYERS_HASH, players,
+                ServerRepository.KEY_SERVERS_HASH, servers);
+        this.invalidationCounter = Counter.builder("stats.near-cache.invalidations")
+                .description("Hashes whose near-cached entries were dropped, locally or on a message of another node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param loader reads the player from Redis, null when there is none
+     */
+    public Player getPlayer(String username, Function<String, Player> loader) {
+        return players.get(username, loader);
+    }
+
+    public List<Player> getAllPlayers(Supplier<List<Player>> loader) {
+        return players.getAll(loader);
+    }
+
+    /**
+     * @param loader reads the server from Redis, null when there is none
+     */
+    public ServerInfo getServer(String endpoint, Function<String, ServerInfo> loader) {
+        return servers.get(endpoint, loader);
+    }
+
+    public List<ServerInfo> getAllServers(Supplier<List<ServerInfo>> loader) {
+        return servers.getAll(loader);
+    }
+
+    /**
+     * Drops the entries of the hash on this node, then asks the other nodes to do the same.
+     * Call it once the hash has been written; a failure to publish is logged rather than
+     * thrown, the other nodes then catch up when their entries expire.
+     */
+    public void invalidate(String hash) {
+        if (!nearCacheProperties.isEnabled()) return;
+        invalidateLocally(hash);
+        try {
+            byte[] channel = nearCacheProperties.getInvalidationChannel().getBytes(StandardCharsets.UTF_8);
+            byte[] message = hash.getBytes(StandardCharsets.UTF_8);
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, message));
+        } catch (Exception e) {
+            log.warn("Failed to publish invalidation of hash: {}, other nodes keep it until it expires", hash, e);
+        }
+    }
+
+    /**
+     * Subscribes to the invalidation channel unless subscribed already. A failed subscription,
+     * e.g. to a Redis that is not up yet, is retried on the next run; the listener is added
+     * here rather than on startup, which would then fail.
+     */
+    @Scheduled(fixedDelayString = "${stats.near-cache.subscribe-retry-interval}")
+    public void subscribe() {
+        if (!nearCacheProperties.isEnabled() || listenerContainer.isListening()) return;
+        try {
+            listenerContainer.stop();
+            listenerContainer.addMessageListener(this, new ChannelTopic(nearCacheProperties.getInvalidationChannel()));
+            listenerContainer.start();
+            log.info("Subscribed to near-cache invalidations on channel: {}", nearCacheProperties.getInvalidationChannel());
+        } catch (Exception e) {
+            log.warn("Failed to subscribe to near-cache invalidations, players and servers are read from Redis: {}",
+                    e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        invalidateLocally(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private boolean isSubscribed() {
+        if (!nearCacheProperties.isEnabled()) return false;
+        if (listenerContainer.isListening()) return true;
+        // Invalidations published meanwhile are lost, so copies made before cannot be trusted
+        regionsByHash.values().forEach(Region::invalidate);
+        return false;
+    }
+
+    private void invalidateLocally(String hash) {
+        Region<?> region = regionsByHash.get(hash);
+        if (region == null) {
+            log.warn("Ignored invalidation of unknown hash: {}", hash);
+            return;
+        }
+        region.invalidate();
+        invalidationCounter.increment();
+        log.debug("Dropped near-cached entries of hash: {}", hash);
+    }
+
+    /**
+     * Entries of one hash by field, and all of its values as a single entry. Every invalidation
+     * starts a new generation, and a value is only cached if no invalidation happened while it
+     * was loaded. A load that read the hash before a write would otherwise cache stale values
+     * until they expire.
+     */
+    private class Region<V> {
+
+        private final Cache<String, V> entries;
+        private final Cache<String, List<V>> all;
+        private final AtomicLong generation = new AtomicLong();
+
+        Region(String name, long maximumSize, MeterRegistry meterRegistry) {
+            this.entries = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(nearCacheProperties.getExpireAfterWrite())
+                    .recordStats()
+                    .build();
+            this.all = Caffeine.newBuilder()
+                    .maximumSize(1)
+                    .expireAfterWrite(nearCacheProperties.getExpireAfterWrite())
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, entries, "near-cache." + name);
+            CaffeineCacheMetrics.monitor(meterRegistry, all, "near-cache." + name + ".all");
+        }
+
+        V get(String key, Function<String, V> loader) {
+            if (!isSubscribed()) return loader.apply(key);
+            V cached = entries.getIfPresent(key);
+            if (cached != null) return cached;
+
+            long loadGeneration = generation.get();
+            V value = loader.apply(key);
+            if (value != null) completeLoading(loadGeneration, () -> entries.put(key, value));
+            return value;
+        }
+
+        List<V> getAll(Supplier<List<V>> loader) {
+            if (!isSubscribed()) return loader.get();
+            List<V> cached = all.getIfPresent(ALL);
+            if (cached != null) return cached;
+
+            long loadGeneration = generation.get();
+            List<V> values = loader.get();
+            if (values != null) completeLoading(loadGeneration, () -> all.put(ALL, values));
+            return values;
+        }
+
+        synchronized void invalidate() {
+            generation.incrementAndGet();
+            entries.invalidateAll();
+            all.invalidateAll();
+        }
+
+        // Synchronized with invalidate, so that a value is either dropped by it or not cached
+        private synchronized void completeLoading(long loadGeneration, Runnable cache) {
+            if (generation.get() == loadGeneration) cache.run();
+        }
+    }
+}
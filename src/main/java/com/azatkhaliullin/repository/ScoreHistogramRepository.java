@@ -0,0 +1,68 @@
+package com.azatkhaliullin.repository;
+
+import com.azatkhaliullin.domain.ScoreHistogram;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Score histograms of servers and players, maintained by the ingest script. A histogram is a
+ * hash of at most {@code MAX_SCORE + 1} score fields counting how often each score was
+ * scored, small enough for Redis to keep it in its compact encoding.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ScoreHistogramRepository {
+
+    private static final String KEY_SERVER_HISTOGRAM = "scores:histogram:server:";
+    private static final String KEY_PLAYER_HISTOGRAM = "scores:histogram:player:";
+
+    // Counters are updated with HINCRBY, like player stats, hence decimal text
+    private final RedisTemplate<String, Long> playerStatsTemplate;
+
+    public ScoreHistogram findByServer(String endpoint) {
+        try {
+            return toHistogram(entries(serverKey(endpoint)));
+        } catch (Exception e) {
+            log.error("Failed to find score histogram of server: {}", endpoint, e);
+            throw e;
+        }
+    }
+
+    public ScoreHistogram findByPlayer(UUID playerId) {
+        try {
+            return toHistogram(entries(playerKey(playerId)));
+        } catch (Exception e) {
+            log.error("Failed to find score histogram of player: {}", playerId, e);
+            throw e;
+        }
+    }
+
+    static String serverKey(String endpoint) {
+        return KEY_SERVER_HISTOGRAM + endpoint;
+    }
+
+    static String playerKey(UUID playerId) {
+        return KEY_PLAYER_HISTOGRAM + playerId;
+    }
+
+    private Map<String, Long> entries(String key) {
+        return playerStatsTemplate.<String, Long>opsForHash().entries(key);
+    }
+
+    private static ScoreHistogram toHistogram(Map<String, Long> entries) {
+        ScoreHistogram histogram = new ScoreHistogram();
+        entries.forEach((score, count) -> {
+            int bucket = Integer.parseInt(score);
+            if (bucket >= 0 && bucket < histogram.getCounts().length) {
+                histogram.getCounts()[bucket] = count;
+            }
+        });
+        return histogram;
+    }
+}
@@ -1,29 +1,53 @@
 package com.azatkhaliullin.repository;
 
 import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.domain.ServerStats;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Registered servers, near-cached in process, and the counters of the matches played on them.
+ * The counters and the popularity of every server, its number of matches, are kept up to date
+ * by the ingest script.
+ */
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class ServerRepository {
 
-    private static final String KEY_SERVERS_HASH = "servers";
+    static final String KEY_SERVERS_HASH = "servers";
+    static final String KEY_SERVERS_POPULARITY = "servers:popularity";
+    private static final String KEY_SERVER_STATS = "servers:stats:";
+    private static final String KEY_REBUILD = "rebuild:";
+    private static final byte[] RAW_KEY_SERVERS_POPULARITY = KEY_SERVERS_POPULARITY.getBytes(StandardCharsets.UTF_8);
+    private static final List<String> STATS_FIELDS = List.of("matches", "players", "totalScore");
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, ServerInfo> serverInfoTemplate;
+    // Counters are updated with HINCRBY, like player stats, hence decimal text
+    private final RedisTemplate<String, Long> playerStatsTemplate;
+    private final ReferenceDataCache referenceDataCache;
 
     public void saveAll(Collection<ServerInfo> servers) {
         if (CollectionUtils.isEmpty(servers)) {
@@ -34,6 +58,8 @@ public class ServerRepository {
             Map<String, ServerInfo> serversMap = servers.stream()
                     .collect(Collectors.toMap(ServerInfo::getEndpoint, s -> s));
             hashOps().putAll(KEY_SERVERS_HASH, serversMap);
+            referenceDataCache.invalidate(KEY_SERVERS_HASH);
+            seedPopularity(serversMap.keySet());
             log.debug("Successfully saved {} servers", servers.size());
         } catch (Exception e) {
             log.error("Failed to save servers collection", e);
@@ -43,9 +69,9 @@ public class ServerRepository {
 
     public List<ServerInfo> findAll() {
         try {
-            return hashOps().values(KEY_SERVERS_HASH).stream()
+            return referenceDataCache.getAllServers(() -> hashOps().values(KEY_SERVERS_HASH).stream()
                     .filter(Objects::nonNull)
-                    .toList();
+                    .toList());
         } catch (Exception e) {
             log.error("Failed to retrieve all servers", e);
             return Collections.emptyList();
@@ -54,7 +80,7 @@ public class ServerRepository {
 
     public Optional<ServerInfo> findByEndpoint(String endpoint) {
         try {
-            ServerInfo serverInfo = hashOps().get(KEY_SERVERS_HASH, endpoint);
+            ServerInfo serverInfo = referenceDataCache.getServer(endpoint, key -> hashOps().get(KEY_SERVERS_HASH, key));
             return Optional.ofNullable(serverInfo);
         } catch (Exception e) {
             log.error("Failed to find server with endpoint {}", endpoint, e);
@@ -73,6 +99,101 @@ public class ServerRepository {
         }
     }
 
+    /**
+     * @return the counters of the server, all zero when no match has been played on it
+     */
+    public ServerStats findStats(String endpoint) {
+        try {
+            return toServerStats(playerStatsTemplate.<String, Long>opsForHash().multiGet(serverStatsKey(endpoint), STATS_FIELDS));
+        } catch (Exception e) {
+            log.error("Failed to find stats of server: {}", endpoint, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the servers with the most matches, then their details and counters in one
+     * pipelined round trip.
+     *
+     * @return servers by number of matches with their counters, most played first
+     */
+    @SuppressWarnings("unchecked")
+    public Map<ServerInfo, ServerStats> findMostPopular(int count) {
+        try {
+            // Members are written by the scripts as bare text, not as JSON
+            Set<byte[]> members = playerStatsTemplate.execute((RedisCallback<Set<byte[]>>) connection ->
+                    connection.zSetCommands().zRevRange(RAW_KEY_SERVERS_POPULARITY, 0, count - 1L));
+            if (CollectionUtils.isEmpty(members)) return Collections.emptyMap();
+
+            List<String> endpoints = members.stream()
+                    .map(member -> new String(member, StandardCharsets.UTF_8))
+                    .toList();
+            List<ServerInfo> servers = hashOps().multiGet(KEY_SERVERS_HASH, endpoints);
+            List<Object> counters = playerStatsTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Long> redis = (RedisOperations<String, Long>) operations;
+                    for (String endpoint : endpoints) {
+                        redis.<String, Long>opsForHash().multiGet(serverStatsKey(endpoint), STATS_FIELDS);
+                    }
+                    return null;
+                }
+            });
+
+            Map<ServerInfo, ServerStats> popular = new LinkedHashMap<>(endpoints.size());
+            for (int i = 0; i < endpoints.size(); i++) {
+                if (servers.get(i) == null) {
+                    log.warn("Server {} is not registered, left out of the popular servers", endpoints.get(i));
+                } else {
+                    popular.put(servers.get(i), toServerStats((List<Long>) counters.get(i)));
+                }
+            }
+            return popular;
+        } catch (Exception e) {
+            log.error("Failed to find {} most popular servers", count, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the counters and the popularity of the servers, e.g. with counters recomputed
+     * from their match history. The counters are written to rebuild keys first and renamed over
+     * the live ones in one transaction, so that readers never see them half replaced.
+     */
+    public void replaceAllStats(Map<String, ServerStats> stats) {
+        if (CollectionUtils.isEmpty(stats)) {
+            log.debug("No server stats to replace");
+            return;
+        }
+        try {
+            byte[] rebuildPopularity = rawText(rebuildKey(KEY_SERVERS_POPULARITY));
+            playerStatsTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                // A rebuild that failed before its renames leaves servers that may be gone since
+                connection.keyCommands().del(rebuildPopularity);
+                stats.forEach((endpoint, serverStats) -> {
+                    connection.hashCommands().hMSet(rawRebuildStatsKey(endpoint), Map.of(
+                            rawText(STATS_FIELDS.get(0)), rawText(serverStats.getMatches()),
+                            rawText(STATS_FIELDS.get(1)), rawText(serverStats.getPlayerSlots()),
+                            rawText(STATS_FIELDS.get(2)), rawText(serverStats.getTotalScore())));
+                    connection.zSetCommands().zAdd(rebuildPopularity, serverStats.getMatches(),
+                            rawText(endpoint), ZAddArgs.empty());
+                });
+                return null;
+            });
+            playerStatsTemplate.execute((RedisCallback<List<Object>>) connection -> {
+                connection.multi();
+                for (String endpoint : stats.keySet()) {
+                    connection.keyCommands().rename(rawRebuildStatsKey(endpoint), rawText(serverStatsKey(endpoint)));
+                }
+                connection.keyCommands().rename(rebuildPopularity, RAW_KEY_SERVERS_POPULARITY);
+                return connection.exec();
+            });
+        } catch (Exception e) {
+            log.error("Failed to replace stats of {} servers", stats.size(), e);
+            throw e;
+        }
+    }
+
     public boolean isEmpty() {
         try {
             Long size = hashOps().size(KEY_SERVERS_HASH);
@@ -83,7 +204,44 @@ public class ServerRepository {
         }
     }
 
+    static String serverStatsKey(String endpoint) {
+        return KEY_SERVER_STATS + endpoint;
+    }
+
+    private static String rebuildKey(String key) {
+        return KEY_REBUILD + key;
+    }
+
+    private static byte[] rawRebuildStatsKey(String endpoint) {
+        return rawText(rebuildKey(serverStatsKey(endpoint)));
+    }
+
+    // Counters are decimal text and popularity members bare text, as the scripts write them
+    private static byte[] rawText(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lists new servers in the popularity with no matches, leaving the count of known ones.
+     */
+    private void seedPopularity(Collection<String> endpoints) {
+        Set<Tuple> tuples = new LinkedHashSet<>(endpoints.size());
+        for (String endpoint : endpoints) {
+            tuples.add(new DefaultTuple(endpoint.getBytes(StandardCharsets.UTF_8), 0.0));
+        }
+        playerStatsTemplate.execute((RedisCallback<Long>) connection ->
+                connection.zSetCommands().zAdd(RAW_KEY_SERVERS_POPULARITY, tuples, ZAddArgs.ifNotExists()));
+    }
+
+    private static ServerStats toServerStats(List<Long> counters) {
+        return new ServerStats(valueOrZero(counters.get(0)), valueOrZero(counters.get(1)), valueOrZero(counters.get(2)));
+    }
+
+    private static long valueOrZero(Long counter) {
+        return counter == null ? 0 : counter;
+    }
+
     private HashOperations<String, String, ServerInfo> hashOps() {
-        return redisTemplate.opsForHash();
+        return serverInfoTemplate.opsForHash();
     }
 }
@@ -0,0 +1,55 @@
+package com.azatkhaliullin.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+
+/**
+ * Markers of jobs run on startup that are meant to run once for the whole deployment rather than
+ * on every node: the first node to claim a job runs it, and once it has completed its marker
+ * stays, so no later startup runs it again until the marker is deleted.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class StartupJobRepository {
+
+    private static final String KEY_JOB = "jobs:";
+    // A claim of a node that dies or fails mid-run expires, so that a later startup runs the job again
+    private static final Duration CLAIM_TTL = Duration.ofHours(1);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * @return whether the job is to be run by this node, false when it has completed already or
+     * another node is running it
+     */
+    public boolean claim(String job) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(jobKey(job), System.currentTimeMillis(), CLAIM_TTL));
+        } catch (Exception e) {
+            log.error("Failed to claim startup job: {}", job, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps the claim of the job for good.
+     */
+    public void complete(String job) {
+        try {
+            redisTemplate.persist(jobKey(job));
+        } catch (Exception e) {
+            log.error("Failed to complete startup job: {}", job, e);
+            throw e;
+        }
+    }
+
+    static String jobKey(String job) {
+        return KEY_JOB + job;
+    }
+}
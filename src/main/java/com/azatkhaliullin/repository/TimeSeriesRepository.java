@@ -0,0 +1,123 @@
+package com.azatkhaliullin.repository;
+
+import com.azatkhaliullin.domain.TimeSeriesBucket;
+import com.azatkhaliullin.domain.TimeSeriesResolution;
+import com.azatkhaliullin.domain.TimeSeriesScope;
+import com.azatkhaliullin.property.TimeSeriesProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server activity time series of servers and regions. Every bucket is a hash of its own,
+ * {@code timeseries:{scope}:{resolution}:{start}}, counting the matches, player slots and
+ * score sum of the matches played in it, and expires when its resolution's retention has
+ * passed since its end. Minute buckets are counted by the ingest script, hour and day buckets
+ * are written by downsampling.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class TimeSeriesRepository {
+
+    private static final String KEY_TIMESERIES = "timeseries:";
+    private static final List<String> FIELDS = List.of("matches", "players", "totalScore");
+
+    // Counters are updated with HINCRBY, like player stats, hence decimal text
+    private final RedisTemplate<String, Long> playerStatsTemplate;
+    private final TimeSeriesProperties timeSeriesProperties;
+
+    /**
+     * Reads every bucket of the range in one pipelined round trip.
+     *
+     * @return buckets from the one {@code from} falls into to the one {@code to} falls into,
+     * oldest first, empty ones included
+     */
+    @SuppressWarnings("unchecked")
+    public List<TimeSeriesBucket> findBuckets(TimeSeriesScope scope, TimeSeriesResolution resolution, long from, long to) {
+        try {
+            List<Long> starts = new ArrayList<>();
+            for (long start = resolution.bucketStart(from); start <= to; start += resolution.getWidth().toMillis()) {
+                starts.add(start);
+            }
+            List<Object> counters = playerStatsTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Long> redis = (RedisOperations<String, Long>) operations;
+                    for (long start : starts) {
+                        redis.<String, Long>opsForHash().multiGet(bucketKey(scope, resolution, start), FIELDS);
+                    }
+                    return null;
+                }
+            });
+
+            List<TimeSeriesBucket> buckets = new ArrayList<>(starts.size());
+            for (int i = 0; i < starts.size(); i++) {
+                List<Long> bucket = (List<Long>) counters.get(i);
+                buckets.add(new TimeSeriesBucket(starts.get(i),
+                        valueOrZero(bucket.get(0)), valueOrZero(bucket.get(1)), valueOrZero(bucket.get(2))));
+            }
+            return buckets;
+        } catch (Exception e) {
+            log.error("Failed to find {} buckets of {} from {} to {}", resolution.getValue(), scope.getName(),
+                    Instant.ofEpochMilli(from), Instant.ofEpochMilli(to), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the buckets, each expiring when the retention of the resolution has passed
+     * since its end. Buckets already past retention are left out.
+     */
+    @SuppressWarnings("unchecked")
+    public void saveBuckets(TimeSeriesScope scope, TimeSeriesResolution resolution, List<TimeSeriesBucket> buckets) {
+        try {
+            long now = System.currentTimeMillis();
+            playerStatsTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Long> redis = (RedisOperations<String, Long>) operations;
+                    for (TimeSeriesBucket bucket : buckets) {
+                        long expireAt = expireAt(resolution, bucket.getStart(), timeSeriesProperties.getRetention().of(resolution));
+                        if (expireAt <= now) continue;
+
+                        String key = bucketKey(scope, resolution, bucket.getStart());
+                        redis.<String, Long>opsForHash().putAll(key, Map.of(
+                                FIELDS.get(0), bucket.getMatches(),
+                                FIELDS.get(1), bucket.getPlayers(),
+                                FIELDS.get(2), bucket.getTotalScore()));
+                        redis.expireAt(key, Instant.ofEpochMilli(expireAt));
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to save {} {} buckets of {}", buckets.size(), resolution.getValue(), scope.getName(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return when the bucket starting at the given time expires, epoch millis
+     */
+    public static long expireAt(TimeSeriesResolution resolution, long start, Duration retention) {
+        return start + resolution.getWidth().toMillis() + retention.toMillis();
+    }
+
+    static String bucketKey(TimeSeriesScope scope, TimeSeriesResolution resolution, long start) {
+        return KEY_TIMESERIES + scope.getName() + ":" + resolution.getValue() + ":" + start;
+    }
+
+    private static long valueOrZero(Long counter) {
+        return counter == null ? 0 : counter;
+    }
+}
@@ -20,7 +20,7 @@ public class UserCredentialsRepository {
 
     private static final String KEY_USERS_HASH = "users:credentials";
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, UserCredentials> userCredentialsTemplate;
 
     public void saveAll(Collection<UserCredentials> userCredentials) {
         if (CollectionUtils.isEmpty(userCredentials)) {
@@ -59,6 +59,6 @@ public class UserCredentialsRepository {
     }
 
     private HashOperations<String, String, UserCredentials> hashOps() {
-        return redisTemplate.opsForHash();
+        return userCredentialsTemplate.opsForHash();
     }
 }
@@ -0,0 +1,81 @@
+package com.azatkhaliullin.security;
+
+import com.azatkhaliullin.property.GameServerProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import static com.azatkhaliullin.util.SecurityConstants.API_KEY_HEADER;
+import static com.azatkhaliullin.util.SecurityConstants.GAME_SERVER_PRINCIPAL;
+import static com.azatkhaliullin.util.SecurityConstants.ROLE_GAME_SERVER;
+
+/**
+ * Authenticates game servers by the API key they send, granting them the role that allows
+ * pushing matches. Keys are configured as their SHA-256 digests, so the configuration does
+ * not hold them in plain text.
+ */
+@Component
+public class ApiKeyFilter extends OncePerRequestFilter {
+
+    private final List<byte[]> keyDigests;
+
+    public ApiKeyFilter(GameServerProperties gameServerProperties) {
+        this.keyDigests = gameServerProperties.getApiKeyHashes().stream()
+                .map(HexFormat.of()::parseHex)
+                .toList();
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (StringUtils.hasText(apiKey)) {
+            if (isKnown(apiKey)) {
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        GAME_SERVER_PRINCIPAL,
+                        null,
+                        List.of(new SimpleGrantedAuthority(ROLE_GAME_SERVER)));
+
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            } else {
+                logger.debug("Skipping authentication due to unknown API key");
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    // Every digest is compared in constant time, so the time taken tells nothing about the keys
+    private boolean isKnown(String apiKey) {
+        byte[] digest = sha256(apiKey);
+        boolean known = false;
+        for (byte[] keyDigest : keyDigests) {
+            known |= MessageDigest.isEqual(digest, keyDigest);
+        }
+        return known;
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.azatkhaliullin.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Serializer writing values in the binary layout of a {@link ValueCodec} behind a three byte
+ * header (marker, type tag, layout version). Reads accept the fallback encoding too, so values
+ * written before the codec existed, or while binary writes are switched off, stay readable. The
+ * marker byte 0xFF never occurs in UTF-8, hence never starts a JSON value.
+ */
+public class BinaryCodecRedisSerializer<T> implements RedisSerializer<T> {
+
+    static final int MARKER = 0xFF;
+    private static final int HEADER_LENGTH = 3;
+
+    private final ValueCodec<T> codec;
+    private final RedisSerializer<T> fallback;
+    private final boolean binaryWrites;
+
+    public BinaryCodecRedisSerializer(ValueCodec<T> codec, RedisSerializer<T> fallback, boolean binaryWrites) {
+        this.codec = codec;
+        this.fallback = fallback;
+        this.binaryWrites = binaryWrites;
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        if (value == null || !binaryWrites) return fallback.serialize(value);
+        try {
+            BinaryWriter writer = new BinaryWriter(256);
+            writer.writeByte(MARKER);
+            writer.writeByte(codec.tag());
+            writer.writeByte(codec.version());
+            codec.encode(value, writer);
+            return writer.toByteArray();
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not encode " + codec.type().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) return null;
+        if ((bytes[0] & 0xFF) != MARKER) return fallback.deserialize(bytes);
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("Truncated binary value header");
+        }
+        if ((bytes[1] & 0xFF) != codec.tag()) {
+            throw new SerializationException("Expected " + codec.type().getSimpleName() + " value but found tag "
+                    + (bytes[1] & 0xFF));
+        }
+        try {
+            BinaryReader reader = new BinaryReader(bytes, HEADER_LENGTH);
+            T value = codec.decode(reader, bytes[2] & 0xFF);
+            if (!reader.isExhausted()) {
+                throw new IllegalArgumentException("Trailing bytes after value");
+            }
+            return value;
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not decode " + codec.type().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return codec.type();
+    }
+}
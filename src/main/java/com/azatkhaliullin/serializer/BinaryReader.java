@@ -0,0 +1,80 @@
+package com.azatkhaliullin.serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Reads values written by {@link BinaryWriter}. Truncated or malformed input fails with an
+ * {@link IllegalArgumentException}.
+ */
+public class BinaryReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    public BinaryReader(byte[] buffer, int offset) {
+        this.buffer = buffer;
+        this.position = offset;
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readLong() {
+        require(Long.BYTES);
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint at position " + position);
+    }
+
+    public int readVarInt() {
+        long value = readVarLong();
+        if (value >>> 32 != 0) {
+            throw new IllegalArgumentException("Varint out of int range at position " + position);
+        }
+        return (int) value;
+    }
+
+    public long readZigZag() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public UUID readUuid() {
+        return new UUID(readLong(), readLong());
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        if (length == 0) return null;
+        require(length - 1);
+        String value = new String(buffer, position, length - 1, StandardCharsets.UTF_8);
+        position += length - 1;
+        return value;
+    }
+
+    public boolean isExhausted() {
+        return position == buffer.length;
+    }
+
+    private void require(int bytes) {
+        if (bytes < 0 || position + bytes > buffer.length) {
+            throw new IllegalArgumentException("Truncated value, " + bytes + " more bytes expected at position "
+                    + position + " of " + buffer.length);
+        }
+    }
+}
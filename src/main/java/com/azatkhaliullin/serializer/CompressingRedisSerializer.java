@@ -0,0 +1,149 @@
+package com.azatkhaliullin.serializer;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compresses the values of another serializer with a zstd dictionary trained on such values.
+ * A compressed value is a marker byte, the four byte id of its dictionary and a magicless zstd
+ * frame, so dictionaries can be rotated: new values use the first dictionary while the others
+ * still decompress values written with them. Values that do not shrink are stored as encoded,
+ * and reads pass values without the marker to the delegate, so compression can be switched on
+ * and off at any time. The marker byte 0xFE never occurs in UTF-8 and differs from the binary
+ * codec marker.
+ */
+public class CompressingRedisSerializer<T> implements RedisSerializer<T> {
+
+    static final int MARKER = 0xFE;
+    private static final int HEADER_LENGTH = 1 + Integer.BYTES;
+
+    private final RedisSerializer<T> delegate;
+    private final Dictionary writeDictionary;
+    private final Map<Integer, Dictionary> dictionaries = new HashMap<>();
+    private final ThreadLocal<ZstdCompressCtx> compressContext;
+    private final ThreadLocal<ZstdDecompressCtx> decompressContext;
+
+    /**
+     * @param dictionaries trained dictionaries, the first one compresses new values
+     * @param compressWrites false to only decompress values written earlier
+     */
+    public CompressingRedisSerializer(RedisSerializer<T> delegate, List<byte[]> dictionaries,
+                                      boolean compressWrites, int level) {
+        this.delegate = delegate;
+        for (byte[] dictionary : dictionaries) {
+            int id = (int) Zstd.getDictIdFromDict(dictionary);
+            if (id == 0) {
+                throw new IllegalArgumentException("Not a trained zstd dictionary, it has no dictionary id");
+            }
+            if (this.dictionaries.putIfAbsent(id, new Dictionary(id, dictionary, level)) != null) {
+                throw new IllegalArgumentException("Duplicate zstd dictionary id " + Integer.toUnsignedString(id));
+            }
+        }
+        if (compressWrites && dictionaries.isEmpty()) {
+            throw new IllegalArgumentException("Value compression needs at least one dictionary");
+        }
+        this.writeDictionary = compressWrites ? this.dictionaries.get((int) Zstd.getDictIdFromDict(dictionaries.get(0))) : null;
+        this.compressContext = ThreadLocal.withInitial(() -> new ZstdCompressCtx()
+                .setLevel(level)
+                .setMagicless(true)
+                .setDictID(false)
+                .setChecksum(false)
+                .setContentSize(true)
+                .loadDict(writeDictionary.compress));
+        this.decompressContext = ThreadLocal.withInitial(() -> new ZstdDecompressCtx().setMagicless(true));
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        byte[] encoded = delegate.serialize(value);
+        if (writeDictionary == null || encoded == null || encoded.length == 0) return encoded;
+        try {
+            byte[] compressed = new byte[HEADER_LENGTH + (int) Zstd.compressBound(encoded.length)];
+            compressed[0] = (byte) MARKER;
+            writeInt(compressed, 1, writeDictionary.id);
+            int frameLength = compressContext.get().compressByteArray(compressed, HEADER_LENGTH,
+                    compressed.length - HEADER_LENGTH, encoded, 0, encoded.length);
+            int length = HEADER_LENGTH + frameLength;
+            if (length >= encoded.length) return encoded;
+            byte[] stored = new byte[length];
+            System.arraycopy(compressed, 0, stored, 0, length);
+            return stored;
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not compress value", e);
+        }
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        return delegate.deserialize(uncompressed(bytes));
+    }
+
+    /**
+     * @return the value as encoded by the delegate, decompressed if it was stored compressed
+     */
+    public byte[] uncompressed(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0 || (bytes[0] & 0xFF) != MARKER) return bytes;
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("Truncated compressed value header");
+        }
+        int id = readInt(bytes, 1);
+        Dictionary dictionary = dictionaries.get(id);
+        if (dictionary == null) {
+            throw new SerializationException("Value is compressed with unknown zstd dictionary "
+                    + Integer.toUnsignedString(id));
+        }
+        try {
+            ZstdDecompressCtx context = decompressContext.get().loadDict(dictionary.decompress);
+            long length = Zstd.getFrameContentSize(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, true);
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid compressed value size " + length);
+            }
+            byte[] encoded = new byte[(int) length];
+            context.decompressByteArray(encoded, 0, encoded.length, bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+            return encoded;
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not decompress value", e);
+        }
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return delegate.getTargetType();
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        for (int i = 0; i < Integer.BYTES; i++) {
+            target[offset + i] = (byte) (value >>> (8 * (Integer.BYTES - 1 - i)));
+        }
+    }
+
+    private static int readInt(byte[] source, int offset) {
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = (value << 8) | (source[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static final class Dictionary {
+
+        private final int id;
+        private final ZstdDictCompress compress;
+        private final ZstdDictDecompress decompress;
+
+        private Dictionary(int id, byte[] dictionary, int level) {
+            this.id = id;
+            this.compress = new ZstdDictCompress(dictionary, level);
+            this.decompress = new ZstdDictDecompress(dictionary);
+        }
+    }
+}
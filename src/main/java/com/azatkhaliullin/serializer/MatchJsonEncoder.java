@@ -0,0 +1,41 @@
+package com.azatkhaliullin.serializer;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.mapper.MatchResultMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Encodes a match exactly as the API renders it: mapped to its DTO and written with the
+ * application object mapper that HTTP responses use, so stored bytes can be sent as they are.
+ */
+@Component
+public class MatchJsonEncoder {
+
+    /**
+     * Names the keys the encoded matches are stored under; bump it whenever the rendered JSON
+     * changes, e.g. with a field added to the DTO, so that JSON stored by earlier versions is no
+     * longer served.
+     */
+    public static final int VERSION = 1;
+
+    private final MatchResultMapper matchResultMapper;
+    private final ObjectWriter writer;
+
+    public MatchJsonEncoder(MatchResultMapper matchResultMapper, ObjectMapper objectMapper) {
+        this.matchResultMapper = matchResultMapper;
+        this.writer = objectMapper.writerFor(MatchResultDto.class);
+    }
+
+    public byte[] encode(MatchResult match) {
+        try {
+            return writer.writeValueAsBytes(matchResultMapper.toDto(match));
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Could not encode match " + match.getId() + " as API JSON", e);
+        }
+    }
+}
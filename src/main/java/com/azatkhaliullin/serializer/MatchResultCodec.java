@@ -0,0 +1,76 @@
+package com.azatkhaliullin.serializer;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Version 1 layout: id as two longs, playedAt as zigzag epoch millis plus the nanos within that
+ * milli, the server endpoint as a length-prefixed UTF-8 string, then the score count and each
+ * player id as two longs followed by the zigzag score. A match with ten players takes about
+ * 200 bytes.
+ */
+public class MatchResultCodec implements ValueCodec<MatchResult> {
+
+    public static final int TAG = 1;
+    private static final int VERSION = 1;
+    private static final int NANOS_PER_MILLI = 1_000_000;
+
+    @Override
+    public Class<MatchResult> type() {
+        return MatchResult.class;
+    }
+
+    @Override
+    public int tag() {
+        return TAG;
+    }
+
+    @Override
+    public int version() {
+        return VERSION;
+    }
+
+    @Override
+    public void encode(MatchResult match, BinaryWriter writer) {
+        if (match.getId() == null || match.getPlayedAt() == null) {
+            throw new IllegalArgumentException("Match id and playedAt are required");
+        }
+        writer.writeUuid(match.getId());
+        writer.writeZigZag(match.getPlayedAt().toEpochMilli());
+        writer.writeVarInt(match.getPlayedAt().getNano() % NANOS_PER_MILLI);
+        writer.writeString(match.getServerEndpoint());
+
+        List<PlayerScore> scores = match.getScores();
+        // Count plus one, so that 0 stands for null scores
+        writer.writeVarInt(scores == null ? 0 : scores.size() + 1);
+        if (scores == null) return;
+        for (PlayerScore score : scores) {
+            writer.writeUuid(score.getPlayerId());
+            writer.writeZigZag(score.getScore());
+        }
+    }
+
+    @Override
+    public MatchResult decode(BinaryReader reader, int version) {
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported match layout version " + version);
+        }
+        MatchResult match = new MatchResult();
+        match.setId(reader.readUuid());
+        match.setPlayedAt(Instant.ofEpochMilli(reader.readZigZag()).plusNanos(reader.readVarInt()));
+        match.setServerEndpoint(reader.readString());
+
+        int count = reader.readVarInt();
+        if (count == 0) return match;
+        List<PlayerScore> scores = new ArrayList<>(count - 1);
+        for (int i = 0; i < count - 1; i++) {
+            scores.add(new PlayerScore(reader.readUuid(), (int) reader.readZigZag()));
+        }
+        match.setScores(scores);
+        return match;
+    }
+}
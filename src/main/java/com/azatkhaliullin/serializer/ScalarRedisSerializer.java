@@ -0,0 +1,44 @@
+package com.azatkhaliullin.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+
+/**
+ * Serializer of the shared template, which only carries index members, numbers and script
+ * arguments: they are written as plain JSON, e.g. a UUID as a quoted string, which keeps
+ * members identical to those written with default typing. Aggregates go through their typed
+ * serializer instead; a value encoded by one of them can still be passed here as bytes, e.g.
+ * as a script argument, and is written unchanged.
+ */
+public class ScalarRedisSerializer implements RedisSerializer<Object> {
+
+    private final ObjectMapper mapper;
+
+    public ScalarRedisSerializer(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) return null;
+        if (value instanceof byte[] encoded) return encoded;
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write " + value.getClass().getSimpleName() + " as JSON", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) return null;
+        try {
+            return mapper.readValue(bytes, Object.class);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read JSON value", e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.azatkhaliullin.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+
+/**
+ * JSON serializer for a single value type, with the reader and writer resolved once up front, so
+ * values carry no class names and reads skip polymorphic type resolution. Values written by
+ * earlier versions with default typing are wrapped as {@code ["<class>", {...}]}; they are told
+ * apart by their leading bracket and read with the legacy reader.
+ */
+public class TypedJsonRedisSerializer<T> implements RedisSerializer<T> {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte LEGACY_WRAPPER_START = '[';
+
+    private final Class<T> type;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final ObjectReader legacyReader;
+
+    public TypedJsonRedisSerializer(Class<T> type, ObjectMapper mapper, ObjectMapper legacyMapper) {
+        this.type = type;
+        this.reader = mapper.readerFor(type);
+        this.writer = mapper.writerFor(type);
+        this.legacyReader = legacyMapper.readerFor(type);
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        if (value == null) return EMPTY;
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write " + type.getSimpleName() + " as JSON", e);
+        }
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) return null;
+        try {
+            return bytes[0] == LEGACY_WRAPPER_START ? legacyReader.readValue(bytes) : reader.readValue(bytes);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read " + type.getSimpleName() + " from JSON", e);
+        }
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return type;
+    }
+}
@@ -0,0 +1,19 @@
+package com.azatkhaliullin.serializer;
+
+/**
+ * Binary encoding of one value type for {@link BinaryCodecRedisSerializer}. The tag identifies
+ * the type in the value header and must never be reused for another type; the version is bumped
+ * whenever the layout changes, and {@link #decode} keeps reading every earlier version.
+ */
+public interface ValueCodec<T> {
+
+    Class<T> type();
+
+    int tag();
+
+    int version();
+
+    void encode(T value, BinaryWriter writer);
+
+    T decode(BinaryReader reader, int version);
+}
@@ -0,0 +1,50 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Early duplicate check of incoming match ids. A Bloom filter of ids accepted by this node
+ * answers "never seen" without touching Redis; only ids it may have seen are confirmed against
+ * the ingested marker. The marker itself is set by the ingest script, which is what finally
+ * keeps a duplicate from reaching indexes and stats, also across nodes.
+ */
+@Slf4j
+@Component
+public class MatchDeduplicator {
+
+    private final MatchRepository matchRepository;
+    private final BloomFilter seen;
+    private final Counter duplicateCounter;
+
+    public MatchDeduplicator(MatchRepository matchRepository,
+                             IngestProperties ingestProperties,
+                             MeterRegistry meterRegistry) {
+        IngestProperties.Dedup properties = ingestProperties.getDedup();
+        this.matchRepository = matchRepository;
+        this.seen = new BloomFilter(properties.getExpectedInsertions(), properties.getFalsePositiveRate());
+        this.duplicateCounter = Counter.builder("stats.ingest.duplicates")
+                .description("Matches dropped on ingest because their id was already ingested")
+                .register(meterRegistry);
+        log.info("Match dedup filter: {} bits, {} hashes", seen.bitSize(), seen.hashCount());
+    }
+
+    public boolean isDuplicate(UUID matchId) {
+        if (!seen.mightContain(matchId)) return false;
+
+        boolean duplicate = matchRepository.isIngested(matchId);
+        if (duplicate) duplicateCounter.increment();
+        return duplicate;
+    }
+
+    public void markAccepted(UUID matchId) {
+        seen.put(matchId);
+    }
+}
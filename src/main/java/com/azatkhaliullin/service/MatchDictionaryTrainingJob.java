@@ -0,0 +1,60 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.property.ValueCodecProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.serializer.CompressingRedisSerializer;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Trains a zstd dictionary for match values from the most recent stored matches, as encoded
+ * before compression, and writes it to the configured file. The dictionary takes effect once
+ * listed first in the compression dictionaries and the instances are restarted.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MatchDictionaryTrainingJob implements ApplicationRunner {
+
+    private final MatchRepository matchRepository;
+    private final CompressingRedisSerializer<MatchResult> matchResultSerializer;
+    private final ValueCodecProperties valueCodecProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ValueCodecProperties.Training training = valueCodecProperties.getCompression().getTraining();
+        if (!training.isEnabled()) return;
+
+        try {
+            List<byte[]> samples = matchRepository.findRecentEncoded(training.getSampleSize()).stream()
+                    .map(matchResultSerializer::uncompressed)
+                    .toList();
+            if (samples.isEmpty()) {
+                log.info("No stored matches to train a compression dictionary on");
+                return;
+            }
+
+            int sampleBytes = samples.stream().mapToInt(sample -> sample.length).sum();
+            ZstdDictTrainer trainer = new ZstdDictTrainer(sampleBytes, training.getDictionarySize());
+            samples.forEach(trainer::addSample);
+            byte[] dictionary = trainer.trainSamples();
+
+            Path output = Path.of(training.getOutput());
+            Files.write(output, dictionary);
+            log.info("Trained compression dictionary {} of {} bytes on {} matches, written to {}",
+                    Zstd.getDictIdFromDict(dictionary), dictionary.length, samples.size(), output.toAbsolutePath());
+        } catch (Exception e) {
+            log.error("Failed to train compression dictionary for match values", e);
+        }
+    }
+}
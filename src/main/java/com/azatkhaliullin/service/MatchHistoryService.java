@@ -0,0 +1,127 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchCursor;
+import com.azatkhaliullin.domain.MatchHistoryQuery;
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.dto.MatchPageDto;
+import com.azatkhaliullin.exception.InvalidCursorException;
+import com.azatkhaliullin.mapper.MatchResultMapper;
+import com.azatkhaliullin.property.MatchHistoryProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.repository.ServerRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Pages through the match history of a player or a server, newest first. Cursors are opaque
+ * to clients and carry the playedAt and id of the match a page ends with.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MatchHistoryService {
+
+    private static final String CURSOR_SEPARATOR = ":";
+
+    private final MatchRepository matchRepository;
+    private final PlayerRepository playerRepository;
+    private final ServerRepository serverRepository;
+    private final MatchResultMapper matchResultMapper;
+    private final MatchHistoryProperties matchHistoryProperties;
+
+    public Optional<MatchPageDto> getPlayerMatches(String username, Integer limit, String before, String after,
+                                                   Long from, Long to) {
+        log.debug("Getting match history of player {}", username);
+        MatchHistoryQuery query = buildQuery(limit, before, after, from, to);
+        return playerRepository.findByUsername(username)
+                .map(player -> buildPage(query, before != null,
+                        pageQuery -> matchRepository.findPlayerHistory(player.getId(), pageQuery)));
+    }
+
+    public Optional<MatchPageDto> getServerMatches(String endpoint, Integer limit, String before, String after,
+                                                   Long from, Long to) {
+        log.debug("Getting match history of server {}", endpoint);
+        MatchHistoryQuery query = buildQuery(limit, before, after, from, to);
+        return serverRepository.findByEndpoint(endpoint)
+                .map(server -> buildPage(query, before != null,
+                        pageQuery -> matchRepository.findServerHistory(endpoint, pageQuery)));
+    }
+
+    private MatchHistoryQuery buildQuery(Integer limit, String before, String after, Long from, Long to) {
+        if (before != null && after != null) {
+            throw new InvalidCursorException("Only one of before and after can be given");
+        }
+        int pageSize = limit == null || limit < 1
+                ? matchHistoryProperties.getDefaultPageSize()
+                : Math.min(limit, matchHistoryProperties.getMaxPageSize());
+        return MatchHistoryQuery.builder()
+                .from(from == null ? 0 : toEpochMilli(from, 0))
+                .to(to == null ? Long.MAX_VALUE : toEpochMilli(to, 999))
+                .cursor(decodeCursor(before != null ? before : after))
+                .newer(after != null)
+                .limit(pageSize)
+                .build();
+    }
+
+    /**
+     * Converts a time bound in epoch seconds to milliseconds, clamping bounds too far in the past
+     * or future to fit in a long.
+     */
+    private static long toEpochMilli(long epochSecond, long milliOfSecond) {
+        try {
+            return Math.addExact(Math.multiplyExact(epochSecond, 1000), milliOfSecond);
+        } catch (ArithmeticException e) {
+            return epochSecond < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    private MatchPageDto buildPage(MatchHistoryQuery query, boolean hasNewer,
+                                   Function<MatchHistoryQuery, List<MatchResult>> finder) {
+        int pageSize = query.getLimit();
+        // One extra match tells whether another page follows in the scan direction
+        query.setLimit(pageSize + 1);
+        List<MatchResult> matches = new ArrayList<>(finder.apply(query));
+        boolean hasMore = matches.size() > pageSize;
+        if (hasMore) matches.remove(pageSize);
+        if (query.isNewer()) Collections.reverse(matches);
+
+        MatchPageDto page = MatchPageDto.builder()
+                .matches(matches.stream().map(matchResultMapper::toDto).toList())
+                .build();
+        if (matches.isEmpty()) return page;
+
+        boolean hasOlder = query.isNewer() || hasMore;
+        boolean hasNewerPage = query.isNewer() ? hasMore : hasNewer;
+        if (hasOlder) page.setNextCursor(encodeCursor(matches.get(matches.size() - 1)));
+        if (hasNewerPage) page.setPrevCursor(encodeCursor(matches.get(0)));
+        return page;
+    }
+
+    static String encodeCursor(MatchResult match) {
+        String value = match.getPlayedAt().toEpochMilli() + CURSOR_SEPARATOR + match.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static MatchCursor decodeCursor(String cursor) {
+        if (cursor == null) return null;
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(CURSOR_SEPARATOR);
+            return new MatchCursor(Long.parseLong(value.substring(0, separator)),
+                    UUID.fromString(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
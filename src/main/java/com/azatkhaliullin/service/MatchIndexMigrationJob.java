@@ -0,0 +1,48 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.property.MatchHistoryProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Converts the player and server match indexes of earlier versions, plain sets, into sorted
+ * sets scored by playedAt. Each set is deleted once copied, so an interrupted run resumes
+ * with the sets left over on the next startup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MatchIndexMigrationJob implements ApplicationRunner {
+
+    private final MatchRepository matchRepository;
+    private final MatchHistoryProperties matchHistoryProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        MatchHistoryProperties.Migration migration = matchHistoryProperties.getMigration();
+        if (!migration.isEnabled()) return;
+
+        try {
+            List<String> legacyKeys = matchRepository.findLegacyIndexKeys();
+            if (legacyKeys.isEmpty()) {
+                log.info("No legacy match indexes to migrate");
+                return;
+            }
+
+            log.info("Migrating {} legacy match indexes to sorted sets", legacyKeys.size());
+            long matches = 0;
+            for (String legacyKey : legacyKeys) {
+                matches += matchRepository.migrateLegacyIndex(legacyKey, migration.getBatchSize());
+            }
+            log.info("Migrated {} legacy match indexes with {} entries", legacyKeys.size(), matches);
+        } catch (Exception e) {
+            log.error("Failed to migrate legacy match indexes, remaining ones are retried on next startup", e);
+        }
+    }
+}
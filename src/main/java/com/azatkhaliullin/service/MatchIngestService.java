@@ -0,0 +1,218 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.dto.MatchBatchResponse;
+import com.azatkhaliullin.dto.MatchBatchResult;
+import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.exception.IngestQueueFullException;
+import com.azatkhaliullin.exception.InvalidMatchBatchException;
+import com.azatkhaliullin.mapper.MatchResultMapper;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.ServerRepository;
+import com.azatkhaliullin.util.GameConstants;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MatchIngestService {
+
+    private final ServerRepository serverRepository;
+    private final MatchResultMapper matchResultMapper;
+    private final ObjectMapper objectMapper;
+    private final IngestProperties ingestProperties;
+    private final MatchWriteBehindQueue matchWriteBehindQueue;
+    private final MatchWriteService matchWriteService;
+    private final MatchDeduplicator matchDeduplicator;
+
+    public void ingest(MatchResult match) {
+        if (matchDeduplicator.isDuplicate(match.getId())) {
+            log.debug("Skipping already ingested match {}", match.getId());
+            return;
+        }
+        if (isWriteBehind()) {
+            enqueue(match);
+        } else {
+            matchWriteService.write(match);
+        }
+        matchDeduplicator.markAccepted(match.getId());
+    }
+
+    public MatchBatchResponse ingestBatch(InputStream body) {
+        Set<String> knownServers = serverRepository.findAll().stream()
+                .map(ServerInfo::getEndpoint)
+                .collect(Collectors.toSet());
+        BatchWriter writer = new BatchWriter(ingestProperties.getBatchSize());
+
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) token = parser.nextToken();
+
+            while (token != null && token != JsonToken.END_ARRAY) {
+                JsonNode node = objectMapper.readTree(parser);
+                MatchResult match = toMatch(node);
+                if (match != null && isValid(match, knownServers)) {
+                    if (!writer.firstInBody(match) || matchDeduplicator.isDuplicate(match.getId())) {
+                        writer.duplicate();
+                    } else {
+                        writer.accept(match);
+                    }
+                } else {
+                    writer.reject();
+                }
+                token = parser.nextToken();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Malformed match batch body: {}", e.getMessage());
+            throw new InvalidMatchBatchException("Malformed match batch body", e);
+        }
+
+        MatchBatchResponse response = writer.toResponse();
+        log.debug("Ingested batch body: {} accepted, {} duplicates, {} rejected",
+                response.getAccepted(), response.getDuplicates(), response.getRejected());
+        return response;
+    }
+
+    private boolean isWriteBehind() {
+        return ingestProperties.getWriteBehind().isEnabled();
+    }
+
+    private void enqueue(MatchResult match) {
+        if (!matchWriteBehindQueue.offer(match)) {
+            log.warn("Match ingest queue is full, refusing match {}", match.getId());
+            throw new IngestQueueFullException(ingestProperties.getWriteBehind().getRetryAfter());
+        }
+    }
+
+    private MatchResult toMatch(JsonNode node) {
+        if (!node.isObject()) return null;
+        try {
+            return matchResultMapper.toDomain(objectMapper.treeToValue(node, MatchResultDto.class));
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.debug("Rejected unreadable match: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isValid(MatchResult match, Set<String> knownServers) {
+        if (match.getId() == null || match.getPlayedAt() == null || match.getScores() == null) return false;
+        if (!StringUtils.hasText(match.getServerEndpoint()) || !knownServers.contains(match.getServerEndpoint())) {
+            return false;
+        }
+        if (match.getScores().size() < GameConstants.MIN_PLAYERS) return false;
+
+        Set<UUID> players = new HashSet<>();
+        for (PlayerScore score : match.getScores()) {
+            if (score == null || score.getPlayerId() == null || !players.add(score.getPlayerId())) return false;
+            if (score.getScore() < 0 || score.getScore() > GameConstants.MAX_SCORE) return false;
+        }
+        return true;
+    }
+
+    private final class BatchWriter {
+
+        private final int batchSize;
+        private final boolean writeBehind;
+        private final List<MatchResult> pending;
+        private final List<MatchBatchResult> results = new ArrayList<>();
+        private final Set<UUID> bodyIds = new HashSet<>();
+        private int enqueued;
+        private int duplicates;
+        private int rejected;
+
+        private BatchWriter(int batchSize) {
+            this.batchSize = batchSize;
+            this.writeBehind = isWriteBehind();
+            this.pending = new ArrayList<>(writeBehind ? 0 : batchSize);
+        }
+
+        boolean firstInBody(MatchResult match) {
+            return bodyIds.add(match.getId());
+        }
+
+        void accept(MatchResult match) {
+            if (writeBehind) {
+                enqueue(match);
+                enqueued++;
+                matchDeduplicator.markAccepted(match.getId());
+            } else {
+                pending.add(match);
+            }
+            flushIfFull();
+        }
+
+        void duplicate() {
+            duplicates++;
+            flushIfFull();
+        }
+
+        void reject() {
+            rejected++;
+            flushIfFull();
+        }
+
+        void flush() {
+            if (enqueued == 0 && pending.isEmpty() && duplicates == 0 && rejected == 0) return;
+
+            int accepted = enqueued;
+            int failed = 0;
+            if (!pending.isEmpty()) {
+                try {
+                    int stored = matchWriteService.writeAll(pending);
+                    pending.forEach(match -> matchDeduplicator.markAccepted(match.getId()));
+                    // Matches ingested since the early check, e.g. by another node, are not stored again
+                    accepted += stored;
+                    duplicates += pending.size() - stored;
+                } catch (Exception e) {
+                    log.error("Failed to store batch {} of {} matches", results.size(), pending.size(), e);
+                    failed = pending.size();
+                }
+            }
+
+            results.add(MatchBatchResult.builder()
+                    .batch(results.size())
+                    .accepted(accepted)
+                    .duplicates(duplicates)
+                    .rejected(rejected + failed)
+                    .build());
+            pending.clear();
+            enqueued = 0;
+            duplicates = 0;
+            rejected = 0;
+        }
+
+        MatchBatchResponse toResponse() {
+            return MatchBatchResponse.builder()
+                    .accepted(results.stream().mapToInt(MatchBatchResult::getAccepted).sum())
+                    .duplicates(results.stream().mapToInt(MatchBatchResult::getDuplicates).sum())
+                    .rejected(results.stream().mapToInt(MatchBatchResult::getRejected).sum())
+                    .batches(results)
+                    .build();
+        }
+
+        private void flushIfFull() {
+            if (enqueued + pending.size() + duplicates + rejected >= batchSize) flush();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.MatchStreamEntry;
+import com.azatkhaliullin.domain.StreamGroupStats;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchStreamRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Consumer-group worker of the match ingest stream. Each worker reads entries as a named
+ * consumer, materialises the match keys, indexes and player stats in one pipelined batch and
+ * acknowledges the batch. Unacknowledged entries stay pending for their consumer, so a worker
+ * restarted under the same name first replays them before reading new entries; entries left
+ * idle by a consumer that does not come back are taken over by the others. A batch that keeps
+ * failing is materialised match by match after {@code max-deliveries}, and the matches that
+ * fail on their own are moved to the dead-letter stream, so that they cannot hold up the rest.
+ */
+@Slf4j
+@Component
+public class MatchStreamMaterializer implements SmartLifecycle {
+
+    // Starts after the Redis connection factory (phase 0) and player stats coalescing (phase 1),
+    // before the write-behind queue
+    private static final int PHASE = 2;
+    private static final long MIN_RETRY_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_RETRY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final MatchWriteService matchWriteService;
+    private final MatchStreamRepository matchStreamRepository;
+    private final IngestProperties.Stream properties;
+
+    private final Counter materialisedCounter;
+    private final Counter unreadableCounter;
+    private final Counter duplicateCounter;
+    private final Counter claimedCounter;
+    private final Counter deadLetteredCounter;
+    private final MultiGauge lagGauge;
+    private final MultiGauge pendingGauge;
+
+    private volatile boolean running;
+    private ExecutorService workers;
+
+    public MatchStreamMaterializer(MatchWriteService matchWriteService,
+                                   MatchStreamRepository matchStreamRepository,
+                                   IngestProperties ingestProperties,
+                                   MeterRegistry meterRegistry) {
+        this.matchWriteService = matchWriteService;
+        this.matchStreamRepository = matchStreamRepository;
+        this.properties = ingestProperties.getStream();
+
+        this.materialisedCounter = Counter.builder("stats.ingest.stream.materialised")
+                .description("Stream entries materialised and acknowledged")
+                .register(meterRegistry);
+        this.unreadableCounter = Counter.builder("stats.ingest.stream.unreadable")
+                .description("Stream entries acknowledged without a readable match")
+                .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("stats.ingest.stream.duplicates")
+                .description("Stream entries acknowledged without writes because the match was already ingested")
+                .register(meterRegistry);
+        this.claimedCounter = Counter.builder("stats.ingest.stream.claimed")
+                .description("Stream entries taken over from idle consumers")
+                .register(meterRegistry);
+        this.deadLetteredCounter = Counter.builder("stats.ingest.stream.dead-lettered")
+                .description("Stream entries acknowledged and moved to the dead-letter stream after their last delivery")
+                .register(meterRegistry);
+        this.lagGauge = MultiGauge.builder("stats.ingest.stream.lag")
+                .description("Stream entries not yet delivered to the consumer group")
+                .register(meterRegistry);
+        this.pendingGauge = MultiGauge.builder("stats.ingest.stream.pending")
+                .description("Stream entries delivered to the consumer group but not acknowledged")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || running) return;
+
+        running = true;
+        workers = Executors.newFixedThreadPool(properties.getWorkers(), new CustomizableThreadFactory("match-materializer-"));
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            String consumer = properties.getConsumer() + "-" + i;
+            workers.execute(() -> consume(consumer));
+        }
+        log.info("Started {} match stream materializers in group {}", properties.getWorkers(), properties.getGroup());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.error("Match stream materializers did not finish in {}s", SHUTDOWN_TIMEOUT_SECONDS);
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+        log.info("Stopped match stream materializers");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.ingest.stream.lag-refresh}")
+    public void refreshLag() {
+        if (!properties.isEnabled()) return;
+
+        List<StreamGroupStats> groups = matchStreamRepository.findGroupStats();
+        lagGauge.register(groups.stream()
+                .map(group -> MultiGauge.Row.of(Tags.of("group", group.getGroup()), group.getLag()))
+                .toList(), true);
+        pendingGauge.register(groups.stream()
+                .map(group -> MultiGauge.Row.of(Tags.of("group", group.getGroup()), group.getPending()))
+                .toList(), true);
+    }
+
+    /**
+     * Reads and materialises one batch for the consumer.
+     *
+     * @return false when there was nothing to read
+     */
+    boolean consumeBatch(String consumer, boolean pending) {
+        List<MatchStreamEntry> entries = matchStreamRepository.read(properties.getGroup(), consumer,
+                properties.getReadCount(), properties.getBlock(), pending);
+        if (entries.isEmpty()) return false;
+
+        List<MatchResult> matches = new ArrayList<>(entries.size());
+        List<String> ids = new ArrayList<>(entries.size());
+        for (MatchStreamEntry entry : entries) {
+            ids.add(entry.getId());
+            if (entry.getMatch() != null) matches.add(entry.getMatch());
+        }
+
+        int stored;
+        List<MatchResult> deadLetters = new ArrayList<>();
+        try {
+            stored = matchWriteService.materialiseAll(matches);
+        } catch (Exception e) {
+            long deliveries = matchStreamRepository.findDeliveries(properties.getGroup(), consumer, ids).values()
+                    .stream().mapToLong(Long::longValue).max().orElse(0);
+            if (deliveries < properties.getMaxDeliveries()) throw e;
+            log.error("Consumer {} failed to materialise {} stream entries delivered {} times, "
+                    + "materialising them one by one", consumer, ids.size(), deliveries, e);
+            stored = materialiseEach(matches, deadLetters);
+        }
+        matchStreamRepository.acknowledge(properties.getGroup(), ids);
+
+        materialisedCounter.increment(stored);
+        deadLetteredCounter.increment(deadLetters.size());
+        duplicateCounter.increment(matches.size() - stored - deadLetters.size());
+        unreadableCounter.increment(ids.size() - matches.size());
+        log.debug("Consumer {} materialised {} stream entries", consumer, ids.size());
+        return true;
+    }
+
+    /**
+     * Takes over the entries other consumers of the group have left unacknowledged for longer
+     * than {@code claim-idle}.
+     *
+     * @return true if entries were taken over, to be read as pending entries of the consumer
+     */
+    boolean claimIdle(String consumer) {
+        List<String> claimed = matchStreamRepository.claimIdle(properties.getGroup(), consumer,
+                properties.getClaimIdle(), properties.getReadCount());
+        if (claimed.isEmpty()) return false;
+
+        claimedCounter.increment(claimed.size());
+        log.warn("Consumer {} took over {} stream entries left idle by other consumers", consumer, claimed.size());
+        return true;
+    }
+
+    /**
+     * Materialises the matches one at a time and moves those failing on their own to the
+     * dead-letter stream.
+     *
+     * @param deadLetters receives the matches moved to the dead-letter stream
+     * @return matches stored
+     */
+    private int materialiseEach(List<MatchResult> matches, List<MatchResult> deadLetters) {
+        int stored = 0;
+        for (MatchResult match : matches) {
+            try {
+                stored += matchWriteService.materialiseAll(List.of(match));
+            } catch (Exception e) {
+                log.error("Failed to materialise match {}, moving it to dead letters", match.getId(), e);
+                matchStreamRepository.appendDeadLetters(List.of(match), e.toString());
+                deadLetters.add(match);
+            }
+        }
+        return stored;
+    }
+
+    private void consume(String consumer) {
+        // Replay entries left pending by a previous run of this consumer before reading new ones
+        boolean pending = true;
+        boolean groupCreated = false;
+        int failures = 0;
+        long nextClaim = System.nanoTime();
+        while (running) {
+            try {
+                if (!groupCreated) {
+                    matchStreamRepository.createGroup(properties.getGroup());
+                    groupCreated = true;
+                }
+                if (System.nanoTime() - nextClaim >= 0) {
+                    nextClaim = System.nanoTime() + properties.getClaimIdle().toNanos();
+                    if (claimIdle(consumer)) pending = true;
+                }
+                boolean consumed = consumeBatch(consumer, pending);
+                if (!consumed && pending) {
+                    log.info("Consumer {} caught up with its pending entries", consumer);
+                    pending = false;
+                }
+                failures = 0;
+            } catch (Exception e) {
+                failures++;
+                if (!running) break;
+                log.error("Consumer {} failed to materialise stream entries, attempt {}", consumer, failures, e);
+                // Failed entries are pending now, pick them up again on the next read;
+                // the group itself is gone if the stream was deleted meanwhile
+                pending = true;
+                groupCreated = false;
+                LockSupport.parkNanos(Math.min(MAX_RETRY_BACKOFF_NANOS,
+                        MIN_RETRY_BACKOFF_NANOS << Math.min(failures, 16)));
+            }
+        }
+        log.debug("Consumer {} stopped", consumer);
+    }
+}
@@ -0,0 +1,225 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.exception.IngestUnavailableException;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchStreamRepository;
+import com.azatkhaliullin.util.RingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind stage between match ingest and Redis. Producers put matches into a bounded
+ * {@link RingBuffer}; drainer threads group them into batches flushed once {@code max-batch-size}
+ * matches are collected or the oldest one has waited {@code max-delay}. A batch still failing
+ * after {@code max-attempts} is moved to the dead-letter stream, so that it cannot hold up the
+ * matches behind it.
+ */
+@Slf4j
+@Component
+public class MatchWriteBehindQueue implements SmartLifecycle {
+
+    // Starts after the Redis connection factory (phase 0), player stats coalescing (phase 1) and
+    // the stream materializer (phase 2) and stops after the web server, so that no producer is
+    // left when the last batch is flushed.
+    private static final int PHASE = 3;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    // Longest wait of an idle drainer, after which it checks whether it should stop
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RETRY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final MatchWriteService matchWriteService;
+    private final MatchStreamRepository matchStreamRepository;
+    private final IngestProperties.WriteBehind properties;
+    private final RingBuffer<MatchResult> buffer;
+
+    private final Counter rejectedCounter;
+    private final Counter droppedCounter;
+    private final Counter deadLetteredCounter;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private ExecutorService drainers;
+
+    public MatchWriteBehindQueue(MatchWriteService matchWriteService,
+                                 MatchStreamRepository matchStreamRepository,
+                                 IngestProperties ingestProperties,
+                                 MeterRegistry meterRegistry) {
+        this.matchWriteService = matchWriteService;
+        this.matchStreamRepository = matchStreamRepository;
+        this.properties = ingestProperties.getWriteBehind();
+        this.buffer = new RingBuffer<>(properties.getCapacity());
+
+        Gauge.builder("stats.ingest.queue.depth", buffer, RingBuffer::size)
+                .description("Matches waiting in the write-behind queue")
+                .register(meterRegistry);
+        Gauge.builder("stats.ingest.queue.capacity", buffer, RingBuffer::capacity)
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("stats.ingest.queue.rejected")
+                .description("Matches refused because the write-behind queue was full")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("stats.ingest.queue.dropped")
+                .description("Matches lost because their batch could neither be stored nor dead-lettered")
+                .register(meterRegistry);
+        this.deadLetteredCounter = Counter.builder("stats.ingest.queue.dead-lettered")
+                .description("Matches moved to the dead-letter stream after their batch ran out of attempts")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("stats.ingest.batch.size")
+                .description("Matches per flushed batch")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("stats.ingest.flush.latency")
+                .description("Time to store one batch, including retries")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return false if the queue stayed full for {@code offer-timeout}
+     * @throws IngestUnavailableException if the queue is not running, e.g. while shutting down
+     */
+    public boolean offer(MatchResult match) {
+        if (!running) throw new IngestUnavailableException();
+
+        long deadline = System.nanoTime() + properties.getOfferTimeout().toNanos();
+        while (!buffer.offer(match)) {
+            if (System.nanoTime() - deadline >= 0) {
+                rejectedCounter.increment();
+                return false;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    public int depth() {
+        return buffer.size();
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || running) return;
+
+        running = true;
+        drainers = Executors.newFixedThreadPool(properties.getDrainers(), new CustomizableThreadFactory("match-drainer-"));
+        for (int i = 0; i < properties.getDrainers(); i++) {
+            drainers.execute(this::drain);
+        }
+        log.info("Started {} match write-behind drainers, queue capacity {}",
+                properties.getDrainers(), buffer.capacity());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+
+        running = false;
+        drainers.shutdown();
+        try {
+            if (!drainers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.error("Match drainers did not finish in {}s, {} matches left in queue",
+                        SHUTDOWN_TIMEOUT_SECONDS, buffer.size());
+                drainers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drainers.shutdownNow();
+        }
+        log.info("Stopped match write-behind drainers");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void drain() {
+        int maxBatchSize = properties.getMaxBatchSize();
+        long maxDelayNanos = properties.getMaxDelay().toNanos();
+        List<MatchResult> batch = new ArrayList<>(maxBatchSize);
+        long oldestAt = 0;
+
+        while (running || !buffer.isEmpty() || !batch.isEmpty()) {
+            int drained = buffer.drainTo(batch, maxBatchSize - batch.size());
+            if (drained == 0 && running) {
+                // Nothing queued: wait for the next match, at most until the batch is due
+                long waitNanos = batch.isEmpty() ? IDLE_WAIT_NANOS : oldestAt + maxDelayNanos - System.nanoTime();
+                MatchResult next = waitNanos > 0 ? awaitNext(waitNanos) : null;
+                if (next != null) {
+                    batch.add(next);
+                    drained = 1;
+                }
+            }
+            if (drained > 0 && oldestAt == 0) oldestAt = System.nanoTime();
+
+            boolean full = batch.size() >= maxBatchSize;
+            boolean due = !batch.isEmpty() && (System.nanoTime() - oldestAt >= maxDelayNanos || !running);
+            if (full || due) {
+                flush(batch);
+                batch.clear();
+                oldestAt = 0;
+            }
+        }
+    }
+
+    private MatchResult awaitNext(long waitNanos) {
+        try {
+            return buffer.poll(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void flush(List<MatchResult> batch) {
+        long start = System.nanoTime();
+        int maxAttempts = Math.max(1, properties.getMaxAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                matchWriteService.writeAll(batch);
+                batchSizeSummary.record(batch.size());
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !running) {
+                    log.error("Failed to store batch of {} matches in {} attempts, moving it to dead letters",
+                            batch.size(), attempt, e);
+                    deadLetter(batch, e);
+                    return;
+                }
+                log.warn("Failed to store batch of {} matches, attempt {} of {}: {}",
+                        batch.size(), attempt, maxAttempts, e.getMessage());
+                LockSupport.parkNanos(Math.min(MAX_RETRY_BACKOFF_NANOS, IDLE_PARK_NANOS << Math.min(attempt, 16)));
+            }
+        }
+    }
+
+    private void deadLetter(List<MatchResult> batch, Exception cause) {
+        try {
+            matchStreamRepository.appendDeadLetters(batch, cause.toString());
+            deadLetteredCounter.increment(batch.size());
+        } catch (Exception e) {
+            log.error("Dropping {} matches, failed to store them and to dead-letter them", batch.size(), e);
+            droppedCounter.increment(batch.size());
+        }
+    }
+}
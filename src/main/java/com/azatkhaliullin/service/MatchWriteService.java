@@ -0,0 +1,60 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.MatchStreamRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Final step of the ingest path: appends matches to the ingest stream when it is enabled,
+ * leaving indexes and stats to {@link MatchStreamMaterializer}, or materialises them inline.
+ */
+@Service
+@RequiredArgsConstructor
+public class MatchWriteService {
+
+    private final MatchRepository matchRepository;
+    private final MatchStreamRepository matchStreamRepository;
+    private final PlayerStatsUpdateService playerStatsUpdateService;
+    private final IngestProperties ingestProperties;
+
+    public void write(MatchResult match) {
+        if (ingestProperties.getStream().isEnabled()) {
+            matchStreamRepository.appendAll(List.of(match));
+        } else if (matchRepository.ingest(match) && ingestProperties.getStatsCoalescing().isEnabled()) {
+            playerStatsUpdateService.updatePlayerStats(match);
+        }
+    }
+
+    /**
+     * Writes a batch of matches. Appended matches all count as written, their duplicates are
+     * only found and dropped once the stream is materialised.
+     *
+     * @return number of matches appended or stored
+     */
+    public int writeAll(List<MatchResult> matches) {
+        if (ingestProperties.getStream().isEnabled()) {
+            matchStreamRepository.appendAll(matches);
+            return matches.size();
+        }
+        return materialiseAll(matches);
+    }
+
+    /**
+     * Stores matches with their indexes and player stats, skipping already ingested ones.
+     *
+     * @return number of matches stored
+     */
+    public int materialiseAll(List<MatchResult> matches) {
+        List<MatchResult> stored = matchRepository.ingestAll(matches);
+        // Without coalescing the ingest script has already merged the stats
+        if (ingestProperties.getStatsCoalescing().isEnabled()) {
+            stored.forEach(playerStatsUpdateService::updatePlayerStats);
+        }
+        return stored.size();
+    }
+}
@@ -0,0 +1,54 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.property.LeaderboardProperties;
+import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.repository.StartupJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Puts every player into the rating leaderboard with the rating of their current stats, in
+ * batches. Ratings are recomputed inside Redis from the stats as they are at that moment, so
+ * the job can run while matches are being ingested and can be repeated safely. It runs on the
+ * first node to claim it and is not run again once it has completed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PlayerRatingRebuildJob implements ApplicationRunner {
+
+    static final String JOB = "rating-rebuild";
+
+    private final PlayerRepository playerRepository;
+    private final StartupJobRepository startupJobRepository;
+    private final LeaderboardProperties leaderboardProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        LeaderboardProperties.Rebuild rebuild = leaderboardProperties.getRebuild();
+        if (!rebuild.isEnabled()) return;
+
+        try {
+            if (!startupJobRepository.claim(JOB)) {
+                log.info("Rating leaderboard already rebuilt or being rebuilt by another node");
+                return;
+            }
+
+            List<Player> players = playerRepository.findAll();
+            log.info("Rebuilding the rating leaderboard for {} players", players.size());
+            for (int from = 0; from < players.size(); from += rebuild.getBatchSize()) {
+                playerRepository.rebuildRatings(players.subList(from, Math.min(from + rebuild.getBatchSize(), players.size())));
+            }
+            startupJobRepository.complete(JOB);
+            log.info("Rebuilt the rating leaderboard for {} players", players.size());
+        } catch (Exception e) {
+            log.error("Failed to rebuild the rating leaderboard, it is rebuilt again on a startup once the claim expires", e);
+        }
+    }
+}
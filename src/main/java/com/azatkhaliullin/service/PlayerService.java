@@ -1,14 +1,27 @@
 package com.azatkhaliullin.service;
 
-import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.LeaderboardEntry;
+import com.azatkhaliullin.domain.LeaderboardSegment;
+import com.azatkhaliullin.domain.LeaderboardWindow;
+import com.azatkhaliullin.domain.PlayerRank;
+import com.azatkhaliullin.domain.RatedPlayer;
+import com.azatkhaliullin.dto.LeaderboardEntryDto;
+import com.azatkhaliullin.dto.LeaderboardSegmentsDto;
+import com.azatkhaliullin.dto.PlayerRankDto;
 import com.azatkhaliullin.dto.PlayerStatsDto;
-import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
+import com.azatkhaliullin.exception.InvalidLeaderboardSegmentException;
+import com.azatkhaliullin.property.LeaderboardProperties;
+import com.azatkhaliullin.repository.LeaderboardRepository;
 import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.repository.ScoreHistogramRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Comparator;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,28 +31,129 @@ import java.util.Optional;
 public class PlayerService {
 
     private final StatsService statsService;
-    private final MatchRepository matchRepository;
     private final PlayerRepository playerRepository;
+    private final LeaderboardRepository leaderboardRepository;
+    private final PlayerStatsVerifier playerStatsVerifier;
+    private final LeaderboardProperties leaderboardProperties;
+    private final ScoreHistogramRepository scoreHistogramRepository;
 
+    /**
+     * Reads the stats the ingest path maintains for the player instead of aggregating their
+     * match history, so the cost does not grow with the number of matches played.
+     */
     public Optional<PlayerStatsDto> getPlayerStats(String username) {
         log.debug("Getting player stats for username: {}", username);
         return playerRepository.findByUsername(username)
                 .map(player -> {
-                    List<MatchResult> matches = matchRepository.findByPlayerId(player.getId());
-                    return statsService.calculatePlayerStats(player, matches);
+                    PlayerStatsDto stats = statsService.buildPlayerStats(
+                            player.getUsername(), playerRepository.findPlayerStats(player.getId()));
+                    playerStatsVerifier.verifySampled(player, stats);
+                    return stats;
                 });
     }
 
-    public List<PlayerStatsDto> getBestPlayers(int count) {
-        log.debug("Getting top {} players", count);
-        return playerRepository.findAll().parallelStream()
-                .map(player -> {
-                    List<MatchResult> matches = matchRepository.findByPlayerId(player.getId());
-                    return statsService.calculatePlayerStats(player, matches);
-                })
-                .filter(stats -> stats.getTotalMatches() > 0)
-                .sorted(Comparator.comparing(PlayerStatsDto::getRating).reversed())
-                .limit(count)
+    /**
+     * Reads the score histogram ingest maintains for the player, so the cost does not grow
+     * with the number of matches played.
+     */
+    public Optional<ScoreDistributionDto> getScoreDistribution(String username) {
+        log.debug("Getting score distribution for username: {}", username);
+        return playerRepository.findByUsername(username)
+                .map(player -> statsService.buildScoreDistribution(scoreHistogramRepository.findByPlayer(player.getId())));
+    }
+
+    /**
+     * Reads the rank and the neighbours of the player from the rating leaderboard, so the cost
+     * depends on the number of neighbours only.
+     *
+     * @param neighbours players to list on each side, null for the configured default
+     * @return empty for an unknown player or one without a rating yet
+     */
+    public Optional<PlayerRankDto> getPlayerRank(String username, Integer neighbours) {
+        LeaderboardProperties.Rank properties = leaderboardProperties.getRank();
+        int window = neighbours == null
+                ? properties.getDefaultNeighbours()
+                : Math.min(Math.max(0, neighbours), properties.getMaxNeighbours());
+        log.debug("Getting rank of player {} with {} neighbours", username, window);
+        return playerRepository.findRank(username, window)
+                .map(rank -> buildPlayerRank(username, rank));
+    }
+
+    /**
+     * Reads the players from the rating leaderboard, from the leaderboard of the window or
+     * from the leaderboard of the segment, all kept up to date at ingest, so the cost depends
+     * on the count only.
+     *
+     * @param segment players to rank, null for all of them; segments are all-time only
+     */
+    public List<PlayerStatsDto> getBestPlayers(int count, LeaderboardWindow window, LeaderboardSegment segment) {
+        if (segment != null && window != LeaderboardWindow.ALL) {
+            throw new InvalidLeaderboardSegmentException(
+                    "Segment leaderboards are kept for the all window only, not for: " + window.getValue());
+        }
+        List<RatedPlayer> players;
+        if (segment != null) {
+            log.debug("Getting top {} players of the {} leaderboard", count, segment.getName());
+            players = segment.getType() == LeaderboardSegment.Type.SERVER
+                    ? leaderboardRepository.findTopOnServer(segment.getValue(), count)
+                    : playerRepository.findTopRated(knownSegment(segment), count);
+        } else {
+            log.debug("Getting top {} players of the {} leaderboard", count, window.getValue());
+            players = window == LeaderboardWindow.ALL
+                    ? playerRepository.findTopRated(count)
+                    : leaderboardRepository.findTop(window, LocalDate.now(ZoneOffset.UTC), count);
+        }
+        return players.stream()
+                .map(player -> statsService.buildPlayerStats(player.getUsername(), player.getStats()))
+                .toList();
+    }
+
+    /**
+     * @return configured countries and level bands, and the servers matches were ingested for
+     */
+    public LeaderboardSegmentsDto getLeaderboardSegments() {
+        LeaderboardProperties.Segments segments = leaderboardProperties.getSegments();
+        List<String> countries = new ArrayList<>(segments.getCountries());
+        countries.add(LeaderboardSegment.OTHER_COUNTRY);
+        List<String> servers = leaderboardRepository.findSegments().stream()
+                .filter(segment -> segment.getType() == LeaderboardSegment.Type.SERVER)
+                .map(LeaderboardSegment::getValue)
+                .sorted()
                 .toList();
+        return new LeaderboardSegmentsDto(countries, LeaderboardSegment.levelBands(segments.getLevelBands()), servers);
+    }
+
+    private PlayerRankDto buildPlayerRank(String username, PlayerRank rank) {
+        List<LeaderboardEntryDto> neighbours = rank.getNeighbourhood().stream()
+                .map(entry -> new LeaderboardEntryDto(entry.getRank(), entry.getUsername(), entry.getRating()))
+                .toList();
+        double rating = rank.getNeighbourhood().stream()
+                .filter(entry -> entry.getRank() == rank.getRank())
+                .mapToDouble(LeaderboardEntry::getRating)
+                .findFirst()
+                .orElse(0);
+        double percentile = 100.0 * (rank.getRankedPlayers() - rank.getRank() + 1) / rank.getRankedPlayers();
+        return new PlayerRankDto(username, rank.getRank(), rank.getRankedPlayers(),
+                StatsService.roundToTwoDecimals(percentile), rating, neighbours);
+    }
+
+    /**
+     * @return the segment with the country spelled as configured
+     * @throws InvalidLeaderboardSegmentException for a country or level band without a leaderboard
+     */
+    private LeaderboardSegment knownSegment(LeaderboardSegment segment) {
+        LeaderboardProperties.Segments segments = leaderboardProperties.getSegments();
+        if (segment.getType() == LeaderboardSegment.Type.COUNTRY) {
+            LeaderboardSegment country = LeaderboardSegment.country(segment.getValue(), segments.getCountries());
+            if (country.getValue().equals(LeaderboardSegment.OTHER_COUNTRY)
+                    && !segment.getValue().equalsIgnoreCase(LeaderboardSegment.OTHER_COUNTRY)) {
+                throw new InvalidLeaderboardSegmentException("Unknown country: " + segment.getValue());
+            }
+            return country;
+        }
+        if (!LeaderboardSegment.levelBands(segments.getLevelBands()).contains(segment.getValue())) {
+            throw new InvalidLeaderboardSegmentException("Unknown level band: " + segment.getValue());
+        }
+        return segment;
     }
 }
@@ -2,52 +2,254 @@ package com.azatkhaliullin.service;
 
 import com.azatkhaliullin.domain.MatchResult;
 import com.azatkhaliullin.domain.PlayerScore;
-import com.azatkhaliullin.domain.PlayerStats;
+import com.azatkhaliullin.domain.PlayerStatsDelta;
+import com.azatkhaliullin.property.IngestProperties;
 import com.azatkhaliullin.repository.PlayerRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
-import static com.azatkhaliullin.service.StatsService.roundToTwoDecimals;
-import static com.azatkhaliullin.util.GameConstants.DEFAULT_AVERAGE_SCORE;
-
+/**
+ * Merges the scores of stored matches into player stats. With coalescing enabled, scores are
+ * folded into per-player deltas held in a striped map and merged in one pipelined batch once
+ * the max staleness elapses or enough updates are pending, so a player appearing in many
+ * matches costs one write per flush instead of one per match. Pending deltas are drained on
+ * shutdown; updates arriving while coalescing is not running are merged directly.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
-public class PlayerStatsUpdateService {
+public class PlayerStatsUpdateService implements SmartLifecycle {
+
+    // Stops after the stream materializer (phase 2) and write-behind queue (phase 3), which
+    // produce the updates, and before the Redis connection factory (phase 0)
+    private static final int PHASE = 1;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
 
     private final PlayerRepository playerRepository;
+    private final IngestProperties.StatsCoalescing properties;
+    private final Stripe[] stripes;
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final DistributionSummary flushSize;
+    private final Timer flushLatency;
+
+    private volatile boolean running;
+    private ScheduledExecutorService flusher;
+
+    public PlayerStatsUpdateService(PlayerRepository playerRepository,
+                                    IngestProperties ingestProperties,
+                                    MeterRegistry meterRegistry) {
+        this.playerRepository = playerRepository;
+        this.properties = ingestProperties.getStatsCoalescing();
+        this.stripes = new Stripe[Math.max(1, properties.getStripes())];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+
+        Gauge.builder("stats.coalescing.pending", pendingUpdates, AtomicInteger::get)
+                .description("Player score updates coalesced but not yet merged into Redis")
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("stats.coalescing.flush.size")
+                .description("Players merged per coalesced flush")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("stats.coalescing.flush.latency")
+                .description("Time to merge one coalesced flush into Redis")
+                .register(meterRegistry);
+    }
 
     public void updatePlayerStats(MatchResult match) {
-        match.getScores().forEach(this::updateSinglePlayerStats);
-        log.debug("Successfully updated player stats for match: {}", match.getId());
+        List<PlayerScore> direct = coalesce(match.getScores());
+        if (direct.isEmpty()) return;
+        try {
+            playerRepository.mergeScores(direct);
+            log.debug("Successfully updated player stats for match: {}", match.getId());
+        } catch (Exception e) {
+            log.error("Failed to update player stats for match: {}", match.getId(), e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || running) return;
+
+        long interval = properties.getMaxStaleness().toMillis();
+        flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("player-stats-flusher-"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        running = true;
+        log.info("Started player stats coalescing with {} stripes, max staleness {}",
+                stripes.length, properties.getMaxStaleness());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+
+        running = false;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            flusher.shutdownNow();
+        }
+        // Updates racing with the stop either landed in a stripe before this drain or were merged directly
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Lost {} coalesced player score updates on shutdown", pendingUpdates.get(), e);
+        }
+        log.info("Stopped player stats coalescing");
     }
 
-    private void updateSinglePlayerStats(PlayerScore score) {
-        UUID playerId = score.getPlayerId();
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Merges all pending deltas into Redis. Deltas of a failed flush are put back and retried
+     * by the next one.
+     */
+    void flush() {
+        flushLock.lock();
         try {
-            PlayerStats currentStats = playerRepository.findPlayerStats(playerId);
-            PlayerStats updatedStats = mergeStats(currentStats, score);
+            flushRequested.set(false);
+            List<PlayerStatsDelta> deltas = new ArrayList<>();
+            int updates = 0;
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    deltas.addAll(stripe.deltas.values());
+                    updates += stripe.updates;
+                    stripe.deltas = new HashMap<>();
+                    stripe.updates = 0;
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            if (deltas.isEmpty()) return;
+
+            try {
+                flushLatency.record(() -> playerRepository.mergeDeltas(deltas));
+                pendingUpdates.addAndGet(-updates);
+                flushSize.record(deltas.size());
+            } catch (Exception e) {
+                deltas.forEach(this::restore);
+                throw e;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return scores that could not be coalesced because coalescing is not running
+     */
+    private List<PlayerScore> coalesce(List<PlayerScore> scores) {
+        if (!running) return scores;
 
-            playerRepository.updatePlayerStats(playerId, updatedStats);
+        List<PlayerScore> direct = new ArrayList<>(0);
+        int coalesced = 0;
+        for (PlayerScore score : scores) {
+            Stripe stripe = stripeOf(score.getPlayerId());
+            stripe.lock.lock();
+            try {
+                // Checked under the stripe lock so the shutdown drain cannot miss this update
+                if (!running) {
+                    direct.add(score);
+                    continue;
+                }
+                stripe.deltas.compute(score.getPlayerId(), (playerId, delta) -> delta == null
+                        ? new PlayerStatsDelta(playerId, 1, score.getScore(), score.getScore(), score.getScore())
+                        : add(delta, score));
+                stripe.updates++;
+                coalesced++;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        if (coalesced > 0 && pendingUpdates.addAndGet(coalesced) >= properties.getMaxPendingUpdates()
+                && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                log.debug("Coalescing is stopping, pending updates are left to the shutdown drain");
+            }
+        }
+        return direct;
+    }
 
-            log.debug("Updated stats for player {}", playerId);
+    private void restore(PlayerStatsDelta failed) {
+        Stripe stripe = stripeOf(failed.getPlayerId());
+        stripe.lock.lock();
+        try {
+            stripe.deltas.merge(failed.getPlayerId(), failed, PlayerStatsUpdateService::merge);
+            stripe.updates += failed.getMatches();
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
         } catch (Exception e) {
-            log.error("Failed to update stats for player {}", playerId, e);
-            throw e;
+            log.error("Failed to flush coalesced player stats, {} updates pending", pendingUpdates.get(), e);
         }
     }
 
-    private PlayerStats mergeStats(PlayerStats current, PlayerScore newScore) {
-        int totalMatches = current.getTotalMatches() + 1;
-        int totalScore = current.getTotalScore() + newScore.getScore();
-        int bestScore = Math.max(current.getBestScore(), newScore.getScore());
-        int worstScore = Math.min(current.getWorstScore(), newScore.getScore());
-        double averageScore = roundToTwoDecimals(
-                totalMatches > 0 ? (double) totalScore / totalMatches : DEFAULT_AVERAGE_SCORE);
+    private Stripe stripeOf(UUID playerId) {
+        return stripes[Math.floorMod(playerId.hashCode(), stripes.length)];
+    }
+
+    private static PlayerStatsDelta add(PlayerStatsDelta delta, PlayerScore score) {
+        delta.setMatches(delta.getMatches() + 1);
+        delta.setTotalScore(delta.getTotalScore() + score.getScore());
+        delta.setBestScore(Math.max(delta.getBestScore(), score.getScore()));
+        delta.setWorstScore(Math.min(delta.getWorstScore(), score.getScore()));
+        return delta;
+    }
+
+    private static PlayerStatsDelta merge(PlayerStatsDelta delta, PlayerStatsDelta other) {
+        delta.setMatches(delta.getMatches() + other.getMatches());
+        delta.setTotalScore(delta.getTotalScore() + other.getTotalScore());
+        delta.setBestScore(Math.max(delta.getBestScore(), other.getBestScore()));
+        delta.setWorstScore(Math.min(delta.getWorstScore(), other.getWorstScore()));
+        return delta;
+    }
+
+    private static final class Stripe {
 
-        return new PlayerStats(totalMatches, totalScore, bestScore, worstScore, averageScore);
+        private final ReentrantLock lock = new ReentrantLock();
+        private Map<UUID, PlayerStatsDelta> deltas = new HashMap<>();
+        private int updates;
     }
 }
@@ -0,0 +1,67 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.dto.PlayerStatsDto;
+import com.azatkhaliullin.property.PlayerStatsProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares a sample of served player stats with stats recomputed from the player's full match
+ * history, to catch drift of the maintained aggregate. A match that is still queued or not yet
+ * materialised is missing from the history but may already be merged into the stats, so a
+ * single mismatch under load is not necessarily drift; a steadily growing count is.
+ */
+@Slf4j
+@Component
+public class PlayerStatsVerifier {
+
+    private final StatsService statsService;
+    private final MatchRepository matchRepository;
+    private final PlayerStatsProperties playerStatsProperties;
+    private final Counter verifiedCounter;
+    private final Counter mismatchCounter;
+
+    public PlayerStatsVerifier(StatsService statsService,
+                               MatchRepository matchRepository,
+                               PlayerStatsProperties playerStatsProperties,
+                               MeterRegistry meterRegistry) {
+        this.statsService = statsService;
+        this.matchRepository = matchRepository;
+        this.playerStatsProperties = playerStatsProperties;
+        this.verifiedCounter = Counter.builder("stats.player-stats.verified")
+                .description("Served player stats compared with stats recomputed from match history")
+                .register(meterRegistry);
+        this.mismatchCounter = Counter.builder("stats.player-stats.mismatches")
+                .description("Served player stats that differed from stats recomputed from match history")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Recomputes the stats of a sampled share of calls; never fails the request it verifies.
+     */
+    public void verifySampled(Player player, PlayerStatsDto served) {
+        PlayerStatsProperties.Verification verification = playerStatsProperties.getVerification();
+        if (!verification.isEnabled() || ThreadLocalRandom.current().nextDouble() >= verification.getSampleRate()) {
+            return;
+        }
+
+        try {
+            PlayerStatsDto recomputed = statsService.calculatePlayerStats(
+                    player, matchRepository.findByPlayerId(player.getId()));
+            verifiedCounter.increment();
+            if (!recomputed.equals(served)) {
+                mismatchCounter.increment();
+                log.warn("Stats of player {} differ from their match history, served: {}, recomputed: {}",
+                        player.getId(), served, recomputed);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to verify stats of player: {}", player.getId(), e);
+        }
+    }
+}
@@ -4,7 +4,6 @@ import com.azatkhaliullin.domain.MatchResult;
 import com.azatkhaliullin.domain.Player;
 import com.azatkhaliullin.domain.PlayerScore;
 import com.azatkhaliullin.domain.ServerInfo;
-import com.azatkhaliullin.repository.MatchRepository;
 import com.azatkhaliullin.repository.PlayerRepository;
 import com.azatkhaliullin.repository.ServerRepository;
 import com.azatkhaliullin.util.GameConstants;
@@ -24,10 +23,9 @@ import java.util.UUID;
 public class RandomMatchScheduler {
 
     private final Random random = new Random();
-    private final MatchRepository matchRepository;
+    private final MatchIngestService matchIngestService;
     private final PlayerRepository playerRepository;
     private final ServerRepository serverRepository;
-    private final PlayerStatsUpdateService statsUpdateService;
 
     @Scheduled(cron = "${stats.random-match.cron:*/5 * * * * *}")
     public void generateRandomMatch() {
@@ -73,8 +71,7 @@ public class RandomMatchScheduler {
 
     private void saveMatch(MatchResult match) {
         try {
-            matchRepository.save(match);
-            statsUpdateService.updatePlayerStats(match);
+            matchIngestService.ingest(match);
             log.debug("Successfully saved match: {}", match.getId());
         } catch (Exception e) {
             log.error("Failed to save match: {}", match.getId(), e);
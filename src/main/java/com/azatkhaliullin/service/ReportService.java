@@ -1,16 +1,16 @@
 package com.azatkhaliullin.service;
 
-import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.domain.LeaderboardSegment;
+import com.azatkhaliullin.domain.LeaderboardWindow;
+import com.azatkhaliullin.dto.LeaderboardSegmentsDto;
 import com.azatkhaliullin.dto.PlayerStatsDto;
 import com.azatkhaliullin.dto.ServerStatsDto;
-import com.azatkhaliullin.mapper.MatchResultMapper;
 import com.azatkhaliullin.repository.MatchRepository;
 import com.azatkhaliullin.repository.ServerRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Comparator;
 import java.util.List;
 
 @Slf4j
@@ -20,28 +20,47 @@ public class ReportService {
 
     private final MatchRepository matchRepository;
     private final ServerRepository serverRepository;
-    private final MatchResultMapper matchResultMapper;
     private final PlayerService playerService;
     private final ServerService serverService;
 
-    public List<MatchResultDto> getRecentMatches(int count) {
+    /**
+     * @return the most recent matches as a JSON array, joined from the API JSON stored with
+     * every match without decoding it
+     */
+    public byte[] getRecentMatches(int count) {
         log.debug("Getting recent {} matches", count);
-        return matchRepository.findRecent(count).stream()
-                .map(matchResultMapper::toDto)
-                .toList();
+        List<byte[]> matches = matchRepository.findRecentJson(count);
+
+        int length = 2 + Math.max(0, matches.size() - 1);
+        for (byte[] match : matches) {
+            length += match.length;
+        }
+        byte[] body = new byte[length];
+        int position = 0;
+        body[position++] = '[';
+        for (byte[] match : matches) {
+            if (position > 1) body[position++] = ',';
+            System.arraycopy(match, 0, body, position, match.length);
+            position += match.length;
+        }
+        body[position] = ']';
+        return body;
+    }
+
+    public List<PlayerStatsDto> getBestPlayers(int count, LeaderboardWindow window, LeaderboardSegment segment) {
+        log.debug("Getting best {} players of the {} leaderboard, segment: {}", count, window.getValue(), segment);
+        return playerService.getBestPlayers(count, window, segment);
     }
 
-    public List<PlayerStatsDto> getBestPlayers(int count) {
-        log.debug("Getting best {} players", count);
-        return playerService.getBestPlayers(count);
+    public LeaderboardSegmentsDto getLeaderboardSegments() {
+        log.debug("Getting leaderboard segments");
+        return playerService.getLeaderboardSegments();
     }
 
     public List<ServerStatsDto> getPopularServers(int count) {
         log.debug("Getting popular {} servers", count);
-        return serverRepository.findAll().stream()
-                .map(serverService::buildServerStats)
-                .sorted(Comparator.comparing(ServerStatsDto::getTotalMatches).reversed())
-                .limit(count)
+        return serverRepository.findMostPopular(count).entrySet().stream()
+                .map(popular -> serverService.buildServerStats(popular.getKey(), popular.getValue()))
                 .toList();
     }
 }
@@ -1,21 +1,41 @@
 package com.azatkhaliullin.service;
 
-import com.azatkhaliullin.domain.MatchResult;
-import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.LeaderboardWindow;
+import com.azatkhaliullin.domain.MatchCursor;
+import com.azatkhaliullin.domain.MatchHistoryQuery;
+import com.azatkhaliullin.domain.MatchJson;
 import com.azatkhaliullin.domain.ServerInfo;
-import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.domain.ServerStats;
+import com.azatkhaliullin.domain.TimeSeriesBucket;
+import com.azatkhaliullin.domain.TimeSeriesResolution;
+import com.azatkhaliullin.domain.TimeSeriesScope;
+import com.azatkhaliullin.dto.ActivePlayersDto;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
 import com.azatkhaliullin.dto.ServerInfoDto;
 import com.azatkhaliullin.dto.ServerStatsDto;
-import com.azatkhaliullin.mapper.MatchResultMapper;
+import com.azatkhaliullin.dto.TimeSeriesDto;
+import com.azatkhaliullin.dto.TimeSeriesPointDto;
+import com.azatkhaliullin.exception.InvalidLeaderboardWindowException;
+import com.azatkhaliullin.exception.InvalidTimeSeriesQueryException;
 import com.azatkhaliullin.mapper.ServerInfoMapper;
+import com.azatkhaliullin.property.MatchHistoryProperties;
+import com.azatkhaliullin.property.TimeSeriesProperties;
+import com.azatkhaliullin.repository.ActivePlayersRepository;
 import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.ScoreHistogramRepository;
 import com.azatkhaliullin.repository.ServerRepository;
+import com.azatkhaliullin.repository.TimeSeriesRepository;
+import com.azatkhaliullin.util.JsonBatchResource;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import static com.azatkhaliullin.service.StatsService.roundToTwoDecimals;
@@ -29,7 +49,13 @@ public class ServerService {
     private final ServerRepository serverRepository;
     private final MatchRepository matchRepository;
     private final ServerInfoMapper serverInfoMapper;
-    private final MatchResultMapper matchResultMapper;
+    private final MatchHistoryProperties matchHistoryProperties;
+    private final ObjectMapper objectMapper;
+    private final ScoreHistogramRepository scoreHistogramRepository;
+    private final StatsService statsService;
+    private final TimeSeriesRepository timeSeriesRepository;
+    private final TimeSeriesProperties timeSeriesProperties;
+    private final ActivePlayersRepository activePlayersRepository;
 
     public Optional<ServerInfoDto> getServerInfo(String endpoint) {
         log.debug("Getting server info for endpoint: {}", endpoint);
@@ -44,36 +70,132 @@ public class ServerService {
                 .toList();
     }
 
-    public List<MatchResultDto> getMatchesSince(String endpoint, Instant since) {
-        log.debug("Getting matches for server {} since {}", endpoint, since);
-        return matchRepository.findByServerSince(endpoint, since).stream()
-                .map(matchResultMapper::toDto)
-                .toList();
+    /**
+     * Streams the matches of the server since the given time, oldest first. Matches are read
+     * one window at a time as the returned resource is consumed, so memory use does not depend
+     * on the width of the time range, and copied into the stream as the API JSON stored with
+     * them, without decoding.
+     */
+    public JsonBatchResource streamMatchesSince(String endpoint, Instant since) {
+        log.debug("Streaming matches for server {} since {}", endpoint, since);
+        MatchHistoryQuery query = MatchHistoryQuery.builder()
+                .from(since.toEpochMilli())
+                .to(Long.MAX_VALUE)
+                .newer(true)
+                .limit(matchHistoryProperties.getStreamWindowSize())
+                .build();
+        return new JsonBatchResource(() -> nextWindow(endpoint, query), objectMapper.writer());
     }
 
+    // A window of matches that have all expired since they were indexed is skipped, as only an
+    // empty window ends the stream
+    private List<byte[]> nextWindow(String endpoint, MatchHistoryQuery query) {
+        while (true) {
+            List<MatchJson> window = matchRepository.findServerHistoryJson(endpoint, query);
+            if (window.isEmpty()) return List.of();
+
+            MatchJson last = window.get(window.size() - 1);
+            query.setCursor(new MatchCursor(last.getPlayedAt(), last.getId()));
+            List<byte[]> json = window.stream()
+                    .map(MatchJson::getJson)
+                    .filter(Objects::nonNull)
+                    .toList();
+            if (!json.isEmpty()) return json;
+        }
+    }
+
+    /**
+     * Reads the counters ingest maintains for the server, so the cost does not grow with the
+     * number of matches.
+     */
     public Optional<ServerStatsDto> getServerStats(String endpoint) {
         log.debug("Getting server stats for endpoint: {}", endpoint);
         return serverRepository.findByEndpoint(endpoint)
-                .map(this::buildServerStats);
+                .map(server -> buildServerStats(server, serverRepository.findStats(endpoint)));
     }
 
-    public ServerStatsDto buildServerStats(ServerInfo server) {
-        List<MatchResult> matches = matchRepository.findByServerEndpoint(server.getEndpoint());
+    /**
+     * Reads the score histogram ingest maintains for the server, so the cost does not grow
+     * with the number of matches.
+     */
+    public Optional<ScoreDistributionDto> getScoreDistribution(String endpoint) {
+        log.debug("Getting score distribution for endpoint: {}", endpoint);
+        return serverRepository.findByEndpoint(endpoint)
+                .map(server -> statsService.buildScoreDistribution(scoreHistogramRepository.findByServer(endpoint)));
+    }
+
+    /**
+     * Reads the time series buckets ingest and downsampling maintain for the server or region,
+     * at the finest resolution that still retains the start of the range and needs at most
+     * the configured number of buckets. A range too wide even for day buckets is shortened to
+     * its most recent days.
+     *
+     * @param from unix seconds
+     * @param to   unix seconds, null for now
+     * @return empty for an unknown server or region
+     */
+    public Optional<TimeSeriesDto> getTimeSeries(String endpoint, String region, long from, Long to) {
+        log.debug("Getting time series for endpoint: {}, region: {}", endpoint, region);
+        TimeSeriesScope scope = TimeSeriesScope.of(endpoint, region);
+        long now = System.currentTimeMillis();
+        long fromMillis = Instant.ofEpochSecond(from).toEpochMilli();
+        long toMillis = to == null ? now : Instant.ofEpochSecond(to).toEpochMilli();
+        if (fromMillis >= toMillis) {
+            throw new InvalidTimeSeriesQueryException("from must be before to");
+        }
+        if (!exists(scope)) return Optional.empty();
 
-        int totalMatches = 0;
-        int totalPlayers = 0;
-        int totalScore = 0;
+        TimeSeriesResolution resolution = resolutionFor(fromMillis, toMillis, now);
+        long maxPoints = timeSeriesProperties.getMaxPoints();
+        if (resolution.bucketCount(fromMillis, toMillis) > maxPoints) {
+            fromMillis = resolution.bucketStart(toMillis) - (maxPoints - 1) * resolution.getWidth().toMillis();
+        }
+        List<TimeSeriesBucket> buckets = timeSeriesRepository.findBuckets(scope, resolution, fromMillis, toMillis);
+
+        return Optional.of(TimeSeriesDto.builder()
+                .endpoint(endpoint)
+                .region(region)
+                .resolution(TimeSeriesDto.ResolutionEnum.fromValue(resolution.getValue()))
+                .from(resolution.bucketStart(fromMillis) / 1000)
+                .to(toMillis / 1000)
+                .points(buckets.stream().map(ServerService::toPoint).toList())
+                .build());
+    }
 
-        for (MatchResult match : matches) {
-            totalMatches++;
-            List<PlayerScore> scores = match.getScores();
-            totalPlayers += scores.size();
-            totalScore += scores.stream()
-                    .mapToInt(PlayerScore::getScore)
-                    .sum();
+    /**
+     * Counts the distinct players of the server or region in the window ending today from the
+     * daily HyperLogLogs ingest maintains, so the cost depends neither on the number of
+     * matches nor on the number of players.
+     *
+     * @return empty for an unknown server or region
+     */
+    public Optional<ActivePlayersDto> getActivePlayers(String endpoint, String region, String window) {
+        log.debug("Getting {} active players for endpoint: {}, region: {}", window, endpoint, region);
+        TimeSeriesScope scope = TimeSeriesScope.of(endpoint, region);
+        LeaderboardWindow activeWindow = window == null ? LeaderboardWindow.DAY : LeaderboardWindow.fromValue(window);
+        if (activeWindow == LeaderboardWindow.ALL) {
+            throw new InvalidLeaderboardWindowException("Active players are counted per day, week or month");
         }
+        if (!exists(scope)) return Optional.empty();
 
-        int averagePlayersPerMatch = totalMatches > 0 ? totalPlayers / totalMatches : 0;
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        return Optional.of(ActivePlayersDto.builder()
+                .endpoint(endpoint)
+                .region(region)
+                .window(activeWindow.getValue())
+                .from(activeWindow.firstDay(today))
+                .to(today)
+                .activePlayers(activePlayersRepository.count(scope, activeWindow, today))
+                .standardError(ActivePlayersRepository.STANDARD_ERROR)
+                .build());
+    }
+
+    public ServerStatsDto buildServerStats(ServerInfo server, ServerStats stats) {
+        long totalMatches = stats.getMatches();
+        long totalPlayers = stats.getPlayerSlots();
+        long totalScore = stats.getTotalScore();
+
+        int averagePlayersPerMatch = totalMatches > 0 ? (int) (totalPlayers / totalMatches) : 0;
         double averageScore = totalPlayers > 0 ? (double) totalScore / totalPlayers : DEFAULT_AVERAGE_SCORE;
 
         return ServerStatsDto.builder()
@@ -86,4 +208,35 @@ public class ServerService {
                 .averageScore(roundToTwoDecimals(averageScore))
                 .build();
     }
+
+    private boolean exists(TimeSeriesScope scope) {
+        return switch (scope.getType()) {
+            case SERVER -> serverRepository.findByEndpoint(scope.getValue()).isPresent();
+            case REGION -> serverRepository.findAll().stream()
+                    .anyMatch(server -> scope.getValue().equals(server.getRegion()));
+        };
+    }
+
+    private TimeSeriesResolution resolutionFor(long from, long to, long now) {
+        for (TimeSeriesResolution resolution : TimeSeriesResolution.values()) {
+            long retainedUntil = TimeSeriesRepository.expireAt(resolution, resolution.bucketStart(from),
+                    timeSeriesProperties.getRetention().of(resolution));
+            if (retainedUntil > now && resolution.bucketCount(from, to) <= timeSeriesProperties.getMaxPoints()) {
+                return resolution;
+            }
+        }
+        return TimeSeriesResolution.DAY;
+    }
+
+    private static TimeSeriesPointDto toPoint(TimeSeriesBucket bucket) {
+        double averageScore = bucket.getPlayers() > 0
+                ? (double) bucket.getTotalScore() / bucket.getPlayers()
+                : DEFAULT_AVERAGE_SCORE;
+        return TimeSeriesPointDto.builder()
+                .timestamp(bucket.getStart() / 1000)
+                .matches(bucket.getMatches())
+                .players(bucket.getPlayers())
+                .averageScore(roundToTwoDecimals(averageScore))
+                .build();
+    }
 }
@@ -0,0 +1,75 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.domain.ServerStats;
+import com.azatkhaliullin.property.ServerStatsProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.ServerRepository;
+import com.azatkhaliullin.repository.StartupJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recounts the match counters and the popularity of every server from its match history, for
+ * matches ingested before the counters existed, and swaps them in for the live ones at once.
+ * A match ingested while the servers are being recounted may be left out, so the job is best
+ * run before matches arrive. It runs on the first node to claim it and is not run again once
+ * it has completed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ServerStatsRebuildJob implements ApplicationRunner {
+
+    static final String JOB = "server-stats-rebuild";
+
+    private final ServerRepository serverRepository;
+    private final MatchRepository matchRepository;
+    private final StartupJobRepository startupJobRepository;
+    private final ServerStatsProperties serverStatsProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!serverStatsProperties.getRebuild().isEnabled()) return;
+
+        try {
+            if (!startupJobRepository.claim(JOB)) {
+                log.info("Server match counters already rebuilt or being rebuilt by another node");
+                return;
+            }
+
+            List<ServerInfo> servers = serverRepository.findAll();
+            log.info("Rebuilding the match counters of {} servers", servers.size());
+            Map<String, ServerStats> stats = new LinkedHashMap<>(servers.size());
+            for (ServerInfo server : servers) {
+                stats.put(server.getEndpoint(), count(matchRepository.findByServerEndpoint(server.getEndpoint())));
+            }
+            serverRepository.replaceAllStats(stats);
+            startupJobRepository.complete(JOB);
+            log.info("Rebuilt the match counters of {} servers", servers.size());
+        } catch (Exception e) {
+            log.error("Failed to rebuild the server match counters, they are rebuilt again on a startup once the claim expires", e);
+        }
+    }
+
+    private static ServerStats count(List<MatchResult> matches) {
+        ServerStats stats = new ServerStats();
+        for (MatchResult match : matches) {
+            stats.setMatches(stats.getMatches() + 1);
+            stats.setPlayerSlots(stats.getPlayerSlots() + match.getScores().size());
+            stats.setTotalScore(stats.getTotalScore() + match.getScores().stream()
+                    .mapToInt(PlayerScore::getScore)
+                    .sum());
+        }
+        return stats;
+    }
+}
@@ -4,11 +4,14 @@ import com.azatkhaliullin.domain.MatchResult;
 import com.azatkhaliullin.domain.Player;
 import com.azatkhaliullin.domain.PlayerScore;
 import com.azatkhaliullin.domain.PlayerStats;
+import com.azatkhaliullin.domain.ScoreHistogram;
 import com.azatkhaliullin.dto.PlayerStatsDto;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -31,10 +34,12 @@ public class StatsService {
     public PlayerStatsDto calculatePlayerStats(Player player, List<MatchResult> matches) {
         log.debug("Calculating stats for player: {}", player.getUsername());
 
-        PlayerStats stats = aggregateStats(player.getId(), matches);
+        return buildPlayerStats(player.getUsername(), aggregateStats(player.getId(), matches));
+    }
 
+    public PlayerStatsDto buildPlayerStats(String username, PlayerStats stats) {
         return PlayerStatsDto.builder()
-                .username(player.getUsername())
+                .username(username)
                 .totalMatches(stats.getTotalMatches())
                 .totalScore(stats.getTotalScore())
                 .bestScore(stats.getBestScore())
@@ -44,6 +49,16 @@ public class StatsService {
                 .build();
     }
 
+    public ScoreDistributionDto buildScoreDistribution(ScoreHistogram histogram) {
+        return ScoreDistributionDto.builder()
+                .totalScores(histogram.total())
+                .median(histogram.percentile(50))
+                .p90(histogram.percentile(90))
+                .p99(histogram.percentile(99))
+                .counts(Arrays.stream(histogram.getCounts()).boxed().toList())
+                .build();
+    }
+
     private PlayerStats aggregateStats(UUID playerId, List<MatchResult> matches) {
         int totalMatches = 0;
         int totalScore = 0;
@@ -0,0 +1,100 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.domain.TimeSeriesBucket;
+import com.azatkhaliullin.domain.TimeSeriesResolution;
+import com.azatkhaliullin.domain.TimeSeriesScope;
+import com.azatkhaliullin.property.TimeSeriesProperties;
+import com.azatkhaliullin.repository.ServerRepository;
+import com.azatkhaliullin.repository.TimeSeriesRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Rolls the minute buckets of every server and region up into hour buckets, and those into
+ * day buckets. Every run recomputes the hours and days of the lookback period up to the current,
+ * still open one from scratch, so a late match is taken in by the next run and a repeated run
+ * changes nothing. Buckets whose source buckets may already have expired are left as they are.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TimeSeriesDownsamplingJob {
+
+    private final ServerRepository serverRepository;
+    private final TimeSeriesRepository timeSeriesRepository;
+    private final TimeSeriesProperties timeSeriesProperties;
+
+    @Scheduled(cron = "${stats.timeseries.downsample.cron:0 */5 * * * *}")
+    public void downsample() {
+        try {
+            downsample(System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("Failed to downsample server activity time series", e);
+        }
+    }
+
+    void downsample(long now) {
+        List<TimeSeriesScope> scopes = scopes(serverRepository.findAll());
+        long from = now - timeSeriesProperties.getDownsample().getLookback().toMillis();
+        for (TimeSeriesScope scope : scopes) {
+            rollUp(scope, TimeSeriesResolution.MINUTE, TimeSeriesResolution.HOUR, from, now);
+            rollUp(scope, TimeSeriesResolution.HOUR, TimeSeriesResolution.DAY, from, now);
+        }
+        log.debug("Downsampled the time series of {} servers and regions", scopes.size());
+    }
+
+    private void rollUp(TimeSeriesScope scope, TimeSeriesResolution source, TimeSeriesResolution target,
+                        long from, long now) {
+        // The oldest target bucket whose source buckets are all still retained
+        long retainedFrom = now - timeSeriesProperties.getRetention().of(source).toMillis();
+        long first = Math.max(target.bucketStart(from), target.bucketStart(retainedFrom) + target.getWidth().toMillis());
+        long last = target.bucketStart(now);
+        if (first > last) return;
+
+        List<TimeSeriesBucket> sourceBuckets = timeSeriesRepository.findBuckets(scope, source, first,
+                last + target.getWidth().toMillis() - 1);
+        List<TimeSeriesBucket> targetBuckets = downsample(sourceBuckets, target);
+        if (!targetBuckets.isEmpty()) {
+            timeSeriesRepository.saveBuckets(scope, target, targetBuckets);
+        }
+    }
+
+    /**
+     * @return sums of the source buckets per target bucket, without empty ones
+     */
+    static List<TimeSeriesBucket> downsample(List<TimeSeriesBucket> sourceBuckets, TimeSeriesResolution target) {
+        Map<Long, TimeSeriesBucket> buckets = new LinkedHashMap<>();
+        for (TimeSeriesBucket source : sourceBuckets) {
+            if (source.isEmpty()) continue;
+
+            TimeSeriesBucket bucket = buckets.computeIfAbsent(target.bucketStart(source.getStart()),
+                    start -> TimeSeriesBucket.builder().start(start).build());
+            bucket.setMatches(bucket.getMatches() + source.getMatches());
+            bucket.setPlayers(bucket.getPlayers() + source.getPlayers());
+            bucket.setTotalScore(bucket.getTotalScore() + source.getTotalScore());
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    private static List<TimeSeriesScope> scopes(List<ServerInfo> servers) {
+        List<TimeSeriesScope> scopes = new ArrayList<>(servers.stream()
+                .map(server -> TimeSeriesScope.server(server.getEndpoint()))
+                .toList());
+        servers.stream()
+                .map(ServerInfo::getRegion)
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(TimeSeriesScope::region)
+                .forEach(scopes::add);
+        return scopes;
+    }
+}
@@ -0,0 +1,105 @@
+package com.azatkhaliullin.util;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe Bloom filter of UUIDs with a bounded false positive rate. Once the expected number
+ * of insertions is reached the filter starts a new generation and keeps only the previous one,
+ * so memory stays fixed and old ids are forgotten instead of saturating the filter.
+ */
+public class BloomFilter {
+
+    private final int expectedInsertions;
+    private final int bits;
+    private final int hashes;
+    private final AtomicReference<Generation> current;
+    private volatile Generation previous;
+
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.expectedInsertions = expectedInsertions;
+        this.bits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * ln2));
+        this.current = new AtomicReference<>(new Generation(bits));
+    }
+
+    public boolean mightContain(UUID id) {
+        Generation old = previous;
+        return current.get().contains(id) || (old != null && old.contains(id));
+    }
+
+    public void put(UUID id) {
+        Generation generation = current.get();
+        generation.add(id);
+        if (generation.insertions.sum() >= expectedInsertions && current.compareAndSet(generation, new Generation(bits))) {
+            previous = generation;
+        }
+    }
+
+    public int bitSize() {
+        return bits;
+    }
+
+    public int hashCount() {
+        return hashes;
+    }
+
+    private final class Generation {
+
+        private final AtomicLongArray words;
+        private final LongAdder insertions = new LongAdder();
+
+        private Generation(int bits) {
+            this.words = new AtomicLongArray((bits + 63) / 64);
+        }
+
+        boolean contains(UUID id) {
+            long hash1 = mix(id.getMostSignificantBits());
+            long hash2 = mix(id.getLeastSignificantBits());
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(hash1 + i * hash2);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        void add(UUID id) {
+            long hash1 = mix(id.getMostSignificantBits());
+            long hash2 = mix(id.getLeastSignificantBits());
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(hash1 + i * hash2);
+                long mask = 1L << bit;
+                int word = bit >>> 6;
+                long value;
+                while (((value = words.get(word)) & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                    Thread.onSpinWait();
+                }
+            }
+            insertions.increment();
+        }
+
+        private int index(long hash) {
+            return (int) ((hash & Long.MAX_VALUE) % bits);
+        }
+    }
+
+    // Finalizer of MurmurHash3, spreads the bits of random and sequential UUIDs alike
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb93fe66ec53bL;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,85 @@
+package com.azatkhaliullin.util;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Input stream of JSON values pulled batch by batch from a supplier as the reader consumes it,
+ * encoded as one JSON array or as newline-delimited JSON. Only the current batch is held in
+ * memory, however many batches the supplier yields; an empty batch ends the stream. Byte array
+ * values are taken to be encoded JSON already and are copied as they are.
+ */
+public class JsonBatchInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Supplier<? extends List<?>> batches;
+    private final ObjectWriter writer;
+    private final boolean ndjson;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+
+    private byte[] buffer = EMPTY;
+    private int position;
+    private long written;
+    private boolean finished;
+
+    public JsonBatchInputStream(Supplier<? extends List<?>> batches, ObjectWriter writer, boolean ndjson) {
+        this.batches = batches;
+        this.writer = writer;
+        this.ndjson = ndjson;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureBuffered()) return -1;
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (!ensureBuffered()) return -1;
+        int count = Math.min(length, buffer.length - position);
+        System.arraycopy(buffer, position, target, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.length - position;
+    }
+
+    private boolean ensureBuffered() throws IOException {
+        while (position == buffer.length) {
+            if (finished) return false;
+            fill();
+        }
+        return true;
+    }
+
+    private void fill() throws IOException {
+        encoded.reset();
+        if (!ndjson && written == 0) encoded.write('[');
+
+        List<?> batch = batches.get();
+        if (batch == null || batch.isEmpty()) {
+            if (!ndjson) encoded.write(']');
+            finished = true;
+        } else {
+            for (Object value : batch) {
+                if (!ndjson && written > 0) encoded.write(',');
+                encoded.write(value instanceof byte[] json ? json : writer.writeValueAsBytes(value));
+                if (ndjson) encoded.write('\n');
+                written++;
+            }
+        }
+        buffer = encoded.toByteArray();
+        position = 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.azatkhaliullin.util;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Resource of JSON values pulled batch by batch from a supplier, read as a
+ * {@link JsonBatchInputStream} in whichever encoding the response it is written to negotiates.
+ * Like an input stream it can be read once.
+ */
+public class JsonBatchResource extends AbstractResource {
+
+    private final Supplier<? extends List<?>> batches;
+    private final ObjectWriter writer;
+
+    public JsonBatchResource(Supplier<? extends List<?>> batches, ObjectWriter writer) {
+        this.batches = batches;
+        this.writer = writer;
+    }
+
+    public InputStream getInputStream(boolean ndjson) {
+        return new JsonBatchInputStream(batches, writer, ndjson);
+    }
+
+    /**
+     * @return the values as one JSON array
+     */
+    @Override
+    public InputStream getInputStream() {
+        return getInputStream(false);
+    }
+
+    /**
+     * @return -1, the length is only known once the values have been read
+     */
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return "JSON batch stream";
+    }
+}
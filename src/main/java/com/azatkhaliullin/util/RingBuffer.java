@@ -0,0 +1,143 @@
+package com.azatkhaliullin.util;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue over a power-of-two ring.
+ * Each slot carries a sequence number telling producers and consumers whether it is
+ * free or filled for their lap, so {@link #offer} and {@link #poll} only CAS one cursor.
+ * Consumers may also wait for an element with {@link #poll(long, TimeUnit)}; producers only
+ * take a lock to wake them while one is waiting.
+ */
+public class RingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+    public RingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Ring buffer capacity must be at least 2");
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, element);
+                    sequences.set(index, position + 1);
+                    if (waitingConsumers.get() > 0) signalNotEmpty();
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = slots.getAndSet(index, null);
+                    sequences.set(index, position + capacity);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return the head element, waiting up to the timeout for one; null if none arrived in time
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E element = poll();
+        if (element != null) return element;
+
+        long remainingNanos = unit.toNanos(timeout);
+        waitLock.lockInterruptibly();
+        try {
+            // Registered before polling again, so a producer either sees the waiter or its
+            // element is seen by the poll
+            waitingConsumers.incrementAndGet();
+            try {
+                while ((element = poll()) == null) {
+                    if (remainingNanos <= 0) return null;
+                    remainingNanos = notEmpty.awaitNanos(remainingNanos);
+                }
+                return element;
+            } finally {
+                waitingConsumers.decrementAndGet();
+            }
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private void signalNotEmpty() {
+        waitLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+}
@@ -7,6 +7,9 @@ public class SecurityConstants {
 
     public static final String AUTHORIZATION_HEADER = "Authorization";
     public static final String BEARER_PREFIX = "Bearer ";
+    public static final String API_KEY_HEADER = "X-Api-Key";
+    public static final String ROLE_GAME_SERVER = "ROLE_GAME_SERVER";
+    public static final String GAME_SERVER_PRINCIPAL = "game-server";
     public static final String[] PUBLIC_ENDPOINTS = {
             "/auth/login",
             "/jwk/.well-known/jwks.json",
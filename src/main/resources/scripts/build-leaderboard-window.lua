@@ -0,0 +1,28 @@
+-- Builds the leaderboard of a window from its daily buckets unless it is already cached.
+-- Score sums and match counts add up over the days, best and worst scores take the extremes.
+--
+-- KEYS[1..4]       leaderboard:window:{window}:{firstDay}:score, :matches, :best, :worst
+-- KEYS[4d+1..4d+4] leaderboard:daily:{day d}:score, :matches, :best, :worst   (d = 1..n)
+--
+-- ARGV[1]          expiry of the window, epoch millis
+--
+-- Returns 1 if the window was built, 0 if it was cached.
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+
+local aggregates = { 'SUM', 'SUM', 'MAX', 'MIN' }
+local days = (#KEYS - 4) / 4
+for k = 1, 4 do
+    local command = { 'ZUNIONSTORE', KEYS[k], days }
+    for d = 1, days do
+        command[#command + 1] = KEYS[4 * d + k]
+    end
+    command[#command + 1] = 'AGGREGATE'
+    command[#command + 1] = aggregates[k]
+    redis.call(unpack(command))
+    redis.call('PEXPIREAT', KEYS[k], ARGV[1])
+end
+
+return 1
@@ -0,0 +1,20 @@
+-- Converts player stats still stored in the legacy format, a typed JSON string, to the stats
+-- hash the stats scripts write, the same way those scripts do before their first write.
+--
+-- KEYS[1..n]       players:stats:{playerId}
+--
+-- Returns the number of stats converted.
+
+local converted = 0
+for i = 1, #KEYS do
+    if redis.call('TYPE', KEYS[i]).ok == 'string' then
+        local legacy = cjson.decode(redis.call('GET', KEYS[i]))[2]
+        redis.call('DEL', KEYS[i])
+        redis.call('HSET', KEYS[i],
+                'totalMatches', legacy.totalMatches, 'totalScore', legacy.totalScore,
+                'bestScore', legacy.bestScore, 'worstScore', legacy.worstScore)
+        converted = converted + 1
+    end
+end
+
+return converted
@@ -0,0 +1,20 @@
+-- Counts the distinct players of a window from its daily HyperLogLogs, merging them into the
+-- window's HyperLogLog unless it is already cached.
+--
+-- KEYS[1]          players:active:window:{scope}:{window}:{firstDay}
+-- KEYS[1+d]        players:active:{scope}:{day d}     (d = 1..n)
+--
+-- ARGV[1]          expiry of the window, epoch millis
+--
+-- Returns the estimated number of distinct players.
+
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    local command = { 'PFMERGE', KEYS[1] }
+    for d = 2, #KEYS do
+        command[#command + 1] = KEYS[d]
+    end
+    redis.call(unpack(command))
+    redis.call('PEXPIREAT', KEYS[1], ARGV[1])
+end
+
+return redis.call('PFCOUNT', KEYS[1])
@@ -0,0 +1,219 @@
+-- Stores a match, updates its indexes and merges the stats of every participant atomically,
+-- along with their place in the rating leaderboards of all players, of their country and of
+-- their level band, in the daily leaderboard of the match day and in the leaderboard of the
+-- match server if it is registered. Every score is also counted in the score histograms of the
+-- server and of the player, and the match in the counters and the popularity of the server and
+-- in the minute buckets of the activity time series of the server and of its region. Its players
+-- are added to the daily active players of the server and of its region.
+-- With stats merging off the caller merges them itself, e.g. from coalesced deltas.
+-- A match id already marked as ingested is skipped without any write, so retries are safe. The
+-- marker is set last: scripts are not rolled back, so a script failing half way must leave the
+-- match unmarked, for its retry to store it rather than to be acknowledged as a duplicate.
+--
+-- KEYS[1]        matches:ingested:{id}           (dedup marker)
+-- KEYS[2]        match:{id}
+-- KEYS[3]        matches:by_time
+-- KEYS[4]        matches:by_server_since:{endpoint}
+-- KEYS[5]        matches:json:v{version}:{id}
+-- KEYS[6]        players:rating
+-- KEYS[7]        leaderboard:daily:{day}:score        (score sum per player)
+-- KEYS[8]        leaderboard:daily:{day}:matches      (match count per player)
+-- KEYS[9]        leaderboard:daily:{day}:best
+-- KEYS[10]       leaderboard:daily:{day}:worst
+-- KEYS[11]       players:segments                     (playerId -> country|level band)
+-- KEYS[12]       servers
+-- KEYS[13]       leaderboard:segments                 (registry of segment leaderboards)
+-- KEYS[14..17]   leaderboard:server:{endpoint}:score, :matches, :best, :worst
+-- KEYS[18]       scores:histogram:server:{endpoint}   (score -> count)
+-- KEYS[19]       servers:stats:{endpoint}             (matches, players, totalScore)
+-- KEYS[20]       servers:popularity                   (endpoint -> matches, registered servers)
+-- KEYS[21]       timeseries:server:{endpoint}:1m:{minute}  (matches, players, totalScore)
+-- KEYS[22]       players:active:server:{endpoint}:{day}    (HyperLogLog of playerIds)
+-- KEYS[22+3i-2]  matches:by_player_since:{playerId}   (i = 1..n)
+-- KEYS[22+3i-1]  players:stats:{playerId}             (i = 1..n)
+-- KEYS[22+3i]    scores:histogram:player:{playerId}   (i = 1..n)
+-- KEYS[22+3n+..] players:rating:country:{country}, players:rating:level:{band}, a pair for
+--                every player with segments, in player order
+-- KEYS[..]       timeseries:region:{region}:1m:{minute}, players:active:region:{region}:{day},
+--                after the segment pairs, only when the server has a region
+--
+-- The segments of every player are resolved by the caller from players:segments. A player is
+-- only rated in them while the index still holds the same segments, so that one whose segments
+-- change meanwhile is not put back into the leaderboards of the segments they left.
+-- The region of the server is resolved by the caller too, from the registered server.
+--
+-- ARGV values are written by the RedisTemplate value serializer, i.e. as JSON, except the match
+-- and its API JSON, which arrive already encoded and are stored as they are.
+-- ARGV[1]        match
+-- ARGV[2]        match id (index member)
+-- ARGV[3]        playedAt, epoch millis
+-- ARGV[4]        dedup marker TTL, millis
+-- ARGV[5]        1 to merge player stats, 0 to leave them to the caller
+-- ARGV[6]        match as the API renders it, empty to not store it
+-- ARGV[7]        expiry of the daily leaderboard, epoch millis, empty when the day is past retention
+-- ARGV[8]        server endpoint, as it is
+-- ARGV[9]        expiry of the minute buckets, epoch millis, empty when the minute is past retention
+-- ARGV[10]       expiry of the daily active players, epoch millis, empty when the day is past retention
+-- ARGV[10+4i-3]  playerId of player i (leaderboard member)
+-- ARGV[10+4i-2]  score of player i
+-- ARGV[10+4i-1]  playerId of player i, as it is (players:segments field)
+-- ARGV[10+4i]    segments of player i, country|level band, empty for none
+--
+-- Returns the number of players, or -1 for a duplicate.
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return -1
+end
+
+-- Stats written before they became a hash are a typed JSON value: ["<class>", {<fields>}]
+local function convertLegacyStats(statsKey)
+    if redis.call('TYPE', statsKey).ok ~= 'string' then
+        return
+    end
+    local legacy = cjson.decode(redis.call('GET', statsKey))[2]
+    redis.call('DEL', statsKey)
+    redis.call('HSET', statsKey,
+            'totalMatches', legacy.totalMatches, 'totalScore', legacy.totalScore,
+            'bestScore', legacy.bestScore, 'worstScore', legacy.worstScore)
+end
+
+-- Same terms, order and rounding as StatsService.calculateRating, so both give the same value
+local function rating(statsKey)
+    local stats = redis.call('HMGET', statsKey, 'totalMatches', 'totalScore', 'bestScore', 'worstScore')
+    local total = tonumber(stats[2])
+    local matches = tonumber(stats[1])
+    local value = 0.4 * (total / matches)
+            + 0.3 * tonumber(stats[3])
+            + 0.2 * (total / matches)
+            + 0.1 * (100.0 / (1 + tonumber(stats[4])))
+    return math.floor(value * 100 + 0.5) / 100
+end
+
+local function rateInSegments(playerId, bareId, segments, countryKey, bandKey, value)
+    if redis.call('HGET', KEYS[11], bareId) ~= segments then
+        return
+    end
+    local country, band = string.match(segments, '^(.*)|(.*)$')
+    redis.call('ZADD', countryKey, value, playerId)
+    redis.call('ZADD', bandKey, value, playerId)
+    redis.call('SADD', KEYS[13], 'country:' .. country, 'level:' .. band)
+end
+
+local function countInBucket(bucketKey, players, totalScore, expireAt)
+    redis.call('HINCRBY', bucketKey, 'matches', 1)
+    redis.call('HINCRBY', bucketKey, 'players', players)
+    redis.call('HINCRBY', bucketKey, 'totalScore', totalScore)
+    redis.call('PEXPIREAT', bucketKey, expireAt)
+end
+
+local matchId = ARGV[2]
+local playedAt = ARGV[3]
+local mergeStats = tonumber(ARGV[5]) == 1
+local dailyExpireAt = ARGV[7]
+local endpoint = ARGV[8]
+local minuteExpireAt = ARGV[9]
+local activeExpireAt = ARGV[10]
+local knownServer = redis.call('HEXISTS', KEYS[12], endpoint) == 1
+
+redis.call('SET', KEYS[2], ARGV[1])
+redis.call('ZADD', KEYS[3], playedAt, matchId)
+redis.call('ZADD', KEYS[4], playedAt, matchId)
+if ARGV[6] ~= '' then
+    redis.call('SET', KEYS[5], ARGV[6])
+end
+
+local players = (#ARGV - 10) / 4
+local segmentKey = 22 + 3 * players + 1
+local totalScore = 0
+local playerIds = {}
+for i = 1, players do
+    local playerKey = KEYS[22 + 3 * i - 2]
+    local statsKey = KEYS[22 + 3 * i - 1]
+    local histogramKey = KEYS[22 + 3 * i]
+    local playerId = ARGV[10 + 4 * i - 3]
+    local score = tonumber(ARGV[10 + 4 * i - 2])
+    local segments = ARGV[10 + 4 * i]
+
+    totalScore = totalScore + score
+    playerIds[i] = playerId
+
+    redis.call('ZADD', playerKey, playedAt, matchId)
+    redis.call('HINCRBY', KEYS[18], score, 1)
+    redis.call('HINCRBY', histogramKey, score, 1)
+
+    if dailyExpireAt ~= '' then
+        redis.call('ZINCRBY', KEYS[7], score, playerId)
+        redis.call('ZINCRBY', KEYS[8], 1, playerId)
+        redis.call('ZADD', KEYS[9], 'GT', score, playerId)
+        redis.call('ZADD', KEYS[10], 'LT', score, playerId)
+    end
+
+    if knownServer then
+        redis.call('ZINCRBY', KEYS[14], score, playerId)
+        redis.call('ZINCRBY', KEYS[15], 1, playerId)
+        redis.call('ZADD', KEYS[16], 'GT', score, playerId)
+        redis.call('ZADD', KEYS[17], 'LT', score, playerId)
+    end
+
+    if mergeStats then
+        convertLegacyStats(statsKey)
+        redis.call('HINCRBY', statsKey, 'totalMatches', 1)
+        redis.call('HINCRBY', statsKey, 'totalScore', score)
+        local best = tonumber(redis.call('HGET', statsKey, 'bestScore'))
+        if not best or score > best then
+            redis.call('HSET', statsKey, 'bestScore', score)
+        end
+        local worst = tonumber(redis.call('HGET', statsKey, 'worstScore'))
+        if not worst or score < worst then
+            redis.call('HSET', statsKey, 'worstScore', score)
+        end
+        local value = rating(statsKey)
+        redis.call('ZADD', KEYS[6], value, playerId)
+        if segments ~= '' then
+            rateInSegments(playerId, ARGV[10 + 4 * i - 1], segments, KEYS[segmentKey], KEYS[segmentKey + 1], value)
+        end
+    end
+    if segments ~= '' then
+        segmentKey = segmentKey + 2
+    end
+end
+
+if knownServer and players > 0 then
+    redis.call('SADD', KEYS[13], 'server:' .. endpoint)
+end
+
+redis.call('HINCRBY', KEYS[19], 'matches', 1)
+redis.call('HINCRBY', KEYS[19], 'players', players)
+redis.call('HINCRBY', KEYS[19], 'totalScore', totalScore)
+if knownServer then
+    redis.call('ZINCRBY', KEYS[20], 1, endpoint)
+end
+
+local regionBucketKey = KEYS[segmentKey]
+local regionActiveKey = KEYS[segmentKey + 1]
+if knownServer and minuteExpireAt ~= '' then
+    countInBucket(KEYS[21], players, totalScore, minuteExpireAt)
+    if regionBucketKey then
+        countInBucket(regionBucketKey, players, totalScore, minuteExpireAt)
+    end
+end
+
+if knownServer and activeExpireAt ~= '' and players > 0 then
+    local activeKeys = { KEYS[22] }
+    if regionActiveKey then
+        activeKeys[2] = regionActiveKey
+    end
+    for _, activeKey in ipairs(activeKeys) do
+        redis.call('PFADD', activeKey, unpack(playerIds))
+        redis.call('PEXPIREAT', activeKey, activeExpireAt)
+    end
+end
+
+if dailyExpireAt ~= '' then
+    for k = 7, 10 do
+        redis.call('PEXPIREAT', KEYS[k], dailyExpireAt)
+    end
+end
+
+redis.call('SET', KEYS[1], 1, 'PX', ARGV[4])
+return players
@@ -0,0 +1,104 @@
+-- Merges stats deltas into player stats hashes and puts every player into the rating
+-- leaderboards of all players, of their country and of their level band with the rating of
+-- the merged stats. A delta without matches only recomputes the rating of the stats as they are.
+--
+-- The segments of every player are resolved by the caller from players:segments. A player is
+-- only rated in them while the index still holds the same segments, so that one whose segments
+-- change meanwhile is not put back into the leaderboards of the segments they left.
+--
+-- KEYS[1]        players:rating
+-- KEYS[2]        players:segments                     (playerId -> country|level band)
+-- KEYS[3]        leaderboard:segments                 (registry of segment leaderboards)
+-- KEYS[3+i]      players:stats:{playerId}             (i = 1..n)
+-- KEYS[3+n+..]   players:rating:country:{country}, players:rating:level:{band}, a pair for
+--                every player with segments, in player order
+--
+-- ARGV[7i-6]     playerId of player i (leaderboard member)
+-- ARGV[7i-5]     number of new matches of player i
+-- ARGV[7i-4]     total of the new scores of player i
+-- ARGV[7i-3]     highest new score of player i
+-- ARGV[7i-2]     lowest new score of player i
+-- ARGV[7i-1]     playerId of player i, as it is (players:segments field)
+-- ARGV[7i]       segments of player i, country|level band, empty for none
+
+-- Stats written before they became a hash are a typed JSON value: ["<class>", {<fields>}]
+local function convertLegacyStats(statsKey)
+    if redis.call('TYPE', statsKey).ok ~= 'string' then
+        return
+    end
+    local legacy = cjson.decode(redis.call('GET', statsKey))[2]
+    redis.call('DEL', statsKey)
+    redis.call('HSET', statsKey,
+            'totalMatches', legacy.totalMatches, 'totalScore', legacy.totalScore,
+            'bestScore', legacy.bestScore, 'worstScore', legacy.worstScore)
+end
+
+-- Same terms, order and rounding as StatsService.calculateRating, so both give the same value
+local function rating(statsKey)
+    local stats = redis.call('HMGET', statsKey, 'totalMatches', 'totalScore', 'bestScore', 'worstScore')
+    local matches = tonumber(stats[1]) or 0
+    if matches == 0 then
+        return nil
+    end
+    local total = tonumber(stats[2])
+    local value = 0.4 * (total / matches)
+            + 0.3 * tonumber(stats[3])
+            + 0.2 * (total / matches)
+            + 0.1 * (100.0 / (1 + tonumber(stats[4])))
+    return math.floor(value * 100 + 0.5) / 100
+end
+
+-- Without a rating the player is taken out of the segment leaderboards
+local function rateInSegments(playerId, bareId, segments, countryKey, bandKey, value)
+    if redis.call('HGET', KEYS[2], bareId) ~= segments then
+        return
+    end
+    if value then
+        local country, band = string.match(segments, '^(.*)|(.*)$')
+        redis.call('ZADD', countryKey, value, playerId)
+        redis.call('ZADD', bandKey, value, playerId)
+        redis.call('SADD', KEYS[3], 'country:' .. country, 'level:' .. band)
+    else
+        redis.call('ZREM', countryKey, playerId)
+        redis.call('ZREM', bandKey, playerId)
+    end
+end
+
+local ratingKey = KEYS[1]
+local players = #ARGV / 7
+local segmentKey = 3 + players + 1
+for i = 1, players do
+    local statsKey = KEYS[3 + i]
+    local playerId = ARGV[7 * i - 6]
+    local matches = tonumber(ARGV[7 * i - 5])
+    local segments = ARGV[7 * i]
+
+    convertLegacyStats(statsKey)
+    if matches > 0 then
+        local highest = tonumber(ARGV[7 * i - 3])
+        local lowest = tonumber(ARGV[7 * i - 2])
+        redis.call('HINCRBY', statsKey, 'totalMatches', matches)
+        redis.call('HINCRBY', statsKey, 'totalScore', tonumber(ARGV[7 * i - 4]))
+        local best = tonumber(redis.call('HGET', statsKey, 'bestScore'))
+        if not best or highest > best then
+            redis.call('HSET', statsKey, 'bestScore', highest)
+        end
+        local worst = tonumber(redis.call('HGET', statsKey, 'worstScore'))
+        if not worst or lowest < worst then
+            redis.call('HSET', statsKey, 'worstScore', lowest)
+        end
+    end
+
+    local value = rating(statsKey)
+    if value then
+        redis.call('ZADD', ratingKey, value, playerId)
+    else
+        redis.call('ZREM', ratingKey, playerId)
+    end
+    if segments ~= '' then
+        rateInSegments(playerId, ARGV[7 * i - 1], segments, KEYS[segmentKey], KEYS[segmentKey + 1], value)
+        segmentKey = segmentKey + 2
+    end
+end
+
+return players
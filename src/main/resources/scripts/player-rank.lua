@@ -0,0 +1,48 @@
+-- Finds the place of a player in the rating leaderboard and the players ranked around them,
+-- resolving the username on the server so a lookup takes a single round trip. Read only.
+--
+-- KEYS[1]  players                (username -> player)
+-- KEYS[2]  players:rating
+-- KEYS[3]  players:by_id          (playerId -> username)
+--
+-- ARGV[1]  username, as it is
+-- ARGV[2]  neighbours to return on each side
+--
+-- Returns an empty array for an unknown player, {-1} for a player without a rating, otherwise
+-- {rank, ranked players, playerId 1, rating 1, username 1, ...} for the players from rank
+-- minus neighbours to rank plus neighbours, highest first; ranks are 0-based. Player ids and
+-- usernames are JSON strings, as the shared template writes them.
+
+local json = redis.call('HGET', KEYS[1], ARGV[1])
+if not json then
+    return {}
+end
+
+-- Players written before default typing was dropped are ["<class>", {<fields>}]
+local player = cjson.decode(json)
+if player[2] then
+    player = player[2]
+end
+
+local rank = redis.call('ZREVRANK', KEYS[2], cjson.encode(player.id))
+if not rank then
+    return { -1 }
+end
+
+local neighbours = tonumber(ARGV[2])
+local first = math.max(0, rank - neighbours)
+local range = redis.call('ZREVRANGE', KEYS[2], first, rank + neighbours, 'WITHSCORES')
+
+local ids = {}
+for i = 1, #range, 2 do
+    ids[#ids + 1] = string.sub(range[i], 2, -2)
+end
+local usernames = redis.call('HMGET', KEYS[3], unpack(ids))
+
+local result = { rank, redis.call('ZCARD', KEYS[2]) }
+for i = 1, #ids do
+    result[#result + 1] = range[2 * i - 1]
+    result[#result + 1] = range[2 * i]
+    result[#result + 1] = usernames[i] or ''
+end
+return result
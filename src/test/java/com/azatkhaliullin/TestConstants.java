@@ -21,6 +21,8 @@ public class TestConstants {
     public static final String ACCESS_TOKEN = "eyJhbGciOiJSUzI1NiJ9.test.token";
     public static final String VALID_JWT_TOKEN = "valid.jwt.token";
     public static final String INVALID_JWT_TOKEN = "invalid.token.here";
+    public static final String GAME_SERVER_API_KEY = "game-server-key";
+    public static final String GAME_SERVER_API_KEY_HASH = "bd7a7a0e6cc00539e2c6d2bbff2e1a6902bdfeb05101b3939ffca45ce19f950d";
     public static final String HASHED_PASSWORD = "$2a$10$hashedPasswordExample";
     public static final String ENCODED_PASSWORD = "$2a$10$encoded";
     public static final String PLAYER_ID_CLAIM = "player_id";
@@ -60,15 +62,27 @@ public class TestConstants {
     public static final String JWKS_PATH = "/jwk/.well-known/jwks.json";
     public static final String GET_SERVER_INFO_PATH = "/servers/info/by-endpoint";
     public static final String GET_SERVER_MATCHES_SINCE_PATH = "/servers/matches/{timestamp}";
+    public static final String GET_SERVER_MATCHES_PATH = "/servers/matches";
     public static final String GET_SERVERS_INFO_PATH = "/servers/info";
     public static final String GET_SERVER_STATS_PATH = "/servers/stats";
+    public static final String GET_SERVER_SCORE_DISTRIBUTION_PATH = "/servers/score-distribution";
+    public static final String GET_SERVER_TIMESERIES_PATH = "/servers/timeseries";
+    public static final String GET_SERVER_ACTIVE_PLAYERS_PATH = "/servers/active-players";
     public static final String GET_PLAYERS_USERNAME_STATS_PATH = "/players/{username}/stats";
+    public static final String GET_PLAYERS_USERNAME_SCORE_DISTRIBUTION_PATH = "/players/{username}/score-distribution";
+    public static final String GET_PLAYERS_USERNAME_RANK_PATH = "/players/{username}/rank";
+    public static final String GET_PLAYERS_USERNAME_MATCHES_PATH = "/players/{username}/matches";
     public static final String GET_RECENT_MATCHES_PATH = "/reports/recent-matches/{limit}";
     public static final String GET_BEST_PLAYERS_PATH = "/reports/best-players/{limit}";
+    public static final String GET_LEADERBOARD_SEGMENTS_PATH = "/reports/leaderboard-segments";
     public static final String GET_POPULAR_SERVERS_PATH = "/reports/popular-servers/{limit}";
+    public static final String POST_MATCHES_BATCH_PATH = "/matches/batch";
     public static final String PARAM_ENDPOINT = "endpoint";
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
 
     public static final String INTEGRATION_USERNAME = "DragonSlayer";
     public static final String INTEGRATION_PASSWORD = "1234";
+    public static final String LEGACY_PLAYER_STATS = "[\"com.azatkhaliullin.domain.PlayerStats\",{\"totalMatches\":2,"
+            + "\"totalScore\":150,\"bestScore\":100,\"worstScore\":50,\"averageScore\":75.0}]";
 
 }
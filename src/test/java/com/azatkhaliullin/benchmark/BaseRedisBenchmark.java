@@ -0,0 +1,187 @@
+package com.azatkhaliullin.benchmark;
+
+import com.azatkhaliullin.config.RedisConfig;
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.mapper.MatchResultMapper;
+import com.azatkhaliullin.property.ActivePlayersProperties;
+import com.azatkhaliullin.property.ClientCacheProperties;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.property.LeaderboardProperties;
+import com.azatkhaliullin.property.NearCacheProperties;
+import com.azatkhaliullin.property.TimeSeriesProperties;
+import com.azatkhaliullin.property.ValueCodecProperties;
+import com.azatkhaliullin.repository.ClientSideCache;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.repository.ReferenceDataCache;
+import com.azatkhaliullin.repository.ServerRepository;
+import com.azatkhaliullin.serializer.MatchJsonEncoder;
+import com.azatkhaliullin.serializer.TypedJsonRedisSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mapstruct.factory.Mappers;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Base class for benchmarks that run against a real Redis instance.
+ * Skipped unless started with {@code -Dbenchmark.redis-url=redis://localhost:6379}.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = BaseRedisBenchmark.REDIS_URL_PROPERTY, matches = ".+")
+public abstract class BaseRedisBenchmark {
+
+    public static final String REDIS_URL_PROPERTY = "benchmark.redis-url";
+
+    protected static final int PLAYERS_PER_MATCH = 10;
+    protected static final String[] SERVERS = {"bench-server-1", "bench-server-2", "bench-server-3"};
+
+    private final Random random = new Random(42);
+
+    protected LettuceConnectionFactory connectionFactory;
+    protected RedisConfig redisConfig;
+    protected RedisTemplate<String, Object> redisTemplate;
+    protected RedisSerializer<MatchResult> matchResultSerializer;
+    protected RedisTemplate<String, MatchResult> matchResultTemplate;
+    protected RedisTemplate<String, Player> playerTemplate;
+    protected RedisTemplate<String, Long> playerStatsTemplate;
+    protected ValueCodecProperties valueCodecProperties;
+    protected MatchJsonEncoder matchJsonEncoder;
+    protected LeaderboardProperties leaderboardProperties;
+    protected TimeSeriesProperties timeSeriesProperties;
+    protected ActivePlayersProperties activePlayersProperties;
+    protected ReferenceDataCache referenceDataCache;
+    protected ClientSideCache clientSideCache;
+
+    @BeforeAll
+    void setUpRedis() {
+        connectionFactory = new LettuceConnectionFactory(
+                LettuceConnectionFactory.createRedisConfiguration(System.getProperty(REDIS_URL_PROPERTY)),
+                LettucePoolingClientConfiguration.defaultConfiguration());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        redisConfig = new RedisConfig(new ObjectMapper(), connectionFactory);
+        valueCodecProperties = new ValueCodecProperties();
+        valueCodecProperties.setBinaryWrites(true);
+        valueCodecProperties.setApiJsonWrites(true);
+        matchJsonEncoder = new MatchJsonEncoder(Mappers.getMapper(MatchResultMapper.class),
+                new ObjectMapper().findAndRegisterModules());
+        leaderboardProperties = new LeaderboardProperties();
+        leaderboardProperties.setDailyRetention(Duration.ofDays(35));
+        leaderboardProperties.setWindowCacheTtl(Duration.ofSeconds(30));
+        leaderboardProperties.getSegments().setCountries(List.of("Germany", "Japan", "USA"));
+        leaderboardProperties.getSegments().setLevelBands(List.of(1, 10, 20, 30, 50));
+        timeSeriesProperties = new TimeSeriesProperties();
+        timeSeriesProperties.getRetention().setMinute(Duration.ofHours(48));
+        activePlayersProperties = new ActivePlayersProperties();
+        activePlayersProperties.setDailyRetention(Duration.ofDays(35));
+        matchResultSerializer = redisConfig.matchResultSerializer(valueCodecProperties);
+        redisTemplate = initialized(redisConfig.redisTemplate());
+        matchResultTemplate = initialized(redisConfig.matchResultTemplate(matchResultSerializer));
+        playerTemplate = initialized(redisConfig.playerTemplate());
+        playerStatsTemplate = initialized(redisConfig.playerStatsTemplate());
+        // Benchmarks measure Redis round trips, so reads go past the near-cache
+        NearCacheProperties nearCacheProperties = new NearCacheProperties();
+        nearCacheProperties.setExpireAfterWrite(Duration.ofMinutes(10));
+        referenceDataCache = new ReferenceDataCache(redisTemplate, new RedisMessageListenerContainer(),
+                nearCacheProperties, new SimpleMeterRegistry());
+        // Off unless a benchmark turns it on, see ClientSideCacheBenchmark
+        clientSideCache = new ClientSideCache(connectionFactory, new ClientCacheProperties(), new SimpleMeterRegistry());
+        flushAll();
+    }
+
+    @AfterAll
+    void tearDownRedis() {
+        flushAll();
+        connectionFactory.destroy();
+    }
+
+    protected MatchRepository matchRepository(IngestProperties ingestProperties) {
+        return matchRepository(ingestProperties, clientSideCache);
+    }
+
+    protected MatchRepository matchRepository(IngestProperties ingestProperties, ClientSideCache clientSideCache) {
+        return new MatchRepository(redisTemplate, matchResultTemplate, matchResultSerializer,
+                redisConfig.ingestMatchScript(), ingestProperties, matchJsonEncoder, valueCodecProperties,
+                leaderboardProperties, timeSeriesProperties, activePlayersProperties, clientSideCache,
+                playerRepository(clientSideCache), serverRepository());
+    }
+
+    protected ServerRepository serverRepository() {
+        return new ServerRepository(initialized(redisConfig.serverInfoTemplate()), playerStatsTemplate,
+                referenceDataCache);
+    }
+
+    protected PlayerRepository playerRepository() {
+        return playerRepository(clientSideCache);
+    }
+
+    protected PlayerRepository playerRepository(ClientSideCache clientSideCache) {
+        return new PlayerRepository(redisTemplate, playerTemplate, playerStatsTemplate,
+                redisConfig.mergePlayerStatsScript(), redisConfig.playerRankScript(),
+                redisConfig.convertLegacyStatsScript(), leaderboardProperties, referenceDataCache, clientSideCache);
+    }
+
+    protected static <T> RedisTemplate<String, T> initialized(RedisTemplate<String, T> template) {
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * Typed JSON serializer configured like the ones of the aggregate templates.
+     */
+    protected static <T> RedisSerializer<T> jsonSerializer(Class<T> type) {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return new TypedJsonRedisSerializer<>(type, mapper, mapper);
+    }
+
+    protected void flushAll() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        }, true);
+    }
+
+    protected List<MatchResult> randomMatches(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> randomMatch())
+                .toList();
+    }
+
+    protected MatchResult randomMatch() {
+        List<PlayerScore> scores = IntStream.range(0, PLAYERS_PER_MATCH)
+                .mapToObj(i -> new PlayerScore(UUID.randomUUID(), random.nextInt(101)))
+                .toList();
+        return MatchResult.builder()
+                .id(UUID.randomUUID())
+                .serverEndpoint(SERVERS[random.nextInt(SERVERS.length)])
+                .playedAt(Instant.now())
+                .scores(scores)
+                .build();
+    }
+
+    protected static void report(String name, int matches, long elapsedNanos, double roundTripsPerMatch) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("%-40s %8d matches %10.0f matches/sec %8.3f RTT/match%n",
+                name, matches, matches / seconds, roundTripsPerMatch);
+    }
+}
@@ -0,0 +1,175 @@
+package com.azatkhaliullin.benchmark;
+
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.RatedPlayer;
+import com.azatkhaliullin.property.ClientCacheProperties;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.ClientSideCache;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.service.ReportService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Counts the MGETs and HGETALLs sent to Redis by /reports/recent-matches and by player stats
+ * reads, the top rated players and single players mostly drawn from them, with and without
+ * the client-side cache, while new matches keep coming in. With the cache, a request only
+ * reads the matches ingested since the previous one and the stats that changed meanwhile.
+ */
+class ClientSideCacheBenchmark extends BaseRedisBenchmark {
+
+    private static final int STORED_MATCHES = 20_000;
+    private static final int RECENT_COUNT = 100;
+    private static final int PLAYERS = 1_000;
+    private static final int TOP_COUNT = 100;
+    private static final int PLAYER_READS_PER_REQUEST = 10;
+    private static final int REQUESTS = 2_000;
+    private static final int WARMUP_REQUESTS = 200;
+    // One new match every this many requests
+    private static final int REQUESTS_PER_MATCH = 10;
+    private static final int BATCH_SIZE = 500;
+
+    private final Random random = new Random(11);
+
+    private List<UUID> players;
+    private ClientSideCache cache;
+    private SimpleMeterRegistry cacheMeters;
+
+    @BeforeAll
+    void storeData() {
+        MatchRepository matchRepository = matchRepository(ingestProperties());
+        for (int i = 0; i < STORED_MATCHES; i += BATCH_SIZE) {
+            matchRepository.saveAll(randomMatches(BATCH_SIZE));
+        }
+
+        players = IntStream.range(0, PLAYERS).mapToObj(i -> UUID.randomUUID()).toList();
+        PlayerRepository playerRepository = playerRepository();
+        playerRepository.saveAll(players.stream()
+                .map(id -> new Player(id, "bench-" + id, 1 + random.nextInt(60), "Japan"))
+                .toList());
+        for (int i = 0; i < PLAYERS; i++) {
+            playerRepository.mergeScores(randomScores());
+        }
+    }
+
+    @AfterEach
+    void stopCache() {
+        if (cache != null) cache.stop();
+    }
+
+    @Test
+    void recentMatches() {
+        runRecentMatches("recent matches, no client cache", matchRepository(ingestProperties()));
+        runRecentMatches("recent matches, client cache", matchRepository(ingestProperties(), startedCache()));
+    }
+
+    @Test
+    void playerStats() {
+        runPlayerStats("player stats, no client cache", playerRepository());
+        runPlayerStats("player stats, client cache", playerRepository(startedCache()));
+    }
+
+    private void runRecentMatches(String name, MatchRepository matchRepository) {
+        ReportService reportService = new ReportService(matchRepository, null, null, null);
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            reportService.getRecentMatches(RECENT_COUNT);
+        }
+
+        Properties before = commandStats();
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            if (i % REQUESTS_PER_MATCH == 0) matchRepository.save(randomMatch());
+            reportService.getRecentMatches(RECENT_COUNT);
+        }
+        report(name, System.nanoTime() - start, before, commandStats());
+    }
+
+    private void runPlayerStats(String name, PlayerRepository playerRepository) {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            readPlayerStats(playerRepository);
+        }
+
+        Properties before = commandStats();
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            if (i % REQUESTS_PER_MATCH == 0) playerRepository.mergeScores(randomScores());
+            readPlayerStats(playerRepository);
+        }
+        report(name, System.nanoTime() - start, before, commandStats());
+    }
+
+    // The top rated players, then single players, mostly from the top
+    private void readPlayerStats(PlayerRepository playerRepository) {
+        List<UUID> top = playerRepository.findTopRated(TOP_COUNT).stream()
+                .map(RatedPlayer::getPlayerId)
+                .toList();
+        for (int i = 0; i < PLAYER_READS_PER_REQUEST; i++) {
+            UUID playerId = random.nextInt(10) < 8 && !top.isEmpty()
+                    ? top.get(random.nextInt(top.size()))
+                    : players.get(random.nextInt(PLAYERS));
+            playerRepository.findPlayerStats(playerId);
+        }
+    }
+
+    private ClientSideCache startedCache() {
+        ClientCacheProperties properties = new ClientCacheProperties();
+        properties.setEnabled(true);
+        properties.setPrefixes(List.of("match:", "matches:json:", "players:stats:"));
+        properties.setMaxEntries(50_000);
+        cacheMeters = new SimpleMeterRegistry();
+        cache = new ClientSideCache(connectionFactory, properties, cacheMeters);
+        cache.start();
+        cache.connect();
+        return cache;
+    }
+
+    private List<PlayerScore> randomScores() {
+        return IntStream.range(0, PLAYERS_PER_MATCH)
+                .mapToObj(i -> new PlayerScore(players.get(random.nextInt(PLAYERS)), random.nextInt(101)))
+                .toList();
+    }
+
+    private Properties commandStats() {
+        return redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("commandstats"));
+    }
+
+    private void report(String name, long elapsedNanos, Properties before, Properties after) {
+        long mgets = calls(after, "mget") - calls(before, "mget");
+        long hgetalls = calls(after, "hgetall") - calls(before, "hgetall");
+        String hitRatio = "-";
+        if (cacheMeters != null && cache != null && cache.isRunning()) {
+            double hits = cacheMeters.get("cache.gets").tag("result", "hit").functionCounter().count();
+            double misses = cacheMeters.get("cache.gets").tag("result", "miss").functionCounter().count();
+            hitRatio = String.format("%.3f", hits / (hits + misses));
+        }
+        System.out.printf("%-34s %8.0f us/request %8d MGET %8d HGETALL %8s key hit ratio%n",
+                name, elapsedNanos / 1_000.0 / REQUESTS, mgets, hgetalls, hitRatio);
+    }
+
+    // e.g. cmdstat_mget=calls=12,usec=345,usec_per_call=28.75,...
+    private static long calls(Properties stats, String command) {
+        String value = stats.getProperty("cmdstat_" + command);
+        if (value == null) return 0;
+        String calls = value.split(",")[0];
+        return Long.parseLong(calls.substring(calls.indexOf('=') + 1));
+    }
+
+    private static IngestProperties ingestProperties() {
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.getDedup().setMarkerTtl(Duration.ofHours(1));
+        return ingestProperties;
+    }
+}
@@ -0,0 +1,164 @@
+package com.azatkhaliullin.benchmark;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.property.ValueCodecProperties;
+import com.azatkhaliullin.serializer.CompressingRedisSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.luben.zstd.ZstdDictTrainer;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the JSON layout with default typing, typed JSON without class names and the binary
+ * match layout: bytes per match,
+ * encode and decode time, and Redis used_memory once the encoded matches are stored, projected
+ * to 10M matches. Set {@code -Dbenchmark.codec.matches=10000000} to store the full 10M instead
+ * of projecting; the JSON run needs about 14 GB of Redis memory then.
+ * <p>
+ * The zstd rows draw players from a fixed pool, as in production where the same players play
+ * many matches, and compress with a dictionary trained on a separate sample of such matches.
+ */
+class MatchCodecBenchmark extends BaseRedisBenchmark {
+
+    private static final int MATCHES = Integer.getInteger("benchmark.codec.matches", 200_000);
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int BATCH_SIZE = 1_000;
+    private static final long PROJECTED_MATCHES = 10_000_000L;
+    private static final int PLAYER_POOL_SIZE = Integer.getInteger("benchmark.codec.players", 1_000);
+    private static final int TRAINING_SAMPLES = 10_000;
+    private static final int DICTIONARY_SIZE = 16_384;
+
+    private final Random random = new Random(7);
+    private final List<UUID> playerPool = IntStream.range(0, PLAYER_POOL_SIZE)
+            .mapToObj(i -> UUID.randomUUID())
+            .toList();
+
+    @Test
+    void defaultTypingJson() {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.activateDefaultTyping(mapper.getPolymorphicTypeValidator(), ObjectMapper.DefaultTyping.NON_FINAL);
+        run("json + default typing", new GenericJackson2JsonRedisSerializer(mapper));
+    }
+
+    @Test
+    void typedJson() {
+        run("typed json", jsonSerializer(MatchResult.class));
+    }
+
+    @Test
+    void binary() {
+        ValueCodecProperties properties = new ValueCodecProperties();
+        properties.setBinaryWrites(true);
+        run("binary v1", redisConfig.matchResultSerializer(properties));
+    }
+
+    @Test
+    void binaryWithDictionary() {
+        RedisSerializer<MatchResult> binary = matchResultSerializer;
+        run("binary v1, pooled players", binary, pooledMatches(Math.min(MATCHES, 100_000)));
+        run("binary v1 + zstd dict", compressing(binary), pooledMatches(Math.min(MATCHES, 100_000)));
+    }
+
+    @Test
+    void typedJsonWithDictionary() {
+        RedisSerializer<MatchResult> json = jsonSerializer(MatchResult.class);
+        run("typed json, pooled players", json, pooledMatches(Math.min(MATCHES, 100_000)));
+        run("typed json + zstd dict", compressing(json), pooledMatches(Math.min(MATCHES, 100_000)));
+    }
+
+    private CompressingRedisSerializer<MatchResult> compressing(RedisSerializer<MatchResult> encoding) {
+        ZstdDictTrainer trainer = new ZstdDictTrainer(64 << 20, DICTIONARY_SIZE);
+        pooledMatches(TRAINING_SAMPLES).forEach(match -> trainer.addSample(encoding.serialize(match)));
+        return new CompressingRedisSerializer<>(encoding, List.of(trainer.trainSamples()), true, 3);
+    }
+
+    private List<MatchResult> pooledMatches(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> MatchResult.builder()
+                        .id(UUID.randomUUID())
+                        .serverEndpoint(SERVERS[random.nextInt(SERVERS.length)])
+                        .playedAt(Instant.now())
+                        .scores(IntStream.range(0, PLAYERS_PER_MATCH)
+                                .mapToObj(j -> new PlayerScore(playerPool.get(random.nextInt(PLAYER_POOL_SIZE)),
+                                        random.nextInt(101)))
+                                .toList())
+                        .build())
+                .toList();
+    }
+
+    private void run(String name, RedisSerializer<? super MatchResult> serializer) {
+        run(name, serializer, randomMatches(Math.min(MATCHES, 100_000)));
+    }
+
+    private void run(String name, RedisSerializer<? super MatchResult> serializer, List<MatchResult> matches) {
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            matches.forEach(match -> serializer.deserialize(serializer.serialize(match)));
+        }
+
+        List<byte[]> encoded = new ArrayList<>(matches.size());
+        long start = System.nanoTime();
+        for (MatchResult match : matches) {
+            encoded.add(serializer.serialize(match));
+        }
+        long encodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (byte[] bytes : encoded) {
+            serializer.deserialize(bytes);
+        }
+        long decodeNanos = System.nanoTime() - start;
+
+        long totalBytes = encoded.stream().mapToLong(bytes -> bytes.length).sum();
+        double memoryPerMatch = storedMemoryPerMatch(encoded);
+
+        System.out.printf("%-28s %6.0f bytes/match %6.0f ns encode %6.0f ns decode %8.0f used_memory bytes/match"
+                        + " %6.2f GB at %dM%n",
+                name, (double) totalBytes / encoded.size(), (double) encodeNanos / encoded.size(),
+                (double) decodeNanos / encoded.size(), memoryPerMatch,
+                memoryPerMatch * PROJECTED_MATCHES / 1e9, PROJECTED_MATCHES / 1_000_000);
+    }
+
+    /**
+     * Stores {@link #MATCHES} values under match keys, cycling through the encoded samples, and
+     * returns the growth of used_memory per stored match, keys and allocator overhead included.
+     */
+    private double storedMemoryPerMatch(List<byte[]> encoded) {
+        flushAll();
+        long before = usedMemory();
+        for (int from = 0; from < MATCHES; from += BATCH_SIZE) {
+            int batchStart = from;
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = batchStart; i < Math.min(batchStart + BATCH_SIZE, MATCHES); i++) {
+                    byte[] key = ("match:" + new UUID(0, i)).getBytes(StandardCharsets.UTF_8);
+                    connection.stringCommands().set(key, encoded.get(i % encoded.size()));
+                }
+                return null;
+            });
+        }
+        double perMatch = (double) (usedMemory() - before) / MATCHES;
+        flushAll();
+        return perMatch;
+    }
+
+    private long usedMemory() {
+        Properties info = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("memory"));
+        return Long.parseLong(info.getProperty("used_memory"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.azatkhaliullin.benchmark;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.service.PlayerStatsUpdateService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Compares the former one-command-per-round-trip ingest with the pipelined
+ * {@link MatchRepository#save} and {@link MatchRepository#saveAll}, and the
+ * save plus a separate stats merge with the scripted {@link MatchRepository#ingest},
+ * and the cost of re-ingesting already ingested matches.
+ */
+class MatchIngestBenchmark extends BaseRedisBenchmark {
+
+    private static final int MATCHES = 10_000;
+    private static final int WARMUP_MATCHES = 2_000;
+    private static final int BATCH_SIZE = 500;
+
+    private MatchRepository matchRepository;
+    private PlayerStatsUpdateService playerStatsUpdateService;
+
+    @BeforeEach
+    void setUp() {
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.getDedup().setMarkerTtl(Duration.ofHours(1));
+        matchRepository = matchRepository(ingestProperties);
+        playerStatsUpdateService = new PlayerStatsUpdateService(playerRepository(), ingestProperties,
+                new SimpleMeterRegistry());
+        flushAll();
+    }
+
+    @Test
+    void sequentialCommands() {
+        randomMatches(WARMUP_MATCHES).forEach(this::saveSequentially);
+        List<MatchResult> matches = randomMatches(MATCHES);
+
+        long start = System.nanoTime();
+        matches.forEach(this::saveSequentially);
+        report("sequential (baseline)", MATCHES, System.nanoTime() - start, 4 + PLAYERS_PER_MATCH);
+    }
+
+    @Test
+    void pipelinedSave() {
+        randomMatches(WARMUP_MATCHES).forEach(matchRepository::save);
+        List<MatchResult> matches = randomMatches(MATCHES);
+
+        long start = System.nanoTime();
+        matches.forEach(matchRepository::save);
+        report("pipelined save", MATCHES, System.nanoTime() - start, 1);
+    }
+
+    @Test
+    void pipelinedSaveAll() {
+        matchRepository.saveAll(randomMatches(WARMUP_MATCHES));
+        List<MatchResult> matches = randomMatches(MATCHES);
+
+        long start = System.nanoTime();
+        for (int from = 0; from < MATCHES; from += BATCH_SIZE) {
+            matchRepository.saveAll(matches.subList(from, Math.min(from + BATCH_SIZE, MATCHES)));
+        }
+        report("pipelined saveAll(" + BATCH_SIZE + ")", MATCHES, System.nanoTime() - start, 1.0 / BATCH_SIZE);
+    }
+
+    @Test
+    void saveWithStatsMerge() {
+        randomMatches(WARMUP_MATCHES).forEach(this::saveWithStatsMerge);
+        List<MatchResult> matches = randomMatches(MATCHES);
+
+        long start = System.nanoTime();
+        matches.forEach(this::saveWithStatsMerge);
+        report("save + pipelined stats merge", MATCHES, System.nanoTime() - start, 2);
+    }
+
+    @Test
+    void scriptedIngest() {
+        randomMatches(WARMUP_MATCHES).forEach(matchRepository::ingest);
+        List<MatchResult> matches = randomMatches(MATCHES);
+
+        long start = System.nanoTime();
+        matches.forEach(matchRepository::ingest);
+        report("scripted ingest", MATCHES, System.nanoTime() - start, 1);
+    }
+
+    @Test
+    void pipelinedScriptedIngestAll() {
+        matchRepository.ingestAll(randomMatches(WARMUP_MATCHES));
+        List<MatchResult> matches = randomMatches(MATCHES);
+
+        long start = System.nanoTime();
+        for (int from = 0; from < MATCHES; from += BATCH_SIZE) {
+            matchRepository.ingestAll(matches.subList(from, Math.min(from + BATCH_SIZE, MATCHES)));
+        }
+        report("scripted ingestAll(" + BATCH_SIZE + ")", MATCHES, System.nanoTime() - start, 1.0 / BATCH_SIZE);
+    }
+
+    @Test
+    void pipelinedDuplicateIngestAll() {
+        List<MatchResult> matches = randomMatches(MATCHES);
+        for (int from = 0; from < MATCHES; from += BATCH_SIZE) {
+            matchRepository.ingestAll(matches.subList(from, Math.min(from + BATCH_SIZE, MATCHES)));
+        }
+
+        long start = System.nanoTime();
+        int stored = 0;
+        for (int from = 0; from < MATCHES; from += BATCH_SIZE) {
+            stored += matchRepository.ingestAll(matches.subList(from, Math.min(from + BATCH_SIZE, MATCHES))).size();
+        }
+        report("duplicate ingestAll(" + BATCH_SIZE + "), stored " + stored, MATCHES,
+                System.nanoTime() - start, 1.0 / BATCH_SIZE);
+    }
+
+    private void saveWithStatsMerge(MatchResult match) {
+        matchRepository.save(match);
+        playerStatsUpdateService.updatePlayerStats(match);
+    }
+
+    private void saveSequentially(MatchResult match) {
+        long playedAt = match.getPlayedAt().toEpochMilli();
+        matchResultTemplate.opsForValue().set("match:" + match.getId(), match);
+        redisTemplate.opsForSet().add("matches:by_server:" + match.getServerEndpoint(), match.getId());
+        redisTemplate.opsForZSet().add("matches:by_server_since:" + match.getServerEndpoint(), match.getId(), playedAt);
+        redisTemplate.opsForZSet().add("matches:by_time", match.getId(), playedAt);
+        match.getScores().forEach(score ->
+                redisTemplate.opsForSet().add("matches:by_player:" + score.getPlayerId(), match.getId()));
+    }
+}
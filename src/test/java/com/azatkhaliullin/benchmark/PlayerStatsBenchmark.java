@@ -0,0 +1,171 @@
+package com.azatkhaliullin.benchmark;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.PlayerStats;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.service.PlayerStatsUpdateService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the former JSON value player stats (GET, decode, merge, encode, SET per player)
+ * with hash fields updated by HINCRBY plus the score range script, a full JSON read with
+ * a single HGET of totalMatches, and per-match merges with coalesced deltas when a few star
+ * players take part in most matches.
+ */
+class PlayerStatsBenchmark extends BaseRedisBenchmark {
+
+    private static final int PLAYERS = 1_000;
+    private static final int UPDATES = 20_000;
+    private static final int WARMUP_MATCHES = 200;
+    private static final String LEGACY_STATS_PREFIX = "bench:legacy-stats:";
+    private static final int STAR_PLAYERS = 10;
+
+    private final Random random = new Random(7);
+
+    private PlayerRepository playerRepository;
+    private RedisTemplate<String, PlayerStats> legacyStatsTemplate;
+    private List<UUID> players;
+
+    @BeforeEach
+    void setUp() {
+        playerRepository = playerRepository();
+        legacyStatsTemplate = initialized(legacyStatsTemplate());
+        players = IntStream.range(0, PLAYERS).mapToObj(i -> UUID.randomUUID()).toList();
+        flushAll();
+    }
+
+    @Test
+    void jsonValueMerge() {
+        List<List<PlayerScore>> matches = randomMatchScores();
+        matches.subList(0, WARMUP_MATCHES).forEach(scores -> scores.forEach(this::mergeLegacy));
+
+        long start = System.nanoTime();
+        matches.forEach(scores -> scores.forEach(this::mergeLegacy));
+        print("JSON value merge per player (baseline)", UPDATES, System.nanoTime() - start);
+    }
+
+    @Test
+    void hashFieldMerge() {
+        List<List<PlayerScore>> matches = randomMatchScores();
+        matches.subList(0, WARMUP_MATCHES).forEach(playerRepository::mergeScores);
+
+        long start = System.nanoTime();
+        matches.forEach(playerRepository::mergeScores);
+        print("hash field merge, pipelined per match", UPDATES, System.nanoTime() - start);
+    }
+
+    @Test
+    void hotPlayerMerge() {
+        List<MatchResult> matches = hotPlayerMatches();
+        PlayerStatsUpdateService direct = updateService(false);
+        matches.subList(0, WARMUP_MATCHES).forEach(direct::updatePlayerStats);
+
+        long start = System.nanoTime();
+        matches.forEach(direct::updatePlayerStats);
+        print("hot players, merge per match", UPDATES, System.nanoTime() - start);
+
+        PlayerStatsUpdateService coalescing = updateService(true);
+        coalescing.start();
+        start = System.nanoTime();
+        matches.forEach(coalescing::updatePlayerStats);
+        coalescing.stop();
+        print("hot players, coalesced deltas", UPDATES, System.nanoTime() - start);
+    }
+
+    @Test
+    void totalMatchesRead() {
+        randomMatchScores().forEach(scores -> {
+            scores.forEach(this::mergeLegacy);
+            playerRepository.mergeScores(scores);
+        });
+        readLegacyTotalMatches();
+        readTotalMatches();
+
+        long start = System.nanoTime();
+        readLegacyTotalMatches();
+        print("totalMatches from JSON value (baseline)", UPDATES, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        readTotalMatches();
+        print("totalMatches from hash field", UPDATES, System.nanoTime() - start);
+    }
+
+    private void readLegacyTotalMatches() {
+        for (int i = 0; i < UPDATES; i++) {
+            legacyStatsTemplate.opsForValue().get(LEGACY_STATS_PREFIX + players.get(i % PLAYERS)).getTotalMatches();
+        }
+    }
+
+    private void readTotalMatches() {
+        for (int i = 0; i < UPDATES; i++) {
+            playerRepository.findTotalMatches(players.get(i % PLAYERS));
+        }
+    }
+
+    private void mergeLegacy(PlayerScore score) {
+        String key = LEGACY_STATS_PREFIX + score.getPlayerId();
+        PlayerStats current = legacyStatsTemplate.opsForValue().get(key);
+        if (current == null) current = new PlayerStats(0, 0, 0, Integer.MAX_VALUE, 0.0);
+        int totalMatches = current.getTotalMatches() + 1;
+        int totalScore = current.getTotalScore() + score.getScore();
+        legacyStatsTemplate.opsForValue().set(key, new PlayerStats(totalMatches, totalScore,
+                Math.max(current.getBestScore(), score.getScore()),
+                Math.min(current.getWorstScore(), score.getScore()),
+                (double) totalScore / totalMatches));
+    }
+
+    private RedisTemplate<String, PlayerStats> legacyStatsTemplate() {
+        RedisTemplate<String, PlayerStats> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(jsonSerializer(PlayerStats.class));
+        return template;
+    }
+
+    private List<List<PlayerScore>> randomMatchScores() {
+        return IntStream.range(0, UPDATES / PLAYERS_PER_MATCH)
+                .mapToObj(i -> IntStream.range(0, PLAYERS_PER_MATCH)
+                        .mapToObj(j -> new PlayerScore(players.get(random.nextInt(PLAYERS)), random.nextInt(101)))
+                        .toList())
+                .toList();
+    }
+
+    private PlayerStatsUpdateService updateService(boolean coalescing) {
+        IngestProperties ingestProperties = new IngestProperties();
+        IngestProperties.StatsCoalescing properties = ingestProperties.getStatsCoalescing();
+        properties.setEnabled(coalescing);
+        properties.setStripes(16);
+        properties.setMaxStaleness(Duration.ofMillis(100));
+        properties.setMaxPendingUpdates(5_000);
+        return new PlayerStatsUpdateService(playerRepository, ingestProperties, new SimpleMeterRegistry());
+    }
+
+    // Every match has a star player, the other seats are drawn from the whole population
+    private List<MatchResult> hotPlayerMatches() {
+        List<MatchResult> matches = new ArrayList<>();
+        for (List<PlayerScore> scores : randomMatchScores()) {
+            List<PlayerScore> withStar = new ArrayList<>(scores);
+            withStar.set(0, new PlayerScore(players.get(random.nextInt(STAR_PLAYERS)), random.nextInt(101)));
+            matches.add(new MatchResult(UUID.randomUUID(), "bench", Instant.now(), withStar));
+        }
+        return matches;
+    }
+
+    private static void print(String name, int operations, long elapsedNanos) {
+        System.out.printf("%-40s %8d ops %10.0f ops/sec%n", name, operations, operations / (elapsedNanos / 1e9));
+    }
+}
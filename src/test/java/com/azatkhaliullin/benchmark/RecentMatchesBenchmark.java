@@ -0,0 +1,85 @@
+package com.azatkhaliullin.benchmark;
+
+import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.mapper.MatchResultMapper;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.service.ReportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Compares serving /reports/recent-matches by decoding every match, mapping it to its DTO and
+ * writing the list as JSON, with joining the API JSON stored alongside every match: response
+ * time and bytes allocated per response.
+ */
+class RecentMatchesBenchmark extends BaseRedisBenchmark {
+
+    private static final int STORED_MATCHES = 20_000;
+    private static final int COUNT = Integer.getInteger("benchmark.recent.count", 100);
+    private static final int REQUESTS = 2_000;
+    private static final int WARMUP_REQUESTS = 500;
+    private static final int BATCH_SIZE = 500;
+
+    private final MatchResultMapper matchResultMapper = Mappers.getMapper(MatchResultMapper.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private MatchRepository matchRepository;
+    private ReportService reportService;
+
+    @BeforeAll
+    void storeMatches() {
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.getDedup().setMarkerTtl(Duration.ofHours(1));
+        matchRepository = matchRepository(ingestProperties);
+        reportService = new ReportService(matchRepository, null, null, null);
+        for (int i = 0; i < STORED_MATCHES; i += BATCH_SIZE) {
+            matchRepository.saveAll(randomMatches(BATCH_SIZE));
+        }
+    }
+
+    @Test
+    void decodeAndEncode() {
+        run("decode + map + encode", count -> {
+            List<MatchResultDto> matches = matchRepository.findRecent(count).stream()
+                    .map(matchResultMapper::toDto)
+                    .toList();
+            try {
+                return objectMapper.writeValueAsBytes(matches);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void storedJson() {
+        run("stored api json", reportService::getRecentMatches);
+    }
+
+    private void run(String name, IntFunction<byte[]> request) {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            request.apply(COUNT);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            bytes += request.apply(COUNT).length;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("%-24s %d matches/response %8.0f us/response %8d response bytes %10d allocated bytes/response%n",
+                name, COUNT, elapsed / 1_000.0 / REQUESTS, bytes / REQUESTS, allocated / REQUESTS);
+    }
+}
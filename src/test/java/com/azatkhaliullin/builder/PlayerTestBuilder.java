@@ -11,6 +11,8 @@ public class PlayerTestBuilder {
 
     private UUID id = ID_A;
     private String username = USERNAME_A;
+    private int level;
+    private String country;
 
     public static PlayerTestBuilder testPlayer() {
         return new PlayerTestBuilder();
@@ -26,10 +28,22 @@ public class PlayerTestBuilder {
         return this;
     }
 
+    public PlayerTestBuilder withLevel(int level) {
+        this.level = level;
+        return this;
+    }
+
+    public PlayerTestBuilder withCountry(String country) {
+        this.country = country;
+        return this;
+    }
+
     public Player build() {
         return Player.builder()
                 .id(id)
                 .username(username)
+                .level(level)
+                .country(country)
                 .build();
     }
 }
@@ -22,6 +22,11 @@ public class ServerInfoBuilder {
         return this;
     }
 
+    public ServerInfoBuilder withRegion(String region) {
+        this.region = region;
+        return this;
+    }
+
     public ServerInfo build() {
         return ServerInfo.builder()
                 .endpoint(endpoint)
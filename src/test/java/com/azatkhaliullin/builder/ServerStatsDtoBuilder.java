@@ -15,9 +15,9 @@ public class ServerStatsDtoBuilder {
     private String endpoint = SERVER_EU_ENDPOINT;
     private String name = SERVER_NAME;
     private String region = REGION;
-    private Integer totalMatches = TOTAL_MATCHES;
+    private Long totalMatches = (long) TOTAL_MATCHES;
     private Integer averagePlayersPerMatch = AVERAGE_PLAYER_PER_MATCH;
-    private Integer totalScore = TOTAL_SCORE;
+    private Long totalScore = (long) TOTAL_SCORE;
     private Double averageScore = AVERAGE_SCORE;
 
     public static ServerStatsDtoBuilder testServerStatsDto() {
@@ -29,7 +29,7 @@ public class ServerStatsDtoBuilder {
         return this;
     }
 
-    public ServerStatsDtoBuilder withTotalMatches(Integer totalMatches) {
+    public ServerStatsDtoBuilder withTotalMatches(long totalMatches) {
         this.totalMatches = totalMatches;
         return this;
     }
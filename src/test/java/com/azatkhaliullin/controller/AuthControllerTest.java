@@ -2,6 +2,7 @@ package com.azatkhaliullin.controller;
 
 import com.azatkhaliullin.dto.LoginResponse;
 import com.azatkhaliullin.service.AuthenticationService;
+import com.azatkhaliullin.property.GameServerProperties;
 import com.azatkhaliullin.service.JwtTokenService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -36,6 +37,8 @@ class AuthControllerTest {
 
     @MockitoBean
     private JwtTokenService jwtTokenService;
+    @MockitoBean
+    private GameServerProperties gameServerProperties;
 
     @MockitoBean
     private AuthenticationService authenticationService;
@@ -1,6 +1,7 @@
 package com.azatkhaliullin.controller;
 
 import com.azatkhaliullin.dto.JwksResponse;
+import com.azatkhaliullin.property.GameServerProperties;
 import com.azatkhaliullin.service.JwtTokenService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -29,6 +30,8 @@ class JwkControllerTest {
 
     @MockitoBean
     private JwtTokenService jwtTokenService;
+    @MockitoBean
+    private GameServerProperties gameServerProperties;
 
     @Nested
     @DisplayName("GET /jwk/.well-known/jwks.json")
@@ -0,0 +1,103 @@
+package com.azatkhaliullin.controller;
+
+import com.azatkhaliullin.config.SecurityConfig;
+import com.azatkhaliullin.dto.MatchBatchResponse;
+import com.azatkhaliullin.property.GameServerProperties;
+import com.azatkhaliullin.service.JwtTokenService;
+import com.azatkhaliullin.service.MatchIngestService;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static com.azatkhaliullin.TestConstants.APPLICATION_NDJSON;
+import static com.azatkhaliullin.TestConstants.GAME_SERVER_API_KEY;
+import static com.azatkhaliullin.TestConstants.GAME_SERVER_API_KEY_HASH;
+import static com.azatkhaliullin.TestConstants.POST_MATCHES_BATCH_PATH;
+import static com.azatkhaliullin.TestConstants.USERNAME_A;
+import static com.azatkhaliullin.TestConstants.VALID_JWT_TOKEN;
+import static com.azatkhaliullin.util.SecurityConstants.API_KEY_HEADER;
+import static com.azatkhaliullin.util.SecurityConstants.AUTHORIZATION_HEADER;
+import static com.azatkhaliullin.util.SecurityConstants.BEARER_PREFIX;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Method security proxies the controller class as in the application, not its API interface
+@WebMvcTest(MatchController.class)
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+@Import(SecurityConfig.class)
+@EnableConfigurationProperties(GameServerProperties.class)
+@TestPropertySource(properties = "stats.game-servers.api-key-hashes=" + GAME_SERVER_API_KEY_HASH)
+class MatchControllerSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private MatchIngestService matchIngestService;
+    @MockitoBean
+    private JwtTokenService jwtTokenService;
+
+    @Nested
+    @DisplayName("POST /matches/batch")
+    class IngestMatchesTests {
+
+        @Test
+        void shouldAcceptGameServerApiKey() throws Exception {
+            when(matchIngestService.ingestBatch(any(InputStream.class)))
+                    .thenReturn(MatchBatchResponse.builder().accepted(0).rejected(0).batches(List.of()).build());
+
+            mockMvc.perform(post(POST_MATCHES_BATCH_PATH)
+                            .header(API_KEY_HEADER, GAME_SERVER_API_KEY)
+                            .contentType(APPLICATION_NDJSON)
+                            .content("{}\n")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        void shouldForbidPlayerToken() throws Exception {
+            Claims claims = Mockito.mock(Claims.class);
+            when(claims.getSubject()).thenReturn(USERNAME_A);
+            when(jwtTokenService.validateAndGetClaims(VALID_JWT_TOKEN)).thenReturn(claims);
+
+            mockMvc.perform(post(POST_MATCHES_BATCH_PATH)
+                            .header(AUTHORIZATION_HEADER, BEARER_PREFIX + VALID_JWT_TOKEN)
+                            .contentType(APPLICATION_NDJSON)
+                            .content("{}\n")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isForbidden());
+
+            verifyNoInteractions(matchIngestService);
+        }
+
+        @Test
+        void shouldForbidUnknownApiKey() throws Exception {
+            mockMvc.perform(post(POST_MATCHES_BATCH_PATH)
+                            .header(API_KEY_HEADER, "unknown-key")
+                            .contentType(APPLICATION_NDJSON)
+                            .content("{}\n")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isForbidden());
+
+            verifyNoInteractions(matchIngestService);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.azatkhaliullin.controller;
+
+import com.azatkhaliullin.config.SecurityConfig;
+import com.azatkhaliullin.dto.MatchBatchResponse;
+import com.azatkhaliullin.dto.MatchBatchResult;
+import com.azatkhaliullin.exception.IngestQueueFullException;
+import com.azatkhaliullin.exception.IngestUnavailableException;
+import com.azatkhaliullin.exception.InvalidMatchBatchException;
+import com.azatkhaliullin.security.ApiKeyFilter;
+import com.azatkhaliullin.security.JwtTokenFilter;
+import com.azatkhaliullin.service.MatchIngestService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.azatkhaliullin.TestConstants.APPLICATION_NDJSON;
+import static com.azatkhaliullin.TestConstants.POST_MATCHES_BATCH_PATH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(value = MatchController.class, excludeAutoConfiguration = SecurityAutoConfiguration.class,
+        excludeFilters = {
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = SecurityConfig.class),
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JwtTokenFilter.class),
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = ApiKeyFilter.class)})
+class MatchControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private MatchIngestService matchIngestService;
+
+    @Nested
+    @DisplayName("POST /matches/batch")
+    class IngestMatchesTests {
+
+        @Test
+        void shouldReturnBatchCountsForNdjsonBody() throws Exception {
+            MatchBatchResponse response = MatchBatchResponse.builder()
+                    .accepted(2)
+                    .rejected(1)
+                    .batches(List.of(MatchBatchResult.builder().batch(0).accepted(2).rejected(1).build()))
+                    .build();
+
+            when(matchIngestService.ingestBatch(any(InputStream.class))).thenReturn(response);
+
+            mockMvc.perform(post(POST_MATCHES_BATCH_PATH)
+                            .contentType(APPLICATION_NDJSON)
+                            .content("{}\n{}\n{}\n")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.accepted").value(2))
+                    .andExpect(jsonPath("$.rejected").value(1))
+                    .andExpect(jsonPath("$.batches[0].batch").value(0));
+
+            verify(matchIngestService).ingestBatch(any(InputStream.class));
+        }
+
+        @Test
+        void shouldPassBodyAsUnreadStream() throws Exception {
+            AtomicReference<MockHttpServletRequest> sent = new AtomicReference<>();
+            AtomicBoolean unreadOnIngest = new AtomicBoolean();
+            AtomicReference<String> ingested = new AtomicReference<>();
+            when(matchIngestService.ingestBatch(any(InputStream.class))).thenAnswer(invocation -> {
+                unreadOnIngest.set(!sent.get().getInputStream().isFinished());
+                ingested.set(new String(invocation.<InputStream>getArgument(0).readAllBytes(), StandardCharsets.UTF_8));
+                return MatchBatchResponse.builder().accepted(2).rejected(0).batches(List.of()).build();
+            });
+
+            mockMvc.perform(post(POST_MATCHES_BATCH_PATH)
+                            .contentType(APPLICATION_NDJSON)
+                            .content("{}\n{}\n")
+                            .accept(APPLICATION_JSON)
+                            .with(request -> {
+                                sent.set(request);
+                                return request;
+                            }))
+                    .andExpect(status().isOk());
+
+            assertThat(unreadOnIngest).isTrue();
+            assertThat(ingested).hasValue("{}\n{}\n");
+        }
+
+        @Test
+        void shouldAcceptJsonArrayBody() throws Exception {
+            MatchBatchResponse response = MatchBatchResponse.builder()
+                    .accepted(0)
+                    .rejected(0)
+                    .batches(List.of())
+                    .build();
+
+            when(matchIngestService.ingestBatch(any(InputStream.class))).thenReturn(response);
+
+            mockMvc.perform(post(POST_MATCHES_BATCH_PATH)
+                            .contentType(APPLICATION_JSON)
+                            .content("[]")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.batches").isEmpty());
+        }
+
+        @Test
+        void shouldReturn400WhenBodyIsMalformed() throws Exception {
+            when(matchIngestService.ingestBatch(any(InputStream.class)))
+                    .thenThrow(new InvalidMatchBatchException("Malformed match batch body", null));
+
+            mockMvc.perform(post(POST_MATCHES_BATCH_PATH)
+                            .contentType(APPLICATION_JSON)
+                            .content("[{")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        void shouldReturn429WithRetryAfterWhenQueueIsFull() throws Exception {
+            when(matchIngestService.ingestBatch(any(InputStream.class)))
+                    .thenThrow(new IngestQueueFullException(Duration.ofMillis(1500)));
+
+            mockMvc.perform(post(POST_MATCHES_BATCH_PATH)
+                            .contentType(APPLICATION_NDJSON)
+                            .content("{}\n")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().string("Retry-After", "2"));
+        }
+
+        @Test
+        void shouldReturn503WhenIngestIsNotRunning() throws Exception {
+            when(matchIngestService.ingestBatch(any(InputStream.class)))
+                    .thenThrow(new IngestUnavailableException());
+
+            mockMvc.perform(post(POST_MATCHES_BATCH_PATH)
+                            .contentType(APPLICATION_NDJSON)
+                            .content("{}\n")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isServiceUnavailable());
+        }
+    }
+}
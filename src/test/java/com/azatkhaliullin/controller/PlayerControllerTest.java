@@ -1,8 +1,14 @@
 package com.azatkhaliullin.controller;
 
 import com.azatkhaliullin.config.SecurityConfig;
+import com.azatkhaliullin.dto.LeaderboardEntryDto;
+import com.azatkhaliullin.dto.MatchPageDto;
+import com.azatkhaliullin.dto.PlayerRankDto;
 import com.azatkhaliullin.dto.PlayerStatsDto;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
+import com.azatkhaliullin.security.ApiKeyFilter;
 import com.azatkhaliullin.security.JwtTokenFilter;
+import com.azatkhaliullin.service.MatchHistoryService;
 import com.azatkhaliullin.service.PlayerService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -15,17 +21,24 @@ import org.springframework.context.annotation.FilterType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.List;
 import java.util.Optional;
 
 import static com.azatkhaliullin.TestConstants.AVERAGE_SCORE;
 import static com.azatkhaliullin.TestConstants.BEST_SCORE;
+import static com.azatkhaliullin.TestConstants.GET_PLAYERS_USERNAME_MATCHES_PATH;
+import static com.azatkhaliullin.TestConstants.GET_PLAYERS_USERNAME_RANK_PATH;
+import static com.azatkhaliullin.TestConstants.GET_PLAYERS_USERNAME_SCORE_DISTRIBUTION_PATH;
 import static com.azatkhaliullin.TestConstants.GET_PLAYERS_USERNAME_STATS_PATH;
+import static com.azatkhaliullin.TestConstants.ID_A;
 import static com.azatkhaliullin.TestConstants.INVALID_USERNAME;
 import static com.azatkhaliullin.TestConstants.RATING;
 import static com.azatkhaliullin.TestConstants.TOTAL_MATCHES;
 import static com.azatkhaliullin.TestConstants.TOTAL_SCORE;
 import static com.azatkhaliullin.TestConstants.USERNAME_A;
+import static com.azatkhaliullin.TestConstants.USERNAME_B;
 import static com.azatkhaliullin.TestConstants.WORST_SCORE;
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
 import static com.azatkhaliullin.builder.PlayerStatsTestBuilder.testPlayerStats;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -38,7 +51,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WebMvcTest(value = PlayerController.class, excludeAutoConfiguration = SecurityAutoConfiguration.class,
         excludeFilters = {
                 @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = SecurityConfig.class),
-                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JwtTokenFilter.class)})
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JwtTokenFilter.class),
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = ApiKeyFilter.class)})
 class PlayerControllerTest {
 
     @Autowired
@@ -46,6 +60,8 @@ class PlayerControllerTest {
 
     @MockitoBean
     private PlayerService playerService;
+    @MockitoBean
+    private MatchHistoryService matchHistoryService;
 
     @Nested
     @DisplayName("GET /players/{username}/stats")
@@ -108,4 +124,111 @@ class PlayerControllerTest {
             verifyNoMoreInteractions(playerService);
         }
     }
+
+    @Nested
+    @DisplayName("GET /players/{username}/matches")
+    class GetPlayerMatchesTests {
+
+        @Test
+        void shouldReturnPageOfMatches() throws Exception {
+            MatchPageDto page = MatchPageDto.builder()
+                    .matches(List.of(testMatchResult().withId(ID_A).buildDto()))
+                    .prevCursor("prev")
+                    .build();
+
+            when(matchHistoryService.getPlayerMatches(USERNAME_A, null, null, "cursor", 10L, 20L))
+                    .thenReturn(Optional.of(page));
+
+            mockMvc.perform(get(GET_PLAYERS_USERNAME_MATCHES_PATH, USERNAME_A)
+                            .param("after", "cursor")
+                            .param("from", "10")
+                            .param("to", "20")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.matches[0].id").value(ID_A.toString()))
+                    .andExpect(jsonPath("$.prevCursor").value("prev"));
+
+            verify(matchHistoryService).getPlayerMatches(USERNAME_A, null, null, "cursor", 10L, 20L);
+            verifyNoMoreInteractions(matchHistoryService);
+        }
+
+        @Test
+        void shouldReturn404WhenPlayerNotFound() throws Exception {
+            when(matchHistoryService.getPlayerMatches(USERNAME_A, null, null, null, null, null))
+                    .thenReturn(Optional.empty());
+
+            mockMvc.perform(get(GET_PLAYERS_USERNAME_MATCHES_PATH, USERNAME_A)
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /players/{username}/score-distribution")
+    class GetPlayerScoreDistributionTests {
+
+        @Test
+        void shouldReturnScoreDistribution() throws Exception {
+            ScoreDistributionDto distribution = ScoreDistributionDto.builder()
+                    .totalScores(1L).median(BEST_SCORE).p90(BEST_SCORE).p99(BEST_SCORE)
+                    .counts(List.of(1L))
+                    .build();
+
+            when(playerService.getScoreDistribution(USERNAME_A)).thenReturn(Optional.of(distribution));
+
+            mockMvc.perform(get(GET_PLAYERS_USERNAME_SCORE_DISTRIBUTION_PATH, USERNAME_A)
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalScores").value(1))
+                    .andExpect(jsonPath("$.p90").value(BEST_SCORE));
+
+            verify(playerService).getScoreDistribution(USERNAME_A);
+            verifyNoMoreInteractions(playerService);
+        }
+
+        @Test
+        void shouldReturn404WhenPlayerNotFound() throws Exception {
+            when(playerService.getScoreDistribution(USERNAME_A)).thenReturn(Optional.empty());
+
+            mockMvc.perform(get(GET_PLAYERS_USERNAME_SCORE_DISTRIBUTION_PATH, USERNAME_A)
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /players/{username}/rank")
+    class GetPlayerRankTests {
+
+        @Test
+        void shouldReturnRankWithNeighbours() throws Exception {
+            PlayerRankDto rank = new PlayerRankDto(USERNAME_A, 2L, 3L, 66.67, RATING, List.of(
+                    new LeaderboardEntryDto(1L, USERNAME_B, RATING + 1),
+                    new LeaderboardEntryDto(2L, USERNAME_A, RATING)));
+
+            when(playerService.getPlayerRank(USERNAME_A, 1)).thenReturn(Optional.of(rank));
+
+            mockMvc.perform(get(GET_PLAYERS_USERNAME_RANK_PATH, USERNAME_A)
+                            .param("neighbours", "1")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.rank").value(2))
+                    .andExpect(jsonPath("$.rankedPlayers").value(3))
+                    .andExpect(jsonPath("$.percentile").value(66.67))
+                    .andExpect(jsonPath("$.neighbours[0].username").value(USERNAME_B))
+                    .andExpect(jsonPath("$.neighbours[1].rank").value(2));
+
+            verify(playerService).getPlayerRank(USERNAME_A, 1);
+            verifyNoMoreInteractions(playerService);
+        }
+
+        @Test
+        void shouldReturn404WhenPlayerNotRanked() throws Exception {
+            when(playerService.getPlayerRank(USERNAME_A, null)).thenReturn(Optional.empty());
+
+            mockMvc.perform(get(GET_PLAYERS_USERNAME_RANK_PATH, USERNAME_A)
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+        }
+    }
 }
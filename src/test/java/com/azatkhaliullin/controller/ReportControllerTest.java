@@ -1,11 +1,16 @@
 package com.azatkhaliullin.controller;
 
 import com.azatkhaliullin.config.SecurityConfig;
+import com.azatkhaliullin.domain.LeaderboardSegment;
+import com.azatkhaliullin.domain.LeaderboardWindow;
+import com.azatkhaliullin.dto.LeaderboardSegmentsDto;
 import com.azatkhaliullin.dto.MatchResultDto;
 import com.azatkhaliullin.dto.PlayerStatsDto;
 import com.azatkhaliullin.dto.ServerStatsDto;
+import com.azatkhaliullin.security.ApiKeyFilter;
 import com.azatkhaliullin.security.JwtTokenFilter;
 import com.azatkhaliullin.service.ReportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -17,9 +22,11 @@ import org.springframework.context.annotation.FilterType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static com.azatkhaliullin.TestConstants.GET_BEST_PLAYERS_PATH;
+import static com.azatkhaliullin.TestConstants.GET_LEADERBOARD_SEGMENTS_PATH;
 import static com.azatkhaliullin.TestConstants.GET_POPULAR_SERVERS_PATH;
 import static com.azatkhaliullin.TestConstants.GET_RECENT_MATCHES_PATH;
 import static com.azatkhaliullin.TestConstants.LIMIT;
@@ -36,18 +43,23 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(value = ReportController.class, excludeAutoConfiguration = SecurityAutoConfiguration.class,
         excludeFilters = {
                 @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = SecurityConfig.class),
-                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JwtTokenFilter.class)})
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JwtTokenFilter.class),
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = ApiKeyFilter.class)})
 class ReportControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @MockitoBean
     private ReportService reportService;
 
@@ -61,10 +73,11 @@ class ReportControllerTest {
                     testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT).buildDto(),
                     testMatchResult().withServerEndpoint(SERVER_US_ENDPOINT).buildDto());
 
-            when(reportService.getRecentMatches(LIMIT)).thenReturn(matches);
+            when(reportService.getRecentMatches(LIMIT)).thenReturn(objectMapper.writeValueAsBytes(matches));
 
             mockMvc.perform(get(GET_RECENT_MATCHES_PATH, LIMIT).accept(APPLICATION_JSON))
                     .andExpect(status().isOk())
+                    .andExpect(content().contentType(APPLICATION_JSON))
                     .andExpect(jsonPath("$").isArray())
                     .andExpect(jsonPath("$.length()").value(matches.size()))
                     .andExpect(jsonPath("$[0].serverEndpoint").value(SERVER_EU_ENDPOINT))
@@ -76,7 +89,7 @@ class ReportControllerTest {
 
         @Test
         void shouldReturnEmptyListWhenNoMatches() throws Exception {
-            when(reportService.getRecentMatches(LIMIT)).thenReturn(emptyList());
+            when(reportService.getRecentMatches(LIMIT)).thenReturn("[]".getBytes(StandardCharsets.UTF_8));
 
             mockMvc.perform(get(GET_RECENT_MATCHES_PATH, LIMIT).accept(APPLICATION_JSON))
                     .andExpect(status().isOk())
@@ -109,7 +122,7 @@ class ReportControllerTest {
                     testPlayerStats().withUsername(USERNAME_A).buildDto(),
                     testPlayerStats().withUsername(USERNAME_B).buildDto());
 
-            when(reportService.getBestPlayers(LIMIT)).thenReturn(players);
+            when(reportService.getBestPlayers(LIMIT, LeaderboardWindow.ALL, null)).thenReturn(players);
 
             mockMvc.perform(get(GET_BEST_PLAYERS_PATH, LIMIT).accept(APPLICATION_JSON))
                     .andExpect(status().isOk())
@@ -118,20 +131,92 @@ class ReportControllerTest {
                     .andExpect(jsonPath("$[0].username").value(USERNAME_A))
                     .andExpect(jsonPath("$[1].username").value(USERNAME_B));
 
-            verify(reportService).getBestPlayers(LIMIT);
+            verify(reportService).getBestPlayers(LIMIT, LeaderboardWindow.ALL, null);
             verifyNoMoreInteractions(reportService);
         }
 
         @Test
         void shouldReturnEmptyListWhenNoPlayers() throws Exception {
-            when(reportService.getBestPlayers(LIMIT)).thenReturn(emptyList());
+            when(reportService.getBestPlayers(LIMIT, LeaderboardWindow.ALL, null)).thenReturn(emptyList());
 
             mockMvc.perform(get(GET_BEST_PLAYERS_PATH, LIMIT).accept(APPLICATION_JSON))
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$").isArray())
                     .andExpect(jsonPath("$.length()").value(0));
 
-            verify(reportService).getBestPlayers(LIMIT);
+            verify(reportService).getBestPlayers(LIMIT, LeaderboardWindow.ALL, null);
+            verifyNoMoreInteractions(reportService);
+        }
+
+        @Test
+        void shouldReturnBestPlayersOfWindow() throws Exception {
+            List<PlayerStatsDto> players = List.of(testPlayerStats().withUsername(USERNAME_A).buildDto());
+
+            when(reportService.getBestPlayers(LIMIT, LeaderboardWindow.ROLLING_7_DAYS, null)).thenReturn(players);
+
+            mockMvc.perform(get(GET_BEST_PLAYERS_PATH, LIMIT).param("window", "rolling-7d").accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(players.size()))
+                    .andExpect(jsonPath("$[0].username").value(USERNAME_A));
+
+            verify(reportService).getBestPlayers(LIMIT, LeaderboardWindow.ROLLING_7_DAYS, null);
+            verifyNoMoreInteractions(reportService);
+        }
+
+        @Test
+        void shouldRejectUnknownWindow() throws Exception {
+            mockMvc.perform(get(GET_BEST_PLAYERS_PATH, LIMIT).param("window", "year").accept(APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+
+            verifyNoMoreInteractions(reportService);
+        }
+
+        @Test
+        void shouldReturnBestPlayersOfSegment() throws Exception {
+            List<PlayerStatsDto> players = List.of(testPlayerStats().withUsername(USERNAME_A).buildDto());
+            LeaderboardSegment segment = LeaderboardSegment.server(SERVER_EU_ENDPOINT);
+
+            when(reportService.getBestPlayers(LIMIT, LeaderboardWindow.ALL, segment)).thenReturn(players);
+
+            mockMvc.perform(get(GET_BEST_PLAYERS_PATH, LIMIT).param("server", SERVER_EU_ENDPOINT).accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(players.size()))
+                    .andExpect(jsonPath("$[0].username").value(USERNAME_A));
+
+            verify(reportService).getBestPlayers(LIMIT, LeaderboardWindow.ALL, segment);
+            verifyNoMoreInteractions(reportService);
+        }
+
+        @Test
+        void shouldRejectSeveralSegments() throws Exception {
+            mockMvc.perform(get(GET_BEST_PLAYERS_PATH, LIMIT)
+                            .param("country", "Japan")
+                            .param("levelBand", "10-19")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+
+            verifyNoMoreInteractions(reportService);
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /reports/leaderboard-segments")
+    class GetLeaderboardSegmentsTests {
+
+        @Test
+        void shouldReturnLeaderboardSegments() throws Exception {
+            LeaderboardSegmentsDto segments = new LeaderboardSegmentsDto(
+                    List.of("Japan", LeaderboardSegment.OTHER_COUNTRY), List.of("1-9", "10+"), List.of(SERVER_EU_ENDPOINT));
+
+            when(reportService.getLeaderboardSegments()).thenReturn(segments);
+
+            mockMvc.perform(get(GET_LEADERBOARD_SEGMENTS_PATH).accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.countries[1]").value(LeaderboardSegment.OTHER_COUNTRY))
+                    .andExpect(jsonPath("$.levelBands.length()").value(2))
+                    .andExpect(jsonPath("$.servers[0]").value(SERVER_EU_ENDPOINT));
+
+            verify(reportService).getLeaderboardSegments();
             verifyNoMoreInteractions(reportService);
         }
     }
@@ -1,11 +1,22 @@
 package com.azatkhaliullin.controller;
 
 import com.azatkhaliullin.config.SecurityConfig;
+import com.azatkhaliullin.dto.ActivePlayersDto;
+import com.azatkhaliullin.dto.MatchPageDto;
 import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
 import com.azatkhaliullin.dto.ServerInfoDto;
 import com.azatkhaliullin.dto.ServerStatsDto;
+import com.azatkhaliullin.dto.TimeSeriesDto;
+import com.azatkhaliullin.dto.TimeSeriesPointDto;
+import com.azatkhaliullin.exception.InvalidCursorException;
+import com.azatkhaliullin.exception.InvalidTimeSeriesQueryException;
+import com.azatkhaliullin.security.ApiKeyFilter;
 import com.azatkhaliullin.security.JwtTokenFilter;
+import com.azatkhaliullin.service.MatchHistoryService;
 import com.azatkhaliullin.service.ServerService;
+import com.azatkhaliullin.util.JsonBatchResource;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -14,21 +25,31 @@ import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfi
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDate;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
+import static com.azatkhaliullin.TestConstants.BEST_SCORE;
 import static com.azatkhaliullin.TestConstants.DEFAULT_PLAYED_AT;
 import static com.azatkhaliullin.TestConstants.DEFAULT_TIMESTAMP;
+import static com.azatkhaliullin.TestConstants.GET_SERVER_ACTIVE_PLAYERS_PATH;
 import static com.azatkhaliullin.TestConstants.GET_SERVERS_INFO_PATH;
 import static com.azatkhaliullin.TestConstants.GET_SERVER_INFO_PATH;
+import static com.azatkhaliullin.TestConstants.GET_SERVER_MATCHES_PATH;
 import static com.azatkhaliullin.TestConstants.GET_SERVER_MATCHES_SINCE_PATH;
+import static com.azatkhaliullin.TestConstants.GET_SERVER_SCORE_DISTRIBUTION_PATH;
 import static com.azatkhaliullin.TestConstants.GET_SERVER_STATS_PATH;
+import static com.azatkhaliullin.TestConstants.GET_SERVER_TIMESERIES_PATH;
 import static com.azatkhaliullin.TestConstants.ID_A;
 import static com.azatkhaliullin.TestConstants.ID_B;
 import static com.azatkhaliullin.TestConstants.PARAM_ENDPOINT;
+import static com.azatkhaliullin.TestConstants.REGION;
 import static com.azatkhaliullin.TestConstants.SERVER_EU_ENDPOINT;
 import static com.azatkhaliullin.TestConstants.SERVER_US_ENDPOINT;
 import static com.azatkhaliullin.TestConstants.UNKNOWN_SERVER;
@@ -40,22 +61,30 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(value = ServerController.class, excludeAutoConfiguration = SecurityAutoConfiguration.class,
         excludeFilters = {
                 @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = SecurityConfig.class),
-                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JwtTokenFilter.class)})
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JwtTokenFilter.class),
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = ApiKeyFilter.class)})
 class ServerControllerTest {
 
 
     @Autowired
     private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @MockitoBean
     private ServerService serverService;
+    @MockitoBean
+    private MatchHistoryService matchHistoryService;
 
     @Nested
     @DisplayName("GET /servers/info/by-endpoint")
@@ -111,23 +140,68 @@ class ServerControllerTest {
                     testMatchResult().withId(ID_A).buildDto(),
                     testMatchResult().withId(ID_B).buildDto());
 
-            when(serverService.getMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT)).thenReturn(matches);
+            when(serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT))
+                    .thenReturn(jsonBatches(matches));
 
             mockMvc.perform(get(GET_SERVER_MATCHES_SINCE_PATH, DEFAULT_TIMESTAMP)
                             .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT).accept(APPLICATION_JSON))
                     .andExpect(status().isOk())
+                    .andExpect(content().contentType(APPLICATION_JSON))
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_LENGTH))
                     .andExpect(jsonPath("$").isArray())
                     .andExpect(jsonPath("$.length()").value(matches.size()))
                     .andExpect(jsonPath("$[0].id").value(ID_A.toString()))
                     .andExpect(jsonPath("$[1].id").value(ID_B.toString()));
 
-            verify(serverService).getMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT);
+            verify(serverService).streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT);
+            verifyNoMoreInteractions(serverService);
+        }
+
+        @Test
+        void shouldStreamNdjsonWhenAccepted() throws Exception {
+            MatchResultDto match = testMatchResult().withId(ID_A).buildDto();
+
+            when(serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT))
+                    .thenReturn(jsonBatches(List.of(match)));
+
+            mockMvc.perform(get(GET_SERVER_MATCHES_SINCE_PATH, DEFAULT_TIMESTAMP)
+                            .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT).accept(APPLICATION_NDJSON))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(APPLICATION_NDJSON))
+                    .andExpect(content().string(objectMapper.writeValueAsString(match) + "\n"));
+
+            verify(serverService).streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT);
             verifyNoMoreInteractions(serverService);
         }
 
+        @Test
+        void shouldPreferAcceptedMediaTypeOfHigherQuality() throws Exception {
+            when(serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT))
+                    .thenReturn(jsonBatches(emptyList()));
+
+            mockMvc.perform(get(GET_SERVER_MATCHES_SINCE_PATH, DEFAULT_TIMESTAMP)
+                            .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT)
+                            .header(HttpHeaders.ACCEPT, "application/json;q=0.5, application/x-ndjson"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(APPLICATION_NDJSON));
+        }
+
+        @Test
+        void shouldReturnJsonArrayWhenAnyMediaTypeIsAccepted() throws Exception {
+            when(serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT))
+                    .thenReturn(jsonBatches(emptyList()));
+
+            mockMvc.perform(get(GET_SERVER_MATCHES_SINCE_PATH, DEFAULT_TIMESTAMP)
+                            .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT).accept(MediaType.ALL))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(APPLICATION_JSON))
+                    .andExpect(content().string("[]"));
+        }
+
         @Test
         void shouldReturnEmptyListWhenNoMatches() throws Exception {
-            when(serverService.getMatchesSince(SERVER_US_ENDPOINT, DEFAULT_PLAYED_AT)).thenReturn(emptyList());
+            when(serverService.streamMatchesSince(SERVER_US_ENDPOINT, DEFAULT_PLAYED_AT))
+                    .thenReturn(jsonBatches(emptyList()));
 
             mockMvc.perform(get(GET_SERVER_MATCHES_SINCE_PATH, DEFAULT_TIMESTAMP)
                             .param(PARAM_ENDPOINT, SERVER_US_ENDPOINT).accept(APPLICATION_JSON))
@@ -135,21 +209,27 @@ class ServerControllerTest {
                     .andExpect(jsonPath("$").isArray())
                     .andExpect(jsonPath("$.length()").value(0));
 
-            verify(serverService).getMatchesSince(SERVER_US_ENDPOINT, DEFAULT_PLAYED_AT);
+            verify(serverService).streamMatchesSince(SERVER_US_ENDPOINT, DEFAULT_PLAYED_AT);
             verifyNoMoreInteractions(serverService);
         }
 
         @Test
         void shouldReturn500WhenServiceFails() throws Exception {
-            when(serverService.getMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT)).thenThrow(new RuntimeException());
+            when(serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT))
+                    .thenThrow(new RuntimeException());
 
             mockMvc.perform(get(GET_SERVER_MATCHES_SINCE_PATH, DEFAULT_TIMESTAMP)
                             .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT).accept(APPLICATION_JSON))
                     .andExpect(status().isInternalServerError());
 
-            verify(serverService).getMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT);
+            verify(serverService).streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT);
             verifyNoMoreInteractions(serverService);
         }
+
+        private JsonBatchResource jsonBatches(List<MatchResultDto> matches) {
+            Iterator<List<MatchResultDto>> batches = List.of(matches).iterator();
+            return new JsonBatchResource(() -> batches.hasNext() ? batches.next() : emptyList(), objectMapper.writer());
+        }
     }
 
     @Nested
@@ -244,4 +324,180 @@ class ServerControllerTest {
             verifyNoMoreInteractions(serverService);
         }
     }
+
+    @Nested
+    @DisplayName("GET /servers/score-distribution")
+    class GetServerScoreDistribution {
+
+        @Test
+        void shouldReturnScoreDistributionWhenFound() throws Exception {
+            ScoreDistributionDto distribution = ScoreDistributionDto.builder()
+                    .totalScores(2L).median(BEST_SCORE).p90(BEST_SCORE).p99(BEST_SCORE)
+                    .counts(List.of(0L, 2L))
+                    .build();
+
+            when(serverService.getScoreDistribution(SERVER_EU_ENDPOINT)).thenReturn(Optional.of(distribution));
+
+            mockMvc.perform(get(GET_SERVER_SCORE_DISTRIBUTION_PATH)
+                            .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT).accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalScores").value(2))
+                    .andExpect(jsonPath("$.median").value(BEST_SCORE))
+                    .andExpect(jsonPath("$.counts[1]").value(2));
+
+            verify(serverService).getScoreDistribution(SERVER_EU_ENDPOINT);
+            verifyNoMoreInteractions(serverService);
+        }
+
+        @Test
+        void shouldReturn404WhenServerNotFound() throws Exception {
+            when(serverService.getScoreDistribution(UNKNOWN_SERVER)).thenReturn(Optional.empty());
+
+            mockMvc.perform(get(GET_SERVER_SCORE_DISTRIBUTION_PATH)
+                            .param(PARAM_ENDPOINT, UNKNOWN_SERVER).accept(APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /servers/active-players")
+    class GetServerActivePlayers {
+
+        @Test
+        void shouldReturnActivePlayersWithStandardError() throws Exception {
+            ActivePlayersDto activePlayers = ActivePlayersDto.builder()
+                    .endpoint(SERVER_EU_ENDPOINT)
+                    .window("week")
+                    .from(LocalDate.of(2025, 3, 10)).to(LocalDate.of(2025, 3, 13))
+                    .activePlayers(42L)
+                    .standardError(0.0081)
+                    .build();
+
+            when(serverService.getActivePlayers(SERVER_EU_ENDPOINT, null, "week")).thenReturn(Optional.of(activePlayers));
+
+            mockMvc.perform(get(GET_SERVER_ACTIVE_PLAYERS_PATH)
+                            .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT)
+                            .param("window", "week")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.activePlayers").value(42))
+                    .andExpect(jsonPath("$.from").value("2025-03-10"))
+                    .andExpect(jsonPath("$.standardError").value(0.0081));
+
+            verify(serverService).getActivePlayers(SERVER_EU_ENDPOINT, null, "week");
+            verifyNoMoreInteractions(serverService);
+        }
+
+        @Test
+        void shouldCountTodayByDefault() throws Exception {
+            when(serverService.getActivePlayers(null, REGION, "day")).thenReturn(Optional.empty());
+
+            mockMvc.perform(get(GET_SERVER_ACTIVE_PLAYERS_PATH)
+                            .param("region", REGION)
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+
+            verify(serverService).getActivePlayers(null, REGION, "day");
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /servers/timeseries")
+    class GetServerTimeSeries {
+
+        @Test
+        void shouldReturnTimeSeriesWhenFound() throws Exception {
+            TimeSeriesDto timeSeries = TimeSeriesDto.builder()
+                    .endpoint(SERVER_EU_ENDPOINT)
+                    .resolution(TimeSeriesDto.ResolutionEnum._1H)
+                    .from(3600L).to(7200L)
+                    .points(List.of(TimeSeriesPointDto.builder()
+                            .timestamp(3600L).matches(2L).players(4L).averageScore(75.0).build()))
+                    .build();
+
+            when(serverService.getTimeSeries(SERVER_EU_ENDPOINT, null, 3600L, 7200L)).thenReturn(Optional.of(timeSeries));
+
+            mockMvc.perform(get(GET_SERVER_TIMESERIES_PATH)
+                            .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT)
+                            .param("from", "3600")
+                            .param("to", "7200")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.resolution").value("1h"))
+                    .andExpect(jsonPath("$.points[0].matches").value(2))
+                    .andExpect(jsonPath("$.points[0].averageScore").value(75.0));
+
+            verify(serverService).getTimeSeries(SERVER_EU_ENDPOINT, null, 3600L, 7200L);
+            verifyNoMoreInteractions(serverService);
+        }
+
+        @Test
+        void shouldReturn404WhenRegionNotFound() throws Exception {
+            when(serverService.getTimeSeries(null, REGION, 3600L, null)).thenReturn(Optional.empty());
+
+            mockMvc.perform(get(GET_SERVER_TIMESERIES_PATH)
+                            .param("region", REGION)
+                            .param("from", "3600")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+        }
+
+        @Test
+        void shouldReturn400ForInvalidQuery() throws Exception {
+            when(serverService.getTimeSeries(null, null, 3600L, null))
+                    .thenThrow(new InvalidTimeSeriesQueryException("Exactly one of endpoint and region must be given"));
+
+            mockMvc.perform(get(GET_SERVER_TIMESERIES_PATH)
+                            .param("from", "3600")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /servers/matches")
+    class GetServerMatches {
+
+        @Test
+        void shouldReturnPageOfMatches() throws Exception {
+            MatchPageDto page = MatchPageDto.builder()
+                    .matches(List.of(testMatchResult().withId(ID_A).buildDto()))
+                    .nextCursor("next")
+                    .build();
+
+            when(matchHistoryService.getServerMatches(SERVER_EU_ENDPOINT, 1, "cursor", null, null, null))
+                    .thenReturn(Optional.of(page));
+
+            mockMvc.perform(get(GET_SERVER_MATCHES_PATH)
+                            .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT)
+                            .param("limit", "1")
+                            .param("before", "cursor")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.matches[0].id").value(ID_A.toString()))
+                    .andExpect(jsonPath("$.nextCursor").value("next"));
+        }
+
+        @Test
+        void shouldReturn404WhenServerNotFound() throws Exception {
+            when(matchHistoryService.getServerMatches(UNKNOWN_SERVER, null, null, null, null, null))
+                    .thenReturn(Optional.empty());
+
+            mockMvc.perform(get(GET_SERVER_MATCHES_PATH)
+                            .param(PARAM_ENDPOINT, UNKNOWN_SERVER).accept(APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+        }
+
+        @Test
+        void shouldReturn400ForInvalidCursor() throws Exception {
+            when(matchHistoryService.getServerMatches(SERVER_EU_ENDPOINT, null, "bad", null, null, null))
+                    .thenThrow(new InvalidCursorException("Invalid cursor: bad"));
+
+            mockMvc.perform(get(GET_SERVER_MATCHES_PATH)
+                            .param(PARAM_ENDPOINT, SERVER_EU_ENDPOINT)
+                            .param("before", "bad")
+                            .accept(APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package com.azatkhaliullin.domain;
+
+import com.azatkhaliullin.exception.InvalidLeaderboardSegmentException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LeaderboardSegmentTest {
+
+    private static final List<String> COUNTRIES = List.of("Japan", "South Korea");
+    private static final List<Integer> LEVEL_BANDS = List.of(1, 10, 20, 50);
+
+    @Nested
+    @DisplayName("of")
+    class OfTests {
+
+        @Test
+        void shouldReturnGivenSegment() {
+            assertThat(LeaderboardSegment.of(null, "10-19", null))
+                    .isEqualTo(new LeaderboardSegment(LeaderboardSegment.Type.LEVEL, "10-19"));
+        }
+
+        @Test
+        void shouldReturnNullWithoutSegment() {
+            assertThat(LeaderboardSegment.of(null, null, null)).isNull();
+        }
+
+        @Test
+        void shouldRejectSeveralSegments() {
+            assertThatThrownBy(() -> LeaderboardSegment.of("Japan", null, "e1"))
+                    .isInstanceOf(InvalidLeaderboardSegmentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("country")
+    class CountryTests {
+
+        @Test
+        void shouldMatchConfiguredCountryIgnoringCase() {
+            assertThat(LeaderboardSegment.country("south korea", COUNTRIES).getValue()).isEqualTo("South Korea");
+        }
+
+        @Test
+        void shouldGroupOtherCountries() {
+            assertThat(LeaderboardSegment.country("Peru", COUNTRIES).getValue()).isEqualTo(LeaderboardSegment.OTHER_COUNTRY);
+            assertThat(LeaderboardSegment.country(null, COUNTRIES).getValue()).isEqualTo(LeaderboardSegment.OTHER_COUNTRY);
+        }
+    }
+
+    @Nested
+    @DisplayName("levelBand")
+    class LevelBandTests {
+
+        @Test
+        void shouldFindBandOfLevel() {
+            assertThat(LeaderboardSegment.levelBand(10, LEVEL_BANDS).getValue()).isEqualTo("10-19");
+            assertThat(LeaderboardSegment.levelBand(49, LEVEL_BANDS).getValue()).isEqualTo("20-49");
+            assertThat(LeaderboardSegment.levelBand(120, LEVEL_BANDS).getValue()).isEqualTo("50+");
+        }
+
+        @Test
+        void shouldPutLevelsBelowFirstBandIntoIt() {
+            assertThat(LeaderboardSegment.levelBand(0, LEVEL_BANDS).getValue()).isEqualTo("1-9");
+        }
+
+        @Test
+        void shouldListAllBands() {
+            assertThat(LeaderboardSegment.levelBands(LEVEL_BANDS)).containsExactly("1-9", "10-19", "20-49", "50+");
+        }
+    }
+
+    @Test
+    void shouldNameSegmentAsRegistered() {
+        assertThat(LeaderboardSegment.server("e1").getName()).isEqualTo("server:e1");
+    }
+}
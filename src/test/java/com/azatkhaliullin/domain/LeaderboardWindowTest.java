@@ -0,0 +1,66 @@
+package com.azatkhaliullin.domain;
+
+import com.azatkhaliullin.exception.InvalidLeaderboardWindowException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LeaderboardWindowTest {
+
+    // A Thursday
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 13);
+
+    @Nested
+    @DisplayName("fromValue")
+    class FromValueTests {
+
+        @Test
+        void shouldParseApiValues() {
+            assertThat(LeaderboardWindow.fromValue("all")).isEqualTo(LeaderboardWindow.ALL);
+            assertThat(LeaderboardWindow.fromValue("rolling-7d")).isEqualTo(LeaderboardWindow.ROLLING_7_DAYS);
+        }
+
+        @Test
+        void shouldRejectUnknownValue() {
+            assertThatThrownBy(() -> LeaderboardWindow.fromValue("WEEK"))
+                    .isInstanceOf(InvalidLeaderboardWindowException.class)
+                    .hasMessageContaining("WEEK");
+        }
+    }
+
+    @Nested
+    @DisplayName("firstDay")
+    class FirstDayTests {
+
+        @Test
+        void shouldStartDayWindowToday() {
+            assertThat(LeaderboardWindow.DAY.firstDay(TODAY)).isEqualTo(TODAY);
+        }
+
+        @Test
+        void shouldStartWeekOnMonday() {
+            assertThat(LeaderboardWindow.WEEK.firstDay(TODAY)).isEqualTo(LocalDate.of(2025, 3, 10));
+            assertThat(LeaderboardWindow.WEEK.firstDay(LocalDate.of(2025, 3, 10))).isEqualTo(LocalDate.of(2025, 3, 10));
+        }
+
+        @Test
+        void shouldStartMonthOnFirstDay() {
+            assertThat(LeaderboardWindow.MONTH.firstDay(TODAY)).isEqualTo(LocalDate.of(2025, 3, 1));
+        }
+
+        @Test
+        void shouldCoverSevenDaysForRollingWindow() {
+            assertThat(LeaderboardWindow.ROLLING_7_DAYS.firstDay(TODAY)).isEqualTo(LocalDate.of(2025, 3, 7));
+        }
+
+        @Test
+        void shouldHaveNoFirstDayForAllTime() {
+            assertThatThrownBy(() -> LeaderboardWindow.ALL.firstDay(TODAY)).isInstanceOf(IllegalStateException.class);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.azatkhaliullin.domain;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScoreHistogramTest {
+
+    @Nested
+    @DisplayName("percentile")
+    class PercentileTests {
+
+        @Test
+        void shouldReturnNearestRankScore() {
+            ScoreHistogram histogram = histogram(10, 20, 30, 40, 50, 60, 70, 80, 90, 100);
+
+            assertThat(histogram.percentile(50)).isEqualTo(50);
+            assertThat(histogram.percentile(90)).isEqualTo(90);
+            assertThat(histogram.percentile(99)).isEqualTo(100);
+        }
+
+        @Test
+        void shouldCountRepeatedScores() {
+            ScoreHistogram histogram = histogram(0, 0, 0, 7);
+
+            assertThat(histogram.total()).isEqualTo(4);
+            assertThat(histogram.percentile(50)).isZero();
+            assertThat(histogram.percentile(90)).isEqualTo(7);
+        }
+
+        @Test
+        void shouldReturnNullWithoutScores() {
+            assertThat(new ScoreHistogram().percentile(50)).isNull();
+        }
+    }
+
+    private static ScoreHistogram histogram(int... scores) {
+        ScoreHistogram histogram = new ScoreHistogram();
+        for (int score : scores) {
+            histogram.getCounts()[score]++;
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,53 @@
+package com.azatkhaliullin.domain;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeSeriesResolutionTest {
+
+    private static final long TIME = Instant.parse("2025-03-13T10:42:17.250Z").toEpochMilli();
+
+    @Nested
+    @DisplayName("bucketStart")
+    class BucketStartTests {
+
+        @Test
+        void shouldStartOnMinuteHourAndDayInUtc() {
+            assertThat(TimeSeriesResolution.MINUTE.bucketStart(TIME))
+                    .isEqualTo(Instant.parse("2025-03-13T10:42:00Z").toEpochMilli());
+            assertThat(TimeSeriesResolution.HOUR.bucketStart(TIME))
+                    .isEqualTo(Instant.parse("2025-03-13T10:00:00Z").toEpochMilli());
+            assertThat(TimeSeriesResolution.DAY.bucketStart(TIME))
+                    .isEqualTo(Instant.parse("2025-03-13T00:00:00Z").toEpochMilli());
+        }
+
+        @Test
+        void shouldKeepTimeAlreadyOnBucketStart() {
+            long hour = Instant.parse("2025-03-13T10:00:00Z").toEpochMilli();
+
+            assertThat(TimeSeriesResolution.HOUR.bucketStart(hour)).isEqualTo(hour);
+        }
+    }
+
+    @Nested
+    @DisplayName("bucketCount")
+    class BucketCountTests {
+
+        @Test
+        void shouldCountPartialBucketsAtBothEnds() {
+            long to = Instant.parse("2025-03-13T12:00:01Z").toEpochMilli();
+
+            assertThat(TimeSeriesResolution.HOUR.bucketCount(TIME, to)).isEqualTo(3);
+        }
+
+        @Test
+        void shouldCountOneBucketWithinBucket() {
+            assertThat(TimeSeriesResolution.DAY.bucketCount(TIME, TIME + 1000)).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.azatkhaliullin.integration;
+
+import com.azatkhaliullin.BaseRedisIntegrationTest;
+import com.azatkhaliullin.domain.LeaderboardWindow;
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.TimeSeriesScope;
+import com.azatkhaliullin.repository.ActivePlayersRepository;
+import com.azatkhaliullin.repository.LeaderboardRepository;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.ServerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static com.azatkhaliullin.builder.ServerInfoBuilder.testServerInfo;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the window scripts against Redis: the leaderboard window built from daily buckets and
+ * the active players counted from daily HyperLogLogs.
+ */
+@SpringBootTest(properties = "stats.random-match.cron=-")
+class LeaderboardIntegrationTest extends BaseRedisIntegrationTest {
+
+    private static final LeaderboardWindow WINDOW = LeaderboardWindow.ROLLING_7_DAYS;
+    private static final int LOW_SCORE = 30;
+    private static final int HIGH_SCORE = 80;
+
+    @Autowired
+    private MatchRepository matchRepository;
+    @Autowired
+    private ServerRepository serverRepository;
+    @Autowired
+    private LeaderboardRepository leaderboardRepository;
+    @Autowired
+    private ActivePlayersRepository activePlayersRepository;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private String endpoint;
+    private LocalDate today;
+    private String windowKey;
+
+    @BeforeEach
+    void setUp() {
+        endpoint = "it-server-" + UUID.randomUUID();
+        today = LocalDate.now(ZoneOffset.UTC);
+        windowKey = "leaderboard:window:" + WINDOW.getValue() + ":" + WINDOW.firstDay(today);
+        serverRepository.saveAll(List.of(testServerInfo().withEndpoint(endpoint).build()));
+        // The window is shared with other tests, rebuild it from the buckets as they are now
+        stringRedisTemplate.delete(List.of(windowKey + ":score", windowKey + ":matches",
+                windowKey + ":best", windowKey + ":worst"));
+    }
+
+    @Nested
+    @DisplayName("Leaderboard window")
+    class Window {
+
+        @Test
+        void findTop_buildsWindowFromDailyBuckets() {
+            UUID playerId = UUID.randomUUID();
+            matchRepository.ingest(match(today.minusDays(1), new PlayerScore(playerId, LOW_SCORE)));
+            matchRepository.ingest(match(today, new PlayerScore(playerId, HIGH_SCORE)));
+
+            leaderboardRepository.findTop(WINDOW, today, 1);
+
+            assertThat(redisTemplate.opsForZSet().score(windowKey + ":score", playerId)).isEqualTo(LOW_SCORE + HIGH_SCORE);
+            assertThat(redisTemplate.opsForZSet().score(windowKey + ":matches", playerId)).isEqualTo(2);
+            assertThat(redisTemplate.opsForZSet().score(windowKey + ":best", playerId)).isEqualTo(HIGH_SCORE);
+            assertThat(redisTemplate.opsForZSet().score(windowKey + ":worst", playerId)).isEqualTo(LOW_SCORE);
+            assertThat(stringRedisTemplate.getExpire(windowKey + ":score")).isPositive();
+        }
+
+        @Test
+        void findTop_withCachedWindow_doesNotRebuildIt() {
+            UUID playerId = UUID.randomUUID();
+            matchRepository.ingest(match(today, new PlayerScore(playerId, LOW_SCORE)));
+            leaderboardRepository.findTop(WINDOW, today, 1);
+
+            matchRepository.ingest(match(today, new PlayerScore(playerId, HIGH_SCORE)));
+            leaderboardRepository.findTop(WINDOW, today, 1);
+
+            assertThat(redisTemplate.opsForZSet().score(windowKey + ":score", playerId)).isEqualTo(LOW_SCORE);
+            assertThat(redisTemplate.opsForZSet().score("leaderboard:daily:" + today + ":score", playerId))
+                    .isEqualTo(LOW_SCORE + HIGH_SCORE);
+        }
+    }
+
+    @Nested
+    @DisplayName("Active players")
+    class ActivePlayers {
+
+        @Test
+        void count_window_mergesDistinctPlayersOfEveryDay() {
+            UUID playerA = UUID.randomUUID();
+            UUID playerB = UUID.randomUUID();
+            UUID playerC = UUID.randomUUID();
+            matchRepository.ingest(match(today.minusDays(1),
+                    new PlayerScore(playerA, LOW_SCORE), new PlayerScore(playerB, HIGH_SCORE)));
+            matchRepository.ingest(match(today,
+                    new PlayerScore(playerB, LOW_SCORE), new PlayerScore(playerC, HIGH_SCORE)));
+
+            TimeSeriesScope scope = TimeSeriesScope.server(endpoint);
+            assertThat(activePlayersRepository.count(scope, LeaderboardWindow.DAY, today)).isEqualTo(2);
+            assertThat(activePlayersRepository.count(scope, WINDOW, today)).isEqualTo(3);
+            String activeWindowKey = "players:active:window:server:" + endpoint + ":" + WINDOW.getValue() + ":"
+                    + WINDOW.firstDay(today);
+            assertThat(stringRedisTemplate.getExpire(activeWindowKey)).isPositive();
+        }
+    }
+
+    private MatchResult match(LocalDate day, PlayerScore... scores) {
+        return testMatchResult()
+                .withId(UUID.randomUUID())
+                .withServerEndpoint(endpoint)
+                .withPlayedAt(day.atStartOfDay(ZoneOffset.UTC).toInstant())
+                .withScores(List.of(scores))
+                .build();
+    }
+}
@@ -0,0 +1,243 @@
+package com.azatkhaliullin.integration;
+
+import com.azatkhaliullin.BaseRedisIntegrationTest;
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.repository.ServerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.azatkhaliullin.TestConstants.LEGACY_PLAYER_STATS;
+import static com.azatkhaliullin.TestConstants.TOTAL_MATCHES;
+import static com.azatkhaliullin.TestConstants.TOTAL_SCORE;
+import static com.azatkhaliullin.TestConstants.WORST_SCORE;
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static com.azatkhaliullin.builder.PlayerTestBuilder.testPlayer;
+import static com.azatkhaliullin.builder.ServerInfoBuilder.testServerInfo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the ingest script against Redis and checks the keys it leaves behind. Every test uses
+ * its own server, region and players, so tests do not see each other's counters.
+ */
+@SpringBootTest(properties = "stats.random-match.cron=-")
+class MatchIngestIntegrationTest extends BaseRedisIntegrationTest {
+
+    private static final int LOW_SCORE = 30;
+    private static final int MIDDLE_SCORE = 50;
+    private static final int HIGH_SCORE = 80;
+
+    @Autowired
+    private MatchRepository matchRepository;
+    @Autowired
+    private PlayerRepository playerRepository;
+    @Autowired
+    private ServerRepository serverRepository;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private String endpoint;
+    private String region;
+    private UUID playerA;
+    private UUID playerB;
+    private Instant playedAt;
+    private LocalDate day;
+
+    @BeforeEach
+    void setUp() {
+        endpoint = "it-server-" + UUID.randomUUID();
+        region = "it-region-" + UUID.randomUUID();
+        playerA = UUID.randomUUID();
+        playerB = UUID.randomUUID();
+        playedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        day = LocalDate.ofInstant(playedAt, ZoneOffset.UTC);
+        serverRepository.saveAll(List.of(testServerInfo().withEndpoint(endpoint).withRegion(region).build()));
+    }
+
+    @Nested
+    @DisplayName("Dedup marker")
+    class DedupMarker {
+
+        @Test
+        void ingest_newMatch_storesItAndMarksItIngested() {
+            MatchResult match = match(HIGH_SCORE, LOW_SCORE);
+
+            assertThat(matchRepository.ingest(match)).isTrue();
+
+            assertThat(stringRedisTemplate.hasKey("match:" + match.getId())).isTrue();
+            assertThat(stringRedisTemplate.getExpire("matches:ingested:" + match.getId())).isPositive();
+            assertThat(matchRepository.ingest(match)).isFalse();
+        }
+
+        @Test
+        void ingest_failingHalfWay_leavesMatchUnmarkedForItsRetry() {
+            MatchResult match = match(HIGH_SCORE, LOW_SCORE);
+            String histogramKey = "scores:histogram:player:" + playerB;
+            stringRedisTemplate.opsForList().rightPush(histogramKey, "not a histogram");
+
+            assertThatThrownBy(() -> matchRepository.ingest(match)).hasStackTraceContaining("WRONGTYPE");
+            assertThat(stringRedisTemplate.hasKey("matches:ingested:" + match.getId())).isFalse();
+
+            stringRedisTemplate.delete(histogramKey);
+            assertThat(matchRepository.ingest(match)).isTrue();
+            assertThat(stringRedisTemplate.hasKey("matches:ingested:" + match.getId())).isTrue();
+        }
+    }
+
+    @Nested
+    @DisplayName("Player stats")
+    class PlayerStats {
+
+        @Test
+        void ingest_withLegacyStats_convertsThemBeforeMerging() {
+            stringRedisTemplate.opsForValue().set("players:stats:" + playerA, LEGACY_PLAYER_STATS);
+
+            matchRepository.ingest(match(LOW_SCORE, MIDDLE_SCORE));
+
+            String statsKey = "players:stats:" + playerA;
+            assertThat(stringRedisTemplate.type(statsKey)).isEqualTo(DataType.HASH);
+            assertThat(stringRedisTemplate.<String, String>opsForHash().entries(statsKey))
+                    .containsEntry("totalMatches", String.valueOf(TOTAL_MATCHES + 1))
+                    .containsEntry("totalScore", String.valueOf(TOTAL_SCORE + LOW_SCORE))
+                    .containsEntry("worstScore", String.valueOf(Math.min(WORST_SCORE, LOW_SCORE)));
+            assertThat(redisTemplate.opsForZSet().score("players:rating", playerA)).isPositive();
+        }
+
+        @Test
+        void ingest_playerWithSegments_ratesThemInTheirCountryAndLevelBand() {
+            playerRepository.saveAll(List.of(
+                    testPlayer().withId(playerA).withUsername("it-" + playerA).withCountry("Japan").withLevel(12).build()));
+
+            matchRepository.ingest(match(HIGH_SCORE, LOW_SCORE));
+
+            Double rating = redisTemplate.opsForZSet().score("players:rating", playerA);
+            assertThat(rating).isPositive();
+            assertThat(redisTemplate.opsForZSet().score("players:rating:country:Japan", playerA)).isEqualTo(rating);
+            assertThat(redisTemplate.opsForZSet().score("players:rating:level:10-19", playerA)).isEqualTo(rating);
+            assertThat(redisTemplate.opsForZSet().score("players:rating:country:Japan", playerB)).isNull();
+            assertThat(stringRedisTemplate.opsForSet().isMember("leaderboard:segments", "country:Japan")).isTrue();
+            assertThat(stringRedisTemplate.opsForSet().isMember("leaderboard:segments", "level:10-19")).isTrue();
+            assertThat(stringRedisTemplate.opsForSet().isMember("leaderboard:segments", "server:" + endpoint)).isTrue();
+        }
+    }
+
+    @Nested
+    @DisplayName("Leaderboards")
+    class Leaderboards {
+
+        @Test
+        void ingest_severalMatches_keepsDailyExtremesAndSums() {
+            matchRepository.ingest(match(MIDDLE_SCORE, LOW_SCORE));
+            matchRepository.ingest(match(HIGH_SCORE, LOW_SCORE));
+            matchRepository.ingest(match(LOW_SCORE, LOW_SCORE));
+
+            String daily = "leaderboard:daily:" + day;
+            assertThat(redisTemplate.opsForZSet().score(daily + ":score", playerA))
+                    .isEqualTo(MIDDLE_SCORE + HIGH_SCORE + LOW_SCORE);
+            assertThat(redisTemplate.opsForZSet().score(daily + ":matches", playerA)).isEqualTo(3);
+            assertThat(redisTemplate.opsForZSet().score(daily + ":best", playerA)).isEqualTo(HIGH_SCORE);
+            assertThat(redisTemplate.opsForZSet().score(daily + ":worst", playerA)).isEqualTo(LOW_SCORE);
+            assertThat(stringRedisTemplate.getExpire(daily + ":best")).isPositive();
+        }
+
+        @Test
+        void ingest_registeredServer_updatesItsLeaderboard() {
+            matchRepository.ingest(match(MIDDLE_SCORE, LOW_SCORE));
+            matchRepository.ingest(match(HIGH_SCORE, LOW_SCORE));
+
+            String server = "leaderboard:server:" + endpoint;
+            assertThat(redisTemplate.opsForZSet().score(server + ":score", playerA)).isEqualTo(MIDDLE_SCORE + HIGH_SCORE);
+            assertThat(redisTemplate.opsForZSet().score(server + ":matches", playerA)).isEqualTo(2);
+            assertThat(redisTemplate.opsForZSet().score(server + ":best", playerA)).isEqualTo(HIGH_SCORE);
+            assertThat(redisTemplate.opsForZSet().score(server + ":worst", playerA)).isEqualTo(MIDDLE_SCORE);
+        }
+    }
+
+    @Nested
+    @DisplayName("Server aggregates")
+    class ServerAggregates {
+
+        @Test
+        void ingest_countsEveryScoreInServerAndPlayerHistograms() {
+            matchRepository.ingest(match(HIGH_SCORE, LOW_SCORE));
+            matchRepository.ingest(match(HIGH_SCORE, HIGH_SCORE));
+
+            assertThat(stringRedisTemplate.<String, String>opsForHash().entries("scores:histogram:server:" + endpoint))
+                    .containsOnly(entry(HIGH_SCORE, 3), entry(LOW_SCORE, 1));
+            assertThat(stringRedisTemplate.<String, String>opsForHash().entries("scores:histogram:player:" + playerB))
+                    .containsOnly(entry(HIGH_SCORE, 1), entry(LOW_SCORE, 1));
+        }
+
+        @Test
+        void ingest_countsMatchInServerCountersAndPopularity() {
+            matchRepository.ingest(match(HIGH_SCORE, LOW_SCORE));
+            matchRepository.ingest(match(MIDDLE_SCORE, LOW_SCORE));
+
+            assertThat(stringRedisTemplate.<String, String>opsForHash().entries("servers:stats:" + endpoint))
+                    .containsEntry("matches", "2")
+                    .containsEntry("players", "4")
+                    .containsEntry("totalScore", String.valueOf(HIGH_SCORE + MIDDLE_SCORE + 2 * LOW_SCORE));
+            assertThat(stringRedisTemplate.opsForZSet().score("servers:popularity", endpoint)).isEqualTo(2);
+        }
+
+        @Test
+        void ingest_countsMatchInServerAndRegionMinuteBuckets() {
+            matchRepository.ingest(match(HIGH_SCORE, LOW_SCORE));
+
+            long minute = playedAt.truncatedTo(ChronoUnit.MINUTES).toEpochMilli();
+            for (String bucketKey : List.of("timeseries:server:" + endpoint + ":1m:" + minute,
+                    "timeseries:region:" + region + ":1m:" + minute)) {
+                assertThat(stringRedisTemplate.<String, String>opsForHash().entries(bucketKey))
+                        .containsEntry("matches", "1")
+                        .containsEntry("players", "2")
+                        .containsEntry("totalScore", String.valueOf(HIGH_SCORE + LOW_SCORE));
+                assertThat(stringRedisTemplate.getExpire(bucketKey)).isPositive();
+            }
+        }
+
+        @Test
+        void ingest_addsPlayersToServerAndRegionActivePlayers() {
+            matchRepository.ingest(match(HIGH_SCORE, LOW_SCORE));
+            matchRepository.ingest(match(MIDDLE_SCORE, LOW_SCORE));
+
+            for (String activeKey : List.of("players:active:server:" + endpoint + ":" + day,
+                    "players:active:region:" + region + ":" + day)) {
+                assertThat(stringRedisTemplate.opsForHyperLogLog().size(activeKey)).isEqualTo(2);
+                assertThat(stringRedisTemplate.getExpire(activeKey)).isPositive();
+            }
+        }
+    }
+
+    private MatchResult match(int scoreA, int scoreB) {
+        return testMatchResult()
+                .withId(UUID.randomUUID())
+                .withServerEndpoint(endpoint)
+                .withPlayedAt(playedAt)
+                .withScores(List.of(new PlayerScore(playerA, scoreA), new PlayerScore(playerB, scoreB)))
+                .build();
+    }
+
+    private static Map.Entry<String, String> entry(int score, int count) {
+        return Map.entry(String.valueOf(score), String.valueOf(count));
+    }
+}
@@ -0,0 +1,95 @@
+package com.azatkhaliullin.integration;
+
+import com.azatkhaliullin.BaseRedisIntegrationTest;
+import com.azatkhaliullin.domain.MatchStreamEntry;
+import com.azatkhaliullin.repository.MatchStreamRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Every test reads the ingest stream through a consumer group of its own, next to the group of
+ * the running materializers.
+ */
+@SpringBootTest(properties = "stats.random-match.cron=-")
+class MatchStreamRepositoryIntegrationTest extends BaseRedisIntegrationTest {
+
+    private static final Duration BLOCK = Duration.ofMillis(100);
+    private static final String GONE_CONSUMER = "gone-0";
+    private static final String LIVE_CONSUMER = "live-0";
+
+    @Autowired
+    private MatchStreamRepository matchStreamRepository;
+
+    private String group;
+
+    @BeforeEach
+    void setUp() {
+        group = "it-" + UUID.randomUUID();
+        matchStreamRepository.appendAll(List.of(testMatchResult().withId(UUID.randomUUID()).build()));
+        matchStreamRepository.createGroup(group);
+    }
+
+    @Nested
+    @DisplayName("Idle entries")
+    class IdleEntries {
+
+        @Test
+        void claimIdle_entriesOfAnotherConsumer_takesThemOver() {
+            String id = readOne(GONE_CONSUMER);
+
+            assertThat(matchStreamRepository.claimIdle(group, LIVE_CONSUMER, Duration.ZERO, 10)).containsExactly(id);
+
+            assertThat(matchStreamRepository.read(group, LIVE_CONSUMER, 10, BLOCK, true))
+                    .extracting(MatchStreamEntry::getId)
+                    .containsExactly(id);
+            assertThat(matchStreamRepository.read(group, GONE_CONSUMER, 10, BLOCK, true)).isEmpty();
+        }
+
+        @Test
+        void claimIdle_entriesNotIdleForLong_leavesThem() {
+            readOne(GONE_CONSUMER);
+
+            assertThat(matchStreamRepository.claimIdle(group, LIVE_CONSUMER, Duration.ofMinutes(1), 10)).isEmpty();
+        }
+
+        @Test
+        void claimIdle_ownEntries_leavesThem() {
+            readOne(LIVE_CONSUMER);
+
+            assertThat(matchStreamRepository.claimIdle(group, LIVE_CONSUMER, Duration.ZERO, 10)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Deliveries")
+    class Deliveries {
+
+        @Test
+        void findDeliveries_countsEveryReadOfPendingEntries() {
+            String id = readOne(LIVE_CONSUMER);
+            matchStreamRepository.read(group, LIVE_CONSUMER, 1, BLOCK, true);
+            matchStreamRepository.read(group, LIVE_CONSUMER, 1, BLOCK, true);
+
+            assertThat(matchStreamRepository.findDeliveries(group, LIVE_CONSUMER, List.of(id)))
+                    .containsExactly(entry(id, 3L));
+        }
+    }
+
+    private String readOne(String consumer) {
+        List<MatchStreamEntry> entries = matchStreamRepository.read(group, consumer, 1, BLOCK, false);
+        assertThat(entries).hasSize(1);
+        return entries.get(0).getId();
+    }
+}
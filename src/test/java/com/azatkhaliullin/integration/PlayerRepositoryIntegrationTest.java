@@ -0,0 +1,196 @@
+package com.azatkhaliullin.integration;
+
+import com.azatkhaliullin.BaseRedisIntegrationTest;
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.domain.PlayerRank;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.PlayerStats;
+import com.azatkhaliullin.domain.RatedPlayer;
+import com.azatkhaliullin.repository.PlayerRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.azatkhaliullin.TestConstants.AVERAGE_SCORE;
+import static com.azatkhaliullin.TestConstants.BEST_SCORE;
+import static com.azatkhaliullin.TestConstants.LEGACY_PLAYER_STATS;
+import static com.azatkhaliullin.TestConstants.TOTAL_MATCHES;
+import static com.azatkhaliullin.TestConstants.TOTAL_SCORE;
+import static com.azatkhaliullin.TestConstants.USERNAME_A;
+import static com.azatkhaliullin.TestConstants.WORST_SCORE;
+import static com.azatkhaliullin.builder.PlayerTestBuilder.testPlayer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "stats.random-match.cron=-")
+class PlayerRepositoryIntegrationTest extends BaseRedisIntegrationTest {
+
+    private static final String KEY_PLAYER_STATS = "players:stats:";
+    private static final String KEY_USERNAMES_BY_ID = "players:by_id";
+    private static final String KEY_PLAYERS_RATING = "players:rating";
+    private static final String KEY_COUNTRY_RATING = "players:rating:country:";
+    private static final String KEY_LEVEL_RATING = "players:rating:level:";
+    private static final double TOP_RATING = 1e12;
+    private static final int TOP_SCORE = 10_000_000;
+    private static final int LOW_SCORE = 10;
+
+    @Autowired
+    private PlayerRepository playerRepository;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Nested
+    @DisplayName("Stats stored in the legacy format")
+    class LegacyStats {
+
+        @Test
+        void findPlayerStats_withLegacyStats_convertsAndReturnsThem() {
+            UUID playerId = legacyPlayer();
+
+            PlayerStats stats = playerRepository.findPlayerStats(playerId);
+
+            assertThat(stats).isEqualTo(new PlayerStats(TOTAL_MATCHES, TOTAL_SCORE, BEST_SCORE, WORST_SCORE,
+                    AVERAGE_SCORE));
+            assertConverted(playerId);
+        }
+
+        @Test
+        void findTotalMatches_withLegacyStats_convertsAndReturnsThem() {
+            UUID playerId = legacyPlayer();
+
+            assertThat(playerRepository.findTotalMatches(playerId)).isEqualTo(TOTAL_MATCHES);
+            assertConverted(playerId);
+        }
+
+        @Test
+        void findTopRated_withLegacyStats_convertsAndReturnsThem() {
+            UUID playerId = legacyPlayer();
+            redisTemplate.opsForZSet().add(KEY_PLAYERS_RATING, playerId, TOP_RATING);
+            try {
+                List<RatedPlayer> players = playerRepository.findTopRated(1);
+
+                assertThat(players).singleElement().satisfies(player -> {
+                    assertThat(player.getPlayerId()).isEqualTo(playerId);
+                    assertThat(player.getStats().getTotalMatches()).isEqualTo(TOTAL_MATCHES);
+                    assertThat(player.getStats().getBestScore()).isEqualTo(BEST_SCORE);
+                });
+                assertConverted(playerId);
+            } finally {
+                redisTemplate.opsForZSet().remove(KEY_PLAYERS_RATING, playerId);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Stats merge")
+    class StatsMerge {
+
+        @Test
+        void mergeScores_withLegacyStats_convertsThemBeforeMerging() {
+            UUID playerId = legacyPlayer();
+
+            playerRepository.mergeScores(List.of(new PlayerScore(playerId, LOW_SCORE)));
+
+            assertThat(stringRedisTemplate.<String, String>opsForHash().entries(KEY_PLAYER_STATS + playerId))
+                    .containsEntry("totalMatches", String.valueOf(TOTAL_MATCHES + 1))
+                    .containsEntry("totalScore", String.valueOf(TOTAL_SCORE + LOW_SCORE))
+                    .containsEntry("bestScore", String.valueOf(BEST_SCORE))
+                    .containsEntry("worstScore", String.valueOf(LOW_SCORE));
+            assertThat(redisTemplate.opsForZSet().score(KEY_PLAYERS_RATING, playerId)).isPositive();
+        }
+
+        @Test
+        void mergeScores_afterCountryChange_movesPlayerToTheNewCountryLeaderboard() {
+            UUID playerId = UUID.randomUUID();
+            Player player = testPlayer().withId(playerId).withUsername("it-" + playerId)
+                    .withCountry("Japan").withLevel(12).build();
+            playerRepository.saveAll(List.of(player));
+            playerRepository.mergeScores(List.of(new PlayerScore(playerId, LOW_SCORE)));
+            assertThat(redisTemplate.opsForZSet().score(KEY_COUNTRY_RATING + "Japan", playerId)).isPositive();
+
+            player.setCountry("France");
+            player.setLevel(31);
+            playerRepository.saveAll(List.of(player));
+            playerRepository.mergeScores(List.of(new PlayerScore(playerId, LOW_SCORE)));
+
+            Double rating = redisTemplate.opsForZSet().score(KEY_PLAYERS_RATING, playerId);
+            assertThat(redisTemplate.opsForZSet().score(KEY_COUNTRY_RATING + "Japan", playerId)).isNull();
+            assertThat(redisTemplate.opsForZSet().score(KEY_LEVEL_RATING + "10-19", playerId)).isNull();
+            assertThat(redisTemplate.opsForZSet().score(KEY_COUNTRY_RATING + "France", playerId)).isEqualTo(rating);
+            assertThat(redisTemplate.opsForZSet().score(KEY_LEVEL_RATING + "30-49", playerId)).isEqualTo(rating);
+        }
+    }
+
+    @Nested
+    @DisplayName("Rank")
+    class Rank {
+
+        @Test
+        void findRank_ratedPlayer_returnsRankAndNeighbours() {
+            Player first = savedPlayer();
+            Player second = savedPlayer();
+            try {
+                playerRepository.mergeScores(List.of(new PlayerScore(first.getId(), 2 * TOP_SCORE),
+                        new PlayerScore(second.getId(), TOP_SCORE)));
+
+                PlayerRank rank = playerRepository.findRank(second.getUsername(), 1).orElseThrow();
+
+                assertThat(rank.getRank()).isEqualTo(2);
+                assertThat(rank.getRankedPlayers()).isGreaterThanOrEqualTo(2);
+                assertThat(rank.getNeighbourhood()).hasSizeGreaterThanOrEqualTo(2);
+                assertThat(rank.getNeighbourhood().get(0)).satisfies(entry -> {
+                    assertThat(entry.getRank()).isEqualTo(1);
+                    assertThat(entry.getPlayerId()).isEqualTo(first.getId());
+                    assertThat(entry.getUsername()).isEqualTo(first.getUsername());
+                });
+                assertThat(rank.getNeighbourhood().get(1).getPlayerId()).isEqualTo(second.getId());
+            } finally {
+                redisTemplate.opsForZSet().remove(KEY_PLAYERS_RATING, first.getId(), second.getId());
+            }
+        }
+
+        @Test
+        void findRank_playerWithoutRating_returnsEmpty() {
+            Player player = savedPlayer();
+
+            assertThat(playerRepository.findRank(player.getUsername(), 1)).isEmpty();
+        }
+
+        @Test
+        void findRank_unknownPlayer_returnsEmpty() {
+            assertThat(playerRepository.findRank("it-" + UUID.randomUUID(), 1)).isEmpty();
+        }
+    }
+
+    private Player savedPlayer() {
+        UUID playerId = UUID.randomUUID();
+        Player player = testPlayer().withId(playerId).withUsername("it-" + playerId).build();
+        playerRepository.saveAll(List.of(player));
+        return player;
+    }
+
+    private UUID legacyPlayer() {
+        UUID playerId = UUID.randomUUID();
+        stringRedisTemplate.opsForValue().set(KEY_PLAYER_STATS + playerId, LEGACY_PLAYER_STATS);
+        redisTemplate.opsForHash().put(KEY_USERNAMES_BY_ID, playerId.toString(), USERNAME_A);
+        return playerId;
+    }
+
+    private void assertConverted(UUID playerId) {
+        assertThat(stringRedisTemplate.type(KEY_PLAYER_STATS + playerId)).isEqualTo(DataType.HASH);
+        assertThat(stringRedisTemplate.<String, String>opsForHash().entries(KEY_PLAYER_STATS + playerId))
+                .containsEntry("totalMatches", String.valueOf(TOTAL_MATCHES))
+                .containsEntry("totalScore", String.valueOf(TOTAL_SCORE))
+                .containsEntry("bestScore", String.valueOf(BEST_SCORE))
+                .containsEntry("worstScore", String.valueOf(WORST_SCORE));
+    }
+}
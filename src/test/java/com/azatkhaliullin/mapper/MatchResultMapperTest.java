@@ -84,5 +84,36 @@ class MatchResultMapperTest {
             assertThat(dto.getScores()).isEmpty();
         }
     }
-}
 
+    @Nested
+    @DisplayName("toDomain")
+    class ToDomainTests {
+
+        @Test
+        void shouldMapDtoToMatchResult() {
+            MatchResult matchResult = MatchResult.builder()
+                    .id(ID_A)
+                    .serverEndpoint(SERVER_EU_ENDPOINT)
+                    .playedAt(DEFAULT_PLAYED_AT)
+                    .scores(List.of(testPlayerScore().withId(ID_A).withScore(SCORE).build()))
+                    .build();
+
+            MatchResult mapped = matchResultMapper.toDomain(matchResultMapper.toDto(matchResult));
+
+            assertThat(mapped).isEqualTo(matchResult);
+        }
+
+        @Test
+        void shouldMapNullOffsetDateTimeToNull() {
+            MatchResultDto dto = MatchResultDto.builder()
+                    .id(ID_A)
+                    .serverEndpoint(SERVER_EU_ENDPOINT)
+                    .scores(List.of())
+                    .build();
+
+            MatchResult matchResult = matchResultMapper.toDomain(dto);
+
+            assertThat(matchResult.getPlayedAt()).isNull();
+        }
+    }
+}
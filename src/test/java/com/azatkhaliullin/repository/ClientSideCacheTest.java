@@ -0,0 +1,232 @@
+package com.azatkhaliullin.repository;
+
+import com.azatkhaliullin.property.ClientCacheProperties;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.StatefulRedisConnectionImpl;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static com.azatkhaliullin.TestConstants.ID_B;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ClientSideCacheTest {
+
+    private static final String MATCH_KEY_A = "match:" + ID_A;
+    private static final String MATCH_KEY_B = "match:" + ID_B;
+    private static final String STATS_KEY_A = "players:stats:" + ID_A;
+    private static final String STATS_KEY_B = "players:stats:" + ID_B;
+    private static final byte[] MATCH_A = {1};
+    private static final Map<String, byte[]> STATS_A = Map.of("total_matches", "3".getBytes());
+
+    @Mock
+    private LettuceConnectionFactory connectionFactory;
+    @Mock
+    private StatefulRedisConnectionImpl<String, byte[]> connection;
+    @Mock
+    private RedisCommands<String, byte[]> commands;
+    @Mock
+    private RedisAsyncCommands<String, byte[]> asyncCommands;
+    @Mock
+    private RedisFuture<Map<String, byte[]>> statsFutureA;
+    @Mock
+    private RedisFuture<Map<String, byte[]>> statsFutureB;
+
+    private final ClientCacheProperties clientCacheProperties = new ClientCacheProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ClientSideCache clientSideCache;
+
+    @BeforeEach
+    void setUp() {
+        clientCacheProperties.setEnabled(true);
+        clientCacheProperties.setPrefixes(List.of("match:", "players:stats:"));
+        clientCacheProperties.setMaxEntries(100);
+        lenient().when(connection.isOpen()).thenReturn(true);
+        lenient().when(connection.sync()).thenReturn(commands);
+        lenient().when(connection.async()).thenReturn(asyncCommands);
+        clientSideCache = new ClientSideCache(connectionFactory, clientCacheProperties, meterRegistry);
+        clientSideCache.connected(connection);
+    }
+
+    @Nested
+    @DisplayName("mGet")
+    class MGetTests {
+
+        @Test
+        void shouldReadOnlyMissingKeys() {
+            when(commands.mget(MATCH_KEY_A, MATCH_KEY_B))
+                    .thenReturn(List.of(KeyValue.just(MATCH_KEY_A, MATCH_A), KeyValue.empty(MATCH_KEY_B)));
+            when(commands.mget(MATCH_KEY_B)).thenReturn(List.of(KeyValue.empty(MATCH_KEY_B)));
+
+            clientSideCache.mGet(List.of(MATCH_KEY_A, MATCH_KEY_B));
+            Optional<List<byte[]>> result = clientSideCache.mGet(List.of(MATCH_KEY_A, MATCH_KEY_B));
+
+            assertThat(result).hasValueSatisfying(values -> assertThat(values).containsExactly(MATCH_A, null));
+            verify(commands).mget(MATCH_KEY_B);
+        }
+
+        @Test
+        void shouldReadInvalidatedKeyAgain() {
+            when(commands.mget(MATCH_KEY_A)).thenReturn(List.of(KeyValue.just(MATCH_KEY_A, MATCH_A)));
+            clientSideCache.mGet(List.of(MATCH_KEY_A));
+
+            clientSideCache.onPushMessage(invalidation(List.of(MATCH_KEY_A)));
+            clientSideCache.mGet(List.of(MATCH_KEY_A));
+
+            verify(commands, times(2)).mget(MATCH_KEY_A);
+            assertThat(meterRegistry.counter("stats.client-cache.invalidations").count()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldReadAllKeysAgainAfterFlush() {
+            when(commands.mget(MATCH_KEY_A)).thenReturn(List.of(KeyValue.just(MATCH_KEY_A, MATCH_A)));
+            clientSideCache.mGet(List.of(MATCH_KEY_A));
+
+            clientSideCache.onPushMessage(invalidation(null));
+            clientSideCache.mGet(List.of(MATCH_KEY_A));
+
+            verify(commands, times(2)).mget(MATCH_KEY_A);
+        }
+
+        @Test
+        void shouldNotCacheValueInvalidatedWhileRead() {
+            when(commands.mget(MATCH_KEY_A)).thenAnswer(invocation -> {
+                clientSideCache.onPushMessage(invalidation(List.of(MATCH_KEY_A)));
+                return List.of(KeyValue.just(MATCH_KEY_A, MATCH_A));
+            });
+
+            clientSideCache.mGet(List.of(MATCH_KEY_A));
+            clientSideCache.mGet(List.of(MATCH_KEY_A));
+
+            verify(commands, times(2)).mget(MATCH_KEY_A);
+        }
+
+        @Test
+        void shouldReturnEmptyForKeyWithoutCachedPrefix() {
+            assertThat(clientSideCache.mGet(List.of(MATCH_KEY_A, "players:" + ID_A))).isEmpty();
+
+            verifyNoInteractions(commands);
+        }
+
+        @Test
+        void shouldReturnEmptyWhenConnectionIsClosed() {
+            when(connection.isOpen()).thenReturn(false);
+
+            assertThat(clientSideCache.mGet(List.of(MATCH_KEY_A))).isEmpty();
+            verifyNoInteractions(commands);
+        }
+
+        @Test
+        void shouldReturnEmptyWhenReadFails() {
+            when(commands.mget(MATCH_KEY_A)).thenThrow(new RuntimeException("ex"));
+
+            assertThat(clientSideCache.mGet(List.of(MATCH_KEY_A))).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("hGetAll")
+    class HGetAllTests {
+
+        @BeforeEach
+        void setUp() {
+            when(connectionFactory.getClientConfiguration()).thenReturn(LettuceClientConfiguration.defaultConfiguration());
+        }
+
+        @Test
+        void shouldReadMissingHashesOnce() throws Exception {
+            stubRead(STATS_KEY_A, statsFutureA, STATS_A);
+            stubRead(STATS_KEY_B, statsFutureB, Map.of());
+
+            clientSideCache.hGetAll(List.of(STATS_KEY_A, STATS_KEY_B));
+            Optional<List<Map<String, byte[]>>> result = clientSideCache.hGetAll(List.of(STATS_KEY_A, STATS_KEY_B));
+
+            assertThat(result).hasValue(List.of(STATS_A, Map.of()));
+            verify(asyncCommands).hgetall(STATS_KEY_A);
+            verify(asyncCommands, times(2)).hgetall(STATS_KEY_B);
+        }
+
+        @Test
+        void shouldReturnEmptyWhenReadTimesOut() throws Exception {
+            when(asyncCommands.hgetall(STATS_KEY_A)).thenReturn(statsFutureA);
+            when(statsFutureA.await(anyLong(), any(TimeUnit.class))).thenReturn(false);
+
+            assertThat(clientSideCache.hGetAll(List.of(STATS_KEY_A))).isEmpty();
+        }
+
+        private void stubRead(String key, RedisFuture<Map<String, byte[]>> future, Map<String, byte[]> fields)
+                throws Exception {
+            when(asyncCommands.hgetall(key)).thenReturn(future);
+            when(future.await(anyLong(), any(TimeUnit.class))).thenReturn(true);
+            when(future.get()).thenReturn(fields);
+        }
+    }
+
+    @Nested
+    @DisplayName("lifecycle")
+    class LifecycleTests {
+
+        @Test
+        void shouldDropValuesAndCloseConnectionWhenDisconnected() {
+            when(commands.mget(MATCH_KEY_A)).thenReturn(List.of(KeyValue.just(MATCH_KEY_A, MATCH_A)));
+            clientSideCache.mGet(List.of(MATCH_KEY_A));
+
+            clientSideCache.onRedisDisconnected(connection);
+
+            assertThat(clientSideCache.mGet(List.of(MATCH_KEY_A))).isEmpty();
+            verify(connection).closeAsync();
+        }
+
+        @Test
+        void shouldNotStartWhenDisabled() {
+            clientCacheProperties.setEnabled(false);
+
+            clientSideCache.start();
+            clientSideCache.connect();
+
+            assertThat(clientSideCache.isRunning()).isFalse();
+            verifyNoInteractions(connectionFactory);
+        }
+
+        @Test
+        void shouldNotStartWithoutStandaloneClient() {
+            clientSideCache.start();
+
+            assertThat(clientSideCache.isRunning()).isFalse();
+        }
+    }
+
+    private static PushMessage invalidation(List<String> keys) {
+        PushMessage message = mock(PushMessage.class);
+        when(message.getType()).thenReturn("invalidate");
+        when(message.getContent(any())).thenReturn(Arrays.asList("invalidate", keys));
+        return message;
+    }
+}
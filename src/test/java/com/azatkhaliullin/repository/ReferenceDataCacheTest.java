@@ -0,0 +1,274 @@
+package com.azatkhaliullin.repository;
+
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.property.NearCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.azatkhaliullin.TestConstants.SERVER_EU_ENDPOINT;
+import static com.azatkhaliullin.TestConstants.USERNAME_A;
+import static com.azatkhaliullin.builder.PlayerTestBuilder.testPlayer;
+import static com.azatkhaliullin.builder.ServerInfoBuilder.testServerInfo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReferenceDataCacheTest {
+
+    private static final Player PLAYER = testPlayer().withUsername(USERNAME_A).build();
+    private static final ServerInfo SERVER = testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build();
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final NearCacheProperties nearCacheProperties = new NearCacheProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private ReferenceDataCache referenceDataCache;
+
+    @BeforeEach
+    void setUp() {
+        nearCacheProperties.setEnabled(true);
+        nearCacheProperties.setMaxPlayers(100);
+        nearCacheProperties.setMaxServers(10);
+        nearCacheProperties.setExpireAfterWrite(Duration.ofMinutes(10));
+        nearCacheProperties.setInvalidationChannel("near-cache:invalidations");
+        lenient().when(listenerContainer.isListening()).thenReturn(true);
+        referenceDataCache = new ReferenceDataCache(redisTemplate, listenerContainer, nearCacheProperties, meterRegistry);
+    }
+
+    @Nested
+    @DisplayName("get")
+    class GetTests {
+
+        @Test
+        void shouldLoadEntryOnce() {
+            assertThat(referenceDataCache.getPlayer(USERNAME_A, this::loadPlayer)).isEqualTo(PLAYER);
+            assertThat(referenceDataCache.getPlayer(USERNAME_A, this::loadPlayer)).isEqualTo(PLAYER);
+
+            assertThat(loads).hasValue(1);
+            assertThat(gets("near-cache.players", "hit")).isEqualTo(1);
+            assertThat(gets("near-cache.players", "miss")).isEqualTo(1);
+        }
+
+        @Test
+        void shouldNotCacheMissingEntry() {
+            referenceDataCache.getPlayer(USERNAME_A, this::loadNothing);
+            referenceDataCache.getPlayer(USERNAME_A, this::loadNothing);
+
+            assertThat(loads).hasValue(2);
+        }
+
+        @Test
+        void shouldLoadAllValuesOnce() {
+            referenceDataCache.getAllServers(this::loadServers);
+
+            assertThat(referenceDataCache.getAllServers(this::loadServers)).containsExactly(SERVER);
+            assertThat(loads).hasValue(1);
+        }
+
+        @Test
+        void shouldNotCacheEntryLoadedDuringInvalidation() {
+            referenceDataCache.getPlayer(USERNAME_A, username -> {
+                loads.incrementAndGet();
+                referenceDataCache.invalidate(PlayerRepository.KEY_PLAYERS_HASH);
+                return PLAYER;
+            });
+            referenceDataCache.getPlayer(USERNAME_A, this::loadPlayer);
+
+            assertThat(loads).hasValue(2);
+        }
+
+        @Test
+        void shouldNotCacheAllValuesLoadedDuringInvalidation() {
+            referenceDataCache.getAllServers(() -> {
+                loads.incrementAndGet();
+                referenceDataCache.onMessage(message(ServerRepository.KEY_SERVERS_HASH), null);
+                return List.of(SERVER);
+            });
+            referenceDataCache.getAllServers(this::loadServers);
+
+            assertThat(loads).hasValue(2);
+        }
+
+        @Test
+        void shouldLoadEveryTimeWhenNotSubscribed() {
+            referenceDataCache.getServer(SERVER_EU_ENDPOINT, this::loadServer);
+            when(listenerContainer.isListening()).thenReturn(false);
+
+            referenceDataCache.getServer(SERVER_EU_ENDPOINT, this::loadServer);
+            when(listenerContainer.isListening()).thenReturn(true);
+            referenceDataCache.getServer(SERVER_EU_ENDPOINT, this::loadServer);
+
+            assertThat(loads).hasValue(3);
+        }
+
+        @Test
+        void shouldLoadEveryTimeWhenDisabled() {
+            nearCacheProperties.setEnabled(false);
+
+            referenceDataCache.getServer(SERVER_EU_ENDPOINT, this::loadServer);
+            referenceDataCache.getServer(SERVER_EU_ENDPOINT, this::loadServer);
+
+            assertThat(loads).hasValue(2);
+        }
+
+        private Player loadPlayer(String username) {
+            loads.incrementAndGet();
+            return PLAYER;
+        }
+
+        private Player loadNothing(String username) {
+            loads.incrementAndGet();
+            return null;
+        }
+
+        private ServerInfo loadServer(String endpoint) {
+            loads.incrementAndGet();
+            return SERVER;
+        }
+
+        private List<ServerInfo> loadServers() {
+            loads.incrementAndGet();
+            return List.of(SERVER);
+        }
+    }
+
+    @Nested
+    @DisplayName("invalidate")
+    class InvalidateTests {
+
+        @Test
+        void shouldDropEntriesOfHashAndPublishIt() {
+            cachePlayerAndServer();
+
+            referenceDataCache.invalidate(PlayerRepository.KEY_PLAYERS_HASH);
+
+            cachePlayerAndServer();
+            assertThat(loads).hasValue(3);
+            verify(redisTemplate).execute(any(RedisCallback.class));
+        }
+
+        @Test
+        void shouldNotFailWhenPublishFails() {
+            when(redisTemplate.execute(any(RedisCallback.class))).thenThrow(new RuntimeException("ex"));
+            cachePlayerAndServer();
+
+            assertThatCode(() -> referenceDataCache.invalidate(ServerRepository.KEY_SERVERS_HASH))
+                    .doesNotThrowAnyException();
+            cachePlayerAndServer();
+            assertThat(loads).hasValue(3);
+        }
+
+        @Test
+        void shouldDoNothingWhenDisabled() {
+            nearCacheProperties.setEnabled(false);
+
+            referenceDataCache.invalidate(PlayerRepository.KEY_PLAYERS_HASH);
+
+            verifyNoInteractions(redisTemplate);
+        }
+    }
+
+    @Nested
+    @DisplayName("subscribe")
+    class SubscribeTests {
+
+        @Test
+        void shouldSubscribeWhenNotListening() {
+            when(listenerContainer.isListening()).thenReturn(false);
+
+            referenceDataCache.subscribe();
+
+            verify(listenerContainer).addMessageListener(referenceDataCache, new ChannelTopic("near-cache:invalidations"));
+            verify(listenerContainer).start();
+        }
+
+        @Test
+        void shouldNotFailWhenRedisIsUnavailable() {
+            when(listenerContainer.isListening()).thenReturn(false);
+            doThrow(new RuntimeException("ex")).when(listenerContainer).start();
+
+            assertThatCode(() -> referenceDataCache.subscribe()).doesNotThrowAnyException();
+        }
+
+        @Test
+        void shouldDoNothingWhenListening() {
+            referenceDataCache.subscribe();
+
+            verify(listenerContainer, never()).start();
+        }
+    }
+
+    @Nested
+    @DisplayName("onMessage")
+    class OnMessageTests {
+
+        @Test
+        void shouldDropEntriesOfPublishedHash() {
+            cachePlayerAndServer();
+
+            referenceDataCache.onMessage(message(ServerRepository.KEY_SERVERS_HASH), null);
+
+            cachePlayerAndServer();
+            assertThat(loads).hasValue(3);
+            assertThat(meterRegistry.counter("stats.near-cache.invalidations").count()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldIgnoreUnknownHash() {
+            cachePlayerAndServer();
+
+            referenceDataCache.onMessage(message("unknown"), null);
+
+            cachePlayerAndServer();
+            assertThat(loads).hasValue(2);
+        }
+    }
+
+    private void cachePlayerAndServer() {
+        referenceDataCache.getPlayer(USERNAME_A, username -> {
+            loads.incrementAndGet();
+            return PLAYER;
+        });
+        referenceDataCache.getServer(SERVER_EU_ENDPOINT, endpoint -> {
+            loads.incrementAndGet();
+            return SERVER;
+        });
+    }
+
+    private static DefaultMessage message(String hash) {
+        return new DefaultMessage("near-cache:invalidations".getBytes(StandardCharsets.UTF_8),
+                hash.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private double gets(String cache, String result) {
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", result).functionCounter().count();
+    }
+}
@@ -0,0 +1,88 @@
+package com.azatkhaliullin.security;
+
+import com.azatkhaliullin.property.GameServerProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+import static com.azatkhaliullin.TestConstants.GAME_SERVER_API_KEY;
+import static com.azatkhaliullin.TestConstants.GAME_SERVER_API_KEY_HASH;
+import static com.azatkhaliullin.util.SecurityConstants.API_KEY_HEADER;
+import static com.azatkhaliullin.util.SecurityConstants.ROLE_GAME_SERVER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ApiKeyFilterTest {
+
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+    @Mock
+    private FilterChain filterChain;
+
+    private ApiKeyFilter apiKeyFilter;
+
+    @BeforeEach
+    void setUp() {
+        GameServerProperties gameServerProperties = new GameServerProperties();
+        gameServerProperties.setApiKeyHashes(List.of(GAME_SERVER_API_KEY_HASH));
+        apiKeyFilter = new ApiKeyFilter(gameServerProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Nested
+    @DisplayName("doFilterInternal")
+    class DoFilterInternalTests {
+
+        @Test
+        void shouldGrantGameServerRoleWhenKnownKeyProvided() throws Exception {
+            when(request.getHeader(API_KEY_HEADER)).thenReturn(GAME_SERVER_API_KEY);
+
+            apiKeyFilter.doFilterInternal(request, response, filterChain);
+
+            assertThat(SecurityContextHolder.getContext().getAuthentication().getAuthorities())
+                    .extracting(GrantedAuthority::getAuthority)
+                    .containsExactly(ROLE_GAME_SERVER);
+            verify(filterChain).doFilter(request, response);
+        }
+
+        @Test
+        void shouldContinueFilterChainWhenKeyIsUnknown() throws Exception {
+            when(request.getHeader(API_KEY_HEADER)).thenReturn("unknown-key");
+
+            apiKeyFilter.doFilterInternal(request, response, filterChain);
+
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+            verify(filterChain).doFilter(request, response);
+        }
+
+        @Test
+        void shouldContinueFilterChainWhenNoKeyProvided() throws Exception {
+            when(request.getHeader(API_KEY_HEADER)).thenReturn(null);
+
+            apiKeyFilter.doFilterInternal(request, response, filterChain);
+
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+            verify(filterChain).doFilter(request, response);
+        }
+    }
+}
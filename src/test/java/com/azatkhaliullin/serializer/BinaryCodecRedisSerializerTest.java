@@ -0,0 +1,145 @@
+package com.azatkhaliullin.serializer;
+
+import com.azatkhaliullin.config.RedisConfig;
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.property.ValueCodecProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static com.azatkhaliullin.TestConstants.ID_B;
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryCodecRedisSerializerTest {
+
+    private final RedisSerializer<MatchResult> binarySerializer = matchResultSerializer(true);
+    private final RedisSerializer<MatchResult> jsonSerializer = matchResultSerializer(false);
+
+    @Nested
+    @DisplayName("serialize")
+    class SerializeTests {
+
+        @Test
+        void shouldWriteMatchInBinaryLayoutBehindHeader() {
+            byte[] bytes = binarySerializer.serialize(testMatchResult().build());
+
+            assertThat(bytes[0] & 0xFF).isEqualTo(BinaryCodecRedisSerializer.MARKER);
+            assertThat(bytes[1]).isEqualTo((byte) MatchResultCodec.TAG);
+            assertThat(bytes[2]).isEqualTo((byte) 1);
+        }
+
+        @Test
+        void shouldBeSmallerThanJson() {
+            MatchResult match = testMatchResult()
+                    .withScores(List.of(new PlayerScore(ID_A, 10), new PlayerScore(ID_B, 20)))
+                    .build();
+
+            assertThat(binarySerializer.serialize(match).length)
+                    .isLessThan(jsonSerializer.serialize(match).length / 3);
+        }
+
+        @Test
+        void shouldWriteMatchAsJsonWhenBinaryWritesAreOff() {
+            byte[] bytes = jsonSerializer.serialize(testMatchResult().build());
+
+            assertThat(new String(bytes, StandardCharsets.UTF_8)).startsWith("{\"id\":");
+        }
+
+        @Test
+        void shouldFailForMatchWithoutId() {
+            MatchResult match = testMatchResult().withId(null).build();
+
+            assertThatThrownBy(() -> binarySerializer.serialize(match)).isInstanceOf(SerializationException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("deserialize")
+    class DeserializeTests {
+
+        @Test
+        void shouldRoundTripMatch() {
+            MatchResult match = testMatchResult()
+                    .withScores(List.of(new PlayerScore(ID_A, 0), new PlayerScore(ID_B, 100)))
+                    .build();
+
+            assertThat(binarySerializer.deserialize(binarySerializer.serialize(match))).isEqualTo(match);
+        }
+
+        @Test
+        void shouldReadMatchWrittenAsJson() {
+            MatchResult match = testMatchResult().build();
+
+            assertThat(binarySerializer.deserialize(jsonSerializer.serialize(match))).isEqualTo(match);
+        }
+
+        @Test
+        void shouldReadMatchWrittenWithDefaultTyping() {
+            MatchResult match = testMatchResult().build();
+            ObjectMapper mapper = new ObjectMapper().findAndRegisterModules()
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+            mapper.activateDefaultTyping(mapper.getPolymorphicTypeValidator(), ObjectMapper.DefaultTyping.NON_FINAL);
+
+            byte[] legacy = new GenericJackson2JsonRedisSerializer(mapper).serialize(match);
+
+            assertThat(binarySerializer.deserialize(legacy)).isEqualTo(match);
+        }
+
+        @Test
+        void shouldReadBinaryMatchWhenBinaryWritesAreOff() {
+            MatchResult match = testMatchResult().build();
+
+            assertThat(jsonSerializer.deserialize(binarySerializer.serialize(match))).isEqualTo(match);
+        }
+
+        @Test
+        void shouldReturnNullForEmptyValue() {
+            assertThat(binarySerializer.deserialize(new byte[0])).isNull();
+            assertThat(binarySerializer.deserialize(null)).isNull();
+        }
+
+        @Test
+        void shouldFailForTagOfAnotherType() {
+            byte[] bytes = {(byte) 0xFF, 42, 1};
+
+            assertThatThrownBy(() -> binarySerializer.deserialize(bytes))
+                    .isInstanceOf(SerializationException.class)
+                    .hasMessageContaining("42");
+        }
+
+        @Test
+        void shouldFailForUnknownVersion() {
+            byte[] bytes = binarySerializer.serialize(testMatchResult().build());
+            bytes[2] = 9;
+
+            assertThatThrownBy(() -> binarySerializer.deserialize(bytes)).isInstanceOf(SerializationException.class);
+        }
+
+        @Test
+        void shouldFailForTruncatedValue() {
+            byte[] bytes = binarySerializer.serialize(testMatchResult().build());
+
+            assertThatThrownBy(() -> binarySerializer.deserialize(Arrays.copyOf(bytes, bytes.length - 1)))
+                    .isInstanceOf(SerializationException.class);
+        }
+    }
+
+    private static RedisSerializer<MatchResult> matchResultSerializer(boolean binaryWrites) {
+        ValueCodecProperties properties = new ValueCodecProperties();
+        properties.setBinaryWrites(binaryWrites);
+        return new RedisConfig(new ObjectMapper(), null).matchResultSerializer(properties);
+    }
+}
@@ -0,0 +1,172 @@
+package com.azatkhaliullin.serializer;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressingRedisSerializerTest {
+
+    private static final int POOL_SIZE = 50;
+
+    private static final RedisSerializer<MatchResult> encoding = binarySerializer();
+    private static final List<UUID> players = new ArrayList<>();
+    private static byte[] dictionary;
+    private static byte[] rotatedDictionary;
+
+    @BeforeAll
+    static void trainDictionaries() {
+        Random random = new Random(7);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            players.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        dictionary = train(random, 4096);
+        rotatedDictionary = train(random, 2048);
+    }
+
+    @Nested
+    @DisplayName("serialize")
+    class SerializeTests {
+
+        @Test
+        void shouldWriteDictionaryIdBehindMarker() {
+            byte[] bytes = serializer(dictionary).serialize(match(new Random(1)));
+
+            assertThat(bytes[0] & 0xFF).isEqualTo(CompressingRedisSerializer.MARKER);
+            assertThat(ByteBuffer.wrap(bytes, 1, 4).getInt()).isEqualTo((int) Zstd.getDictIdFromDict(dictionary));
+        }
+
+        @Test
+        void shouldBeSmallerThanEncodedValue() {
+            MatchResult match = match(new Random(2));
+
+            assertThat(serializer(dictionary).serialize(match).length)
+                    .isLessThan(encoding.serialize(match).length * 3 / 4);
+        }
+
+        @Test
+        void shouldStoreEncodedValueWhenCompressionDoesNotShrinkIt() {
+            MatchResult match = testMatchResult().withScores(List.of()).build();
+
+            assertThat(serializer(dictionary).serialize(match)).isEqualTo(encoding.serialize(match));
+        }
+
+        @Test
+        void shouldNotCompressWhenWritesAreOff() {
+            MatchResult match = match(new Random(3));
+
+            byte[] bytes = new CompressingRedisSerializer<>(encoding, List.of(dictionary), false, 3).serialize(match);
+
+            assertThat(bytes).isEqualTo(encoding.serialize(match));
+        }
+
+        @Test
+        void shouldRequireDictionaryWhenWritesAreOn() {
+            assertThatThrownBy(() -> new CompressingRedisSerializer<>(encoding, List.of(), true, 3))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("deserialize")
+    class DeserializeTests {
+
+        @Test
+        void shouldRoundTripMatch() {
+            RedisSerializer<MatchResult> serializer = serializer(dictionary);
+            MatchResult match = match(new Random(4));
+
+            assertThat(serializer.deserialize(serializer.serialize(match))).isEqualTo(match);
+        }
+
+        @Test
+        void shouldReadUncompressedValue() {
+            MatchResult match = match(new Random(5));
+
+            assertThat(serializer(dictionary).deserialize(encoding.serialize(match))).isEqualTo(match);
+        }
+
+        @Test
+        void shouldReadValueCompressedWithRetiredDictionary() {
+            MatchResult match = match(new Random(6));
+            byte[] bytes = serializer(dictionary).serialize(match);
+
+            assertThat(serializer(rotatedDictionary, dictionary).deserialize(bytes)).isEqualTo(match);
+        }
+
+        @Test
+        void shouldFailForUnknownDictionary() {
+            byte[] bytes = serializer(dictionary).serialize(match(new Random(8)));
+
+            assertThatThrownBy(() -> serializer(rotatedDictionary).deserialize(bytes))
+                    .isInstanceOf(SerializationException.class)
+                    .hasMessageContaining("unknown zstd dictionary");
+        }
+
+        @Test
+        void shouldFailForTruncatedValue() {
+            byte[] bytes = serializer(dictionary).serialize(match(new Random(9)));
+
+            assertThatThrownBy(() -> serializer(dictionary).deserialize(Arrays.copyOf(bytes, bytes.length - 1)))
+                    .isInstanceOf(SerializationException.class);
+        }
+
+        @Test
+        void shouldReturnEncodedValueFromUncompressed() {
+            MatchResult match = match(new Random(10));
+
+            assertThat(serializer(dictionary).uncompressed(serializer(dictionary).serialize(match)))
+                    .isEqualTo(encoding.serialize(match));
+        }
+    }
+
+    private static CompressingRedisSerializer<MatchResult> serializer(byte[]... dictionaries) {
+        return new CompressingRedisSerializer<>(encoding, List.of(dictionaries), true, 3);
+    }
+
+    private static byte[] train(Random random, int dictionarySize) {
+        ZstdDictTrainer trainer = new ZstdDictTrainer(1 << 20, dictionarySize);
+        for (int i = 0; i < 2_000; i++) {
+            trainer.addSample(encoding.serialize(match(random)));
+        }
+        return trainer.trainSamples();
+    }
+
+    private static MatchResult match(Random random) {
+        List<PlayerScore> scores = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            scores.add(new PlayerScore(players.get(random.nextInt(POOL_SIZE)), random.nextInt(101)));
+        }
+        return testMatchResult()
+                .withId(new UUID(random.nextLong(), random.nextLong()))
+                .withServerEndpoint("server-" + random.nextInt(5) + ".example.com:8080")
+                .withPlayedAt(Instant.ofEpochMilli(1_700_000_000_000L + random.nextInt(1_000_000_000)))
+                .withScores(scores)
+                .build();
+    }
+
+    private static RedisSerializer<MatchResult> binarySerializer() {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        return new BinaryCodecRedisSerializer<>(new MatchResultCodec(),
+                new TypedJsonRedisSerializer<>(MatchResult.class, mapper, mapper), true);
+    }
+}
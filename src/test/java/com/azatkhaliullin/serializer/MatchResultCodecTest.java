@@ -0,0 +1,84 @@
+package com.azatkhaliullin.serializer;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static com.azatkhaliullin.TestConstants.ID_B;
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MatchResultCodecTest {
+
+    private final MatchResultCodec codec = new MatchResultCodec();
+
+    @Test
+    void shouldRoundTripExtremeValues() {
+        MatchResult match = testMatchResult()
+                .withServerEndpoint("ünïcode-endpoint:8080")
+                .withPlayedAt(Instant.ofEpochMilli(-1).plusNanos(999_999))
+                .withScores(List.of(new PlayerScore(ID_A, Integer.MIN_VALUE), new PlayerScore(ID_B, Integer.MAX_VALUE)))
+                .build();
+
+        assertThat(roundTrip(match)).isEqualTo(match);
+    }
+
+    @Test
+    void shouldKeepSubMillisecondPrecision() {
+        MatchResult match = testMatchResult().withPlayedAt(Instant.parse("2025-10-10T12:00:00.123456789Z")).build();
+
+        assertThat(roundTrip(match).getPlayedAt()).isEqualTo(match.getPlayedAt());
+    }
+
+    @Test
+    void shouldRoundTripNullEndpointAndScores() {
+        MatchResult match = testMatchResult().withServerEndpoint(null).withScores(null).build();
+
+        assertThat(roundTrip(match)).isEqualTo(match);
+    }
+
+    @Test
+    void shouldRoundTripEmptyScores() {
+        MatchResult match = testMatchResult().withServerEndpoint("").withScores(List.of()).build();
+
+        assertThat(roundTrip(match)).isEqualTo(match);
+    }
+
+    @Test
+    void shouldTakeAboutSeventeenBytesPerSmallScore() {
+        List<PlayerScore> scores = IntStream.range(0, 10)
+                .mapToObj(i -> new PlayerScore(UUID.randomUUID(), 63))
+                .toList();
+        MatchResult match = testMatchResult().withServerEndpoint("e1").withScores(scores).build();
+
+        // 16 id + 6 + 1 playedAt + 3 endpoint + 1 count + 10 * (16 player id + 1 score)
+        assertThat(encode(match)).hasSize(197);
+    }
+
+    @Test
+    void shouldRejectUnknownVersion() {
+        BinaryReader reader = new BinaryReader(encode(testMatchResult().build()), 0);
+
+        assertThatThrownBy(() -> codec.decode(reader, 2)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private MatchResult roundTrip(MatchResult match) {
+        BinaryReader reader = new BinaryReader(encode(match), 0);
+        MatchResult decoded = codec.decode(reader, codec.version());
+        assertThat(reader.isExhausted()).isTrue();
+        return decoded;
+    }
+
+    private byte[] encode(MatchResult match) {
+        BinaryWriter writer = new BinaryWriter(0);
+        codec.encode(match, writer);
+        return writer.toByteArray();
+    }
+}
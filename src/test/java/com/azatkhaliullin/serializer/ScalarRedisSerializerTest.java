@@ -0,0 +1,40 @@
+package com.azatkhaliullin.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScalarRedisSerializerTest {
+
+    private final ScalarRedisSerializer serializer = new ScalarRedisSerializer(new ObjectMapper());
+
+    @Test
+    void shouldKeepMembersIdenticalToDefaultTyping() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.activateDefaultTyping(mapper.getPolymorphicTypeValidator(), ObjectMapper.DefaultTyping.NON_FINAL);
+        RedisSerializer<Object> legacy = new GenericJackson2JsonRedisSerializer(mapper);
+        UUID member = UUID.randomUUID();
+
+        assertThat(serializer.serialize(member)).isEqualTo(legacy.serialize(member));
+        assertThat(serializer.serialize(42L)).isEqualTo(legacy.serialize(42L));
+        assertThat(serializer.deserialize(legacy.serialize(member))).isEqualTo(member.toString());
+    }
+
+    @Test
+    void shouldPassPreEncodedBytesThrough() {
+        byte[] encoded = {(byte) 0xFF, 1, 1, 42};
+
+        assertThat(serializer.serialize(encoded)).isSameAs(encoded);
+    }
+
+    @Test
+    void shouldMapNullAndEmptyValues() {
+        assertThat(serializer.deserialize(new byte[0])).isNull();
+        assertThat(serializer.serialize(null)).isNull();
+    }
+}
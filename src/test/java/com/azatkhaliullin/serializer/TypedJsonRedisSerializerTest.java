@@ -0,0 +1,59 @@
+package com.azatkhaliullin.serializer;
+
+import com.azatkhaliullin.domain.Player;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TypedJsonRedisSerializerTest {
+
+    private final RedisSerializer<Player> serializer = new TypedJsonRedisSerializer<>(Player.class,
+            new ObjectMapper(), defaultTypingMapper());
+    private final Player player = Player.builder().id(ID_A).username("player").level(3).country("DE").build();
+
+    @Test
+    void shouldWriteWithoutClassNames() {
+        String json = new String(serializer.serialize(player), StandardCharsets.UTF_8);
+
+        assertThat(json).startsWith("{").doesNotContain("com.azatkhaliullin");
+    }
+
+    @Test
+    void shouldRoundTrip() {
+        assertThat(serializer.deserialize(serializer.serialize(player))).isEqualTo(player);
+    }
+
+    @Test
+    void shouldReadValueWrittenWithDefaultTyping() {
+        byte[] legacy = new GenericJackson2JsonRedisSerializer(defaultTypingMapper()).serialize(player);
+
+        assertThat(serializer.deserialize(legacy)).isEqualTo(player);
+    }
+
+    @Test
+    void shouldReturnNullForEmptyValue() {
+        assertThat(serializer.deserialize(new byte[0])).isNull();
+        assertThat(serializer.serialize(null)).isEmpty();
+    }
+
+    @Test
+    void shouldFailForMalformedJson() {
+        byte[] bytes = "{\"id\":".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> serializer.deserialize(bytes)).isInstanceOf(SerializationException.class);
+    }
+
+    private static ObjectMapper defaultTypingMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.activateDefaultTyping(mapper.getPolymorphicTypeValidator(), ObjectMapper.DefaultTyping.NON_FINAL);
+        return mapper;
+    }
+}
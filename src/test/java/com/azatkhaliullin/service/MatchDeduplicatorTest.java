@@ -0,0 +1,62 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MatchDeduplicatorTest {
+
+    @Mock
+    private MatchRepository matchRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MatchDeduplicator matchDeduplicator;
+
+    @BeforeEach
+    void setUp() {
+        IngestProperties properties = new IngestProperties();
+        properties.getDedup().setExpectedInsertions(1_000);
+        properties.getDedup().setFalsePositiveRate(0.001);
+
+        meterRegistry = new SimpleMeterRegistry();
+        matchDeduplicator = new MatchDeduplicator(matchRepository, properties, meterRegistry);
+    }
+
+    @Test
+    void shouldNotQueryRedisForUnseenId() {
+        assertThat(matchDeduplicator.isDuplicate(UUID.randomUUID())).isFalse();
+
+        verifyNoInteractions(matchRepository);
+    }
+
+    @Test
+    void shouldConfirmSeenIdAgainstMarker() {
+        UUID id = UUID.randomUUID();
+        matchDeduplicator.markAccepted(id);
+        when(matchRepository.isIngested(id)).thenReturn(true);
+
+        assertThat(matchDeduplicator.isDuplicate(id)).isTrue();
+        assertThat(meterRegistry.get("stats.ingest.duplicates").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldAcceptSeenIdWithoutMarker() {
+        UUID id = UUID.randomUUID();
+        matchDeduplicator.markAccepted(id);
+        when(matchRepository.isIngested(id)).thenReturn(false);
+
+        assertThat(matchDeduplicator.isDuplicate(id)).isFalse();
+    }
+}
@@ -0,0 +1,115 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.property.ValueCodecProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.serializer.CompressingRedisSerializer;
+import com.github.luben.zstd.Zstd;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MatchDictionaryTrainingJobTest {
+
+    private static final int SAMPLE_SIZE = 1_000;
+
+    @Mock
+    private MatchRepository matchRepository;
+    @Mock
+    private RedisSerializer<MatchResult> encoding;
+    @TempDir
+    private Path directory;
+
+    private final ValueCodecProperties valueCodecProperties = new ValueCodecProperties();
+    private MatchDictionaryTrainingJob matchDictionaryTrainingJob;
+    private Path output;
+
+    @BeforeEach
+    void setUp() {
+        output = directory.resolve("match-values.dict");
+        ValueCodecProperties.Training training = valueCodecProperties.getCompression().getTraining();
+        training.setEnabled(true);
+        training.setSampleSize(SAMPLE_SIZE);
+        training.setDictionarySize(1024);
+        training.setOutput(output.toString());
+        matchDictionaryTrainingJob = new MatchDictionaryTrainingJob(matchRepository,
+                new CompressingRedisSerializer<>(encoding, List.of(), false, 3), valueCodecProperties);
+    }
+
+    @Nested
+    @DisplayName("run")
+    class RunTests {
+
+        @Test
+        void shouldWriteDictionaryTrainedOnRecentMatches() throws IOException {
+            when(matchRepository.findRecentEncoded(SAMPLE_SIZE)).thenReturn(samples());
+
+            matchDictionaryTrainingJob.run(null);
+
+            assertThat(output).exists();
+            assertThat(Zstd.getDictIdFromDict(Files.readAllBytes(output))).isNotZero();
+        }
+
+        @Test
+        void shouldNotWriteDictionaryWithoutMatches() {
+            when(matchRepository.findRecentEncoded(SAMPLE_SIZE)).thenReturn(List.of());
+
+            matchDictionaryTrainingJob.run(null);
+
+            assertThat(output).doesNotExist();
+        }
+
+        @Test
+        void shouldSkipWhenDisabled() {
+            valueCodecProperties.getCompression().getTraining().setEnabled(false);
+
+            matchDictionaryTrainingJob.run(null);
+
+            verifyNoInteractions(matchRepository);
+        }
+
+        @Test
+        void shouldNotFailStartupWhenTrainingFails() {
+            when(matchRepository.findRecentEncoded(SAMPLE_SIZE)).thenThrow(new RuntimeException("ex"));
+
+            matchDictionaryTrainingJob.run(null);
+
+            assertThat(output).doesNotExist();
+        }
+    }
+
+    private static List<byte[]> samples() {
+        Random random = new Random(1);
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            players.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            String value = "{\"serverEndpoint\":\"server-" + random.nextInt(3) + "\",\"scores\":[{\"playerId\":\""
+                    + players.get(random.nextInt(players.size())) + "\",\"score\":" + random.nextInt(101) + "}]}";
+            samples.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return samples;
+    }
+}
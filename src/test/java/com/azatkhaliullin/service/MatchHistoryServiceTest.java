@@ -0,0 +1,241 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchCursor;
+import com.azatkhaliullin.domain.MatchHistoryQuery;
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.dto.MatchPageDto;
+import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.exception.InvalidCursorException;
+import com.azatkhaliullin.mapper.MatchResultMapper;
+import com.azatkhaliullin.property.MatchHistoryProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.repository.ServerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static com.azatkhaliullin.TestConstants.DEFAULT_PLAYED_AT;
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static com.azatkhaliullin.TestConstants.SERVER_EU_ENDPOINT;
+import static com.azatkhaliullin.TestConstants.UNKNOWN_SERVER;
+import static com.azatkhaliullin.TestConstants.USERNAME_A;
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static com.azatkhaliullin.builder.PlayerTestBuilder.testPlayer;
+import static com.azatkhaliullin.builder.ServerInfoBuilder.testServerInfo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MatchHistoryServiceTest {
+
+    private static final int DEFAULT_PAGE_SIZE = 3;
+    private static final int MAX_PAGE_SIZE = 5;
+
+    @Mock
+    private MatchRepository matchRepository;
+    @Mock
+    private PlayerRepository playerRepository;
+    @Mock
+    private ServerRepository serverRepository;
+    @Spy
+    private MatchResultMapper matchResultMapper = Mappers.getMapper(MatchResultMapper.class);
+    @Spy
+    private MatchHistoryProperties matchHistoryProperties = new MatchHistoryProperties();
+    @InjectMocks
+    private MatchHistoryService matchHistoryService;
+
+    @BeforeEach
+    void setUp() {
+        matchHistoryProperties.setDefaultPageSize(DEFAULT_PAGE_SIZE);
+        matchHistoryProperties.setMaxPageSize(MAX_PAGE_SIZE);
+    }
+
+    @Nested
+    @DisplayName("getPlayerMatches")
+    class GetPlayerMatchesTests {
+
+        @BeforeEach
+        void setUp() {
+            when(playerRepository.findByUsername(USERNAME_A))
+                    .thenReturn(Optional.of(testPlayer().withId(ID_A).withUsername(USERNAME_A).build()));
+        }
+
+        @Test
+        void shouldReturnFirstPageWithNextCursor() {
+            List<MatchResult> matches = matches(DEFAULT_PAGE_SIZE + 1);
+            when(matchRepository.findPlayerHistory(eq(ID_A), any())).thenReturn(matches);
+
+            MatchPageDto page = matchHistoryService.getPlayerMatches(USERNAME_A, null, null, null, null, null)
+                    .orElseThrow();
+
+            assertThat(page.getMatches()).extracting(MatchResultDto::getId)
+                    .containsExactlyElementsOf(ids(matches.subList(0, DEFAULT_PAGE_SIZE)));
+            assertThat(page.getNextCursor())
+                    .isEqualTo(MatchHistoryService.encodeCursor(matches.get(DEFAULT_PAGE_SIZE - 1)));
+            assertThat(page.getPrevCursor()).isNull();
+            MatchHistoryQuery query = capturedPlayerQuery();
+            assertThat(query.getLimit()).isEqualTo(DEFAULT_PAGE_SIZE + 1);
+            assertThat(query.isNewer()).isFalse();
+            assertThat(query.getCursor()).isNull();
+        }
+
+        @Test
+        void shouldOmitNextCursorOnLastPage() {
+            MatchResult before = matches(1).get(0);
+            when(matchRepository.findPlayerHistory(eq(ID_A), any())).thenReturn(matches(2));
+
+            MatchPageDto page = matchHistoryService.getPlayerMatches(USERNAME_A, null,
+                    MatchHistoryService.encodeCursor(before), null, null, null).orElseThrow();
+
+            assertThat(page.getMatches()).hasSize(2);
+            assertThat(page.getNextCursor()).isNull();
+            assertThat(page.getPrevCursor()).isNotNull();
+            assertThat(capturedPlayerQuery().getCursor())
+                    .isEqualTo(new MatchCursor(before.getPlayedAt().toEpochMilli(), before.getId()));
+        }
+
+        @Test
+        void shouldReturnNewerPageNewestFirst() {
+            List<MatchResult> oldestFirst = reversed(matches(2));
+            when(matchRepository.findPlayerHistory(eq(ID_A), any())).thenReturn(oldestFirst);
+
+            MatchPageDto page = matchHistoryService.getPlayerMatches(USERNAME_A, null, null,
+                    MatchHistoryService.encodeCursor(matches(1).get(0)), null, null).orElseThrow();
+
+            assertThat(page.getMatches()).extracting(MatchResultDto::getId)
+                    .containsExactlyElementsOf(ids(matches(2)));
+            assertThat(page.getNextCursor()).isNotNull();
+            assertThat(page.getPrevCursor()).isNull();
+            assertThat(capturedPlayerQuery().isNewer()).isTrue();
+        }
+
+        @Test
+        void shouldCapLimitAtMaxPageSize() {
+            when(matchRepository.findPlayerHistory(eq(ID_A), any())).thenReturn(List.of());
+
+            matchHistoryService.getPlayerMatches(USERNAME_A, 1000, null, null, null, null);
+
+            assertThat(capturedPlayerQuery().getLimit()).isEqualTo(MAX_PAGE_SIZE + 1);
+        }
+
+        @Test
+        void shouldConvertTimeBoundsToMillis() {
+            when(matchRepository.findPlayerHistory(eq(ID_A), any())).thenReturn(List.of());
+
+            matchHistoryService.getPlayerMatches(USERNAME_A, null, null, null, 10L, 20L);
+
+            MatchHistoryQuery query = capturedPlayerQuery();
+            assertThat(query.getFrom()).isEqualTo(10_000);
+            assertThat(query.getTo()).isEqualTo(20_999);
+        }
+
+        @Test
+        void shouldClampTimeBoundsThatOverflowMillis() {
+            when(matchRepository.findPlayerHistory(eq(ID_A), any())).thenReturn(List.of());
+
+            matchHistoryService.getPlayerMatches(USERNAME_A, null, null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+            MatchHistoryQuery query = capturedPlayerQuery();
+            assertThat(query.getFrom()).isEqualTo(Long.MIN_VALUE);
+            assertThat(query.getTo()).isEqualTo(Long.MAX_VALUE);
+        }
+
+        private MatchHistoryQuery capturedPlayerQuery() {
+            ArgumentCaptor<MatchHistoryQuery> captor = ArgumentCaptor.forClass(MatchHistoryQuery.class);
+            verify(matchRepository).findPlayerHistory(eq(ID_A), captor.capture());
+            return captor.getValue();
+        }
+    }
+
+    @Nested
+    @DisplayName("getServerMatches")
+    class GetServerMatchesTests {
+
+        @Test
+        void shouldReturnPageOfServerMatches() {
+            when(serverRepository.findByEndpoint(SERVER_EU_ENDPOINT))
+                    .thenReturn(Optional.of(testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build()));
+            when(matchRepository.findServerHistory(eq(SERVER_EU_ENDPOINT), any())).thenReturn(matches(2));
+
+            Optional<MatchPageDto> page = matchHistoryService.getServerMatches(SERVER_EU_ENDPOINT, null, null,
+                    null, null, null);
+
+            assertThat(page).hasValueSatisfying(value -> assertThat(value.getMatches()).hasSize(2));
+        }
+
+        @Test
+        void shouldReturnEmptyWhenServerNotFound() {
+            when(serverRepository.findByEndpoint(UNKNOWN_SERVER)).thenReturn(Optional.empty());
+
+            assertThat(matchHistoryService.getServerMatches(UNKNOWN_SERVER, null, null, null, null, null))
+                    .isEmpty();
+            verifyNoInteractions(matchRepository);
+        }
+
+        @Test
+        void shouldRejectMalformedCursor() {
+            assertThatThrownBy(() -> matchHistoryService.getServerMatches(SERVER_EU_ENDPOINT, null,
+                    "not-a-cursor", null, null, null))
+                    .isInstanceOf(InvalidCursorException.class);
+        }
+
+        @Test
+        void shouldRejectBothCursors() {
+            String cursor = MatchHistoryService.encodeCursor(matches(1).get(0));
+
+            assertThatThrownBy(() -> matchHistoryService.getServerMatches(SERVER_EU_ENDPOINT, null, cursor,
+                    cursor, null, null))
+                    .isInstanceOf(InvalidCursorException.class);
+        }
+    }
+
+    @Test
+    void shouldDecodeEncodedCursor() {
+        MatchResult match = matches(1).get(0);
+
+        MatchCursor cursor = MatchHistoryService.decodeCursor(MatchHistoryService.encodeCursor(match));
+
+        assertThat(cursor).isEqualTo(new MatchCursor(match.getPlayedAt().toEpochMilli(), match.getId()));
+    }
+
+    // Newest first, one second apart
+    private static List<MatchResult> matches(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> testMatchResult()
+                        .withId(UUID.nameUUIDFromBytes(new byte[]{(byte) i}))
+                        .withPlayedAt(DEFAULT_PLAYED_AT.minusSeconds(i))
+                        .build())
+                .toList();
+    }
+
+    private static List<MatchResult> reversed(List<MatchResult> matches) {
+        List<MatchResult> copy = new ArrayList<>(matches);
+        Collections.reverse(copy);
+        return copy;
+    }
+
+    private static List<UUID> ids(List<MatchResult> matches) {
+        return matches.stream().map(MatchResult::getId).toList();
+    }
+}
@@ -0,0 +1,86 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.property.MatchHistoryProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MatchIndexMigrationJobTest {
+
+    private static final int BATCH_SIZE = 100;
+    private static final String PLAYER_INDEX = "matches:by_player:p1";
+    private static final String SERVER_INDEX = "matches:by_server:e1";
+
+    @Mock
+    private MatchRepository matchRepository;
+    @Spy
+    private MatchHistoryProperties matchHistoryProperties = new MatchHistoryProperties();
+    @InjectMocks
+    private MatchIndexMigrationJob matchIndexMigrationJob;
+
+    @BeforeEach
+    void setUp() {
+        matchHistoryProperties.getMigration().setEnabled(true);
+        matchHistoryProperties.getMigration().setBatchSize(BATCH_SIZE);
+    }
+
+    @Nested
+    @DisplayName("run")
+    class RunTests {
+
+        @Test
+        void shouldMigrateEveryLegacyIndex() {
+            when(matchRepository.findLegacyIndexKeys()).thenReturn(List.of(PLAYER_INDEX, SERVER_INDEX));
+
+            matchIndexMigrationJob.run(null);
+
+            verify(matchRepository).migrateLegacyIndex(PLAYER_INDEX, BATCH_SIZE);
+            verify(matchRepository).migrateLegacyIndex(SERVER_INDEX, BATCH_SIZE);
+        }
+
+        @Test
+        void shouldDoNothingWithoutLegacyIndexes() {
+            when(matchRepository.findLegacyIndexKeys()).thenReturn(List.of());
+
+            matchIndexMigrationJob.run(null);
+
+            verify(matchRepository, never()).migrateLegacyIndex(anyString(), anyInt());
+        }
+
+        @Test
+        void shouldSkipWhenDisabled() {
+            matchHistoryProperties.getMigration().setEnabled(false);
+
+            matchIndexMigrationJob.run(null);
+
+            verifyNoInteractions(matchRepository);
+        }
+
+        @Test
+        void shouldNotFailStartupWhenMigrationFails() {
+            when(matchRepository.findLegacyIndexKeys()).thenReturn(List.of(PLAYER_INDEX, SERVER_INDEX));
+            when(matchRepository.migrateLegacyIndex(PLAYER_INDEX, BATCH_SIZE)).thenThrow(new RuntimeException("ex"));
+
+            matchIndexMigrationJob.run(null);
+
+            verify(matchRepository, never()).migrateLegacyIndex(SERVER_INDEX, BATCH_SIZE);
+        }
+    }
+}
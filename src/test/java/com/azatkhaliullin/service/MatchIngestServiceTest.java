@@ -0,0 +1,298 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.dto.MatchBatchResponse;
+import com.azatkhaliullin.dto.MatchBatchResult;
+import com.azatkhaliullin.exception.IngestQueueFullException;
+import com.azatkhaliullin.exception.InvalidMatchBatchException;
+import com.azatkhaliullin.mapper.MatchResultMapper;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.ServerRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static com.azatkhaliullin.TestConstants.ID_B;
+import static com.azatkhaliullin.TestConstants.SCORE;
+import static com.azatkhaliullin.TestConstants.SERVER_EU_ENDPOINT;
+import static com.azatkhaliullin.TestConstants.UNKNOWN_SERVER;
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static com.azatkhaliullin.builder.PlayerScoreTestBuilder.testPlayerScore;
+import static com.azatkhaliullin.builder.ServerInfoBuilder.testServerInfo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MatchIngestServiceTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    private MatchWriteService matchWriteService;
+    @Mock
+    private ServerRepository serverRepository;
+    @Spy
+    private MatchResultMapper matchResultMapper = Mappers.getMapper(MatchResultMapper.class);
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    @Spy
+    private IngestProperties ingestProperties = new IngestProperties();
+    @Mock
+    private MatchWriteBehindQueue matchWriteBehindQueue;
+    @Mock
+    private MatchDeduplicator matchDeduplicator;
+    @InjectMocks
+    private MatchIngestService matchIngestService;
+
+    @BeforeEach
+    void setUp() {
+        ingestProperties.setBatchSize(BATCH_SIZE);
+    }
+
+    @Nested
+    @DisplayName("ingest")
+    class IngestTests {
+
+        @Test
+        void shouldDelegateToRepository() {
+            MatchResult match = testMatchResult().build();
+
+            matchIngestService.ingest(match);
+
+            verify(matchWriteService).write(match);
+            verify(matchDeduplicator).markAccepted(match.getId());
+        }
+
+        @Test
+        void shouldSkipDuplicate() {
+            MatchResult match = testMatchResult().build();
+            when(matchDeduplicator.isDuplicate(match.getId())).thenReturn(true);
+
+            matchIngestService.ingest(match);
+
+            verifyNoInteractions(matchWriteService, matchWriteBehindQueue);
+        }
+
+        @Test
+        void shouldEnqueueWhenWriteBehindIsEnabled() {
+            MatchResult match = testMatchResult().build();
+            ingestProperties.getWriteBehind().setEnabled(true);
+            when(matchWriteBehindQueue.offer(match)).thenReturn(true);
+
+            matchIngestService.ingest(match);
+
+            verify(matchWriteBehindQueue).offer(match);
+            verifyNoInteractions(matchWriteService);
+        }
+
+        @Test
+        void shouldThrowWhenQueueIsFull() {
+            MatchResult match = testMatchResult().build();
+            ingestProperties.getWriteBehind().setEnabled(true);
+            ingestProperties.getWriteBehind().setRetryAfter(Duration.ofSeconds(3));
+            when(matchWriteBehindQueue.offer(match)).thenReturn(false);
+
+            assertThatThrownBy(() -> matchIngestService.ingest(match))
+                    .isInstanceOf(IngestQueueFullException.class)
+                    .extracting("retryAfter")
+                    .isEqualTo(Duration.ofSeconds(3));
+        }
+    }
+
+    @Nested
+    @DisplayName("ingestBatch")
+    class IngestBatchTests {
+
+        @BeforeEach
+        void setUp() {
+            when(serverRepository.findAll())
+                    .thenReturn(List.of(testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build()));
+            lenient().when(matchWriteService.writeAll(anyList()))
+                    .thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        }
+
+        @Test
+        void shouldIngestJsonArrayInBatches() throws Exception {
+            String body = "[" + String.join(",", validMatchJson(), validMatchJson(), validMatchJson()) + "]";
+
+            MatchBatchResponse response = matchIngestService.ingestBatch(stream(body));
+
+            assertThat(response.getAccepted()).isEqualTo(3);
+            assertThat(response.getRejected()).isZero();
+            assertThat(response.getBatches())
+                    .extracting(MatchBatchResult::getAccepted)
+                    .containsExactly(2, 1);
+            verify(matchWriteService, times(2)).writeAll(anyList());
+        }
+
+        @Test
+        void shouldIngestNdjson() throws Exception {
+            String body = validMatchJson() + "\n" + validMatchJson() + "\n";
+            // the batch list is reused after the write, so copy it at call time
+            List<MatchResult> written = new ArrayList<>();
+            doAnswer(invocation -> {
+                written.addAll(invocation.getArgument(0));
+                return written.size();
+            }).when(matchWriteService).writeAll(anyList());
+
+            MatchBatchResponse response = matchIngestService.ingestBatch(stream(body));
+
+            assertThat(response.getAccepted()).isEqualTo(2);
+            assertThat(response.getBatches()).hasSize(1);
+            assertThat(written)
+                    .hasSize(2)
+                    .allSatisfy(match -> assertThat(match.getServerEndpoint()).isEqualTo(SERVER_EU_ENDPOINT));
+        }
+
+        @Test
+        void shouldRejectInvalidMatches() throws Exception {
+            String unknownServer = matchJson(testMatchResult().withServerEndpoint(UNKNOWN_SERVER)
+                    .withScores(twoPlayerScores()).build());
+            String singlePlayer = matchJson(testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT).build());
+            String body = String.join("\n", validMatchJson(), unknownServer, singlePlayer, "{\"id\":\"bad\"}");
+
+            MatchBatchResponse response = matchIngestService.ingestBatch(stream(body));
+
+            assertThat(response.getAccepted()).isEqualTo(1);
+            assertThat(response.getRejected()).isEqualTo(3);
+            assertThat(response.getBatches()).hasSize(2);
+        }
+
+        @Test
+        void shouldCountDuplicatesSeparately() throws Exception {
+            String duplicate = validMatchJson();
+            when(matchDeduplicator.isDuplicate(any(UUID.class))).thenReturn(false);
+            when(matchDeduplicator.isDuplicate(readId(duplicate))).thenReturn(true);
+            String body = String.join("\n", validMatchJson(), duplicate);
+
+            MatchBatchResponse response = matchIngestService.ingestBatch(stream(body));
+
+            assertThat(response.getAccepted()).isEqualTo(1);
+            assertThat(response.getDuplicates()).isEqualTo(1);
+            assertThat(response.getRejected()).isZero();
+        }
+
+        @Test
+        void shouldCountRepeatedIdInBodyAsDuplicate() throws Exception {
+            String match = validMatchJson();
+            String body = String.join("\n", match, validMatchJson(), match);
+
+            MatchBatchResponse response = matchIngestService.ingestBatch(stream(body));
+
+            assertThat(response.getAccepted()).isEqualTo(2);
+            assertThat(response.getDuplicates()).isEqualTo(1);
+            verify(matchDeduplicator, times(2)).isDuplicate(any(UUID.class));
+        }
+
+        @Test
+        void shouldCountMatchesNotStoredAsDuplicates() throws Exception {
+            when(matchWriteService.writeAll(anyList())).thenReturn(1);
+            String body = String.join("\n", validMatchJson(), validMatchJson());
+
+            MatchBatchResponse response = matchIngestService.ingestBatch(stream(body));
+
+            assertThat(response.getAccepted()).isEqualTo(1);
+            assertThat(response.getDuplicates()).isEqualTo(1);
+            assertThat(response.getBatches())
+                    .extracting(MatchBatchResult::getDuplicates)
+                    .containsExactly(1);
+        }
+
+        @Test
+        void shouldCountFailedBatchAsRejected() throws Exception {
+            doThrow(new RuntimeException("ex")).when(matchWriteService).writeAll(anyList());
+
+            MatchBatchResponse response = matchIngestService.ingestBatch(stream(validMatchJson()));
+
+            assertThat(response.getAccepted()).isZero();
+            assertThat(response.getRejected()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldEnqueueAcceptedMatchesWhenWriteBehindIsEnabled() throws Exception {
+            ingestProperties.getWriteBehind().setEnabled(true);
+            when(matchWriteBehindQueue.offer(any(MatchResult.class))).thenReturn(true);
+            String body = String.join("\n", validMatchJson(), validMatchJson(), "{\"id\":\"bad\"}");
+
+            MatchBatchResponse response = matchIngestService.ingestBatch(stream(body));
+
+            assertThat(response.getAccepted()).isEqualTo(2);
+            assertThat(response.getRejected()).isEqualTo(1);
+            verify(matchWriteBehindQueue, times(2)).offer(any(MatchResult.class));
+            verify(matchWriteService, never()).writeAll(anyList());
+        }
+
+        @Test
+        void shouldPropagateFullQueue() throws Exception {
+            ingestProperties.getWriteBehind().setEnabled(true);
+            when(matchWriteBehindQueue.offer(any(MatchResult.class))).thenReturn(false);
+            InputStream body = stream(validMatchJson());
+
+            assertThatThrownBy(() -> matchIngestService.ingestBatch(body))
+                    .isInstanceOf(IngestQueueFullException.class);
+        }
+
+        @Test
+        void shouldThrowOnMalformedBody() {
+            InputStream body = stream("[" + "{\"id\":");
+
+            assertThatThrownBy(() -> matchIngestService.ingestBatch(body))
+                    .isInstanceOf(InvalidMatchBatchException.class);
+            verify(matchWriteService, never()).writeAll(anyList());
+        }
+    }
+
+    private String validMatchJson() throws Exception {
+        return matchJson(testMatchResult()
+                .withId(UUID.randomUUID())
+                .withServerEndpoint(SERVER_EU_ENDPOINT)
+                .withScores(twoPlayerScores())
+                .build());
+    }
+
+    private UUID readId(String matchJson) throws Exception {
+        return UUID.fromString(objectMapper.readTree(matchJson).get("id").asText());
+    }
+
+    private String matchJson(MatchResult match) throws Exception {
+        return objectMapper.writeValueAsString(matchResultMapper.toDto(match));
+    }
+
+    private static List<PlayerScore> twoPlayerScores() {
+        return List.of(
+                testPlayerScore().withId(ID_A).withScore(SCORE).build(),
+                testPlayerScore().withId(ID_B).withScore(SCORE).build());
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,215 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.MatchStreamEntry;
+import com.azatkhaliullin.domain.StreamGroupStats;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchStreamRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static com.azatkhaliullin.TestConstants.ID_B;
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MatchStreamMaterializerTest {
+
+    private static final String GROUP = "materialisers";
+    private static final String CONSUMER = "node-0";
+    private static final int READ_COUNT = 10;
+    private static final Duration BLOCK = Duration.ofMillis(100);
+    private static final Duration CLAIM_IDLE = Duration.ofMinutes(1);
+    private static final int MAX_DELIVERIES = 3;
+
+    @Mock
+    private MatchWriteService matchWriteService;
+    @Mock
+    private MatchStreamRepository matchStreamRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MatchStreamMaterializer materializer;
+
+    @BeforeEach
+    void setUp() {
+        IngestProperties properties = new IngestProperties();
+        IngestProperties.Stream stream = properties.getStream();
+        stream.setEnabled(true);
+        stream.setGroup(GROUP);
+        stream.setConsumer(CONSUMER);
+        stream.setWorkers(1);
+        stream.setReadCount(READ_COUNT);
+        stream.setBlock(BLOCK);
+        stream.setClaimIdle(CLAIM_IDLE);
+        stream.setMaxDeliveries(MAX_DELIVERIES);
+
+        meterRegistry = new SimpleMeterRegistry();
+        materializer = new MatchStreamMaterializer(matchWriteService, matchStreamRepository, properties, meterRegistry);
+    }
+
+    @Nested
+    @DisplayName("consumeBatch")
+    class ConsumeBatchTests {
+
+        @Test
+        void shouldMaterialiseAndAcknowledgeBatch() {
+            MatchResult match = testMatchResult().build();
+            when(matchStreamRepository.read(GROUP, CONSUMER, READ_COUNT, BLOCK, false)).thenReturn(List.of(
+                    MatchStreamEntry.builder().id("1-0").match(match).build(),
+                    MatchStreamEntry.builder().id("2-0").build()));
+            when(matchWriteService.materialiseAll(List.of(match))).thenReturn(1);
+
+            boolean consumed = materializer.consumeBatch(CONSUMER, false);
+
+            assertThat(consumed).isTrue();
+            verify(matchWriteService).materialiseAll(List.of(match));
+            verify(matchStreamRepository).acknowledge(GROUP, List.of("1-0", "2-0"));
+            assertThat(meterRegistry.get("stats.ingest.stream.materialised").counter().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("stats.ingest.stream.unreadable").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldAcknowledgeAlreadyIngestedMatches() {
+            MatchResult match = testMatchResult().build();
+            when(matchStreamRepository.read(GROUP, CONSUMER, READ_COUNT, BLOCK, true)).thenReturn(List.of(
+                    MatchStreamEntry.builder().id("1-0").match(match).build()));
+            when(matchWriteService.materialiseAll(List.of(match))).thenReturn(0);
+
+            materializer.consumeBatch(CONSUMER, true);
+
+            verify(matchStreamRepository).acknowledge(GROUP, List.of("1-0"));
+            assertThat(meterRegistry.get("stats.ingest.stream.duplicates").counter().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("stats.ingest.stream.materialised").counter().count()).isZero();
+        }
+
+        @Test
+        void shouldReturnFalseWhenNothingPending() {
+            when(matchStreamRepository.read(GROUP, CONSUMER, READ_COUNT, BLOCK, true)).thenReturn(List.of());
+
+            assertThat(materializer.consumeBatch(CONSUMER, true)).isFalse();
+            verify(matchWriteService, never()).materialiseAll(anyList());
+        }
+
+        @Test
+        void shouldNotAcknowledgeWhenMaterialisationFails() {
+            when(matchStreamRepository.read(GROUP, CONSUMER, READ_COUNT, BLOCK, true)).thenReturn(List.of(
+                    MatchStreamEntry.builder().id("1-0").match(testMatchResult().build()).build()));
+            doThrow(new RuntimeException("ex")).when(matchWriteService).materialiseAll(anyList());
+
+            assertThatThrownBy(() -> materializer.consumeBatch(CONSUMER, true))
+                    .isInstanceOf(RuntimeException.class);
+            verify(matchStreamRepository, never()).acknowledge(GROUP, List.of("1-0"));
+        }
+
+        @Test
+        void shouldKeepFailingBatchPendingBeforeMaxDeliveries() {
+            MatchResult match = testMatchResult().build();
+            when(matchStreamRepository.read(GROUP, CONSUMER, READ_COUNT, BLOCK, true)).thenReturn(List.of(
+                    MatchStreamEntry.builder().id("1-0").match(match).build()));
+            doThrow(new RuntimeException("ex")).when(matchWriteService).materialiseAll(List.of(match));
+            when(matchStreamRepository.findDeliveries(GROUP, CONSUMER, List.of("1-0")))
+                    .thenReturn(Map.of("1-0", (long) MAX_DELIVERIES - 1));
+
+            assertThatThrownBy(() -> materializer.consumeBatch(CONSUMER, true))
+                    .isInstanceOf(RuntimeException.class);
+            verify(matchStreamRepository, never()).appendDeadLetters(anyList(), anyString());
+            verify(matchStreamRepository, never()).acknowledge(GROUP, List.of("1-0"));
+        }
+
+        @Test
+        void shouldDeadLetterMatchesStillFailingOnTheirOwnAfterMaxDeliveries() {
+            MatchResult stored = testMatchResult().withId(ID_A).build();
+            MatchResult failing = testMatchResult().withId(ID_B).build();
+            when(matchStreamRepository.read(GROUP, CONSUMER, READ_COUNT, BLOCK, true)).thenReturn(List.of(
+                    MatchStreamEntry.builder().id("1-0").match(stored).build(),
+                    MatchStreamEntry.builder().id("2-0").match(failing).build()));
+            doThrow(new RuntimeException("ex")).when(matchWriteService).materialiseAll(List.of(stored, failing));
+            doThrow(new RuntimeException("ex")).when(matchWriteService).materialiseAll(List.of(failing));
+            when(matchWriteService.materialiseAll(List.of(stored))).thenReturn(1);
+            when(matchStreamRepository.findDeliveries(GROUP, CONSUMER, List.of("1-0", "2-0")))
+                    .thenReturn(Map.of("1-0", (long) MAX_DELIVERIES, "2-0", (long) MAX_DELIVERIES));
+
+            assertThat(materializer.consumeBatch(CONSUMER, true)).isTrue();
+
+            verify(matchStreamRepository).appendDeadLetters(eq(List.of(failing)), anyString());
+            verify(matchStreamRepository).acknowledge(GROUP, List.of("1-0", "2-0"));
+            assertThat(meterRegistry.get("stats.ingest.stream.materialised").counter().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("stats.ingest.stream.dead-lettered").counter().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("stats.ingest.stream.duplicates").counter().count()).isZero();
+        }
+
+        @Test
+        void shouldKeepBatchPendingWhenDeadLetteringFails() {
+            MatchResult match = testMatchResult().build();
+            when(matchStreamRepository.read(GROUP, CONSUMER, READ_COUNT, BLOCK, true)).thenReturn(List.of(
+                    MatchStreamEntry.builder().id("1-0").match(match).build()));
+            doThrow(new RuntimeException("ex")).when(matchWriteService).materialiseAll(List.of(match));
+            when(matchStreamRepository.findDeliveries(GROUP, CONSUMER, List.of("1-0")))
+                    .thenReturn(Map.of("1-0", (long) MAX_DELIVERIES));
+            doThrow(new RuntimeException("down")).when(matchStreamRepository).appendDeadLetters(anyList(), anyString());
+
+            assertThatThrownBy(() -> materializer.consumeBatch(CONSUMER, true))
+                    .isInstanceOf(RuntimeException.class);
+            verify(matchStreamRepository, never()).acknowledge(GROUP, List.of("1-0"));
+        }
+    }
+
+    @Nested
+    @DisplayName("claimIdle")
+    class ClaimIdleTests {
+
+        @Test
+        void shouldTakeOverIdleEntriesOfOtherConsumers() {
+            when(matchStreamRepository.claimIdle(GROUP, CONSUMER, CLAIM_IDLE, READ_COUNT))
+                    .thenReturn(List.of("1-0", "2-0"));
+
+            assertThat(materializer.claimIdle(CONSUMER)).isTrue();
+            assertThat(meterRegistry.get("stats.ingest.stream.claimed").counter().count()).isEqualTo(2);
+        }
+
+        @Test
+        void shouldReturnFalseWhenNoEntryIsIdle() {
+            when(matchStreamRepository.claimIdle(GROUP, CONSUMER, CLAIM_IDLE, READ_COUNT)).thenReturn(List.of());
+
+            assertThat(materializer.claimIdle(CONSUMER)).isFalse();
+            assertThat(meterRegistry.get("stats.ingest.stream.claimed").counter().count()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("refreshLag")
+    class RefreshLagTests {
+
+        @Test
+        void shouldPublishLagAndPendingPerGroup() {
+            when(matchStreamRepository.findGroupStats()).thenReturn(List.of(
+                    StreamGroupStats.builder().group(GROUP).lag(42).pending(3).build()));
+
+            materializer.refreshLag();
+
+            assertThat(meterRegistry.get("stats.ingest.stream.lag").tag("group", GROUP).gauge().value())
+                    .isEqualTo(42);
+            assertThat(meterRegistry.get("stats.ingest.stream.pending").tag("group", GROUP).gauge().value())
+                    .isEqualTo(3);
+        }
+    }
+}
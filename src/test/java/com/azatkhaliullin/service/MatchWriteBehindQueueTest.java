@@ -0,0 +1,173 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.exception.IngestUnavailableException;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchStreamRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class MatchWriteBehindQueueTest {
+
+    private static final int CAPACITY = 4;
+    private static final int MAX_BATCH_SIZE = 3;
+    private static final int MAX_ATTEMPTS = 2;
+
+    @Mock
+    private MatchWriteService matchWriteService;
+    @Mock
+    private MatchStreamRepository matchStreamRepository;
+
+    private IngestProperties.WriteBehind writeBehind;
+    private SimpleMeterRegistry meterRegistry;
+    private MatchWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        IngestProperties properties = new IngestProperties();
+        writeBehind = properties.getWriteBehind();
+        writeBehind.setEnabled(true);
+        writeBehind.setCapacity(CAPACITY);
+        writeBehind.setDrainers(1);
+        writeBehind.setMaxBatchSize(MAX_BATCH_SIZE);
+        writeBehind.setMaxDelay(Duration.ofMinutes(1));
+        writeBehind.setOfferTimeout(Duration.ofMillis(5));
+        writeBehind.setRetryAfter(Duration.ofSeconds(1));
+        writeBehind.setMaxAttempts(MAX_ATTEMPTS);
+
+        meterRegistry = new SimpleMeterRegistry();
+        queue = new MatchWriteBehindQueue(matchWriteService, matchStreamRepository, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.stop();
+    }
+
+    @Test
+    void shouldRefuseOffersWhenNotRunning() {
+        assertThatThrownBy(() -> queue.offer(match())).isInstanceOf(IngestUnavailableException.class);
+
+        queue.start();
+        queue.stop();
+
+        assertThatThrownBy(() -> queue.offer(match())).isInstanceOf(IngestUnavailableException.class);
+    }
+
+    @Test
+    void shouldFlushQueuedMatchesInBatches() {
+        // the drainer reuses its batch list, so sizes are recorded at call time
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            int size = invocation.<List<?>>getArgument(0).size();
+            batchSizes.add(size);
+            return size;
+        }).when(matchWriteService).writeAll(anyList());
+        queue.start();
+
+        for (int i = 0; i < MAX_BATCH_SIZE * 2; i++) {
+            assertThat(queue.offer(match())).isTrue();
+        }
+
+        verify(matchWriteService, timeout(1000).times(2)).writeAll(anyList());
+        assertThat(batchSizes).containsExactly(MAX_BATCH_SIZE, MAX_BATCH_SIZE);
+        assertThat(meterRegistry.get("stats.ingest.batch.size").summary().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("stats.ingest.flush.latency").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRejectWhenFullAndCountRejection() {
+        writeBehind.setMaxAttempts(Integer.MAX_VALUE);
+        doThrow(new RuntimeException("ex")).when(matchWriteService).writeAll(anyList());
+        queue.start();
+
+        boolean refused = false;
+        for (int i = 0; i < CAPACITY + MAX_BATCH_SIZE + 1 && !refused; i++) {
+            refused = !queue.offer(match());
+        }
+
+        assertThat(refused).isTrue();
+        assertThat(meterRegistry.get("stats.ingest.queue.rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("stats.ingest.queue.depth").gauge().value()).isPositive();
+    }
+
+    @Test
+    void shouldDeadLetterBatchAfterMaxAttemptsAndCarryOn() {
+        MatchResult poison = match();
+        MatchResult next = match();
+        List<List<MatchResult>> written = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            List<MatchResult> batch = List.copyOf(invocation.getArgument(0));
+            written.add(batch);
+            if (batch.contains(poison)) throw new RuntimeException("ex");
+            return batch.size();
+        }).when(matchWriteService).writeAll(anyList());
+        List<List<MatchResult>> deadLetters = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> deadLetters.add(List.copyOf(invocation.getArgument(0))))
+                .when(matchStreamRepository).appendDeadLetters(anyList(), anyString());
+        writeBehind.setMaxDelay(Duration.ZERO);
+        queue.start();
+
+        queue.offer(poison);
+        verify(matchStreamRepository, timeout(1000)).appendDeadLetters(anyList(), anyString());
+        queue.offer(next);
+
+        verify(matchWriteService, timeout(1000).times(MAX_ATTEMPTS + 1)).writeAll(anyList());
+        assertThat(written).containsExactly(List.of(poison), List.of(poison), List.of(next));
+        assertThat(deadLetters).containsExactly(List.of(poison));
+        assertThat(meterRegistry.get("stats.ingest.queue.dead-lettered").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCountDroppedMatchesWhenDeadLetteringFails() {
+        doThrow(new RuntimeException("ex")).when(matchWriteService).writeAll(anyList());
+        doThrow(new RuntimeException("ex")).when(matchStreamRepository).appendDeadLetters(anyList(), anyString());
+        writeBehind.setMaxDelay(Duration.ZERO);
+        queue.start();
+
+        queue.offer(match());
+
+        verify(matchStreamRepository, timeout(1000)).appendDeadLetters(anyList(), anyString());
+        queue.stop();
+        assertThat(meterRegistry.get("stats.ingest.queue.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDrainRemainingMatchesOnStop() {
+        queue.start();
+        queue.offer(match());
+
+        queue.stop();
+
+        verify(matchWriteService, atLeastOnce()).writeAll(anyList());
+        assertThat(queue.depth()).isZero();
+        assertThat(queue.isRunning()).isFalse();
+    }
+
+    private static MatchResult match() {
+        return testMatchResult().withId(UUID.randomUUID()).build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.property.IngestProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.MatchStreamRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MatchWriteServiceTest {
+
+    @Mock
+    private MatchRepository matchRepository;
+    @Mock
+    private MatchStreamRepository matchStreamRepository;
+    @Mock
+    private PlayerStatsUpdateService playerStatsUpdateService;
+    @Spy
+    private IngestProperties ingestProperties = new IngestProperties();
+    @InjectMocks
+    private MatchWriteService matchWriteService;
+
+    @Test
+    void shouldAppendToStreamWhenEnabled() {
+        List<MatchResult> matches = List.of(testMatchResult().build());
+        ingestProperties.getStream().setEnabled(true);
+
+        int count = matchWriteService.writeAll(matches);
+
+        assertThat(count).isEqualTo(1);
+        verify(matchStreamRepository).appendAll(matches);
+        verifyNoInteractions(matchRepository);
+    }
+
+    @Test
+    void shouldMaterialiseInlineWhenStreamIsDisabled() {
+        MatchResult match = testMatchResult().build();
+
+        matchWriteService.write(match);
+
+        verify(matchRepository).ingest(match);
+        verifyNoInteractions(matchStreamRepository, playerStatsUpdateService);
+    }
+
+    @Test
+    void shouldCoalesceStatsOfStoredMatchesOnly() {
+        MatchResult stored = testMatchResult().build();
+        MatchResult duplicate = testMatchResult().build();
+        ingestProperties.getStatsCoalescing().setEnabled(true);
+        when(matchRepository.ingestAll(List.of(stored, duplicate))).thenReturn(List.of(stored));
+
+        int count = matchWriteService.materialiseAll(List.of(stored, duplicate));
+
+        assertThat(count).isEqualTo(1);
+        verify(playerStatsUpdateService).updatePlayerStats(stored);
+    }
+
+    @Test
+    void shouldLeaveStatsToIngestScriptWithoutCoalescing() {
+        MatchResult match = testMatchResult().build();
+        when(matchRepository.ingestAll(List.of(match))).thenReturn(List.of(match));
+
+        matchWriteService.materialiseAll(List.of(match));
+
+        verifyNoInteractions(playerStatsUpdateService);
+    }
+}
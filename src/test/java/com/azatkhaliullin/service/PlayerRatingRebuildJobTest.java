@@ -0,0 +1,108 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.property.LeaderboardProperties;
+import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.repository.StartupJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static com.azatkhaliullin.TestConstants.ID_B;
+import static com.azatkhaliullin.TestConstants.USERNAME_A;
+import static com.azatkhaliullin.TestConstants.USERNAME_B;
+import static com.azatkhaliullin.builder.PlayerTestBuilder.testPlayer;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PlayerRatingRebuildJobTest {
+
+    private static final Player PLAYER_A = testPlayer().withId(ID_A).withUsername(USERNAME_A).build();
+    private static final Player PLAYER_B = testPlayer().withId(ID_B).withUsername(USERNAME_B).build();
+
+    @Mock
+    private PlayerRepository playerRepository;
+    @Mock
+    private StartupJobRepository startupJobRepository;
+    @Spy
+    private LeaderboardProperties leaderboardProperties = new LeaderboardProperties();
+    @InjectMocks
+    private PlayerRatingRebuildJob playerRatingRebuildJob;
+
+    @BeforeEach
+    void setUp() {
+        leaderboardProperties.getRebuild().setEnabled(true);
+        leaderboardProperties.getRebuild().setBatchSize(1);
+        lenient().when(startupJobRepository.claim(PlayerRatingRebuildJob.JOB)).thenReturn(true);
+    }
+
+    @Nested
+    @DisplayName("run")
+    class RunTests {
+
+        @Test
+        void shouldRebuildRatingsInBatches() {
+            when(playerRepository.findAll()).thenReturn(List.of(PLAYER_A, PLAYER_B));
+
+            playerRatingRebuildJob.run(null);
+
+            verify(playerRepository).rebuildRatings(List.of(PLAYER_A));
+            verify(playerRepository).rebuildRatings(List.of(PLAYER_B));
+            verify(startupJobRepository).complete(PlayerRatingRebuildJob.JOB);
+        }
+
+        @Test
+        void shouldSkipWhenAlreadyClaimed() {
+            when(startupJobRepository.claim(PlayerRatingRebuildJob.JOB)).thenReturn(false);
+
+            playerRatingRebuildJob.run(null);
+
+            verifyNoInteractions(playerRepository);
+        }
+
+        @Test
+        void shouldDoNothingWithoutPlayers() {
+            when(playerRepository.findAll()).thenReturn(List.of());
+
+            playerRatingRebuildJob.run(null);
+
+            verify(playerRepository, never()).rebuildRatings(any());
+        }
+
+        @Test
+        void shouldSkipWhenDisabled() {
+            leaderboardProperties.getRebuild().setEnabled(false);
+
+            playerRatingRebuildJob.run(null);
+
+            verifyNoInteractions(playerRepository, startupJobRepository);
+        }
+
+        @Test
+        void shouldNotFailStartupWhenRebuildFails() {
+            when(playerRepository.findAll()).thenReturn(List.of(PLAYER_A, PLAYER_B));
+            doThrow(new RuntimeException("ex")).when(playerRepository).rebuildRatings(List.of(PLAYER_A));
+
+            playerRatingRebuildJob.run(null);
+
+            verify(playerRepository, times(1)).rebuildRatings(any());
+            verify(startupJobRepository, never()).complete(any());
+        }
+    }
+}
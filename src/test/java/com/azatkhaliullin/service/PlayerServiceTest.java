@@ -1,19 +1,33 @@
 package com.azatkhaliullin.service;
 
-import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.LeaderboardEntry;
+import com.azatkhaliullin.domain.LeaderboardSegment;
+import com.azatkhaliullin.domain.LeaderboardWindow;
 import com.azatkhaliullin.domain.Player;
-import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.PlayerRank;
+import com.azatkhaliullin.domain.PlayerStats;
+import com.azatkhaliullin.domain.RatedPlayer;
+import com.azatkhaliullin.domain.ScoreHistogram;
+import com.azatkhaliullin.dto.LeaderboardEntryDto;
+import com.azatkhaliullin.dto.LeaderboardSegmentsDto;
+import com.azatkhaliullin.dto.PlayerRankDto;
 import com.azatkhaliullin.dto.PlayerStatsDto;
-import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
+import com.azatkhaliullin.exception.InvalidLeaderboardSegmentException;
+import com.azatkhaliullin.property.LeaderboardProperties;
+import com.azatkhaliullin.repository.LeaderboardRepository;
 import com.azatkhaliullin.repository.PlayerRepository;
+import com.azatkhaliullin.repository.ScoreHistogramRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -23,35 +37,43 @@ import static com.azatkhaliullin.TestConstants.BEST_SCORE;
 import static com.azatkhaliullin.TestConstants.ID_A;
 import static com.azatkhaliullin.TestConstants.ID_B;
 import static com.azatkhaliullin.TestConstants.RATING;
-import static com.azatkhaliullin.TestConstants.SCORE;
+import static com.azatkhaliullin.TestConstants.SERVER_EU_ENDPOINT;
+import static com.azatkhaliullin.TestConstants.SERVER_US_ENDPOINT;
 import static com.azatkhaliullin.TestConstants.TOTAL_MATCHES;
 import static com.azatkhaliullin.TestConstants.TOTAL_SCORE;
 import static com.azatkhaliullin.TestConstants.USERNAME_A;
 import static com.azatkhaliullin.TestConstants.USERNAME_B;
 import static com.azatkhaliullin.TestConstants.WORST_SCORE;
-import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
-import static com.azatkhaliullin.builder.PlayerScoreTestBuilder.testPlayerScore;
 import static com.azatkhaliullin.builder.PlayerStatsTestBuilder.emptyPlayerStats;
 import static com.azatkhaliullin.builder.PlayerStatsTestBuilder.testPlayerStats;
 import static com.azatkhaliullin.builder.PlayerTestBuilder.testPlayer;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class PlayerServiceTest {
 
-    @Mock
-    private MatchRepository matchRepository;
     @Mock
     private PlayerRepository playerRepository;
     @Mock
     private StatsService statsService;
+    @Mock
+    private LeaderboardRepository leaderboardRepository;
+    @Mock
+    private PlayerStatsVerifier playerStatsVerifier;
+    @Spy
+    private LeaderboardProperties leaderboardProperties = new LeaderboardProperties();
+    @Mock
+    private ScoreHistogramRepository scoreHistogramRepository;
     @InjectMocks
     private PlayerService playerService;
 
@@ -60,18 +82,14 @@ class PlayerServiceTest {
     class GetPlayerStatsTests {
 
         @Test
-        void shouldCalculateStatsAndRatingForPlayer() {
+        void shouldBuildStatsAndRatingFromMaintainedStats() {
             Player player = testPlayer().withId(ID_A).withUsername(USERNAME_A).build();
-            PlayerScore playerScore = testPlayerScore().withId(ID_A).withScore(SCORE).build();
-
-            List<MatchResult> matches = List.of(
-                    testMatchResult().withScores(List.of(playerScore)).build());
-
+            PlayerStats domainStats = testPlayerStats().buildDomain();
             PlayerStatsDto expectedStats = testPlayerStats().withUsername(USERNAME_A).buildDto();
 
             when(playerRepository.findByUsername(USERNAME_A)).thenReturn(Optional.of(player));
-            when(matchRepository.findByPlayerId(ID_A)).thenReturn(matches);
-            when(statsService.calculatePlayerStats(player, matches)).thenReturn(expectedStats);
+            when(playerRepository.findPlayerStats(ID_A)).thenReturn(domainStats);
+            when(statsService.buildPlayerStats(USERNAME_A, domainStats)).thenReturn(expectedStats);
 
             Optional<PlayerStatsDto> result = playerService.getPlayerStats(USERNAME_A);
 
@@ -86,19 +104,21 @@ class PlayerServiceTest {
             });
 
             verify(playerRepository).findByUsername(USERNAME_A);
-            verify(matchRepository).findByPlayerId(ID_A);
-            verify(statsService).calculatePlayerStats(player, matches);
-            verifyNoMoreInteractions(playerRepository, matchRepository, statsService);
+            verify(playerRepository).findPlayerStats(ID_A);
+            verify(statsService).buildPlayerStats(USERNAME_A, domainStats);
+            verify(playerStatsVerifier).verifySampled(player, expectedStats);
+            verifyNoMoreInteractions(playerRepository, statsService);
         }
 
         @Test
         void shouldHandlePlayerWithZeroMatches() {
             Player player = testPlayer().withId(ID_A).withUsername(USERNAME_A).build();
+            PlayerStats domainStats = emptyPlayerStats().buildDomain();
             PlayerStatsDto expectedStats = emptyPlayerStats().withUsername(USERNAME_A).buildDto();
 
             when(playerRepository.findByUsername(USERNAME_A)).thenReturn(Optional.of(player));
-            when(matchRepository.findByPlayerId(ID_A)).thenReturn(Collections.emptyList());
-            when(statsService.calculatePlayerStats(player, Collections.emptyList())).thenReturn(expectedStats);
+            when(playerRepository.findPlayerStats(ID_A)).thenReturn(domainStats);
+            when(statsService.buildPlayerStats(USERNAME_A, domainStats)).thenReturn(expectedStats);
 
             Optional<PlayerStatsDto> result = playerService.getPlayerStats(USERNAME_A);
 
@@ -111,11 +131,15 @@ class PlayerServiceTest {
                 assertThat(stats.getWorstScore()).isEqualTo(Integer.MAX_VALUE);
                 assertThat(stats.getRating()).isZero();
             });
+        }
 
-            verify(playerRepository).findByUsername(USERNAME_A);
-            verify(matchRepository).findByPlayerId(ID_A);
-            verify(statsService).calculatePlayerStats(player, Collections.emptyList());
-            verifyNoMoreInteractions(playerRepository, matchRepository, statsService);
+        @Test
+        void shouldReturnEmptyForUnknownPlayer() {
+            when(playerRepository.findByUsername(USERNAME_A)).thenReturn(Optional.empty());
+
+            assertThat(playerService.getPlayerStats(USERNAME_A)).isEmpty();
+
+            verifyNoInteractions(statsService, playerStatsVerifier);
         }
 
         @Test
@@ -135,18 +159,8 @@ class PlayerServiceTest {
 
         @Test
         void shouldReturnTopNPlayersOrderedByRating() {
-            Player playerA = testPlayer().withId(ID_A).withUsername(USERNAME_A).build();
-            Player playerB = testPlayer().withId(ID_B).withUsername(USERNAME_B).build();
-            List<Player> players = List.of(playerA, playerB);
-
-            PlayerScore playerScoreA = testPlayerScore().withId(ID_A).withScore(SCORE).build();
-            PlayerScore playerScoreB = testPlayerScore().withId(ID_B).withScore(SCORE).build();
-
-            List<MatchResult> matchesA = List.of(
-                    testMatchResult().withScores(List.of(playerScoreA)).build());
-            List<MatchResult> matchesB = List.of(
-                    testMatchResult().withScores(List.of(playerScoreB)).build());
-
+            PlayerStats domainStatsA = testPlayerStats().withRating(RATING + RATING).buildDomain();
+            PlayerStats domainStatsB = testPlayerStats().withRating(RATING).buildDomain();
 
             PlayerStatsDto statsA = testPlayerStats()
                     .withUsername(USERNAME_A)
@@ -158,68 +172,215 @@ class PlayerServiceTest {
                     .withRating(RATING)
                     .buildDto();
 
-            when(playerRepository.findAll()).thenReturn(players);
-            when(matchRepository.findByPlayerId(ID_A)).thenReturn(matchesA);
-            when(matchRepository.findByPlayerId(ID_B)).thenReturn(matchesB);
-            when(statsService.calculatePlayerStats(playerA, matchesA)).thenReturn(statsA);
-            when(statsService.calculatePlayerStats(playerB, matchesB)).thenReturn(statsB);
+            when(playerRepository.findTopRated(2)).thenReturn(List.of(
+                    new RatedPlayer(ID_A, USERNAME_A, domainStatsA),
+                    new RatedPlayer(ID_B, USERNAME_B, domainStatsB)));
+            when(statsService.buildPlayerStats(USERNAME_A, domainStatsA)).thenReturn(statsA);
+            when(statsService.buildPlayerStats(USERNAME_B, domainStatsB)).thenReturn(statsB);
 
-            List<PlayerStatsDto> topPlayers = playerService.getBestPlayers(2);
+            List<PlayerStatsDto> topPlayers = playerService.getBestPlayers(2, LeaderboardWindow.ALL, null);
 
             assertThat(topPlayers)
                     .hasSize(2)
                     .extracting(PlayerStatsDto::getUsername)
                     .containsExactly(USERNAME_A, USERNAME_B);
 
-            verify(playerRepository).findAll();
-            verify(matchRepository, times(2)).findByPlayerId(any());
-            verify(statsService, times(2)).calculatePlayerStats(any(Player.class), anyList());
+            verify(playerRepository).findTopRated(2);
+            verifyNoInteractions(leaderboardRepository);
         }
 
         @Test
         void shouldReturnEmptyForZeroCount() {
-            when(playerRepository.findAll()).thenReturn(Collections.emptyList());
+            when(playerRepository.findTopRated(0)).thenReturn(Collections.emptyList());
 
-            List<PlayerStatsDto> result = playerService.getBestPlayers(0);
+            List<PlayerStatsDto> result = playerService.getBestPlayers(0, LeaderboardWindow.ALL, null);
 
             assertThat(result).isEmpty();
-            verify(playerRepository).findAll();
-            verifyNoMoreInteractions(playerRepository, matchRepository, statsService);
+            verify(playerRepository).findTopRated(0);
+            verifyNoMoreInteractions(playerRepository, statsService);
         }
 
         @Test
         void shouldReturnAllWhenCountGreaterThanPlayers() {
-            Player playerA = testPlayer().withId(ID_A).withUsername(USERNAME_A).build();
-            Player playerB = testPlayer().withId(ID_B).withUsername(USERNAME_B).build();
-            List<Player> players = List.of(playerA, playerB);
-
-            PlayerScore playerScoreA = testPlayerScore().withId(ID_A).withScore(SCORE).build();
-            PlayerScore playerScoreB = testPlayerScore().withId(ID_B).withScore(SCORE).build();
-
-            List<MatchResult> matchesA = List.of(
-                    testMatchResult().withScores(List.of(playerScoreA)).build());
-            List<MatchResult> matchesB = List.of(
-                    testMatchResult().withScores(List.of(playerScoreB)).build());
-
+            PlayerStats domainStats = testPlayerStats().buildDomain();
             PlayerStatsDto statsA = testPlayerStats().withUsername(USERNAME_A).buildDto();
             PlayerStatsDto statsB = testPlayerStats().withUsername(USERNAME_B).buildDto();
 
-            when(playerRepository.findAll()).thenReturn(players);
-            when(matchRepository.findByPlayerId(ID_A)).thenReturn(matchesA);
-            when(matchRepository.findByPlayerId(ID_B)).thenReturn(matchesB);
-            when(statsService.calculatePlayerStats(playerA, matchesA)).thenReturn(statsA);
-            when(statsService.calculatePlayerStats(playerB, matchesB)).thenReturn(statsB);
+            when(playerRepository.findTopRated(10)).thenReturn(List.of(
+                    new RatedPlayer(ID_A, USERNAME_A, domainStats),
+                    new RatedPlayer(ID_B, USERNAME_B, domainStats)));
+            when(statsService.buildPlayerStats(USERNAME_A, domainStats)).thenReturn(statsA);
+            when(statsService.buildPlayerStats(USERNAME_B, domainStats)).thenReturn(statsB);
 
-            List<PlayerStatsDto> result = playerService.getBestPlayers(10);
+            List<PlayerStatsDto> result = playerService.getBestPlayers(10, LeaderboardWindow.ALL, null);
 
             assertThat(result)
                     .hasSize(2)
                     .extracting(PlayerStatsDto::getUsername)
                     .containsExactlyInAnyOrder(USERNAME_A, USERNAME_B);
 
-            verify(playerRepository).findAll();
-            verify(matchRepository, times(2)).findByPlayerId(any());
-            verify(statsService, times(2)).calculatePlayerStats(any(Player.class), anyList());
+            verify(statsService, times(2)).buildPlayerStats(any(), any(PlayerStats.class));
+        }
+
+        @Test
+        void shouldReadWindowLeaderboardForToday() {
+            PlayerStats domainStats = testPlayerStats().buildDomain();
+            PlayerStatsDto stats = testPlayerStats().withUsername(USERNAME_A).buildDto();
+
+            when(leaderboardRepository.findTop(eq(LeaderboardWindow.WEEK), any(LocalDate.class), eq(5)))
+                    .thenReturn(List.of(new RatedPlayer(ID_A, USERNAME_A, domainStats)));
+            when(statsService.buildPlayerStats(USERNAME_A, domainStats)).thenReturn(stats);
+
+            List<PlayerStatsDto> result = playerService.getBestPlayers(5, LeaderboardWindow.WEEK, null);
+
+            assertThat(result).containsExactly(stats);
+            verify(playerRepository, never()).findTopRated(anyInt());
+        }
+
+        @Test
+        void shouldReadCountryLeaderboardSpelledAsConfigured() {
+            leaderboardProperties.getSegments().setCountries(List.of("Japan"));
+            PlayerStats domainStats = testPlayerStats().buildDomain();
+            PlayerStatsDto stats = testPlayerStats().withUsername(USERNAME_A).buildDto();
+            LeaderboardSegment japan = new LeaderboardSegment(LeaderboardSegment.Type.COUNTRY, "Japan");
+
+            when(playerRepository.findTopRated(japan, 5)).thenReturn(List.of(new RatedPlayer(ID_A, USERNAME_A, domainStats)));
+            when(statsService.buildPlayerStats(USERNAME_A, domainStats)).thenReturn(stats);
+
+            List<PlayerStatsDto> result = playerService.getBestPlayers(5, LeaderboardWindow.ALL,
+                    new LeaderboardSegment(LeaderboardSegment.Type.COUNTRY, "japan"));
+
+            assertThat(result).containsExactly(stats);
+            verifyNoInteractions(leaderboardRepository);
+        }
+
+        @Test
+        void shouldReadServerLeaderboard() {
+            when(leaderboardRepository.findTopOnServer(SERVER_EU_ENDPOINT, 5)).thenReturn(Collections.emptyList());
+
+            List<PlayerStatsDto> result = playerService.getBestPlayers(5, LeaderboardWindow.ALL,
+                    LeaderboardSegment.server(SERVER_EU_ENDPOINT));
+
+            assertThat(result).isEmpty();
+            verifyNoInteractions(playerRepository);
+        }
+
+        @Test
+        void shouldRejectCountryWithoutLeaderboard() {
+            leaderboardProperties.getSegments().setCountries(List.of("Japan"));
+
+            assertThatThrownBy(() -> playerService.getBestPlayers(5, LeaderboardWindow.ALL,
+                    new LeaderboardSegment(LeaderboardSegment.Type.COUNTRY, "Atlantis")))
+                    .isInstanceOf(InvalidLeaderboardSegmentException.class);
+            verifyNoInteractions(playerRepository, leaderboardRepository);
+        }
+
+        @Test
+        void shouldRejectUnknownLevelBand() {
+            leaderboardProperties.getSegments().setLevelBands(List.of(1, 10));
+
+            assertThatThrownBy(() -> playerService.getBestPlayers(5, LeaderboardWindow.ALL,
+                    new LeaderboardSegment(LeaderboardSegment.Type.LEVEL, "5-15")))
+                    .isInstanceOf(InvalidLeaderboardSegmentException.class);
+            verifyNoInteractions(playerRepository, leaderboardRepository);
+        }
+
+        @Test
+        void shouldRejectSegmentOfTimeWindow() {
+            assertThatThrownBy(() -> playerService.getBestPlayers(5, LeaderboardWindow.DAY,
+                    LeaderboardSegment.server(SERVER_EU_ENDPOINT)))
+                    .isInstanceOf(InvalidLeaderboardSegmentException.class);
+            verifyNoInteractions(playerRepository, leaderboardRepository);
+        }
+    }
+
+    @Nested
+    @DisplayName("getScoreDistribution")
+    class GetScoreDistributionTests {
+
+        @Test
+        void shouldReadHistogramOfPlayer() {
+            Player player = testPlayer().withId(ID_A).withUsername(USERNAME_A).build();
+            ScoreHistogram histogram = new ScoreHistogram();
+            ScoreDistributionDto distribution = ScoreDistributionDto.builder().totalScores(0L).build();
+
+            when(playerRepository.findByUsername(USERNAME_A)).thenReturn(Optional.of(player));
+            when(scoreHistogramRepository.findByPlayer(ID_A)).thenReturn(histogram);
+            when(statsService.buildScoreDistribution(histogram)).thenReturn(distribution);
+
+            assertThat(playerService.getScoreDistribution(USERNAME_A)).contains(distribution);
+        }
+
+        @Test
+        void shouldReturnEmptyWhenPlayerNotFound() {
+            when(playerRepository.findByUsername(USERNAME_A)).thenReturn(Optional.empty());
+
+            assertThat(playerService.getScoreDistribution(USERNAME_A)).isEmpty();
+            verifyNoInteractions(scoreHistogramRepository);
+        }
+    }
+
+    @Nested
+    @DisplayName("getPlayerRank")
+    class GetPlayerRankTests {
+
+        @Test
+        void shouldBuildRankWithPercentileAndNeighbours() {
+            leaderboardProperties.getRank().setMaxNeighbours(20);
+            when(playerRepository.findRank(USERNAME_A, 1)).thenReturn(Optional.of(new PlayerRank(2, 4, List.of(
+                    new LeaderboardEntry(1, ID_B, USERNAME_B, RATING + 1),
+                    new LeaderboardEntry(2, ID_A, USERNAME_A, RATING)))));
+
+            PlayerRankDto rank = playerService.getPlayerRank(USERNAME_A, 1).orElseThrow();
+
+            assertThat(rank.getRank()).isEqualTo(2);
+            assertThat(rank.getRankedPlayers()).isEqualTo(4);
+            assertThat(rank.getPercentile()).isEqualTo(75.0);
+            assertThat(rank.getRating()).isEqualTo(RATING);
+            assertThat(rank.getNeighbours())
+                    .extracting(LeaderboardEntryDto::getUsername)
+                    .containsExactly(USERNAME_B, USERNAME_A);
+        }
+
+        @Test
+        void shouldUseDefaultAndCapNeighbours() {
+            leaderboardProperties.getRank().setDefaultNeighbours(5);
+            leaderboardProperties.getRank().setMaxNeighbours(20);
+
+            playerService.getPlayerRank(USERNAME_A, null);
+            playerService.getPlayerRank(USERNAME_A, 1000);
+
+            verify(playerRepository).findRank(USERNAME_A, 5);
+            verify(playerRepository).findRank(USERNAME_A, 20);
+        }
+
+        @Test
+        void shouldReturnEmptyWhenPlayerNotRanked() {
+            when(playerRepository.findRank(USERNAME_A, 0)).thenReturn(Optional.empty());
+
+            assertThat(playerService.getPlayerRank(USERNAME_A, 0)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("getLeaderboardSegments")
+    class GetLeaderboardSegmentsTests {
+
+        @Test
+        void shouldListConfiguredSegmentsAndServersWithLeaderboards() {
+            leaderboardProperties.getSegments().setCountries(List.of("Japan"));
+            leaderboardProperties.getSegments().setLevelBands(List.of(1, 10));
+
+            when(leaderboardRepository.findSegments()).thenReturn(List.of(
+                    LeaderboardSegment.server(SERVER_US_ENDPOINT),
+                    new LeaderboardSegment(LeaderboardSegment.Type.COUNTRY, "Japan"),
+                    LeaderboardSegment.server(SERVER_EU_ENDPOINT)));
+
+            LeaderboardSegmentsDto segments = playerService.getLeaderboardSegments();
+
+            assertThat(segments.getCountries()).containsExactly("Japan", LeaderboardSegment.OTHER_COUNTRY);
+            assertThat(segments.getLevelBands()).containsExactly("1-9", "10+");
+            assertThat(segments.getServers()).containsExactly(SERVER_EU_ENDPOINT, SERVER_US_ENDPOINT);
         }
     }
 }
@@ -1,16 +1,24 @@
 package com.azatkhaliullin.service;
 
 import com.azatkhaliullin.domain.MatchResult;
-import com.azatkhaliullin.domain.PlayerStats;
+import com.azatkhaliullin.domain.PlayerScore;
+import com.azatkhaliullin.domain.PlayerStatsDelta;
+import com.azatkhaliullin.property.IngestProperties;
 import com.azatkhaliullin.repository.PlayerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import static com.azatkhaliullin.TestConstants.ID_A;
@@ -18,70 +26,155 @@ import static com.azatkhaliullin.TestConstants.ID_B;
 import static com.azatkhaliullin.TestConstants.SCORE;
 import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
 import static com.azatkhaliullin.builder.PlayerScoreTestBuilder.testPlayerScore;
-import static com.azatkhaliullin.builder.PlayerStatsTestBuilder.testPlayerStats;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class PlayerStatsUpdateServiceTest {
 
     @Mock
     private PlayerRepository playerRepository;
-    @InjectMocks
+
+    private IngestProperties ingestProperties;
     private PlayerStatsUpdateService playerStatsUpdateService;
 
+    @BeforeEach
+    void setUp() {
+        ingestProperties = new IngestProperties();
+        IngestProperties.StatsCoalescing coalescing = ingestProperties.getStatsCoalescing();
+        coalescing.setStripes(4);
+        coalescing.setMaxStaleness(Duration.ofMinutes(1));
+        coalescing.setMaxPendingUpdates(1000);
+        playerStatsUpdateService = new PlayerStatsUpdateService(playerRepository, ingestProperties,
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        playerStatsUpdateService.stop();
+    }
+
     @Nested
     @DisplayName("updatePlayerStats")
     class UpdatePlayerStatsTests {
 
         @Test
-        void shouldUpdateStatsForAllPlayersInMatch() {
+        void shouldMergeScoresOfAllPlayersInMatch() {
+            List<PlayerScore> scores = List.of(
+                    testPlayerScore().withId(ID_A).withScore(SCORE).build(),
+                    testPlayerScore().withId(ID_B).withScore(SCORE).build());
+            MatchResult match = testMatchResult().withScores(scores).build();
+
+            playerStatsUpdateService.updatePlayerStats(match);
+
+            verify(playerRepository).mergeScores(scores);
+        }
+
+        @Test
+        void shouldThrowExceptionWhenUpdateFails() {
             MatchResult match = testMatchResult()
-                    .withScores(List.of(
-                            testPlayerScore().withId(ID_A).withScore(SCORE).build(),
-                            testPlayerScore().withId(ID_B).withScore(SCORE).build()))
+                    .withScores(List.of(testPlayerScore().withId(ID_A).withScore(SCORE).build()))
                     .build();
 
-            PlayerStats currentStats1 = testPlayerStats().buildDomain();
-            PlayerStats currentStats2 = testPlayerStats().buildDomain();
+            doThrow(new RuntimeException("ex")).when(playerRepository).mergeScores(match.getScores());
 
-            when(playerRepository.findPlayerStats(ID_A)).thenReturn(currentStats1);
-            when(playerRepository.findPlayerStats(ID_B)).thenReturn(currentStats2);
+            assertThatThrownBy(() -> playerStatsUpdateService.updatePlayerStats(match))
+                    .isInstanceOf(RuntimeException.class)
+                    .hasMessageContaining("ex");
+        }
+    }
 
-            playerStatsUpdateService.updatePlayerStats(match);
+    @Nested
+    @DisplayName("coalescing")
+    class CoalescingTests {
 
-            verify(playerRepository).findPlayerStats(ID_A);
-            verify(playerRepository).findPlayerStats(ID_B);
-            verify(playerRepository).updatePlayerStats(eq(ID_A), any(PlayerStats.class));
-            verify(playerRepository).updatePlayerStats(eq(ID_B), any(PlayerStats.class));
+        @BeforeEach
+        void setUp() {
+            ingestProperties.getStatsCoalescing().setEnabled(true);
+            playerStatsUpdateService.start();
         }
 
         @Test
-        void shouldHandleEmptyMatchScores() {
-            MatchResult match = testMatchResult().withScores(List.of()).build();
+        void shouldFoldScoresIntoOneDeltaPerPlayer() {
+            playerStatsUpdateService.updatePlayerStats(match(10, 3));
+            playerStatsUpdateService.updatePlayerStats(match(40, 7));
+            playerStatsUpdateService.updatePlayerStats(match(25, 5));
+            verify(playerRepository, never()).mergeScores(anyCollection());
 
-            playerStatsUpdateService.updatePlayerStats(match);
+            playerStatsUpdateService.flush();
 
-            verify(playerRepository, never()).findPlayerStats(any());
-            verify(playerRepository, never()).updatePlayerStats(any(), any());
+            assertThat(capturedDeltas()).containsExactlyInAnyOrder(
+                    new PlayerStatsDelta(ID_A, 3, 75, 40, 10),
+                    new PlayerStatsDelta(ID_B, 3, 15, 7, 3));
         }
 
         @Test
-        void shouldThrowExceptionWhenUpdateFails() {
-            MatchResult match = testMatchResult()
-                    .withScores(List.of(testPlayerScore().withId(ID_A).withScore(SCORE).build()))
-                    .build();
+        void shouldFlushWhenMaxPendingUpdatesReached() {
+            ingestProperties.getStatsCoalescing().setMaxPendingUpdates(4);
 
-            when(playerRepository.findPlayerStats(ID_A))
-                    .thenThrow(new RuntimeException("ex"));
+            playerStatsUpdateService.updatePlayerStats(match(10, 3));
+            playerStatsUpdateService.updatePlayerStats(match(20, 4));
 
-            assertThatThrownBy(() -> playerStatsUpdateService.updatePlayerStats(match))
-                    .isInstanceOf(RuntimeException.class)
-                    .hasMessageContaining("ex");
+            verify(playerRepository, timeout(1000)).mergeDeltas(anyCollection());
+        }
+
+        @Test
+        void shouldDrainPendingDeltasOnStop() {
+            playerStatsUpdateService.updatePlayerStats(match(10, 3));
+
+            playerStatsUpdateService.stop();
+
+            assertThat(capturedDeltas()).hasSize(2);
         }
+
+        @Test
+        void shouldMergeDirectlyAfterStop() {
+            playerStatsUpdateService.stop();
+            MatchResult match = match(10, 3);
+
+            playerStatsUpdateService.updatePlayerStats(match);
+
+            verify(playerRepository).mergeScores(match.getScores());
+        }
+
+        @Test
+        void shouldRetryDeltasOfFailedFlush() {
+            List<Collection<PlayerStatsDelta>> attempts = new ArrayList<>();
+            doAnswer(invocation -> {
+                attempts.add(List.copyOf(invocation.<Collection<PlayerStatsDelta>>getArgument(0)));
+                if (attempts.size() == 1) throw new RuntimeException("ex");
+                return null;
+            }).when(playerRepository).mergeDeltas(anyCollection());
+            playerStatsUpdateService.updatePlayerStats(match(10, 3));
+
+            assertThatThrownBy(() -> playerStatsUpdateService.flush()).isInstanceOf(RuntimeException.class);
+            playerStatsUpdateService.updatePlayerStats(match(30, 1));
+            playerStatsUpdateService.flush();
+
+            assertThat(attempts.get(1)).containsExactlyInAnyOrder(
+                    new PlayerStatsDelta(ID_A, 2, 40, 30, 10),
+                    new PlayerStatsDelta(ID_B, 2, 4, 3, 1));
+        }
+
+        @SuppressWarnings("unchecked")
+        private Collection<PlayerStatsDelta> capturedDeltas() {
+            ArgumentCaptor<Collection<PlayerStatsDelta>> captor = ArgumentCaptor.forClass(Collection.class);
+            verify(playerRepository).mergeDeltas(captor.capture());
+            return captor.getValue();
+        }
+    }
+
+    private static MatchResult match(int scoreA, int scoreB) {
+        return testMatchResult()
+                .withScores(List.of(
+                        testPlayerScore().withId(ID_A).withScore(scoreA).build(),
+                        testPlayerScore().withId(ID_B).withScore(scoreB).build()))
+                .build();
     }
 }
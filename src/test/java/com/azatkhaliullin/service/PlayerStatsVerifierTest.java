@@ -0,0 +1,110 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.dto.PlayerStatsDto;
+import com.azatkhaliullin.property.PlayerStatsProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static com.azatkhaliullin.TestConstants.RATING;
+import static com.azatkhaliullin.TestConstants.USERNAME_A;
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static com.azatkhaliullin.builder.PlayerStatsTestBuilder.testPlayerStats;
+import static com.azatkhaliullin.builder.PlayerTestBuilder.testPlayer;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PlayerStatsVerifierTest {
+
+    private static final Player PLAYER = testPlayer().withId(ID_A).withUsername(USERNAME_A).build();
+    private static final List<MatchResult> MATCHES = List.of(testMatchResult().build());
+    private static final PlayerStatsDto SERVED = testPlayerStats().withUsername(USERNAME_A).buildDto();
+
+    @Mock
+    private StatsService statsService;
+    @Mock
+    private MatchRepository matchRepository;
+
+    private final PlayerStatsProperties playerStatsProperties = new PlayerStatsProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PlayerStatsVerifier playerStatsVerifier;
+
+    @BeforeEach
+    void setUp() {
+        playerStatsProperties.getVerification().setEnabled(true);
+        playerStatsProperties.getVerification().setSampleRate(1.0);
+        playerStatsVerifier = new PlayerStatsVerifier(statsService, matchRepository, playerStatsProperties, meterRegistry);
+    }
+
+    @Nested
+    @DisplayName("verifySampled")
+    class VerifySampledTests {
+
+        @Test
+        void shouldCountMatchingStatsAsVerified() {
+            when(matchRepository.findByPlayerId(ID_A)).thenReturn(MATCHES);
+            when(statsService.calculatePlayerStats(PLAYER, MATCHES))
+                    .thenReturn(testPlayerStats().withUsername(USERNAME_A).buildDto());
+
+            playerStatsVerifier.verifySampled(PLAYER, SERVED);
+
+            assertThat(count("stats.player-stats.verified")).isEqualTo(1);
+            assertThat(count("stats.player-stats.mismatches")).isZero();
+        }
+
+        @Test
+        void shouldCountDriftedStatsAsMismatch() {
+            when(matchRepository.findByPlayerId(ID_A)).thenReturn(MATCHES);
+            when(statsService.calculatePlayerStats(PLAYER, MATCHES))
+                    .thenReturn(testPlayerStats().withUsername(USERNAME_A).withRating(RATING + 1).buildDto());
+
+            playerStatsVerifier.verifySampled(PLAYER, SERVED);
+
+            assertThat(count("stats.player-stats.mismatches")).isEqualTo(1);
+        }
+
+        @Test
+        void shouldSkipWhenDisabled() {
+            playerStatsProperties.getVerification().setEnabled(false);
+
+            playerStatsVerifier.verifySampled(PLAYER, SERVED);
+
+            verifyNoInteractions(matchRepository, statsService);
+        }
+
+        @Test
+        void shouldSkipRequestsOutsideSample() {
+            playerStatsProperties.getVerification().setSampleRate(0.0);
+
+            playerStatsVerifier.verifySampled(PLAYER, SERVED);
+
+            verifyNoInteractions(matchRepository, statsService);
+        }
+
+        @Test
+        void shouldNotFailRequestWhenRecomputationFails() {
+            when(matchRepository.findByPlayerId(ID_A)).thenThrow(new RuntimeException("ex"));
+
+            assertThatCode(() -> playerStatsVerifier.verifySampled(PLAYER, SERVED)).doesNotThrowAnyException();
+            assertThat(count("stats.player-stats.verified")).isZero();
+        }
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name).count();
+    }
+}
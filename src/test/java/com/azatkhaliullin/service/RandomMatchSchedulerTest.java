@@ -3,7 +3,6 @@ package com.azatkhaliullin.service;
 import com.azatkhaliullin.domain.MatchResult;
 import com.azatkhaliullin.domain.Player;
 import com.azatkhaliullin.domain.ServerInfo;
-import com.azatkhaliullin.repository.MatchRepository;
 import com.azatkhaliullin.repository.PlayerRepository;
 import com.azatkhaliullin.repository.ServerRepository;
 import org.junit.jupiter.api.DisplayName;
@@ -33,13 +32,11 @@ import static org.mockito.Mockito.when;
 class RandomMatchSchedulerTest {
 
     @Mock
-    private MatchRepository matchRepository;
+    private MatchIngestService matchIngestService;
     @Mock
     private PlayerRepository playerRepository;
     @Mock
     private ServerRepository serverRepository;
-    @Mock
-    private PlayerStatsUpdateService statsUpdateService;
     @InjectMocks
     private RandomMatchScheduler scheduler;
 
@@ -61,7 +58,7 @@ class RandomMatchSchedulerTest {
             scheduler.generateRandomMatch();
 
             ArgumentCaptor<MatchResult> captor = ArgumentCaptor.forClass(MatchResult.class);
-            verify(matchRepository).save(captor.capture());
+            verify(matchIngestService).ingest(captor.capture());
 
             MatchResult saved = captor.getValue();
             assertThat(saved.getServerEndpoint()).isEqualTo(server.getEndpoint());
@@ -76,7 +73,7 @@ class RandomMatchSchedulerTest {
 
             scheduler.generateRandomMatch();
 
-            verify(matchRepository, never()).save(any());
+            verify(matchIngestService, never()).ingest(any());
         }
     }
 }
@@ -1,33 +1,31 @@
 package com.azatkhaliullin.service;
 
-import com.azatkhaliullin.domain.MatchResult;
 import com.azatkhaliullin.domain.ServerInfo;
-import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.domain.ServerStats;
 import com.azatkhaliullin.dto.ServerStatsDto;
-import com.azatkhaliullin.mapper.MatchResultMapper;
 import com.azatkhaliullin.repository.MatchRepository;
 import com.azatkhaliullin.repository.ServerRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import static com.azatkhaliullin.TestConstants.DEFAULT_PLAYED_AT;
 import static com.azatkhaliullin.TestConstants.LIMIT;
 import static com.azatkhaliullin.TestConstants.SERVER_EU_ENDPOINT;
 import static com.azatkhaliullin.TestConstants.SERVER_US_ENDPOINT;
 import static com.azatkhaliullin.TestConstants.TOTAL_MATCHES;
-import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
 import static com.azatkhaliullin.builder.ServerInfoBuilder.testServerInfo;
 import static com.azatkhaliullin.builder.ServerStatsDtoBuilder.testServerStatsDto;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -46,42 +44,30 @@ class ReportServiceTest {
     @InjectMocks
     private ReportService reportService;
 
-    @Spy
-    private MatchResultMapper matchResultMapper = Mappers.getMapper(MatchResultMapper.class);
-
     @Nested
     @DisplayName("getRecentMatches")
     class GetRecentMatchesTests {
 
         @Test
-        void shouldMapMatchesAndRespectLimit() {
-            List<MatchResult> recentMatches = List.of(
-                    testMatchResult().withServerEndpoint(SERVER_US_ENDPOINT).withPlayedAt(DEFAULT_PLAYED_AT).build(),
-                    testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT).withPlayedAt(DEFAULT_PLAYED_AT).build());
-
-            when(matchRepository.findRecent(LIMIT)).thenReturn(recentMatches);
+        void shouldJoinStoredJsonIntoArray() {
+            when(matchRepository.findRecentJson(LIMIT)).thenReturn(List.of(
+                    "{\"id\":1}".getBytes(StandardCharsets.UTF_8), "{\"id\":2}".getBytes(StandardCharsets.UTF_8)));
 
-            List<MatchResultDto> result = reportService.getRecentMatches(LIMIT);
+            byte[] result = reportService.getRecentMatches(LIMIT);
 
-            assertThat(result)
-                    .hasSize(2)
-                    .allSatisfy(dto -> assertThat(dto.getPlayedAt()).isNotNull())
-                    .extracting(MatchResultDto::getServerEndpoint)
-                    .containsExactly(SERVER_US_ENDPOINT, SERVER_EU_ENDPOINT);
-
-            verify(matchRepository).findRecent(LIMIT);
+            assertThat(new String(result, StandardCharsets.UTF_8)).isEqualTo("[{\"id\":1},{\"id\":2}]");
+            verify(matchRepository).findRecentJson(LIMIT);
             verifyNoMoreInteractions(matchRepository);
         }
 
-
         @Test
-        void shouldReturnEmptyWhenNoMatches() {
-            when(matchRepository.findRecent(5)).thenReturn(emptyList());
+        void shouldReturnEmptyArrayWhenNoMatches() {
+            when(matchRepository.findRecentJson(5)).thenReturn(emptyList());
 
-            List<MatchResultDto> result = reportService.getRecentMatches(5);
+            byte[] result = reportService.getRecentMatches(5);
 
-            assertThat(result).isEmpty();
-            verify(matchRepository).findRecent(5);
+            assertThat(new String(result, StandardCharsets.UTF_8)).isEqualTo("[]");
+            verify(matchRepository).findRecentJson(5);
         }
     }
 
@@ -90,38 +76,42 @@ class ReportServiceTest {
     class GetPopularServersTests {
 
         @Test
-        void shouldSortServersByTotalMatchesAndRespectLimit() {
+        void shouldKeepPopularityOrder() {
             ServerInfo serverInfoA = testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build();
             ServerInfo serverInfoB = testServerInfo().withEndpoint(SERVER_US_ENDPOINT).build();
+            ServerStats statsA = new ServerStats(TOTAL_MATCHES + TOTAL_MATCHES, 0, 0);
+            ServerStats statsB = new ServerStats(TOTAL_MATCHES, 0, 0);
+            Map<ServerInfo, ServerStats> popular = new LinkedHashMap<>();
+            popular.put(serverInfoB, statsB);
+            popular.put(serverInfoA, statsA);
 
-            when(serverRepository.findAll()).thenReturn(List.of(serverInfoA, serverInfoB));
+            when(serverRepository.findMostPopular(2)).thenReturn(popular);
 
             ServerStatsDto serverStatsDtoA = testServerStatsDto().withEndpoint(SERVER_EU_ENDPOINT).withTotalMatches(TOTAL_MATCHES + TOTAL_MATCHES).build();
-            ServerStatsDto serverStatsDtoB = testServerStatsDto().withEndpoint(SERVER_US_ENDPOINT).withTotalMatches(TOTAL_MATCHES + TOTAL_MATCHES).build();
+            ServerStatsDto serverStatsDtoB = testServerStatsDto().withEndpoint(SERVER_US_ENDPOINT).withTotalMatches(TOTAL_MATCHES).build();
 
-            when(serverService.buildServerStats(serverInfoA)).thenReturn(serverStatsDtoA);
-            when(serverService.buildServerStats(serverInfoB)).thenReturn(serverStatsDtoB);
+            when(serverService.buildServerStats(serverInfoA, statsA)).thenReturn(serverStatsDtoA);
+            when(serverService.buildServerStats(serverInfoB, statsB)).thenReturn(serverStatsDtoB);
 
             List<ServerStatsDto> result = reportService.getPopularServers(2);
 
             assertThat(result)
                     .hasSize(2)
                     .extracting(ServerStatsDto::getEndpoint)
-                    .containsExactly(SERVER_EU_ENDPOINT, SERVER_US_ENDPOINT);
+                    .containsExactly(SERVER_US_ENDPOINT, SERVER_EU_ENDPOINT);
 
-            verify(serverRepository).findAll();
-            verify(serverService).buildServerStats(serverInfoA);
-            verify(serverService).buildServerStats(serverInfoB);
+            verify(serverRepository).findMostPopular(2);
+            verifyNoMoreInteractions(serverRepository);
         }
 
         @Test
         void shouldReturnEmptyWhenNoServers() {
-            when(serverRepository.findAll()).thenReturn(emptyList());
+            when(serverRepository.findMostPopular(3)).thenReturn(emptyMap());
 
             List<ServerStatsDto> result = reportService.getPopularServers(3);
 
             assertThat(result).isEmpty();
-            verify(serverRepository).findAll();
+            verify(serverRepository).findMostPopular(3);
             verifyNoInteractions(serverService);
         }
     }
@@ -1,25 +1,57 @@
 package com.azatkhaliullin.service;
 
+import com.azatkhaliullin.domain.MatchCursor;
+import com.azatkhaliullin.domain.LeaderboardWindow;
+import com.azatkhaliullin.domain.MatchHistoryQuery;
+import com.azatkhaliullin.domain.MatchJson;
 import com.azatkhaliullin.domain.MatchResult;
+import com.azatkhaliullin.domain.ScoreHistogram;
 import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.domain.ServerStats;
+import com.azatkhaliullin.domain.TimeSeriesBucket;
+import com.azatkhaliullin.domain.TimeSeriesResolution;
+import com.azatkhaliullin.domain.TimeSeriesScope;
 import com.azatkhaliullin.dto.MatchResultDto;
+import com.azatkhaliullin.dto.ActivePlayersDto;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
 import com.azatkhaliullin.dto.ServerInfoDto;
 import com.azatkhaliullin.dto.ServerStatsDto;
+import com.azatkhaliullin.dto.TimeSeriesDto;
+import com.azatkhaliullin.dto.TimeSeriesPointDto;
+import com.azatkhaliullin.exception.InvalidLeaderboardWindowException;
+import com.azatkhaliullin.exception.InvalidTimeSeriesQueryException;
 import com.azatkhaliullin.mapper.MatchResultMapper;
 import com.azatkhaliullin.mapper.ServerInfoMapper;
+import com.azatkhaliullin.property.MatchHistoryProperties;
+import com.azatkhaliullin.property.TimeSeriesProperties;
 import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.ActivePlayersRepository;
+import com.azatkhaliullin.repository.ScoreHistogramRepository;
 import com.azatkhaliullin.repository.ServerRepository;
+import com.azatkhaliullin.repository.TimeSeriesRepository;
+import com.azatkhaliullin.serializer.MatchJsonEncoder;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,34 +61,58 @@ import static com.azatkhaliullin.TestConstants.BEST_SCORE;
 import static com.azatkhaliullin.TestConstants.DEFAULT_PLAYED_AT;
 import static com.azatkhaliullin.TestConstants.ID_A;
 import static com.azatkhaliullin.TestConstants.ID_B;
+import static com.azatkhaliullin.TestConstants.REGION;
 import static com.azatkhaliullin.TestConstants.SERVER_EU_ENDPOINT;
 import static com.azatkhaliullin.TestConstants.SERVER_US_ENDPOINT;
 import static com.azatkhaliullin.TestConstants.TOTAL_MATCHES;
 import static com.azatkhaliullin.TestConstants.UNKNOWN_SERVER;
 import static com.azatkhaliullin.TestConstants.WORST_SCORE;
 import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
-import static com.azatkhaliullin.builder.PlayerScoreTestBuilder.testPlayerScore;
 import static com.azatkhaliullin.builder.ServerInfoBuilder.testServerInfo;
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class ServerServiceTest {
 
+    private static final int WINDOW_SIZE = 2;
+    private static final int MAX_POINTS = 500;
+
     @Mock
     private ServerRepository serverRepository;
     @Mock
     private MatchRepository matchRepository;
+    @Mock
+    private ScoreHistogramRepository scoreHistogramRepository;
+    @Mock
+    private TimeSeriesRepository timeSeriesRepository;
+    @Mock
+    private ActivePlayersRepository activePlayersRepository;
     @InjectMocks
     private ServerService serverService;
 
     @Spy
     private ServerInfoMapper serverInfoMapper = Mappers.getMapper(ServerInfoMapper.class);
     @Spy
-    private MatchResultMapper matchResultMapper = Mappers.getMapper(MatchResultMapper.class);
+    private MatchHistoryProperties matchHistoryProperties = matchHistoryProperties();
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    @Spy
+    private StatsService statsService = new StatsService();
+    @Spy
+    private TimeSeriesProperties timeSeriesProperties = timeSeriesProperties();
+
+    private final MatchJsonEncoder matchJsonEncoder =
+            new MatchJsonEncoder(Mappers.getMapper(MatchResultMapper.class), objectMapper);
 
     @Nested
     @DisplayName("getServerInfo")
@@ -128,47 +184,274 @@ class ServerServiceTest {
     }
 
     @Nested
-    @DisplayName("getMatchesSince")
-    class GetMatchesSinceTests {
+    @DisplayName("streamMatchesSince")
+    class StreamMatchesSinceTests {
 
         @Test
-        void shouldReturnMappedMatchesAfterTimestamp() {
-            List<MatchResult> matches = List.of(
-                    testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT)
-                            .withPlayedAt(DEFAULT_PLAYED_AT.plusSeconds(60)).build(),
-                    testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT)
-                            .withPlayedAt(DEFAULT_PLAYED_AT.plusSeconds(120)).build(),
-                    testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT)
-                            .withPlayedAt(DEFAULT_PLAYED_AT.minusSeconds(360)).build());
+        void shouldStreamWindowsAsJsonArray() throws Exception {
+            MatchResult first = testMatchResult().withId(ID_A).withServerEndpoint(SERVER_EU_ENDPOINT)
+                    .withPlayedAt(DEFAULT_PLAYED_AT.plusSeconds(60)).build();
+            MatchResult second = testMatchResult().withId(ID_B).withServerEndpoint(SERVER_EU_ENDPOINT)
+                    .withPlayedAt(DEFAULT_PLAYED_AT.plusSeconds(120)).build();
+            List<MatchCursor> cursors = new ArrayList<>();
+            when(matchRepository.findServerHistoryJson(eq(SERVER_EU_ENDPOINT), any())).thenAnswer(invocation -> {
+                MatchHistoryQuery query = invocation.getArgument(1);
+                cursors.add(query.getCursor());
+                return switch (cursors.size()) {
+                    case 1 -> List.of(matchJson(first));
+                    case 2 -> List.of(matchJson(second));
+                    default -> emptyList();
+                };
+            });
+
+            InputStream stream = serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT).getInputStream();
+            List<MatchResultDto> result = objectMapper.readValue(stream, new TypeReference<>() {
+            });
+
+            assertThat(result).extracting(MatchResultDto::getId).containsExactly(ID_A, ID_B);
+            assertThat(cursors).containsExactly(null,
+                    new MatchCursor(first.getPlayedAt().toEpochMilli(), ID_A),
+                    new MatchCursor(second.getPlayedAt().toEpochMilli(), ID_B));
+        }
 
-            when(matchRepository.findByServerSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT))
-                    .thenAnswer(invocation -> {
-                        Instant since = invocation.getArgument(1);
-                        return matches.stream()
-                                .filter(m -> m.getPlayedAt().isAfter(since))
-                                .toList();
-                    });
+        @Test
+        void shouldQueryWindowsOldestFirstFromTimestamp() throws Exception {
+            when(matchRepository.findServerHistoryJson(eq(SERVER_EU_ENDPOINT), any())).thenReturn(emptyList());
 
-            List<MatchResultDto> result = serverService.getMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT);
+            serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT).getInputStream().readAllBytes();
 
-            assertThat(result)
-                    .hasSize(2)
-                    .allSatisfy(m -> assertThat(m.getServerEndpoint()).isEqualTo(SERVER_EU_ENDPOINT));
+            ArgumentCaptor<MatchHistoryQuery> captor = ArgumentCaptor.forClass(MatchHistoryQuery.class);
+            verify(matchRepository).findServerHistoryJson(eq(SERVER_EU_ENDPOINT), captor.capture());
+            assertThat(captor.getValue().getFrom()).isEqualTo(DEFAULT_PLAYED_AT.toEpochMilli());
+            assertThat(captor.getValue().isNewer()).isTrue();
+            assertThat(captor.getValue().getLimit()).isEqualTo(WINDOW_SIZE);
+        }
+
+        @Test
+        void shouldStreamNdjsonWhenRequested() throws Exception {
+            when(matchRepository.findServerHistoryJson(eq(SERVER_EU_ENDPOINT), any()))
+                    .thenReturn(List.of(matchJson(testMatchResult().withId(ID_A).build()),
+                            matchJson(testMatchResult().withId(ID_B).build())))
+                    .thenReturn(emptyList());
+
+            String body = new String(serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT)
+                    .getInputStream(true).readAllBytes(), StandardCharsets.UTF_8);
 
-            verify(matchRepository).findByServerSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT);
-            verifyNoMoreInteractions(matchRepository);
+            assertThat(body.lines().map(this::readMatch).map(MatchResultDto::getId)).containsExactly(ID_A, ID_B);
+            assertThat(body).endsWith("\n");
         }
 
         @Test
-        void shouldReturnEmptyListWhenNoMatches() {
-            when(matchRepository.findByServerSince(SERVER_US_ENDPOINT, DEFAULT_PLAYED_AT)).thenReturn(emptyList());
+        void shouldSkipWindowOfExpiredMatches() throws Exception {
+            MatchResult expired = testMatchResult().withId(ID_A).withServerEndpoint(SERVER_EU_ENDPOINT)
+                    .withPlayedAt(DEFAULT_PLAYED_AT.plusSeconds(60)).build();
+            MatchResult stored = testMatchResult().withId(ID_B).withServerEndpoint(SERVER_EU_ENDPOINT)
+                    .withPlayedAt(DEFAULT_PLAYED_AT.plusSeconds(120)).build();
+            List<MatchCursor> cursors = new ArrayList<>();
+            when(matchRepository.findServerHistoryJson(eq(SERVER_EU_ENDPOINT), any())).thenAnswer(invocation -> {
+                MatchHistoryQuery query = invocation.getArgument(1);
+                cursors.add(query.getCursor());
+                return switch (cursors.size()) {
+                    case 1 -> List.of(new MatchJson(ID_A, expired.getPlayedAt().toEpochMilli(), null));
+                    case 2 -> List.of(matchJson(stored));
+                    default -> emptyList();
+                };
+            });
+
+            InputStream stream = serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT).getInputStream();
+            List<MatchResultDto> result = objectMapper.readValue(stream, new TypeReference<>() {
+            });
+
+            assertThat(result).extracting(MatchResultDto::getId).containsExactly(ID_B);
+            assertThat(cursors).hasSize(3)
+                    .element(1).isEqualTo(new MatchCursor(expired.getPlayedAt().toEpochMilli(), ID_A));
+        }
+
+        @Test
+        void shouldStreamEmptyArrayWhenNoMatches() throws Exception {
+            when(matchRepository.findServerHistoryJson(eq(SERVER_US_ENDPOINT), any())).thenReturn(emptyList());
 
-            List<MatchResultDto> result = serverService.getMatchesSince(SERVER_US_ENDPOINT, DEFAULT_PLAYED_AT);
+            InputStream stream = serverService.streamMatchesSince(SERVER_US_ENDPOINT, DEFAULT_PLAYED_AT).getInputStream();
 
-            assertThat(result).isEmpty();
+            assertThat(new String(stream.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("[]");
+        }
+
+        @Test
+        void shouldNotQueryRedisUntilStreamIsRead() {
+            serverService.streamMatchesSince(SERVER_EU_ENDPOINT, DEFAULT_PLAYED_AT);
+
+            verifyNoInteractions(matchRepository);
+        }
+
+        private MatchJson matchJson(MatchResult match) {
+            return new MatchJson(match.getId(), match.getPlayedAt().toEpochMilli(), matchJsonEncoder.encode(match));
+        }
+
+        private MatchResultDto readMatch(String line) {
+            try {
+                return objectMapper.readValue(line, MatchResultDto.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("getServerStats")
+    class GetServerStatsTests {
+
+        @Test
+        void shouldBuildStatsFromServerCounters() {
+            ServerInfo server = testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build();
+            when(serverRepository.findByEndpoint(SERVER_EU_ENDPOINT)).thenReturn(Optional.of(server));
+            when(serverRepository.findStats(SERVER_EU_ENDPOINT))
+                    .thenReturn(new ServerStats(TOTAL_MATCHES, 4, WORST_SCORE * 2 + BEST_SCORE * 2));
+
+            Optional<ServerStatsDto> stats = serverService.getServerStats(SERVER_EU_ENDPOINT);
+
+            assertThat(stats).map(ServerStatsDto::getTotalMatches).contains((long) TOTAL_MATCHES);
+            verifyNoInteractions(matchRepository);
+        }
+
+        @Test
+        void shouldReturnEmptyForUnknownServer() {
+            when(serverRepository.findByEndpoint(UNKNOWN_SERVER)).thenReturn(Optional.empty());
+
+            assertThat(serverService.getServerStats(UNKNOWN_SERVER)).isEmpty();
+            verify(serverRepository, never()).findStats(UNKNOWN_SERVER);
+        }
+    }
+
+    @Nested
+    @DisplayName("getTimeSeries")
+    class GetTimeSeriesTests {
+
+        @Test
+        void shouldReadMinuteBucketsOfRecentRange() {
+            Instant to = Instant.now();
+            Instant from = to.minus(Duration.ofHours(2));
+            when(serverRepository.findByEndpoint(SERVER_EU_ENDPOINT))
+                    .thenReturn(Optional.of(testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build()));
+            long bucket = TimeSeriesResolution.MINUTE.bucketStart(from.getEpochSecond() * 1000);
+            when(timeSeriesRepository.findBuckets(eq(TimeSeriesScope.server(SERVER_EU_ENDPOINT)),
+                    eq(TimeSeriesResolution.MINUTE), anyLong(), anyLong()))
+                    .thenReturn(List.of(new TimeSeriesBucket(bucket, 2, 4, 300), new TimeSeriesBucket(bucket + 60_000, 0, 0, 0)));
+
+            TimeSeriesDto timeSeries = serverService.getTimeSeries(SERVER_EU_ENDPOINT, null,
+                    from.getEpochSecond(), to.getEpochSecond()).orElseThrow();
+
+            assertThat(timeSeries.getResolution()).isEqualTo(TimeSeriesDto.ResolutionEnum._1M);
+            assertThat(timeSeries.getFrom()).isEqualTo(bucket / 1000);
+            assertThat(timeSeries.getPoints()).extracting(TimeSeriesPointDto::getMatches).containsExactly(2L, 0L);
+            assertThat(timeSeries.getPoints()).extracting(TimeSeriesPointDto::getAverageScore).containsExactly(75.0, 0.0);
+        }
+
+        @Test
+        void shouldUseHourBucketsWhenMinutesWouldBeTooMany() {
+            Instant to = Instant.now();
+            mockRegion();
+
+            TimeSeriesDto timeSeries = serverService.getTimeSeries(null, REGION,
+                    to.minus(Duration.ofHours(12)).getEpochSecond(), to.getEpochSecond()).orElseThrow();
+
+            assertThat(timeSeries.getResolution()).isEqualTo(TimeSeriesDto.ResolutionEnum._1H);
+            verify(timeSeriesRepository).findBuckets(eq(TimeSeriesScope.region(REGION)),
+                    eq(TimeSeriesResolution.HOUR), anyLong(), anyLong());
+        }
+
+        @Test
+        void shouldUseHourBucketsWhenMinutesAreNoLongerRetained() {
+            Instant from = Instant.now().minus(Duration.ofDays(3));
+            mockRegion();
+
+            TimeSeriesDto timeSeries = serverService.getTimeSeries(null, REGION,
+                    from.getEpochSecond(), from.plus(Duration.ofMinutes(30)).getEpochSecond()).orElseThrow();
+
+            assertThat(timeSeries.getResolution()).isEqualTo(TimeSeriesDto.ResolutionEnum._1H);
+        }
+
+        @Test
+        void shouldShortenRangeTooWideForDayBuckets() {
+            Instant to = Instant.now();
+            mockRegion();
+
+            TimeSeriesDto timeSeries = serverService.getTimeSeries(null, REGION, 0, to.getEpochSecond()).orElseThrow();
 
-            verify(matchRepository).findByServerSince(SERVER_US_ENDPOINT, DEFAULT_PLAYED_AT);
-            verifyNoMoreInteractions(matchRepository);
+            long day = Duration.ofDays(1).toMillis();
+            long lastDay = TimeSeriesResolution.DAY.bucketStart(to.getEpochSecond() * 1000);
+            assertThat(timeSeries.getResolution()).isEqualTo(TimeSeriesDto.ResolutionEnum._1D);
+            assertThat(timeSeries.getFrom()).isEqualTo((lastDay - (MAX_POINTS - 1) * day) / 1000);
+        }
+
+        @Test
+        void shouldReturnEmptyForUnknownServer() {
+            when(serverRepository.findByEndpoint(UNKNOWN_SERVER)).thenReturn(Optional.empty());
+
+            assertThat(serverService.getTimeSeries(UNKNOWN_SERVER, null, 0, null)).isEmpty();
+            verifyNoInteractions(timeSeriesRepository);
+        }
+
+        @Test
+        void shouldRejectEndpointAndRegionTogether() {
+            assertThatThrownBy(() -> serverService.getTimeSeries(SERVER_EU_ENDPOINT, REGION, 0, null))
+                    .isInstanceOf(InvalidTimeSeriesQueryException.class);
+        }
+
+        @Test
+        void shouldRejectRangeEndingBeforeItStarts() {
+            assertThatThrownBy(() -> serverService.getTimeSeries(SERVER_EU_ENDPOINT, null, 20, 10L))
+                    .isInstanceOf(InvalidTimeSeriesQueryException.class);
+        }
+
+        private void mockRegion() {
+            when(serverRepository.findAll()).thenReturn(List.of(testServerInfo().build()));
+        }
+    }
+
+    @Nested
+    @DisplayName("getActivePlayers")
+    class GetActivePlayersTests {
+
+        @Test
+        void shouldCountPlayersOfWindowEndingToday() {
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            when(serverRepository.findByEndpoint(SERVER_EU_ENDPOINT))
+                    .thenReturn(Optional.of(testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build()));
+            when(activePlayersRepository.count(TimeSeriesScope.server(SERVER_EU_ENDPOINT), LeaderboardWindow.WEEK, today))
+                    .thenReturn(42L);
+
+            ActivePlayersDto activePlayers = serverService.getActivePlayers(SERVER_EU_ENDPOINT, null, "week").orElseThrow();
+
+            assertThat(activePlayers.getActivePlayers()).isEqualTo(42L);
+            assertThat(activePlayers.getFrom()).isEqualTo(LeaderboardWindow.WEEK.firstDay(today));
+            assertThat(activePlayers.getTo()).isEqualTo(today);
+            assertThat(activePlayers.getStandardError()).isEqualTo(ActivePlayersRepository.STANDARD_ERROR);
+        }
+
+        @Test
+        void shouldCountTodayByDefault() {
+            when(serverRepository.findAll()).thenReturn(List.of(testServerInfo().build()));
+
+            ActivePlayersDto activePlayers = serverService.getActivePlayers(null, REGION, null).orElseThrow();
+
+            assertThat(activePlayers.getWindow()).isEqualTo(LeaderboardWindow.DAY.getValue());
+            verify(activePlayersRepository).count(TimeSeriesScope.region(REGION), LeaderboardWindow.DAY,
+                    LocalDate.now(ZoneOffset.UTC));
+        }
+
+        @Test
+        void shouldReturnEmptyForUnknownRegion() {
+            when(serverRepository.findAll()).thenReturn(List.of(testServerInfo().build()));
+
+            assertThat(serverService.getActivePlayers(null, "Antarctica", "day")).isEmpty();
+            verifyNoInteractions(activePlayersRepository);
+        }
+
+        @Test
+        void shouldRejectAllTimeWindow() {
+            assertThatThrownBy(() -> serverService.getActivePlayers(SERVER_EU_ENDPOINT, null, "all"))
+                    .isInstanceOf(InvalidLeaderboardWindowException.class);
+            verifyNoInteractions(activePlayersRepository);
         }
     }
 
@@ -178,48 +461,87 @@ class ServerServiceTest {
 
         @Test
         void shouldCalculateTotalsAndAveragesCorrectly() {
-            List<MatchResult> matches = List.of(
-                    testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT)
-                            .withScores(List.of(
-                                    testPlayerScore().withId(ID_A).withScore(BEST_SCORE).build(),
-                                    testPlayerScore().withId(ID_B).withScore(WORST_SCORE).build())).build(),
-                    testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT)
-                            .withScores(List.of(
-                                    testPlayerScore().withId(ID_A).withScore(BEST_SCORE).build(),
-                                    testPlayerScore().withId(ID_B).withScore(WORST_SCORE).build())).build());
-
             ServerInfo server = testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build();
 
-            when(matchRepository.findByServerEndpoint(SERVER_EU_ENDPOINT)).thenReturn(matches);
-
-            ServerStatsDto stats = serverService.buildServerStats(server);
+            ServerStatsDto stats = serverService.buildServerStats(server,
+                    new ServerStats(TOTAL_MATCHES, 4, WORST_SCORE * 2 + BEST_SCORE * 2));
 
             assertThat(stats.getEndpoint()).isEqualTo(SERVER_EU_ENDPOINT);
             assertThat(stats.getTotalMatches()).isEqualTo(TOTAL_MATCHES);
             assertThat(stats.getTotalScore()).isEqualTo(WORST_SCORE * 2 + BEST_SCORE * 2);
             assertThat(stats.getAverageScore()).isEqualTo(AVERAGE_SCORE);
             assertThat(stats.getAveragePlayersPerMatch()).isEqualTo(AVERAGE_PLAYER_PER_MATCH);
-
-            verify(matchRepository).findByServerEndpoint(SERVER_EU_ENDPOINT);
-            verifyNoMoreInteractions(matchRepository);
         }
 
         @Test
         void shouldReturnZerosWhenNoMatches() {
             ServerInfo server = testServerInfo().withEndpoint(SERVER_US_ENDPOINT).build();
 
-            when(matchRepository.findByServerEndpoint(SERVER_US_ENDPOINT)).thenReturn(emptyList());
-
-            ServerStatsDto stats = serverService.buildServerStats(server);
+            ServerStatsDto stats = serverService.buildServerStats(server, new ServerStats());
 
             assertThat(stats.getEndpoint()).isEqualTo(SERVER_US_ENDPOINT);
             assertThat(stats.getTotalMatches()).isZero();
             assertThat(stats.getTotalScore()).isZero();
             assertThat(stats.getAverageScore()).isZero();
             assertThat(stats.getAveragePlayersPerMatch()).isZero();
+        }
+
+        @Test
+        void shouldKeepTotalsBeyondIntRange() {
+            ServerInfo server = testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build();
+            long totalMatches = Integer.MAX_VALUE + 1L;
 
-            verify(matchRepository).findByServerEndpoint(SERVER_US_ENDPOINT);
-            verifyNoMoreInteractions(matchRepository);
+            ServerStatsDto stats = serverService.buildServerStats(server,
+                    new ServerStats(totalMatches, totalMatches * 2, totalMatches * 100));
+
+            assertThat(stats.getTotalMatches()).isEqualTo(totalMatches);
+            assertThat(stats.getTotalScore()).isEqualTo(totalMatches * 100);
+            assertThat(stats.getAveragePlayersPerMatch()).isEqualTo(2);
+            assertThat(stats.getAverageScore()).isEqualTo(50.0);
         }
     }
+
+    @Nested
+    @DisplayName("getScoreDistribution")
+    class GetScoreDistributionTests {
+
+        @Test
+        void shouldReadHistogramOfServer() {
+            ScoreHistogram histogram = new ScoreHistogram();
+            histogram.getCounts()[42] = 2;
+
+            when(serverRepository.findByEndpoint(SERVER_EU_ENDPOINT))
+                    .thenReturn(Optional.of(testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build()));
+            when(scoreHistogramRepository.findByServer(SERVER_EU_ENDPOINT)).thenReturn(histogram);
+
+            ScoreDistributionDto result = serverService.getScoreDistribution(SERVER_EU_ENDPOINT).orElseThrow();
+
+            assertThat(result.getTotalScores()).isEqualTo(2);
+            assertThat(result.getMedian()).isEqualTo(42);
+            verifyNoInteractions(matchRepository);
+        }
+
+        @Test
+        void shouldReturnEmptyWhenServerNotFound() {
+            when(serverRepository.findByEndpoint(UNKNOWN_SERVER)).thenReturn(Optional.empty());
+
+            assertThat(serverService.getScoreDistribution(UNKNOWN_SERVER)).isEmpty();
+            verifyNoInteractions(scoreHistogramRepository);
+        }
+    }
+
+    private static MatchHistoryProperties matchHistoryProperties() {
+        MatchHistoryProperties properties = new MatchHistoryProperties();
+        properties.setStreamWindowSize(WINDOW_SIZE);
+        return properties;
+    }
+
+    private static TimeSeriesProperties timeSeriesProperties() {
+        TimeSeriesProperties properties = new TimeSeriesProperties();
+        properties.getRetention().setMinute(Duration.ofHours(48));
+        properties.getRetention().setHour(Duration.ofDays(30));
+        properties.getRetention().setDay(Duration.ofDays(400));
+        properties.setMaxPoints(MAX_POINTS);
+        return properties;
+    }
 }
@@ -0,0 +1,114 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.ServerInfo;
+import com.azatkhaliullin.domain.ServerStats;
+import com.azatkhaliullin.property.ServerStatsProperties;
+import com.azatkhaliullin.repository.MatchRepository;
+import com.azatkhaliullin.repository.ServerRepository;
+import com.azatkhaliullin.repository.StartupJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.azatkhaliullin.TestConstants.BEST_SCORE;
+import static com.azatkhaliullin.TestConstants.ID_A;
+import static com.azatkhaliullin.TestConstants.ID_B;
+import static com.azatkhaliullin.TestConstants.SERVER_EU_ENDPOINT;
+import static com.azatkhaliullin.TestConstants.SERVER_US_ENDPOINT;
+import static com.azatkhaliullin.TestConstants.WORST_SCORE;
+import static com.azatkhaliullin.builder.MatchResultTestBuilder.testMatchResult;
+import static com.azatkhaliullin.builder.PlayerScoreTestBuilder.testPlayerScore;
+import static com.azatkhaliullin.builder.ServerInfoBuilder.testServerInfo;
+import static java.util.Collections.emptyList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ServerStatsRebuildJobTest {
+
+    private static final ServerInfo SERVER_EU = testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build();
+    private static final ServerInfo SERVER_US = testServerInfo().withEndpoint(SERVER_US_ENDPOINT).build();
+
+    @Mock
+    private ServerRepository serverRepository;
+    @Mock
+    private MatchRepository matchRepository;
+    @Mock
+    private StartupJobRepository startupJobRepository;
+    @Spy
+    private ServerStatsProperties serverStatsProperties = new ServerStatsProperties();
+    @InjectMocks
+    private ServerStatsRebuildJob serverStatsRebuildJob;
+
+    @BeforeEach
+    void setUp() {
+        serverStatsProperties.getRebuild().setEnabled(true);
+        lenient().when(startupJobRepository.claim(ServerStatsRebuildJob.JOB)).thenReturn(true);
+    }
+
+    @Nested
+    @DisplayName("run")
+    class RunTests {
+
+        @Test
+        void shouldRecountEveryServerFromItsMatches() {
+            when(serverRepository.findAll()).thenReturn(List.of(SERVER_EU, SERVER_US));
+            when(matchRepository.findByServerEndpoint(SERVER_EU_ENDPOINT)).thenReturn(List.of(
+                    testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT).withScores(List.of(
+                            testPlayerScore().withId(ID_A).withScore(BEST_SCORE).build(),
+                            testPlayerScore().withId(ID_B).withScore(WORST_SCORE).build())).build(),
+                    testMatchResult().withServerEndpoint(SERVER_EU_ENDPOINT).withScores(List.of(
+                            testPlayerScore().withId(ID_A).withScore(WORST_SCORE).build())).build()));
+            when(matchRepository.findByServerEndpoint(SERVER_US_ENDPOINT)).thenReturn(emptyList());
+
+            serverStatsRebuildJob.run(null);
+
+            verify(serverRepository).replaceAllStats(Map.of(
+                    SERVER_EU_ENDPOINT, new ServerStats(2, 3, BEST_SCORE + WORST_SCORE * 2),
+                    SERVER_US_ENDPOINT, new ServerStats()));
+            verify(startupJobRepository).complete(ServerStatsRebuildJob.JOB);
+        }
+
+        @Test
+        void shouldSkipWhenAlreadyClaimed() {
+            when(startupJobRepository.claim(ServerStatsRebuildJob.JOB)).thenReturn(false);
+
+            serverStatsRebuildJob.run(null);
+
+            verifyNoInteractions(serverRepository, matchRepository);
+        }
+
+        @Test
+        void shouldSkipWhenDisabled() {
+            serverStatsProperties.getRebuild().setEnabled(false);
+
+            serverStatsRebuildJob.run(null);
+
+            verifyNoInteractions(serverRepository, matchRepository, startupJobRepository);
+        }
+
+        @Test
+        void shouldNotFailStartupWhenRebuildFails() {
+            when(serverRepository.findAll()).thenReturn(List.of(SERVER_EU));
+            when(matchRepository.findByServerEndpoint(SERVER_EU_ENDPOINT)).thenThrow(new RuntimeException("ex"));
+
+            serverStatsRebuildJob.run(null);
+
+            verify(serverRepository, never()).replaceAllStats(any());
+            verify(startupJobRepository, never()).complete(any());
+        }
+    }
+}
@@ -2,7 +2,11 @@ package com.azatkhaliullin.service;
 
 import com.azatkhaliullin.domain.MatchResult;
 import com.azatkhaliullin.domain.Player;
+import com.azatkhaliullin.domain.PlayerStats;
+import com.azatkhaliullin.domain.ScoreHistogram;
 import com.azatkhaliullin.dto.PlayerStatsDto;
+import com.azatkhaliullin.dto.ScoreDistributionDto;
+import com.azatkhaliullin.util.GameConstants;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -92,4 +96,59 @@ class StatsServiceTest {
             assertThat(result.getRating()).isZero();
         }
     }
+
+    @Nested
+    @DisplayName("buildPlayerStats")
+    class BuildPlayerStatsTests {
+
+        @Test
+        void shouldMatchStatsCalculatedFromMatches() {
+            Player player = testPlayer().withId(ID_A).withUsername(USERNAME_A).build();
+            List<MatchResult> matches = List.of(
+                    testMatchResult().withScores(List.of(
+                            testPlayerScore().withId(ID_A).withScore(BEST_SCORE).build())).build(),
+                    testMatchResult().withScores(List.of(
+                            testPlayerScore().withId(ID_A).withScore(WORST_SCORE).build())).build());
+            PlayerStats stats = PlayerStats.builder()
+                    .totalMatches(TOTAL_MATCHES)
+                    .totalScore(TOTAL_SCORE)
+                    .bestScore(BEST_SCORE)
+                    .worstScore(WORST_SCORE)
+                    .averageScore(AVERAGE_SCORE)
+                    .build();
+
+            PlayerStatsDto result = statsService.buildPlayerStats(USERNAME_A, stats);
+
+            assertThat(result).isEqualTo(statsService.calculatePlayerStats(player, matches));
+        }
+    }
+
+    @Nested
+    @DisplayName("buildScoreDistribution")
+    class BuildScoreDistributionTests {
+
+        @Test
+        void shouldListCountsWithPercentiles() {
+            ScoreHistogram histogram = new ScoreHistogram();
+            histogram.getCounts()[WORST_SCORE] = 1;
+            histogram.getCounts()[BEST_SCORE] = 3;
+
+            ScoreDistributionDto result = statsService.buildScoreDistribution(histogram);
+
+            assertThat(result.getTotalScores()).isEqualTo(4);
+            assertThat(result.getMedian()).isEqualTo(BEST_SCORE);
+            assertThat(result.getP99()).isEqualTo(BEST_SCORE);
+            assertThat(result.getCounts()).hasSize(GameConstants.MAX_SCORE + 1);
+            assertThat(result.getCounts().get(WORST_SCORE)).isEqualTo(1);
+        }
+
+        @Test
+        void shouldLeavePercentilesOutWithoutScores() {
+            ScoreDistributionDto result = statsService.buildScoreDistribution(new ScoreHistogram());
+
+            assertThat(result.getTotalScores()).isZero();
+            assertThat(result.getMedian()).isNull();
+            assertThat(result.getP90()).isNull();
+        }
+    }
 }
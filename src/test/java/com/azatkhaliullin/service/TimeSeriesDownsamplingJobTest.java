@@ -0,0 +1,135 @@
+package com.azatkhaliullin.service;
+
+import com.azatkhaliullin.domain.TimeSeriesBucket;
+import com.azatkhaliullin.domain.TimeSeriesResolution;
+import com.azatkhaliullin.domain.TimeSeriesScope;
+import com.azatkhaliullin.property.TimeSeriesProperties;
+import com.azatkhaliullin.repository.ServerRepository;
+import com.azatkhaliullin.repository.TimeSeriesRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static com.azatkhaliullin.TestConstants.REGION;
+import static com.azatkhaliullin.TestConstants.SERVER_EU_ENDPOINT;
+import static com.azatkhaliullin.TestConstants.SERVER_US_ENDPOINT;
+import static com.azatkhaliullin.builder.ServerInfoBuilder.testServerInfo;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TimeSeriesDownsamplingJobTest {
+
+    private static final long NOW = Instant.parse("2025-03-13T10:42:17Z").toEpochMilli();
+    private static final long HOUR = Instant.parse("2025-03-13T10:00:00Z").toEpochMilli();
+    private static final long DAY = Instant.parse("2025-03-13T00:00:00Z").toEpochMilli();
+    private static final TimeSeriesScope SERVER = TimeSeriesScope.server(SERVER_EU_ENDPOINT);
+
+    @Mock
+    private ServerRepository serverRepository;
+    @Mock
+    private TimeSeriesRepository timeSeriesRepository;
+    @Spy
+    private TimeSeriesProperties timeSeriesProperties = timeSeriesProperties();
+    @InjectMocks
+    private TimeSeriesDownsamplingJob timeSeriesDownsamplingJob;
+
+    @Nested
+    @DisplayName("downsample")
+    class DownsampleTests {
+
+        @Test
+        void shouldRollUpLookbackHoursAndDaysOfEveryServerAndRegion() {
+            when(serverRepository.findAll()).thenReturn(List.of(
+                    testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build(),
+                    testServerInfo().withEndpoint(SERVER_US_ENDPOINT).build()));
+            when(timeSeriesRepository.findBuckets(any(), any(), anyLong(), anyLong())).thenReturn(emptyList());
+
+            timeSeriesDownsamplingJob.downsample(NOW);
+
+            long hourMillis = Duration.ofHours(1).toMillis();
+            for (TimeSeriesScope scope : List.of(SERVER, TimeSeriesScope.server(SERVER_US_ENDPOINT),
+                    TimeSeriesScope.region(REGION))) {
+                verify(timeSeriesRepository).findBuckets(scope, TimeSeriesResolution.MINUTE,
+                        HOUR - 2 * hourMillis, HOUR + hourMillis - 1);
+                verify(timeSeriesRepository).findBuckets(scope, TimeSeriesResolution.HOUR,
+                        DAY, DAY + Duration.ofDays(1).toMillis() - 1);
+            }
+            verify(timeSeriesRepository, never()).saveBuckets(any(), any(), any());
+        }
+
+        @Test
+        void shouldSaveSumsOfSourceBuckets() {
+            when(serverRepository.findAll()).thenReturn(List.of(testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build()));
+            when(timeSeriesRepository.findBuckets(any(), any(), anyLong(), anyLong())).thenReturn(emptyList());
+            when(timeSeriesRepository.findBuckets(eq(SERVER), eq(TimeSeriesResolution.MINUTE), anyLong(), anyLong()))
+                    .thenReturn(List.of(new TimeSeriesBucket(HOUR, 1, 2, 150), new TimeSeriesBucket(HOUR + 60_000, 2, 5, 200)));
+            when(timeSeriesRepository.findBuckets(eq(SERVER), eq(TimeSeriesResolution.HOUR), anyLong(), anyLong()))
+                    .thenReturn(List.of(new TimeSeriesBucket(HOUR, 3, 7, 350)));
+
+            timeSeriesDownsamplingJob.downsample(NOW);
+
+            verify(timeSeriesRepository).saveBuckets(SERVER, TimeSeriesResolution.HOUR, List.of(new TimeSeriesBucket(HOUR, 3, 7, 350)));
+            verify(timeSeriesRepository).saveBuckets(SERVER, TimeSeriesResolution.DAY, List.of(new TimeSeriesBucket(DAY, 3, 7, 350)));
+        }
+
+        @Test
+        void shouldSkipHoursWhoseMinutesMayHaveExpired() {
+            timeSeriesProperties.getDownsample().setLookback(Duration.ofDays(3));
+            when(serverRepository.findAll()).thenReturn(List.of(testServerInfo().withEndpoint(SERVER_EU_ENDPOINT).build()));
+            when(timeSeriesRepository.findBuckets(any(), any(), anyLong(), anyLong())).thenReturn(emptyList());
+
+            timeSeriesDownsamplingJob.downsample(NOW);
+
+            // Minutes are kept for 48 hours: the hour 48 hours ago is partly gone, the next one is not
+            verify(timeSeriesRepository).findBuckets(eq(SERVER), eq(TimeSeriesResolution.MINUTE),
+                    eq(HOUR - Duration.ofHours(47).toMillis()), anyLong());
+        }
+
+        @Test
+        void shouldNotFailWhenRedisFails() {
+            when(serverRepository.findAll()).thenThrow(new RuntimeException("ex"));
+
+            assertThatCode(() -> timeSeriesDownsamplingJob.downsample()).doesNotThrowAnyException();
+        }
+    }
+
+    @Nested
+    @DisplayName("downsample buckets")
+    class DownsampleBucketsTests {
+
+        @Test
+        void shouldLeaveOutEmptyBuckets() {
+            List<TimeSeriesBucket> buckets = TimeSeriesDownsamplingJob.downsample(List.of(
+                    new TimeSeriesBucket(DAY, 0, 0, 0),
+                    new TimeSeriesBucket(HOUR, 1, 2, 100)), TimeSeriesResolution.HOUR);
+
+            assertThat(buckets).containsExactly(new TimeSeriesBucket(HOUR, 1, 2, 100));
+        }
+    }
+
+    private static TimeSeriesProperties timeSeriesProperties() {
+        TimeSeriesProperties properties = new TimeSeriesProperties();
+        properties.getRetention().setMinute(Duration.ofHours(48));
+        properties.getRetention().setHour(Duration.ofDays(30));
+        properties.getRetention().setDay(Duration.ofDays(400));
+        properties.getDownsample().setLookback(Duration.ofHours(2));
+        return properties;
+    }
+}
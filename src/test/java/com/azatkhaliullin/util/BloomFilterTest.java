@@ -0,0 +1,61 @@
+package com.azatkhaliullin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomFilterTest {
+
+    private static final int EXPECTED_INSERTIONS = 10_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Test
+    void shouldContainEveryInsertedId() {
+        BloomFilter filter = new BloomFilter(EXPECTED_INSERTIONS, FALSE_POSITIVE_RATE);
+        List<UUID> ids = randomIds(EXPECTED_INSERTIONS - 1);
+
+        ids.forEach(filter::put);
+
+        assertThat(ids).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void shouldKeepFalsePositiveRateNearConfiguredValue() {
+        BloomFilter filter = new BloomFilter(EXPECTED_INSERTIONS, FALSE_POSITIVE_RATE);
+        randomIds(EXPECTED_INSERTIONS - 1).forEach(filter::put);
+
+        long falsePositives = randomIds(EXPECTED_INSERTIONS).stream().filter(filter::mightContain).count();
+
+        assertThat((double) falsePositives / EXPECTED_INSERTIONS).isLessThan(FALSE_POSITIVE_RATE * 2);
+    }
+
+    @Test
+    void shouldForgetIdsTwoGenerationsOld() {
+        BloomFilter filter = new BloomFilter(100, 0.0001);
+        UUID first = UUID.randomUUID();
+        filter.put(first);
+
+        randomIds(99).forEach(filter::put);
+        assertThat(filter.mightContain(first)).isTrue();
+
+        randomIds(100).forEach(filter::put);
+        assertThat(filter.mightContain(first)).isFalse();
+    }
+
+    @Test
+    void shouldRejectInvalidSizing() {
+        assertThatThrownBy(() -> new BloomFilter(0, FALSE_POSITIVE_RATE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(EXPECTED_INSERTIONS, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<UUID> randomIds(int count) {
+        return IntStream.range(0, count).mapToObj(i -> UUID.randomUUID()).toList();
+    }
+}
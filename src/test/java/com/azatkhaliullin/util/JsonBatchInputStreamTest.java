@@ -0,0 +1,104 @@
+package com.azatkhaliullin.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonBatchInputStreamTest {
+
+    private final ObjectWriter writer = new ObjectMapper().writer();
+
+    @Test
+    void shouldJoinBatchesIntoOneArray() throws IOException {
+        InputStream stream = new JsonBatchInputStream(batches(List.of(1, 2), List.of(3)), writer, false);
+
+        assertThat(read(stream)).isEqualTo("[1,2,3]");
+    }
+
+    @Test
+    void shouldWriteEmptyArrayWhenFirstBatchIsEmpty() throws IOException {
+        InputStream stream = new JsonBatchInputStream(batches(), writer, false);
+
+        assertThat(read(stream)).isEqualTo("[]");
+    }
+
+    @Test
+    void shouldWriteOneValuePerLineForNdjson() throws IOException {
+        InputStream stream = new JsonBatchInputStream(batches(List.of("a"), List.of("b", "c")), writer, true);
+
+        assertThat(read(stream)).isEqualTo("\"a\"\n\"b\"\n\"c\"\n");
+    }
+
+    @Test
+    void shouldWriteNothingForEmptyNdjson() throws IOException {
+        InputStream stream = new JsonBatchInputStream(batches(), writer, true);
+
+        assertThat(stream.read()).isEqualTo(-1);
+    }
+
+    @Test
+    void shouldPullNextBatchOnlyWhenCurrentIsConsumed() throws IOException {
+        AtomicInteger pulls = new AtomicInteger();
+        Deque<List<Integer>> queue = new ArrayDeque<>(List.of(List.of(10), List.of(20)));
+        InputStream stream = new JsonBatchInputStream(() -> {
+            pulls.incrementAndGet();
+            return queue.isEmpty() ? List.of() : queue.poll();
+        }, writer, false);
+
+        assertThat(stream.read(new byte[2], 0, 2)).isEqualTo(2);
+        assertThat(pulls).hasValue(1);
+
+        assertThat(read(stream)).isEqualTo("0,20]");
+        assertThat(pulls).hasValue(3);
+    }
+
+    @Test
+    void shouldCopyEncodedValuesAsTheyAre() throws IOException {
+        byte[] first = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "{\"id\":2}".getBytes(StandardCharsets.UTF_8);
+        InputStream stream = new JsonBatchInputStream(batches(List.of(first), List.of(second)), writer, false);
+
+        assertThat(read(stream)).isEqualTo("[{\"id\":1},{\"id\":2}]");
+    }
+
+    @Test
+    void shouldSupportSingleByteReads() throws IOException {
+        InputStream stream = new JsonBatchInputStream(batches(List.of(1), List.of(2)), writer, false);
+        StringBuilder result = new StringBuilder();
+
+        int b;
+        while ((b = stream.read()) != -1) {
+            result.append((char) b);
+        }
+
+        assertThat(result).hasToString("[1,2]");
+    }
+
+    @SafeVarargs
+    private static Supplier<List<?>> batches(List<?>... batches) {
+        Deque<List<?>> queue = new ArrayDeque<>(List.of(batches));
+        return () -> queue.isEmpty() ? List.of() : queue.poll();
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[3];
+        int count;
+        while ((count = stream.read(chunk, 0, chunk.length)) != -1) {
+            out.write(chunk, 0, count);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
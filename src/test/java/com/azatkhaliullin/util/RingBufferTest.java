@@ -0,0 +1,161 @@
+package com.azatkhaliullin.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RingBufferTest {
+
+    @Nested
+    @DisplayName("constructor")
+    class ConstructorTests {
+
+        @Test
+        void shouldRoundCapacityUpToPowerOfTwo() {
+            assertThat(new RingBuffer<Integer>(5).capacity()).isEqualTo(8);
+            assertThat(new RingBuffer<Integer>(8).capacity()).isEqualTo(8);
+        }
+
+        @Test
+        void shouldRejectTooSmallCapacity() {
+            assertThatThrownBy(() -> new RingBuffer<Integer>(1))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("offer / poll")
+    class OfferPollTests {
+
+        @Test
+        void shouldKeepFifoOrder() {
+            RingBuffer<Integer> buffer = new RingBuffer<>(4);
+
+            buffer.offer(1);
+            buffer.offer(2);
+
+            assertThat(buffer.poll()).isEqualTo(1);
+            assertThat(buffer.poll()).isEqualTo(2);
+            assertThat(buffer.poll()).isNull();
+        }
+
+        @Test
+        void shouldRefuseWhenFull() {
+            RingBuffer<Integer> buffer = new RingBuffer<>(2);
+
+            assertThat(buffer.offer(1)).isTrue();
+            assertThat(buffer.offer(2)).isTrue();
+            assertThat(buffer.offer(3)).isFalse();
+            assertThat(buffer.size()).isEqualTo(2);
+        }
+
+        @Test
+        void shouldReuseSlotsAfterWrapAround() {
+            RingBuffer<Integer> buffer = new RingBuffer<>(2);
+
+            for (int i = 0; i < 10; i++) {
+                assertThat(buffer.offer(i)).isTrue();
+                assertThat(buffer.poll()).isEqualTo(i);
+            }
+            assertThat(buffer.isEmpty()).isTrue();
+        }
+    }
+
+    @Nested
+    @DisplayName("poll with timeout")
+    class TimedPollTests {
+
+        @Test
+        void shouldReturnNullWhenNothingArrivesInTime() throws Exception {
+            RingBuffer<Integer> buffer = new RingBuffer<>(4);
+
+            assertThat(buffer.poll(10, TimeUnit.MILLISECONDS)).isNull();
+        }
+
+        @Test
+        void shouldWakeUpOnOffer() throws Exception {
+            RingBuffer<Integer> buffer = new RingBuffer<>(4);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<Integer> polled = executor.submit(() -> buffer.poll(10, TimeUnit.SECONDS));
+                Thread.sleep(50);
+
+                buffer.offer(1);
+
+                assertThat(polled.get(1, TimeUnit.SECONDS)).isEqualTo(1);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("drainTo")
+    class DrainToTests {
+
+        @Test
+        void shouldDrainAtMostMaxElements() {
+            RingBuffer<Integer> buffer = new RingBuffer<>(8);
+            for (int i = 0; i < 5; i++) {
+                buffer.offer(i);
+            }
+            List<Integer> target = new ArrayList<>();
+
+            int drained = buffer.drainTo(target, 3);
+
+            assertThat(drained).isEqualTo(3);
+            assertThat(target).containsExactly(0, 1, 2);
+            assertThat(buffer.size()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void shouldDeliverEveryElementOnceWithConcurrentProducersAndConsumers() throws Exception {
+        int producers = 4;
+        int perProducer = 10_000;
+        RingBuffer<Integer> buffer = new RingBuffer<>(64);
+        Set<Integer> consumed = new HashSet<>();
+        CountDownLatch produced = new CountDownLatch(producers);
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 1);
+
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+                produced.countDown();
+            });
+        }
+        executor.execute(() -> {
+            while (consumed.size() < producers * perProducer) {
+                Integer value = buffer.poll();
+                if (value != null) {
+                    consumed.add(value);
+                } else {
+                    Thread.yield();
+                }
+            }
+        });
+
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(produced.getCount()).isZero();
+        assertThat(consumed).hasSize(producers * perProducer);
+    }
+}